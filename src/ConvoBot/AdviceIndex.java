@@ -0,0 +1,243 @@
+package ConvoBot;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+
+public class AdviceIndex {
+
+	/**
+	 * Advice read from file, indexed by tag (characteristic or solution name) so advice can be picked without reading every entry
+	 * 	used by Topics.Advice
+	 *
+	 * File lines are stored as "tag1,tag2,tag3;advice text;"
+	 * 	tags are characteristic/solution names (case ignored), "default" = used when no other advice matches
+	 * 	advice text can contain {characteristic}, replaced by Advice with the patient's top characteristic
+	 *
+	 * Postings: for every tag, sorted array of the ids of advice with that tag (built once when file is read)
+	 * select() merges the postings of the tags asked for, one advice id at a time in increasing order
+	 * 	score of advice = sum of weights of the asked tags it has
+	 * 	only advice with at least one asked tag is ever looked at, O(postings of asked tags * asked tags)
+	 */
+
+	public static final String DEFAULT_TAG = "default";
+
+	private ArrayList<String> advice;
+	private HashMap<String, int[]> postings;
+
+	// advice and the weight/tag that picked it, returned by select()
+	public static class Match implements Comparable<Match> {
+		private final int id;
+		private final String advice;
+		private final double score;
+		private final String tag;
+
+		Match(int id, String advice, double score, String tag) {
+			this.id = id;
+			this.advice = advice;
+			this.score = score;
+			this.tag = tag;
+		}
+
+		public int getId() {
+			return id;
+		}
+		public String getAdvice() {
+			return advice;
+		}
+		public double getScore() {
+			return score;
+		}
+		// asked tag with the highest weight that matched this advice ("default" for default advice)
+		public String getTag() {
+			return tag;
+		}
+
+		@Override
+		public String toString() {
+			return "[" + id + ", " + tag + ", " + score + ": " + advice + "]";
+		}
+
+		// compares by score, smallest first (ties: higher id first, so lower ids win)
+		@Override
+		public int compareTo(Match m) {
+			int c = Double.compare(this.score, m.score);
+			return c != 0 ? c : Integer.compare(m.id, this.id);
+		}
+	}
+
+	/**
+	 * Reads advice from file (see class comment for format), prints error and leaves index empty if file can't be read
+	 */
+	public AdviceIndex(String adviceFilename) {
+		ArrayList<String[]> tags = new ArrayList<>();
+		ArrayList<String> texts = new ArrayList<>();
+
+		try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(adviceFilename)))) {
+			String line;
+
+			while ((line = br.readLine()) != null) {
+				String[] sections = line.split(";");
+				if (sections.length < 2 || sections[1].trim().isEmpty()) {
+					continue;
+				}
+				tags.add(sections[0].split(","));
+				texts.add(sections[1].trim());
+			}
+		} catch (FileNotFoundException e) {
+			e.printStackTrace();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+
+		build(tags, texts);
+	}
+
+	// creates index from advice already in memory, tags.get(i) = tags of texts.get(i)
+	public AdviceIndex(ArrayList<String[]> tags, ArrayList<String> texts) {
+		build(tags, texts);
+	}
+
+	// advice ids are positions in texts, so every postings array is filled in increasing order
+	private void build(ArrayList<String[]> tags, ArrayList<String> texts) {
+		advice = new ArrayList<>(texts);
+
+		HashMap<String, Integer> counts = new HashMap<>();
+		for (String[] adviceTags : tags) {
+			for (String tag : adviceTags) {
+				String t = normalize(tag);
+				if (!t.isEmpty()) {
+					Integer c = counts.get(t);
+					counts.put(t, c == null ? 1 : c + 1);
+				}
+			}
+		}
+
+		postings = new HashMap<>(counts.size() * 2);
+		HashMap<String, Integer> filled = new HashMap<>(counts.size() * 2);
+		for (String t : counts.keySet()) {
+			postings.put(t, new int[counts.get(t)]);
+			filled.put(t, 0);
+		}
+
+		for (int id = 0; id < tags.size(); id++) {
+			for (String tag : tags.get(id)) {
+				String t = normalize(tag);
+				if (t.isEmpty()) {
+					continue;
+				}
+				int[] list = postings.get(t);
+				int n = filled.get(t);
+				// same tag twice on one advice is only posted once
+				if (n == 0 || list[n - 1] != id) {
+					list[n] = id;
+					filled.put(t, n + 1);
+				}
+			}
+		}
+		for (String t : counts.keySet()) {
+			if (filled.get(t) < postings.get(t).length) {
+				postings.put(t, Arrays.copyOf(postings.get(t), filled.get(t)));
+			}
+		}
+	}
+
+	private static String normalize(String tag) {
+		return tag.trim().toLowerCase();
+	}
+
+	public int size() {
+		return advice.size();
+	}
+
+	public String getAdvice(int id) {
+		return advice.get(id);
+	}
+
+	// returns ids of advice with tag (sorted, shared with the index so must not be changed), empty if no advice has tag
+	public int[] getPostings(String tag) {
+		int[] list = postings.get(normalize(tag));
+		return list == null ? new int[0] : list;
+	}
+
+	/**
+	 * Returns the k best advice for the tags asked for, best first
+	 * 	tags/weights = characteristic/solution names and how important each is (ie. graph weights), same tag twice is counted twice
+	 * 	advice with an id in exclude (ie. already given) is skipped, exclude can be null
+	 * 	if no advice has any of the tags, default advice is returned instead
+	 */
+	public ArrayList<Match> select(String[] tags, double[] weights, int k, BitSet exclude) {
+		PriorityQueue<Match> heap = new PriorityQueue<>(Math.max(1, k) + 1);
+
+		// cursor into postings of each asked tag
+		int[][] lists = new int[tags.length][];
+		int[] positions = new int[tags.length];
+		for (int i = 0; i < tags.length; i++) {
+			lists[i] = getPostings(tags[i]);
+		}
+
+		while (k > 0) {
+			// smallest advice id any cursor is on
+			int id = Integer.MAX_VALUE;
+			for (int i = 0; i < lists.length; i++) {
+				if (positions[i] < lists[i].length && lists[i][positions[i]] < id) {
+					id = lists[i][positions[i]];
+				}
+			}
+			if (id == Integer.MAX_VALUE) {
+				break;
+			}
+
+			double score = 0.0;
+			String tag = null;
+			double tagWeight = 0.0;
+			for (int i = 0; i < lists.length; i++) {
+				if (positions[i] < lists[i].length && lists[i][positions[i]] == id) {
+					positions[i]++;
+					score += weights[i];
+					if (tag == null || weights[i] > tagWeight) {
+						tag = tags[i];
+						tagWeight = weights[i];
+					}
+				}
+			}
+
+			if (exclude == null || !exclude.get(id)) {
+				offer(heap, new Match(id, advice.get(id), score, tag), k);
+			}
+		}
+
+		if (heap.isEmpty() && k > 0) {
+			for (int id : getPostings(DEFAULT_TAG)) {
+				if (exclude == null || !exclude.get(id)) {
+					offer(heap, new Match(id, advice.get(id), 0.0, DEFAULT_TAG), k);
+				}
+			}
+		}
+
+		ArrayList<Match> top = new ArrayList<>(heap.size());
+		while (!heap.isEmpty()) {
+			top.add(heap.poll());
+		}
+		Collections.reverse(top);
+		return top;
+	}
+
+	// keeps the k best matches in a min heap
+	private static void offer(PriorityQueue<Match> heap, Match m, int k) {
+		if (heap.size() < k) {
+			heap.add(m);
+		} else if (m.compareTo(heap.peek()) > 0) {
+			heap.poll();
+			heap.add(m);
+		}
+	}
+}
@@ -9,6 +9,9 @@ public class Characteristic extends Subject {
 	// list of solutions+multiplier pairs, created based on info read from text file
 	private ArrayList<SolutionMultiplierPair> characteristicSolutions;
 	
+	// list of characteristics below this one + multipliers (ie. sleep problems -> insomnia), empty for most characteristics
+	private ArrayList<CharacteristicMultiplierPair> subCharacteristics;
+	
 	// Constructor
 	public Characteristic(String name, ArrayList<String> synonyms) {
 		super(name);
@@ -16,6 +19,7 @@ public class Characteristic extends Subject {
 		this.synonyms = synonyms;
 		
 		characteristicSolutions = new ArrayList<>();
+		subCharacteristics = new ArrayList<>();
 	}
 
 	public ArrayList<String> getSynonymns() {
@@ -66,6 +70,28 @@ public class Characteristic extends Subject {
 		return this.characteristicSolutions;
 	}
 	
+	// adds a characteristic+multiplier pair to the subCharacteristics list
+	public void addSubCharacteristic(Characteristic ch, double multiplier) {
+		if (getSubCharacteristicIndex(ch) < 0) {
+			subCharacteristics.add(new CharacteristicMultiplierPair(ch, multiplier));
+		}
+	}
+	
+	// returns list of all characteristic+multiplier pairs below this characteristic
+	public ArrayList<CharacteristicMultiplierPair> getSubCharacteristics() {
+		return this.subCharacteristics;
+	}
+	
+	// gets index of characteristic in subCharacteristics list (by name)
+	private int getSubCharacteristicIndex(Characteristic ch) {
+		for (int i = 0; i < subCharacteristics.size(); i++) {
+			if (subCharacteristics.get(i).getCharacteristic().getName().equals(ch.getName())) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
 	// checks if a solution is already in characteristicSolutions list, called when solution+multiplier being added to list
 	public boolean solutionInCharacteristicSolutions(Solution solution) {
 		if (getSolutionIndex(solution) >= 0) {
@@ -77,10 +103,8 @@ public class Characteristic extends Subject {
 	// gets index of solution in characteristicSolutions list
 	private int getSolutionIndex(Solution solution) {
 		for (int i = 0; i < characteristicSolutions.size(); i++) {
-			for (SolutionMultiplierPair cs : characteristicSolutions) {
-				if (cs.getSolution().equals(solution)) {
-					return i;
-				}
+			if (characteristicSolutions.get(i).getSolution().equals(solution)) {
+				return i;
 			}
 		}
 		return -1;
@@ -0,0 +1,36 @@
+package ConvoBot;
+
+public class CharacteristicMultiplierPair {
+	
+	/**
+	 * Pair of characteristic+multiplier
+	 * Used by characteristics to point at the characteristics below them (ie. sleep problems -> insomnia, fatigue)
+	 */
+	
+	Characteristic characteristic;
+	double multiplier;
+	
+	CharacteristicMultiplierPair(Characteristic characteristic, double multiplier) {
+		setCharacteristic(characteristic);
+		setMultiplier(multiplier);
+	}
+	
+	Characteristic getCharacteristic() {
+		return characteristic;
+	}
+	double getMultiplier() {
+		return multiplier;
+	}
+	
+	void setCharacteristic(Characteristic characteristic) {
+		this.characteristic = characteristic;
+	}
+	void setMultiplier(double multiplier) {
+		this.multiplier = multiplier;
+	}
+	
+	@Override
+	public String toString() {
+		return "c=[" + characteristic.getName() + "] m=" + multiplier;
+	}
+}
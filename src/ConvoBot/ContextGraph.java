@@ -1,14 +1,19 @@
 package ConvoBot;
 
 import java.io.BufferedReader;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.PriorityQueue;
 
 public class ContextGraph {
@@ -30,13 +35,67 @@ public class ContextGraph {
 	ArrayList<Node> characteristicNodes;
 	ArrayList<Node> solutionNodes;
 	
+	// every node/edge in the graph indexed by id (id = bit index in the enabled masks)
+	ArrayList<Node> nodes;
+	ArrayList<Edge> edges;
+	
+	// characteristic/solution nodes by subject name, and edge ids by (start node id, end node id)
+	// 	used so finding a node or edge never walks the node lists/edge queues
+	HashMap<String, Node> characteristicNodesByName;
+	HashMap<String, Node> solutionNodesByName;
+	EdgeIndex edgeIndex;
+	
+	// enabled state of all nodes/edges, bit set = disabled
+	// 	masks are applied when solutions are scored, toggling never re-propagates weights
+	BitSet disabledNodes;
+	BitSet disabledEdges;
+	
+	// ids of removed nodes/edges, kept out of the masks above (removed edges are detached, no weight reaches them)
+	// 	so removing never turns on masked scoring, getEnabledNodeMask/getEnabledEdgeMask still report them as disabled
+	final BitSet removedNodes = new BitSet();
+	final BitSet removedEdges = new BitSet();
+	
+	// masked solution scores indexed by node id, recalculated only after weights or masks change
+	double[] scores;
+	boolean scoresValid;
+	
+	// all nodes except centerNode in topological order (every edge points from an earlier node to a later node)
+	// 	weights are passed down the graph by walking this order once, see propagate()
+	// 	recalculated after nodes/edges are added
+	Node[] topologicalOrder;
+	int[] topologicalPosition; // position of node in topologicalOrder, indexed by node id (-1 for centerNode)
+	boolean topologicalOrderValid;
+	BitSet dirtyPositions; // positions of nodes waiting to collect weights during propagate()
+	
+	// keyword index of characteristicsList (see getKeywordIndex), null until it is first asked for
+	// 	graphs copied from a template share the template's, addNewCharacteristic drops it so this graph builds its own
+	private volatile KeywordIndex keywords;
+	
+	// changes every time a node/edge is added or removed, lets other classes know when to rebuild anything based on graph shape
+	int structureVersion;
+	// changes every time an edge multiplier is changed
+	int multiplierVersion;
+	
+	// optional ranking mode, null = solutions ranked by weight (see useSpreadingActivation)
+	// 	last activation is kept until weights, masks or structure change, like scores
+	SpreadingActivation spreadingActivation;
+	private double[] ranking;
+	boolean rankingValid;
+	
+	// last read only copy of the graph, swapped in by publish() and read by other threads without locks (see GraphSnapshot)
+	private volatile GraphSnapshot snapshot;
+	private long publishCount;
+	
+	// told about every solution re-weighted while subscriptions are registered (see watchScore/watchMargin), null = none
+	private volatile ScoreWatcher watcher;
+	
 
 	/**
 	 * Constructor
-	 * 	creates center node of graph
-	 * 	adds all solutions in solutionsList to graph
-	 * 	adds all characteristics in characteristicsList to graph
-	 * 		(order [solutions, then characteristics] less important than when reading initial file, should still be maintained)
+	 * 	reads characteristics and solutions from file
+	 * 	creates center node of graph, adds all solutions in solutionsList, then all characteristics in characteristicsList to graph
+	 * 		(done in one pass by ContextGraphBuilder, duplicates in the files are only added once)
+	 * 	throws IllegalArgumentException if the characteristics form a cycle
 	 */
 	public ContextGraph(String characteristicsFilename, String solutionsFilename) {
 		
@@ -46,15 +105,20 @@ public class ContextGraph {
 		
 		createLists(characteristicsFilename, solutionsFilename);
 		
-		// center node MUST be named "centerNode" (otherwise error with edge/node weights)
-		centerNode = new Node(new Subject("centerNode")); // node at center of graph, originally patient, change later?
-			
-		characteristicNodes = new ArrayList<>();
-		solutionNodes = new ArrayList<>(); // needed to return solution at end
-					
-		// adds all solutions and characteristics in list to graph
-		addListSolutions();
-		addListCharacteristics();
+		new ContextGraphBuilder().addSolutions(solutionsList).addCharacteristics(characteristicsList).buildInto(this);
+	}
+	
+	// empty graph, filled by ContextGraphBuilder
+	ContextGraph() {
+	}
+	
+	/**
+	 * Builds a new graph with the same characteristics and solutions as template (weights start at 0, nothing disabled)
+	 * 	no files are read, used to give each session its own graph (see SessionStore)
+	 */
+	public ContextGraph(ContextGraph template) {
+		new ContextGraphBuilder().addSolutions(template.solutionsList).addCharacteristics(template.characteristicsList).buildInto(this);
+		keywords = template.getKeywordIndex();
 	}
 	
 	/**
@@ -65,6 +129,8 @@ public class ContextGraph {
 	 * 		all characteristics must be stored as "characteristic1;synonym1,synonym2;treatment1-m1,treatment2-m2,treatment3-m3;"
 	 * 			m1 = multiplier (stored as int)
 	 * 			only adds solutions already in solution list, searches by name
+	 * 		characteristics with characteristics below them add a 4th section "...;subcharacteristic1-m1,subcharacteristic2-m2;"
+	 * 			ie. "sleep problems;...;;insomnia-1.0,fatigue-0.5;", sub characteristics can be anywhere in the file
 	 * @param solutionsFilename = name of file where solutions list stored
 	 * 		all solutions stored as "treatment1;\ntreatment2;\n..."
 	 * 			based on simple solution class (name is only attribute)
@@ -77,15 +143,24 @@ public class ContextGraph {
 		    
 			String line;
 		    
+		    // solutions looked up by name while reading characteristics
+		    HashMap<String, Solution> solutionsByName = new HashMap<>();
+		    
 		    while ((line = sbr.readLine()) != null) {
 		    	String[] sections = line.split(";");
 		    	
 		    	Solution s = new Solution(sections[0]);
 		    	solutionsList.add(s);
+		    	if (!solutionsByName.containsKey(s.getName())) {
+		    		solutionsByName.put(s.getName(), s);
+		    	}
 		    }
 		    
 		    
-		    // bad run time, small data set assumed (for demo)
+		    // sub characteristic names are resolved once every characteristic has been read
+		    HashMap<String, Characteristic> characteristicsByName = new HashMap<>();
+		    HashMap<Characteristic, String[]> subCharacteristicNames = new HashMap<>();
+		    
 		    while ((line = cbr.readLine()) != null) {
 		        String[] sections = line.split(";");
 		        
@@ -101,19 +176,43 @@ public class ContextGraph {
 			        
 			        
 			        for (String sm : solutions) {
+			        	if (sm.isEmpty()) { // characteristic with sub characteristics but no solutions
+			        		continue;
+			        	}
 			        	int separaterIndex = sm.indexOf('-');
 			        	String solution = sm.substring(0, separaterIndex);
 			        	double multiplier = Double.parseDouble(sm.substring(separaterIndex + 1));
 			        	
-			        	for (Solution s : solutionsList) {
-			        		if (solution.equals(s.getName())) {
-			        			ch.addSolution(s, multiplier);
-			        		}
+			        	Solution s = solutionsByName.get(solution);
+			        	if (s != null) {
+			        		ch.addSolution(s, multiplier);
 			        	}
 			        	
 			        }
 		        }
+		        if (sections.length > 3) {
+		        	subCharacteristicNames.put(ch, sections[3].split(","));
+		        }
 		        characteristicsList.add(ch);
+		        characteristicsByName.put(name, ch);
+		    }
+		    
+		    for (Characteristic ch : characteristicsList) {
+		    	if (!subCharacteristicNames.containsKey(ch)) {
+		    		continue;
+		    	}
+		    	for (String cm : subCharacteristicNames.get(ch)) {
+		    		if (cm.isEmpty()) {
+		    			continue;
+		    		}
+		    		int separaterIndex = cm.lastIndexOf('-');
+		    		Characteristic sub = characteristicsByName.get(cm.substring(0, separaterIndex));
+		    		if (sub != null) {
+		    			ch.addSubCharacteristic(sub, Double.parseDouble(cm.substring(separaterIndex + 1)));
+		    		} else {
+		    			System.out.println("The characteristic " + cm.substring(0, separaterIndex) + " below " + ch.getName() + " does not exist in the characteristic list");
+		    		}
+		    	}
 		    }
 		    
 		    return true;
@@ -154,8 +253,9 @@ public class ContextGraph {
 			System.out.println("The characteristic : " + ch.toString() + " does not exist in the characteristic list");
 		} else {
 			
-			Node chNode = new Node(ch); // creates node for characteristic
+			Node chNode = createNode(ch); // creates node for characteristic
 			characteristicNodes.add(chNode); // adds node to list of characteristic nodes 
+			characteristicNodesByName.put(ch.getName(), chNode);
 			
 			connectCenterToCharacteristic(chNode); // connects characteristic node to the center node
 		
@@ -196,48 +296,24 @@ public class ContextGraph {
 			return null;
 		}
 		
-		Node sNode = new Node(solution);
+		Node sNode = createNode(solution);
 		solutionNodes.add(sNode);
+		solutionNodesByName.put(solution.getName(), sNode);
 		
 		return sNode;
 	}
 	
 	/**
-	 * Adds all solutions in solution list to graph
-	 */
-	private void addListSolutions() {
-		for (Solution s : solutionsList) {
-			createSolutionNode(s);
-		}
-	}
-	
-	/**
-	 * Adds a solution connected to one characteristic node to the graph
+	 * Creates a node with the next free id, enabled state of the node is stored in disabledNodes
 	 */
-	private void addSolution(Solution solution, Node chNode) {
-		Node sNode = createSolutionNode(solution);
+	Node createNode(Subject subject) {
+		Node node = new Node(subject, nodes.size(), disabledNodes);
+		nodes.add(node);
+		invalidateScores();
+		topologicalOrderValid = false;
+		structureVersion++;
 		
-		// sNode = null if solution is already in graph or solution is not in the list of possible solutions
-		if (sNode != null && ((Characteristic)(chNode.getSubject())).solutionInCharacteristicSolutions(solution)) {
-			double multiplier = ((Characteristic)(chNode.getSubject())).getMultiplier(solution);
-			connectCharacteristicToSolution(chNode, sNode, multiplier);
-		} else if (sNode == null && ((Characteristic)(chNode.getSubject())).solutionInCharacteristicSolutions(solution)){
-			sNode = getSolutionNode(solution);
-			if (sNode != null) {
-				double multiplier = ((Characteristic)(chNode.getSubject())).getMultiplier(solution);
-				connectCharacteristicToSolution(chNode, sNode, multiplier);
-			}
-		}
-		
-	}
-	
-	/**
-	 * Adds a solution connected to some number of characteristic nodes to the graph
-	 */
-	private void addSolution(Solution solution, ArrayList<Node> characteristicNodes) {
-		for (Node chNode : characteristicNodes) {
-			addSolution(solution, chNode);
-		}
+		return node;
 	}
 
 	
@@ -246,22 +322,461 @@ public class ContextGraph {
 	//	Create edges between Nodes in Graph
 	//%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
 	
+	/**
+	 * Creates an edge with the next free id, enabled state of the edge is stored in disabledEdges
+	 */
+	Edge createEdge(Node startNode, Node endNode, double multiplier) {
+		Edge edge = new Edge(startNode, endNode, 0.0, multiplier, edges.size(), disabledEdges);
+		edges.add(edge);
+		edgeIndex.put(startNode.getId(), endNode.getId(), edge.getId());
+		invalidateScores();
+		structureVersion++;
+		
+		return edge;
+	}
+	
 	/**
 	 * Creates an edge between the center node and a characteristic node (chNode), weight starts at 0, multiplier = 1
 	 */
 	private void connectCenterToCharacteristic(Node chNode) {
-		Edge edge = new Edge(centerNode, chNode, 0.0, 1); // creates edge
+		Edge edge = createEdge(centerNode, chNode, 1); // creates edge
 		centerNode.addEdgeFromNode(edge); // adds edge to center node's edge list
 		chNode.addEdgeToNode(edge); // adds edge to characteristic node's edge list
 	}
 	
 	/** 
 	 *Creates an edge between a characteristic node (chNode) and a solution node (sNode) with multiplier m
+	 *	also used between a characteristic and a characteristic below it (sNode is then a characteristic node)
 	 */
 	private void connectCharacteristicToSolution(Node chNode, Node sNode, double multiplier) {
-		Edge edge = new Edge(chNode, sNode, 0.0, multiplier); // creates edge
+		Edge edge = createEdge(chNode, sNode, multiplier); // creates edge
 		chNode.addEdgeFromNode(edge); // adds edge to characteristic node's edge list
 		sNode.addEdgeToNode(edge); // adds edge to solution node's edge list
+		
+		// order stays valid if the edge already points down the order, otherwise it is recalculated before the next update
+		if (topologicalOrderValid && topologicalPosition[chNode.getId()] >= topologicalPosition[sNode.getId()]) {
+			topologicalOrderValid = false;
+		}
+	}
+	
+	
+	
+	//%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+	//	Pass weights down graph in topological order
+	//%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+	
+	/**
+	 * Orders all nodes (except centerNode) so every edge points from an earlier node to a later one (Kahn's algorithm, O(nodes + edges))
+	 * 	edges from centerNode are ignored, centerNode weight is never passed down
+	 * 	throws IllegalArgumentException if the characteristics form a cycle (ie. a -> b -> a), graph can't be weighted
+	 */
+	void createTopologicalOrder() {
+		int[] edgesToCount = new int[nodes.size()];
+		int nodeCount = 0;
+		
+		for (Edge e : edges) {
+			if (e != null && e.getStartNode() != centerNode) {
+				edgesToCount[e.getEndNode().getId()]++;
+			}
+		}
+		
+		Node[] order = new Node[nodes.size()];
+		int head = 0;
+		int tail = 0;
+		
+		for (Node n : nodes) {
+			if (n != null && n != centerNode) {
+				nodeCount++;
+				if (edgesToCount[n.getId()] == 0) {
+					order[tail++] = n;
+				}
+			}
+		}
+		
+		// order doubles as the queue, nodes between head and tail have had every edge to them counted
+		while (head < tail) {
+			Node n = order[head++];
+			for (Edge e : n.getEdgesFromNode()) {
+				int endId = e.getEndNode().getId();
+				if (--edgesToCount[endId] == 0) {
+					order[tail++] = e.getEndNode();
+				}
+			}
+		}
+		
+		if (tail < nodeCount) {
+			StringBuilder cycle = new StringBuilder();
+			for (Node n : nodes) {
+				if (n != null && n.getSubject() instanceof Characteristic && edgesToCount[n.getId()] > 0) {
+					cycle.append(cycle.length() == 0 ? "" : ", ");
+					cycle.append(n.getSubjectName());
+				}
+			}
+			throw new IllegalArgumentException("The characteristics form a cycle and can't be added to the graph: " + cycle);
+		}
+		
+		topologicalOrder = Arrays.copyOf(order, tail);
+		topologicalPosition = new int[nodes.size()];
+		Arrays.fill(topologicalPosition, -1);
+		for (int i = 0; i < topologicalOrder.length; i++) {
+			topologicalPosition[topologicalOrder[i].getId()] = i;
+		}
+		topologicalOrderValid = true;
+	}
+	
+	/**
+	 * Passes the weight of a changed node down to every node below it
+	 * 	walks the topological order once from the changed node, a node is only visited if an edge to it changed
+	 * 	each node collects its weight (baseWeight + edges to it) after every node above it is done, so each node is updated once
+	 * 	iterative, depth of graph does not use any stack
+	 */
+	private void propagate(Node start) {
+		if (start == centerNode) {
+			return;
+		}
+		if (!topologicalOrderValid) {
+			createTopologicalOrder();
+		}
+		
+		dirtyPositions.set(topologicalPosition[start.getId()]);
+		propagateDirty();
+	}
+	
+	// walks the topological order from the first dirty position, see propagate()
+	private void propagateDirty() {
+		ScoreWatcher w = watcher;
+		for (int i = dirtyPositions.nextSetBit(0); i >= 0; i = dirtyPositions.nextSetBit(i + 1)) {
+			dirtyPositions.clear(i);
+			Node n = topologicalOrder[i];
+			
+			n.collectWeights();
+			if (w != null && n.getSubject() instanceof Solution) {
+				w.changed(n);
+			}
+			for (Edge e : n.getEdgesFromNode()) {
+				e.updateEdgeWeight();
+				dirtyPositions.set(topologicalPosition[e.getEndNode().getId()]);
+			}
+		}
+		invalidateScores();
+		if (w != null) {
+			w.fire(); // after every node is done, listeners see the whole change
+		}
+	}
+	
+	/**
+	 * Returns true if there is a path of edges from node n1 down to node n2 (iterative depth first search)
+	 */
+	private boolean pathExists(Node n1, Node n2) {
+		BitSet visited = new BitSet(nodes.size());
+		ArrayList<Node> stack = new ArrayList<>();
+		stack.add(n1);
+		visited.set(n1.getId());
+		
+		while (!stack.isEmpty()) {
+			Node n = stack.remove(stack.size() - 1);
+			if (n == n2) {
+				return true;
+			}
+			for (Edge e : n.getEdgesFromNode()) {
+				Node end = e.getEndNode();
+				if (!visited.get(end.getId())) {
+					visited.set(end.getId());
+					stack.add(end);
+				}
+			}
+		}
+		return false;
+	}
+	
+	
+	
+	//%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+	//	Change graph after it is built
+	//%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+	// every change only updates the solutions touching the changed node/edge (O(degree)), graph is never rebuilt
+	
+	/**
+	 * Adds a characteristic that was not read from file to the characteristics list and the graph
+	 * 	solutions of the characteristic must already be in the solutions list
+	 * 	sub characteristics already in the graph are connected, unless the connection would create a cycle
+	 */
+	public boolean addNewCharacteristic(Characteristic ch) {
+		if (characteristicInGraph(ch)) {
+			return false;
+		}
+		if (!characteristicInList(ch)) {
+			characteristicsList.add(ch);
+			keywords = null;
+		}
+		addCharacteristic(ch);
+		
+		for (CharacteristicMultiplierPair sub : new ArrayList<>(ch.getSubCharacteristics())) {
+			if (!addEdge(ch, sub.getCharacteristic(), sub.getMultiplier())) {
+				System.out.println("The characteristic " + sub.getCharacteristic().getName() + " could not be connected below " + ch.getName());
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Adds a solution that was not read from file to the solutions list and the graph (not connected to any characteristics)
+	 */
+	public boolean addNewSolution(Solution s) {
+		if (getSolutionNode(s) != null) {
+			return false;
+		}
+		if (!solutionInList(s)) {
+			solutionsList.add(s);
+		}
+		
+		return createSolutionNode(s) != null;
+	}
+	
+	/**
+	 * Removes a characteristic, its edges and its weight from the graph
+	 * 	solutions it pointed to are re-weighted, characteristic stays in the characteristics list
+	 * 	like every change below, only this graph's nodes/edges change, characteristics are shared with other graphs and keep theirs
+	 */
+	public boolean removeCharacteristic(Characteristic ch) {
+		Node chNode = getCharacteristicNode(ch);
+		if (chNode == null) {
+			return false;
+		}
+		
+		for (Edge e : new ArrayList<>(chNode.getEdgesFromNode())) {
+			removeEdge(e);
+		}
+		for (Edge e : new ArrayList<>(chNode.getEdgesToNode())) {
+			removeEdge(e);
+		}
+		centerNode.setWeight(centerNode.getWeight() - chNode.getBaseWeight()); // center weight = sum of all characteristic increments
+		
+		characteristicNodes.remove(chNode);
+		characteristicNodesByName.remove(ch.getName());
+		removeNode(chNode);
+		
+		return true;
+	}
+	
+	/**
+	 * Removes a solution and all edges pointing to it from the graph and from this graph's solutions list
+	 */
+	public boolean removeSolution(Solution s) {
+		Node sNode = getSolutionNode(s);
+		if (sNode == null) {
+			return false;
+		}
+		
+		for (Edge e : new ArrayList<>(sNode.getEdgesToNode())) {
+			removeEdge(e);
+		}
+		
+		solutionNodes.remove(sNode);
+		solutionNodesByName.remove(s.getName());
+		removeNode(sNode);
+		
+		for (int i = 0; i < solutionsList.size(); i++) {
+			if (solutionsList.get(i).equals(s)) {
+				solutionsList.remove(i);
+				break;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Connects a characteristic to a solution with multiplier m (both must be in graph)
+	 * 	if they are already connected the multiplier of the existing edge is changed instead
+	 * 	solution weight is updated straight away
+	 */
+	public boolean addEdge(Characteristic ch, Solution s, double multiplier) {
+		Node chNode = getCharacteristicNode(ch);
+		Node sNode = getSolutionNode(s);
+		if (chNode == null || sNode == null) {
+			return false;
+		}
+		
+		if (checkNodesConnected(chNode, sNode)) {
+			return setEdgeMultiplier(ch, s, multiplier);
+		}
+		
+		connectCharacteristicToSolution(chNode, sNode, multiplier);
+		propagate(chNode);
+		
+		return true;
+	}
+	
+	/**
+	 * Connects a characteristic to a characteristic below it with multiplier m (both must be in graph)
+	 * 	if they are already connected the multiplier of the existing edge is changed instead
+	 * 	returns false without connecting them if sub can already reach ch (edge would create a cycle)
+	 */
+	public boolean addEdge(Characteristic ch, Characteristic sub, double multiplier) {
+		Node chNode = getCharacteristicNode(ch);
+		Node subNode = getCharacteristicNode(sub);
+		if (chNode == null || subNode == null) {
+			return false;
+		}
+		
+		if (checkNodesConnected(chNode, subNode)) {
+			return setEdgeMultiplier(ch, sub, multiplier);
+		}
+		if (pathExists(subNode, chNode)) {
+			return false;
+		}
+		
+		connectCharacteristicToSolution(chNode, subNode, multiplier);
+		propagate(chNode);
+		
+		return true;
+	}
+	
+	/**
+	 * Removes edge from characteristic to solution, solution weight is updated straight away
+	 */
+	public boolean removeEdge(Characteristic ch, Solution s) {
+		Edge e = getEdge(ch, s);
+		if (e == null) {
+			return false;
+		}
+		
+		removeEdge(e);
+		
+		return true;
+	}
+	
+	/**
+	 * Removes edge from characteristic to a characteristic below it, weights below are updated straight away
+	 */
+	public boolean removeEdge(Characteristic ch, Characteristic sub) {
+		Edge e = getEdge(ch, sub);
+		if (e == null) {
+			return false;
+		}
+		
+		removeEdge(e);
+		
+		return true;
+	}
+	
+	/**
+	 * Changes multiplier of edge from characteristic to solution, solution weight is updated straight away
+	 */
+	public boolean setEdgeMultiplier(Characteristic ch, Solution s, double multiplier) {
+		Edge e = getEdge(ch, s);
+		if (e == null) {
+			return false;
+		}
+		
+		e.setMultiplier(multiplier);
+		e.updateEdgeWeight();
+		multiplierVersion++;
+		propagate(e.getEndNode());
+		
+		return true;
+	}
+	
+	/**
+	 * Changes multiplier of edge from characteristic to a characteristic below it, weights below are updated straight away
+	 */
+	public boolean setEdgeMultiplier(Characteristic ch, Characteristic sub, double multiplier) {
+		Edge e = getEdge(ch, sub);
+		if (e == null) {
+			return false;
+		}
+		
+		e.setMultiplier(multiplier);
+		e.updateEdgeWeight();
+		multiplierVersion++;
+		propagate(e.getEndNode());
+		
+		return true;
+	}
+	
+	/**
+	 * Changes multipliers of many characteristic -> solution edges at once (ie. learned multipliers, see MultiplierLearner)
+	 * 	only this graph's edges change, the characteristics shared with other graphs keep their multipliers
+	 * 	weights are passed down once after all edges are changed, returns number of edges changed
+	 */
+	int applyMultipliers(Characteristic[] from, Solution[] to, double[] multipliers) {
+		if (!topologicalOrderValid) {
+			createTopologicalOrder();
+		}
+		int changed = 0;
+		for (int i = 0; i < multipliers.length; i++) {
+			Edge e = getEdge(from[i], to[i]);
+			if (e == null || e.getMultiplier() == multipliers[i]) {
+				continue;
+			}
+			e.setMultiplier(multipliers[i]);
+			e.updateEdgeWeight();
+			dirtyPositions.set(topologicalPosition[e.getEndNode().getId()]);
+			changed++;
+		}
+		if (changed > 0) {
+			multiplierVersion++;
+			propagateDirty();
+		}
+		return changed;
+	}
+	
+	/**
+	 * Sets weight added to a characteristic (rather than incrementing it), solutions are updated like incrementCharacteristic
+	 * 	weight passed down from characteristics above it is not included
+	 */
+	public boolean setCharacteristicWeight(Characteristic ch, double weight) {
+		Node chNode = getCharacteristicNode(ch);
+		if (chNode == null) {
+			return false;
+		}
+		
+		return incrementCharacteristic(ch, weight - chNode.getBaseWeight());
+	}
+	
+	// weights, masks or structure changed, scores and ranking are calculated again the next time they're read
+	private void invalidateScores() {
+		scoresValid = false;
+		rankingValid = false;
+	}
+	
+	// nodes/edges were enabled or disabled, solution scores change without any weight being passed down
+	private void masksChanged() {
+		invalidateScores();
+		ScoreWatcher w = watcher;
+		if (w != null) {
+			w.masksChanged();
+			w.fire();
+		}
+	}
+	
+	// detaches edge from both nodes and all indexes, then re-weights the node it pointed to and every node below it
+	// 	removed ids are not reused and never enabled, like removed nodes
+	private void removeEdge(Edge e) {
+		Node startNode = e.getStartNode();
+		Node endNode = e.getEndNode();
+		
+		startNode.getEdgesFromNode().remove(e);
+		endNode.getEdgesToNode().remove(e);
+		edgeIndex.remove(startNode.getId(), endNode.getId());
+		edges.set(e.getId(), null);
+		removedEdges.set(e.getId());
+		disabledEdges.clear(e.getId()); // a disabled edge that is removed no longer masks anything
+		structureVersion++;
+		
+		propagate(endNode);
+		invalidateScores();
+	}
+	
+	// frees the id of a node with no edges left, removed ids are not reused and never enabled
+	private void removeNode(Node n) {
+		nodes.set(n.getId(), null);
+		removedNodes.set(n.getId());
+		disabledNodes.clear(n.getId());
+		structureVersion++;
+		invalidateScores();
 	}
 	
 	
@@ -298,7 +813,9 @@ public class ContextGraph {
 		
 		chNode.incrementWeight(weight);
 		centerNode.incrementWeight(weight);
+		propagate(chNode);
 		
+		Trending.characteristicIncremented(ch);
 		return true;
 	}
 	
@@ -307,25 +824,231 @@ public class ContextGraph {
 	// Return solution from graph
 	//%%%%%%%%%%%%%%%%%%%%%%%%%%%%
 	
+	/**
+	 * Ranks solutions by spreading activation instead of weight (see SpreadingActivation), works with relations that form cycles
+	 * 	relationsFilename = file of relations between characteristics that are not part of the graph, null for none
+	 */
+	public SpreadingActivation useSpreadingActivation(String relationsFilename) {
+		if (watcher != null) {
+			throw new IllegalStateException("Scores are watched, cancel the subscriptions before using spreading activation");
+		}
+		spreadingActivation = new SpreadingActivation(this, relationsFilename);
+		rankingValid = false;
+		return spreadingActivation;
+	}
+	
+	// goes back to ranking solutions by weight
+	public void useWeightRanking() {
+		spreadingActivation = null;
+	}
+	
+	// true if solutions are ranked by spreading activation, scores can't be watched then
+	public boolean usesSpreadingActivation() {
+		return spreadingActivation != null;
+	}
+	
+	// returns scores solutions are ranked by, indexed by node id
+	// 	activation is spread again only if something changed since the last call, so looking up every solution's score is O(solutions)
+	private double[] getRankingScores() {
+		if (spreadingActivation != null) {
+			if (!rankingValid) {
+				ranking = spreadingActivation.rank();
+				rankingValid = true;
+			}
+			return ranking;
+		}
+		return getScores();
+	}
+	
 	// returns solution with highest weight (does not return weight)
 	public Solution getTopSolution() {
-		Collections.sort(solutionNodes);
+		double[] scores = getRankingScores();
+		
+		Node top = solutionNodes.get(0);
+		for (Node sNode : solutionNodes) {
+			if (scores[sNode.getId()] > scores[top.getId()]) {
+				top = sNode;
+			}
+		}
 		
-		return (Solution)solutionNodes.get(0).getSubject();
+		return (Solution)top.getSubject();
 	}
 	
 	// returns array of all solutions, sorted by weight (does not return weight)
 	public Solution[] getTopSolutionsArray() {
-		Collections.sort(solutionNodes);
+		final double[] scores = getRankingScores();
+		
+		ArrayList<Node> sorted = new ArrayList<>(solutionNodes);
+		Collections.sort(sorted, new Comparator<Node>() {
+			@Override
+			public int compare(Node n1, Node n2) {
+				return Double.compare(scores[n2.getId()], scores[n1.getId()]);
+			}
+		});
 		
-		Solution[] topSolutions = new Solution[solutionNodes.size()];
+		Solution[] topSolutions = new Solution[sorted.size()];
 		
 		for (int i = 0; i < topSolutions.length; i++) {
-			topSolutions[i] = (Solution)solutionNodes.get(i).getSubject();
+			topSolutions[i] = (Solution)sorted.get(i).getSubject();
 		}
 		
 		return topSolutions;
 	}
+	
+	/**
+	 * Returns the k characteristics that add the most weight to a solution, largest first ("why this advice")
+	 * 	each contribution = characteristic weight * multiplier, share = contribution / score of solution
+	 * 	disabled characteristics/edges are left out, a disabled solution returns an empty list
+	 * 	only looks at the edges pointing to the solution, O(in-degree * log k)
+	 */
+	public ArrayList<Contribution> explain(Solution s, int k) {
+		ArrayList<Contribution> top = new ArrayList<>();
+		Node sNode = getSolutionNode(s);
+		if (sNode == null || !sNode.isEnabled() || k <= 0) {
+			return top;
+		}
+		
+		// min heap of the k largest contributions seen so far
+		PriorityQueue<Contribution> heap = new PriorityQueue<>(k + 1);
+		double[] scores = getScores();
+		double total = 0.0;
+		
+		for (Edge e : sNode.getEdgesToNode()) {
+			Node chNode = e.getStartNode();
+			if (!e.isEnabled() || !chNode.isEnabled()) {
+				continue;
+			}
+			
+			Contribution c = new Contribution((Characteristic)chNode.getSubject(), scores[chNode.getId()], e.getMultiplier());
+			total += c.getContribution();
+			
+			if (heap.size() < k) {
+				heap.add(c);
+			} else if (c.compareTo(heap.peek()) > 0) {
+				heap.poll();
+				heap.add(c);
+			}
+		}
+		
+		while (!heap.isEmpty()) {
+			Contribution c = heap.poll();
+			c.setShare(total == 0.0 ? 0.0 : c.getContribution() / total);
+			top.add(c);
+		}
+		Collections.reverse(top);
+		
+		return top;
+	}
+	
+	/**
+	 * Publishes a read only snapshot of the current scores/multipliers/masks for other threads (see GraphSnapshot)
+	 * 	call from the thread changing the graph after each batch of updates, O(nodes + edges)
+	 * 	the graph itself is not thread safe, other threads should only use getSnapshot()
+	 */
+	public GraphSnapshot publish() {
+		GraphSnapshot next = new GraphSnapshot(this, snapshot, ++publishCount, getRankingScores(), getScores());
+		snapshot = next;
+		return next;
+	}
+	
+	/**
+	 * Calls listener every time the score of s crosses threshold (up or down), s = null for any solution (see ScoreWatcher)
+	 * 	called on the thread changing the graph, right after the change
+	 * 	throws IllegalStateException while ranking by spreading activation
+	 */
+	public ScoreWatcher.Subscription watchScore(Solution s, double threshold, ScoreWatcher.Listener listener) {
+		return watcher().subscribe(s, threshold, false, listener);
+	}
+	
+	/**
+	 * Calls listener every time the highest solution score minus the second highest crosses threshold (see ScoreWatcher)
+	 * 	throws IllegalStateException while ranking by spreading activation
+	 */
+	public ScoreWatcher.Subscription watchMargin(double threshold, ScoreWatcher.Listener listener) {
+		return watcher().subscribe(null, threshold, true, listener);
+	}
+	
+	private synchronized ScoreWatcher watcher() {
+		if (spreadingActivation != null) {
+			throw new IllegalStateException("Scores can't be watched while ranking by spreading activation");
+		}
+		if (watcher == null) {
+			watcher = new ScoreWatcher(this);
+		}
+		return watcher;
+	}
+	
+	// last subscription was cancelled, weights are passed down without telling anyone again
+	synchronized void dropWatcher(ScoreWatcher w) {
+		if (watcher == w && w.isEmpty()) {
+			watcher = null;
+		}
+	}
+	
+	// returns the last published snapshot (graph is published once when built), safe to call from any thread
+	public GraphSnapshot getSnapshot() {
+		return snapshot;
+	}
+	
+	// returns the score of a solution (weight with disabled nodes/edges removed, or activation if using spreading activation)
+	public double getSolutionScore(Solution s) {
+		Node sNode = getSolutionNode(s);
+		if (sNode == null) {
+			return 0.0;
+		}
+		return getRankingScores()[sNode.getId()];
+	}
+	
+	// true if any node/edge is disabled, scores differ from weights then and are worked out in one pass when read (see getScores)
+	// 	removed nodes/edges don't count, they are detached from the graph
+	public boolean isMasked() {
+		return !disabledNodes.isEmpty() || !disabledEdges.isEmpty();
+	}
+	
+	/**
+	 * Returns node weights with the enabled masks applied, indexed by node id
+	 * 	if nothing is disabled the node weights are used as is
+	 * 	otherwise every node is re-weighted once in topological order (O(nodes + edges)) and cached until weights/masks change
+	 * 		a disabled node keeps only the weight added to it directly (solutions score 0) and passes nothing down
+	 * 		a disabled edge passes nothing down
+	 */
+	double[] getScores() {
+		if (scoresValid) {
+			return scores;
+		}
+		if (scores == null || scores.length < nodes.size()) {
+			scores = new double[nodes.size()];
+		}
+		
+		boolean masked = isMasked();
+		
+		for (Node n : nodes) {
+			if (n != null) {
+				scores[n.getId()] = n.getWeight();
+			}
+		}
+		if (masked) {
+			if (!topologicalOrderValid) {
+				createTopologicalOrder();
+			}
+			for (Node n : topologicalOrder) {
+				double score = n.getBaseWeight();
+				if (n.isEnabled()) {
+					for (Edge e : n.getEdgesToNode()) {
+						Node start = e.getStartNode();
+						if (e.isEnabled() && start.isEnabled() && start != centerNode) {
+							score += scores[start.getId()] * e.getMultiplier();
+						}
+					}
+				}
+				scores[n.getId()] = score;
+			}
+		}
+		
+		scoresValid = true;
+		return scores;
+	}
+	
 	/*
 	Set a node to be enabled or disabled (Works for Characteristics)
 	*/
@@ -337,59 +1060,135 @@ public class ContextGraph {
 	}
 	
 	public boolean checkEdgesEnabled(Characteristic ch, Solution s) {
-		Node parent_node = getCharacteristicNode(ch);
-		Node child_node = getSolutionNode(s);
-		
-		PriorityQueue<Edge> edges = parent_node.getEdgesFromNode();
-		/*
-		for each edge e in edges, if e.endNode == childNode
-			return e.isEnabled
-		*/
-		
-		// Creating an iterator 
-        Iterator value = edges.iterator(); 
-  
-        // Displaying the values after iterating through the queue 
-        System.out.println("The iterator values are: "); 
-        while (value.hasNext()) { 
-        	Edge e = (Edge) value.next();
-            System.out.println(e.toString()); 
-            if (((Edge) e).getEndNode().equals(child_node)) {
-            	return e.isEnabled();
-            }
-        }
-        return false; //If it does not find an edge between the characteristics and solutions
+		Edge e = getEdge(ch, s);
+		if (e == null) {
+			return false; //If it does not find an edge between the characteristics and solutions
+		}
+		return e.isEnabled();
 	}
 	
 	//Ability to enable/disable a characteristic node
 	public void setNodeEnabled(Characteristic ch, boolean enabled) {
 		getCharacteristicNode(ch).setEnabled(enabled);
-		
+		masksChanged();
 	}
 	
 	//Ability to enable/disable a solution node
 	public void setNodeEnabled(Solution s, boolean enabled) {
 		getSolutionNode(s).setEnabled(enabled);
+		masksChanged();
 	}
 	
 	//Ability to enable/disable an edge
 	public void setEdgeEnabled(Characteristic ch, Solution s, boolean enabled) {
-		Node parent_node = getCharacteristicNode(ch);
-		Node child_node = getSolutionNode(s);
+		Edge e = getEdge(ch, s);
+		if (e != null) {
+			e.setEnabled(enabled);
+			masksChanged();
+		}
+	}
+	
+	/**
+	 * Enables/disables any number of characteristics and solutions at once
+	 * 	subjects are collected into a mask first, then applied to the node mask in one operation
+	 * 	subjects not in the graph are skipped
+	 */
+	public void setNodesEnabled(Collection<? extends Subject> subjects, boolean enabled) {
+		BitSet mask = new BitSet(nodes.size());
+		
+		for (Subject subject : subjects) {
+			Node n = null;
+			if (subject instanceof Characteristic) {
+				n = getCharacteristicNode((Characteristic)subject);
+			} else if (subject instanceof Solution) {
+				n = getSolutionNode((Solution)subject);
+			}
+			if (n != null) {
+				mask.set(n.getId());
+			}
+		}
 		
-		PriorityQueue<Edge> edges = parent_node.getEdgesFromNode();
+		setNodesEnabled(mask, enabled);
+	}
+	
+	/**
+	 * Enables/disables every node whose id is set in mask, costs O(mask words)
+	 */
+	public void setNodesEnabled(BitSet mask, boolean enabled) {
+		if (enabled) {
+			disabledNodes.andNot(mask);
+		} else {
+			disabledNodes.or(mask);
+			disabledNodes.andNot(removedNodes);
+			disabledNodes.clear(centerNode.getId()); // center node can't be disabled
+		}
+		masksChanged();
+	}
 	
-        Iterator value = edges.iterator(); 
-  
-        // Displaying the values after iterating through the queue 
-        //System.out.println("The iterator values are: "); 
-        while (value.hasNext()) { 
-        	Edge e = (Edge) value.next();
-            //System.out.println(e.toString()); 
-            if (((Edge) e).getEndNode().equals(child_node)) {
-            	 e.setEnabled(enabled);
-            }
-        }
+	/**
+	 * Enables/disables every edge whose id is set in mask, costs O(mask words)
+	 */
+	public void setEdgesEnabled(BitSet mask, boolean enabled) {
+		if (enabled) {
+			disabledEdges.andNot(mask);
+		} else {
+			disabledEdges.or(mask);
+			disabledEdges.andNot(removedEdges);
+		}
+		masksChanged();
+	}
+	
+	/**
+	 * Returns copy of the node mask, bit set = node with that id is enabled
+	 */
+	public BitSet getEnabledNodeMask() {
+		BitSet mask = new BitSet(nodes.size());
+		mask.set(0, nodes.size());
+		mask.andNot(disabledNodes);
+		mask.andNot(removedNodes);
+		return mask;
+	}
+	
+	/**
+	 * Returns copy of the edge mask, bit set = edge with that id is enabled
+	 */
+	public BitSet getEnabledEdgeMask() {
+		BitSet mask = new BitSet(edges.size());
+		mask.set(0, edges.size());
+		mask.andNot(disabledEdges);
+		mask.andNot(removedEdges);
+		return mask;
+	}
+	
+	/**
+	 * Replaces the whole node mask, every node whose id is not set in mask is disabled (center node always enabled, removed nodes never)
+	 */
+	public void setEnabledNodeMask(BitSet mask) {
+		disabledNodes.set(0, nodes.size());
+		disabledNodes.andNot(mask);
+		disabledNodes.andNot(removedNodes);
+		disabledNodes.clear(centerNode.getId());
+		masksChanged();
+	}
+	
+	/**
+	 * Replaces the whole edge mask, every edge whose id is not set in mask is disabled (removed edges never enabled)
+	 */
+	public void setEnabledEdgeMask(BitSet mask) {
+		disabledEdges.set(0, edges.size());
+		disabledEdges.andNot(mask);
+		disabledEdges.andNot(removedEdges);
+		masksChanged();
+	}
+	
+	// returns the id of a characteristic/solution node (bit index in node mask), -1 if not in graph
+	public int getNodeId(Characteristic ch) {
+		Node n = getCharacteristicNode(ch);
+		return n == null ? -1 : n.getId();
+	}
+	public int getNodeId(Solution s) {
+		Node n = getSolutionNode(s);
+		return n == null ? -1 : n.getId();
 	}
 	
 	/*
@@ -416,15 +1215,9 @@ public class ContextGraph {
 	}
 	/**
 	 * Checks if a characteristic is already in the graph
-	 * 	Assumes that all characteristics are attached to center node
 	 */
 	private boolean characteristicInGraph(Characteristic ch) {
-		for (Edge e : centerNode.getEdgesFromNode()) {
-			if (((Characteristic)(e.getEndNode().getSubject())).equals(ch)) {
-				return true;
-			}
-		}
-		return false;
+		return getCharacteristicNode(ch) != null;
 	}
 	
 	
@@ -443,37 +1236,60 @@ public class ContextGraph {
 	 * Checks if a solution is already in the graph
 	 */
 	private boolean solutionInGraph(Solution s) {
-		if (getSolutionNode(s) != null) {
-			System.out.println("\nSolution " + s.getName() + " is already in the graph");
-			return true;
-		}
-		return false;
+		return getSolutionNode(s) != null;
 	}
 	
 	
 	/**
-	 * Returns node for characteristic from characteristicNodes list
+	 * Returns node for characteristic, null if characteristic not in graph (looked up by name)
 	 */
 	private Node getCharacteristicNode(Characteristic ch) {
-		
-		for (Node n : characteristicNodes) {
-			if (((Characteristic)n.getSubject()).equals(ch)) {
-				return n;
-			}
+		return characteristicNodesByName.get(ch.getName());
+	}
+	/**
+	 * Returns node for solution, null if solution not in graph (looked up by name)
+	 */
+	private Node getSolutionNode(Solution s) {
+		return solutionNodesByName.get(s.getName());
+	}
+	
+	/**
+	 * Returns edge from characteristic to solution, null if either is not in graph or they are not connected
+	 */
+	public Edge getEdge(Characteristic ch, Solution s) {
+		Node chNode = getCharacteristicNode(ch);
+		Node sNode = getSolutionNode(s);
+		if (chNode == null || sNode == null) {
+			return null;
 		}
 		
-		return null;
+		int edgeId = edgeIndex.get(chNode.getId(), sNode.getId());
+		return edgeId < 0 ? null : edges.get(edgeId);
 	}
+	
 	/**
-	 * Returns node for solution from solutionNodes list
+	 * Returns edge from characteristic to a characteristic below it, null if they are not connected
 	 */
-	private Node getSolutionNode(Solution s) {
-		for (Node node : solutionNodes) {
-			if (((Solution)node.getSubject()).equals(s)) {
-				return node;
-			}
+	public Edge getEdge(Characteristic ch, Characteristic sub) {
+		Node chNode = getCharacteristicNode(ch);
+		Node subNode = getCharacteristicNode(sub);
+		if (chNode == null || subNode == null) {
+			return null;
 		}
-		return null;
+		
+		int edgeId = edgeIndex.get(chNode.getId(), subNode.getId());
+		return edgeId < 0 ? null : edges.get(edgeId);
+	}
+	
+	// returns true if there is an edge from characteristic to solution
+	public boolean edgeExists(Characteristic ch, Solution s) {
+		return getEdge(ch, s) != null;
+	}
+	
+	// returns multiplier of edge from characteristic to solution, 0 if there is no edge
+	public double getEdgeMultiplier(Characteristic ch, Solution s) {
+		Edge e = getEdge(ch, s);
+		return e == null ? 0.0 : e.getMultiplier();
 	}
 	
 	// I don't remember writing this and I don't know where it's used
@@ -489,55 +1305,153 @@ public class ContextGraph {
 	 * 	includes non-logical connections, ie node 1 has an edge to node 2, but node 2 does not have an edge to node 1
 	 */
 	public boolean checkNodesConnected(Node n1, Node n2) {
+		return edgeIndex.contains(n1.getId(), n2.getId()) || edgeIndex.contains(n2.getId(), n1.getId());
+	}
+	
+	// list is the graph's own, characteristics are only added through addNewCharacteristic (keyword index would miss them)
+	public ArrayList<Characteristic> getCharacteristicsList(){
+		return characteristicsList;
+	}
+	
+	/**
+	 * Returns the names and synonyms of every characteristic in the characteristics list (see KeywordIndex)
+	 * 	built the first time it is asked for, two threads asking at once may both build it (same result, one is kept)
+	 */
+	public KeywordIndex getKeywordIndex() {
+		KeywordIndex k = keywords;
+		if (k == null) {
+			k = new KeywordIndex(characteristicsList);
+			keywords = k;
+		}
+		return k;
+	}
+	
+	public ArrayList<Solution> getSolutionsList() {
+		return solutionsList;
+	}
+	
+	
+	//%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+	//	Save/restore the state of a session's graph
+	//%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+	// only what a conversation changes is written (weights added to nodes, multipliers, masks), not the nodes/edges themselves
+	// 	state can only be read into a graph with the same nodes and edges (ie. both built from the same template)
+	// 	removed nodes/edges aren't written either, SessionStore keeps graphs whose structure changed on the heap instead
+	
+	/**
+	 * Writes the weights added to nodes (only nodes with a weight), every edge multiplier and both masks
+	 * 	about 12 bytes per weighted node + 8 bytes per edge
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		out.writeInt(nodes.size());
+		out.writeInt(edges.size());
 		
-		for (Edge e : n1.getEdgesFromNode()) {
-			if (e.getEndNode().equals(n2)) {
-				return true;
+		int weighted = 0;
+		for (Node n : nodes) {
+			if (n != null && n.getBaseWeight() != 0) {
+				weighted++;
 			}
 		}
-		for (Edge e : n2.getEdgesFromNode()) {
-			if (e.getEndNode().equals(n1)) {
-				return true;
+		out.writeInt(weighted);
+		for (Node n : nodes) {
+			if (n != null && n.getBaseWeight() != 0) {
+				out.writeInt(n.getId());
+				out.writeDouble(n.getBaseWeight());
 			}
 		}
-		for (Edge e : n1.getEdgesToNode()) {
-			if (e.getStartNode().equals(n2)) {
-				return true;
+		
+		for (Edge e : edges) {
+			out.writeDouble(e != null ? e.getMultiplier() : 0);
+		}
+		
+		writeMask(out, disabledNodes);
+		writeMask(out, disabledEdges);
+	}
+	
+	/**
+	 * Reads state written by writeState() into this graph and re-weights every node once
+	 * 	throws IOException if the graph doesn't have the same number of nodes/edges as the graph that wrote it
+	 */
+	public void readState(DataInput in) throws IOException {
+		int nodeCount = in.readInt();
+		int edgeCount = in.readInt();
+		if (nodeCount != nodes.size() || edgeCount != edges.size()) {
+			throw new IOException("Saved state is for a graph with " + nodeCount + " nodes and " + edgeCount + " edges, this graph has "
+					+ nodes.size() + " nodes and " + edges.size() + " edges");
+		}
+		
+		double[] baseWeights = new double[nodeCount];
+		int weighted = in.readInt();
+		for (int i = 0; i < weighted; i++) {
+			int id = in.readInt();
+			if (id < 0 || id >= nodeCount) {
+				throw new IOException("Saved state has an invalid node id: " + id);
 			}
+			baseWeights[id] = in.readDouble();
 		}
-		for (Edge e : n2.getEdgesToNode()) {
-			if (e.getStartNode().equals(n1)) {
-				return true;
+		for (Node n : nodes) {
+			if (n != null) {
+				n.incrementWeight(baseWeights[n.getId()] - n.getBaseWeight());
 			}
 		}
 		
+		for (Edge e : edges) {
+			double multiplier = in.readDouble();
+			if (e != null && multiplier != e.getMultiplier()) {
+				e.setMultiplier(multiplier);
+				multiplierVersion++;
+			}
+		}
 		
-		return false;
+		readMask(in, disabledNodes);
+		readMask(in, disabledEdges);
+		
+		// every node collects its weight again from the top of the graph
+		if (!topologicalOrderValid) {
+			createTopologicalOrder();
+		}
+		dirtyPositions.set(0, topologicalOrder.length);
+		propagateDirty();
+		publish();
 	}
 	
-	public ArrayList<Characteristic> getCharacteristicsList(){
-		return characteristicsList;
+	private static void writeMask(DataOutput out, BitSet mask) throws IOException {
+		long[] words = mask.toLongArray();
+		out.writeInt(words.length);
+		for (long w : words) {
+			out.writeLong(w);
+		}
 	}
 	
-	public ArrayList<Solution> getSolutionsList() {
-		return solutionsList;
+	// mask is changed in place, nodes/edges keep a reference to it
+	private static void readMask(DataInput in, BitSet mask) throws IOException {
+		long[] words = new long[in.readInt()];
+		for (int i = 0; i < words.length; i++) {
+			words[i] = in.readLong();
+		}
+		mask.clear();
+		mask.or(BitSet.valueOf(words));
 	}
+	
+	
 	/**
 	 * Returns string containing all nodes and connections
 	 * 	returns centerNode and all connections to characteristic nodes, 
 	 * 	characteristic nodes and all connections to solution nodes,
 	 * 	and solution nodes and all connections to characteristic nodes
+	 * 	whole graph is built in memory, use GraphExporter to write large graphs
 	 */
 	public String toString() {
 		
 		StringBuilder s = new StringBuilder();
+		double[] scores = getScores(); // node weights with disabled nodes/edges removed
 		
 		s.append("Center node:\t[centerNode, weight : edgeWeightIn*multiplier=edgeWeightOut, enabled : characteristic, weight, enabled]\n");
 		for (Edge e : centerNode.getEdgesFromNode()) {
 			s.append("\t[");
 			s.append(centerNode.getSubjectName());
 			s.append(", ");
-			s.append(centerNode.getWeight());
+			s.append(scores[centerNode.getId()]);
 			s.append(" : ");
 			s.append(e.getWeightIn());
 			s.append("*");
@@ -549,7 +1463,7 @@ public class ContextGraph {
 			s.append(" : ");
 			s.append(e.getEndNode().getSubjectName());
 			s.append(", ");
-			s.append(e.getEndNode().getWeight());
+			s.append(scores[e.getEndNode().getId()]);
 			s.append(", ");
 			s.append(e.getEndNode().isEnabled() ? "node enabled" : "node disabled");
 			//s.append(e.getEndNode().isEnabled());
@@ -562,7 +1476,7 @@ public class ContextGraph {
 			s.append("\t[");
 			s.append(n.getSubjectName());
 			s.append(", ");
-			s.append(n.getWeight());
+			s.append(scores[n.getId()]);
 			s.append(", ");
 			s.append(n.isEnabled() ? "node enabled" : "node disabled");
 			//s.append(n.isEnabled());
@@ -572,7 +1486,7 @@ public class ContextGraph {
 				
 				s.append(e.getEndNode().getSubjectName());
 				s.append(", ");
-				s.append(e.getEndNode().getWeight());
+				s.append(scores[e.getEndNode().getId()]);
 				s.append(", ");
 				s.append(e.getEndNode().isEnabled() ? "node enabled" : "node disabled");
 				//s.append(e.getEndNode().isEnabled());
@@ -598,7 +1512,7 @@ public class ContextGraph {
 			s.append("\t[");
 			s.append(n.getSubjectName());
 			s.append(", ");
-			s.append(n.getWeight());
+			s.append(scores[n.getId()]);
 			s.append(", ");
 			s.append(n.isEnabled() ? "node enabled" : "node disabled");
 			//s.append(n.isEnabled());
@@ -608,7 +1522,7 @@ public class ContextGraph {
 				
 				s.append(e.getStartNode().getSubjectName());
 				s.append(", ");
-				s.append(e.getStartNode().getWeight());
+				s.append(scores[e.getStartNode().getId()]);
 				s.append(", ");
 				s.append(e.getStartNode().isEnabled() ? "node enabled" : "node disabled");
 				s.append(" : ");
@@ -0,0 +1,233 @@
+package ConvoBot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+
+public class ContextGraphBuilder {
+
+	/**
+	 * Builds a ContextGraph from lists of characteristics and solutions in one pass (O(nodes + edges))
+	 * 	used by the ContextGraph file constructor, can also build graphs from lists made in code
+	 *
+	 * Steps
+	 * 	1. duplicates removed by name (first one kept), characteristic solutions not in the solution list are skipped
+	 * 	2. every characteristic's solutions are looked up by name and turned into node ids
+	 * 	3. all node/edge arrays and maps are sized up front, then nodes/edges are created in one pass in the same order as before
+	 * 		(centerNode, solutions, characteristics each followed by its solution edges, then edges to sub characteristics)
+	 * 	4. topological order is created once at the end and the first snapshot is published
+	 *
+	 * ie. ContextGraph graph = new ContextGraphBuilder().addSolutions(solutions).addCharacteristics(characteristics).build();
+	 */
+
+	private ArrayList<Characteristic> characteristics;
+	private ArrayList<Solution> solutions;
+
+	public ContextGraphBuilder() {
+		characteristics = new ArrayList<>();
+		solutions = new ArrayList<>();
+	}
+
+	public ContextGraphBuilder addCharacteristic(Characteristic ch) {
+		characteristics.add(ch);
+		return this;
+	}
+
+	public ContextGraphBuilder addCharacteristics(Collection<Characteristic> chs) {
+		characteristics.addAll(chs);
+		return this;
+	}
+
+	public ContextGraphBuilder addSolution(Solution s) {
+		solutions.add(s);
+		return this;
+	}
+
+	public ContextGraphBuilder addSolutions(Collection<Solution> ss) {
+		solutions.addAll(ss);
+		return this;
+	}
+
+	/**
+	 * Returns a new graph containing every characteristic/solution added to the builder
+	 * 	throws IllegalArgumentException if the characteristics form a cycle
+	 */
+	public ContextGraph build() {
+		ContextGraph graph = new ContextGraph();
+		buildInto(graph);
+		return graph;
+	}
+
+	/**
+	 * Fills an empty graph (characteristics/solutions lists of the graph are replaced by the lists without duplicates)
+	 */
+	void buildInto(ContextGraph graph) {
+
+		// 1. remove duplicates, solution/characteristic index = position in the lists kept by the graph
+		ArrayList<Solution> solutionsList = new ArrayList<>(solutions.size());
+		HashMap<String, Integer> solutionIndex = new HashMap<>(capacity(solutions.size()));
+		for (Solution s : solutions) {
+			if (!solutionIndex.containsKey(s.getName())) {
+				solutionIndex.put(s.getName(), solutionsList.size());
+				solutionsList.add(s);
+			}
+		}
+
+		ArrayList<Characteristic> characteristicsList = new ArrayList<>(characteristics.size());
+		HashMap<String, Integer> characteristicIndex = new HashMap<>(capacity(characteristics.size()));
+		for (Characteristic ch : characteristics) {
+			if (!characteristicIndex.containsKey(ch.getName())) {
+				characteristicIndex.put(ch.getName(), characteristicsList.size());
+				characteristicsList.add(ch);
+			}
+		}
+
+		int solutionCount = solutionsList.size();
+		int characteristicCount = characteristicsList.size();
+
+		// 2. look up solutions of every characteristic, targets[i] = solution indexes for characteristic i
+		int[][] targets = new int[characteristicCount][];
+		double[][] multipliers = new double[characteristicCount][];
+		resolveSolutions(characteristicsList, solutionIndex, solutionCount, targets, multipliers);
+
+		int edgeCount = characteristicCount; // edges from centerNode
+		int subCount = 0;
+		for (int i = 0; i < characteristicCount; i++) {
+			edgeCount += targets[i].length;
+			subCount += characteristicsList.get(i).getSubCharacteristics().size();
+		}
+		edgeCount += subCount;
+		int nodeCount = 1 + solutionCount + characteristicCount;
+
+		// 3. size everything up front
+		graph.characteristicsList = characteristicsList;
+		graph.solutionsList = solutionsList;
+		graph.nodes = new ArrayList<>(nodeCount);
+		graph.edges = new ArrayList<>(edgeCount);
+		graph.characteristicNodes = new ArrayList<>(characteristicCount);
+		graph.solutionNodes = new ArrayList<>(solutionCount);
+		graph.characteristicNodesByName = new HashMap<>(capacity(characteristicCount));
+		graph.solutionNodesByName = new HashMap<>(capacity(solutionCount));
+		graph.edgeIndex = new EdgeIndex(edgeCount);
+		graph.disabledNodes = new BitSet(nodeCount);
+		graph.disabledEdges = new BitSet(edgeCount);
+		graph.dirtyPositions = new BitSet(nodeCount);
+
+		// center node MUST be named "centerNode" (otherwise error with edge/node weights)
+		graph.centerNode = graph.createNode(new Subject("centerNode"));
+
+		Node[] solutionNodes = new Node[solutionCount];
+		for (int i = 0; i < solutionCount; i++) {
+			Solution s = solutionsList.get(i);
+			solutionNodes[i] = graph.createNode(s);
+			graph.solutionNodes.add(solutionNodes[i]);
+			graph.solutionNodesByName.put(s.getName(), solutionNodes[i]);
+		}
+
+		Node[] characteristicNodes = new Node[characteristicCount];
+		for (int i = 0; i < characteristicCount; i++) {
+			Characteristic ch = characteristicsList.get(i);
+			characteristicNodes[i] = graph.createNode(ch);
+			graph.characteristicNodes.add(characteristicNodes[i]);
+			graph.characteristicNodesByName.put(ch.getName(), characteristicNodes[i]);
+		}
+
+		// edges are collected per node and each node's edge queues are created once from its whole array (O(edges) instead of adding one by one)
+		int[] solutionEdgeCount = new int[solutionCount];
+		for (int i = 0; i < characteristicCount; i++) {
+			for (int s : targets[i]) {
+				solutionEdgeCount[s]++;
+			}
+		}
+		Edge[][] edgesToSolution = new Edge[solutionCount][];
+		for (int s = 0; s < solutionCount; s++) {
+			edgesToSolution[s] = new Edge[solutionEdgeCount[s]];
+			solutionEdgeCount[s] = 0;
+		}
+		Edge[] edgesFromCenter = new Edge[characteristicCount];
+
+		for (int i = 0; i < characteristicCount; i++) {
+			Node chNode = characteristicNodes[i];
+			edgesFromCenter[i] = graph.createEdge(graph.centerNode, chNode, 1);
+
+			Edge[] edgesFromCharacteristic = new Edge[targets[i].length];
+			for (int j = 0; j < targets[i].length; j++) {
+				int s = targets[i][j];
+				Edge edge = graph.createEdge(chNode, solutionNodes[s], multipliers[i][j]);
+				edgesFromCharacteristic[j] = edge;
+				edgesToSolution[s][solutionEdgeCount[s]++] = edge;
+			}
+
+			chNode.setEdgesToNode(new PriorityQueue<>(Arrays.asList(edgesFromCenter[i])));
+			chNode.setEdgesFromNode(new PriorityQueue<>(Arrays.asList(edgesFromCharacteristic)));
+		}
+		graph.centerNode.setEdgesFromNode(new PriorityQueue<>(Arrays.asList(edgesFromCenter)));
+		for (int s = 0; s < solutionCount; s++) {
+			solutionNodes[s].setEdgesToNode(new PriorityQueue<>(Arrays.asList(edgesToSolution[s])));
+		}
+
+		// sub characteristic edges skipped if the two characteristics are already connected either way
+		if (subCount > 0) {
+			for (int i = 0; i < characteristicCount; i++) {
+				Node chNode = characteristicNodes[i];
+				for (CharacteristicMultiplierPair sub : characteristicsList.get(i).getSubCharacteristics()) {
+					Integer subIndex = characteristicIndex.get(sub.getCharacteristic().getName());
+					if (subIndex != null && !graph.checkNodesConnected(chNode, characteristicNodes[subIndex])) {
+						connect(graph, chNode, characteristicNodes[subIndex], sub.getMultiplier());
+					}
+				}
+			}
+		}
+
+		// 4. rejects knowledge base if characteristics point back at themselves
+		graph.createTopologicalOrder();
+		graph.publish();
+	}
+
+	// fills targets/multipliers for every characteristic, a solution listed twice by one characteristic is only connected once
+	private static void resolveSolutions(ArrayList<Characteristic> characteristicsList, HashMap<String, Integer> solutionIndex,
+			int solutionCount, int[][] targets, double[][] multipliers) {
+
+		// lastSeen[solution] = row + 1 of the last characteristic that used the solution
+		int[] lastSeen = new int[solutionCount];
+
+		for (int i = 0; i < characteristicsList.size(); i++) {
+			ArrayList<SolutionMultiplierPair> chSolutions = characteristicsList.get(i).getSolutions();
+			int[] rowTargets = new int[chSolutions.size()];
+			double[] rowMultipliers = new double[chSolutions.size()];
+			int n = 0;
+
+			for (SolutionMultiplierPair sm : chSolutions) {
+				Integer s = solutionIndex.get(sm.getSolution().getName());
+				if (s != null && lastSeen[s] != i + 1) {
+					lastSeen[s] = i + 1;
+					rowTargets[n] = s;
+					rowMultipliers[n] = sm.getMultiplier();
+					n++;
+				}
+			}
+
+			if (n < rowTargets.length) {
+				rowTargets = Arrays.copyOf(rowTargets, n);
+				rowMultipliers = Arrays.copyOf(rowMultipliers, n);
+			}
+			targets[i] = rowTargets;
+			multipliers[i] = rowMultipliers;
+		}
+	}
+
+	// creates edge and adds it to both nodes, topological order is created after every edge is added (only used for sub characteristic edges)
+	private static void connect(ContextGraph graph, Node startNode, Node endNode, double multiplier) {
+		Edge edge = graph.createEdge(startNode, endNode, multiplier);
+		startNode.addEdgeFromNode(edge);
+		endNode.addEdgeToNode(edge);
+	}
+
+	// HashMap capacity that holds size entries without resizing
+	private static int capacity(int size) {
+		return (int)(size / 0.75f) + 1;
+	}
+}
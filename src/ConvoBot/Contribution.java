@@ -0,0 +1,55 @@
+package ConvoBot;
+
+public class Contribution implements Comparable<Contribution> {
+	
+	/**
+	 * How much one characteristic adds to the weight of a solution
+	 * Returned by ContextGraph.explain(solution, k)
+	 * 	contribution = characteristic weight * edge multiplier
+	 * 	share = contribution / total weight of solution (0 - 1)
+	 */
+	
+	private Characteristic characteristic;
+	private double weight;
+	private double multiplier;
+	private double contribution;
+	private double share;
+	
+	public Contribution(Characteristic characteristic, double weight, double multiplier) {
+		this.characteristic = characteristic;
+		this.weight = weight;
+		this.multiplier = multiplier;
+		this.contribution = weight * multiplier;
+	}
+	
+	public Characteristic getCharacteristic() {
+		return characteristic;
+	}
+	public double getWeight() {
+		return weight;
+	}
+	public double getMultiplier() {
+		return multiplier;
+	}
+	public double getContribution() {
+		return contribution;
+	}
+	public double getShare() {
+		return share;
+	}
+	
+	void setShare(double share) {
+		this.share = share;
+	}
+	
+	@Override
+	public String toString() {
+		return "[" + characteristic.getName() + ": " + weight + "*" + multiplier + "=" + contribution + ", " + Math.round(share * 100) + "%]";
+	}
+	
+	// compares by contribution, smallest first
+	@Override
+	public int compareTo(Contribution c) {
+		return Double.compare(this.contribution, c.contribution);
+	}
+}
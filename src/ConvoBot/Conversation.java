@@ -6,35 +6,102 @@ public class Conversation {
 
 	public Patient patient;
 	public static boolean startNextTopic = false;
+	
+	// Discussion queues graph changes on a GraphWriter and replies straight away, Advice waits for them (off = change graph before replying)
+	public static volatile boolean asyncGraphUpdates = false;
+	
+	// learns multipliers from patients saying whether advice helped (asked in Advice), null = not asked, multipliers from file
+	public static volatile MultiplierLearner learner;
+	
+	// finished sessions by characteristic weights, advice also draws on what ranked highest for similar patients (null = off)
+	public static volatile SessionIndex similarSessions;
+	
+	// records the graph's weights after every discussion turn and at the end of the conversation (null = not recorded)
+	public static volatile WeightRecorder weightRecorder;
+	
 	ContextGraph contextGraph;
+	GraphWriter graphWriter;
 
 	public Conversation() {
-		Patient p = new Patient();
+		this(null, new Patient(), new ContextGraph("characteristicsList.txt", "solutionsList.txt"));
+	}
+	
+	/**
+	 * Runs the conversation for a session kept in a SessionStore, patient and graph are filled in the session's own objects
+	 * 	the session's topic follows the conversation (5 once it has ended), check the session out of the store while it runs
+	 */
+	public Conversation(Session session) {
+		this(session, session.getPatient(), session.getContextGraph());
+	}
+	
+	// session = null for a conversation without a session (not added to similarSessions)
+	private Conversation(Session session, Patient p, ContextGraph contextGraph) {
+		String sessionId = session == null ? null : session.getId();
+		patient = p;
+		this.contextGraph = contextGraph;
+		MultiplierLearner l = learner;
+		SessionIndex similar = similarSessions;
+		WeightRecorder recorder = weightRecorder;
+		WeightRecorder.Trajectory trajectory = recorder == null ? null : recorder.startTrajectory();
+		if (l != null) {
+			l.applyTo(contextGraph); // latest learned multipliers, before anything is ranked
+		}
+		if (asyncGraphUpdates) {
+			graphWriter = new GraphWriter(contextGraph);
+		}
 		Topic.currentTopic = 0;
-		contextGraph = new ContextGraph("characteristicsList.txt", "solutionsList.txt");
 		while (Topic.currentTopic < 5) {
 			//System.out.println("////current Topic: " + Topic.currentTopic);
+			if (session != null) {
+				session.setTopic(Topic.currentTopic);
+			}
 			switch (Topic.currentTopic) {
 			case 0:
-				p.setName(Greetings.startTopic());
+				Greetings.startTopic(p);
 				break;
 			case 1:
-				SmallTalk.startTopic(p.getName(), "null", 0);
+				SmallTalk.startTopic(p, "null", 0);
 				break;
 			case 2:
-				Discussion d = new Discussion(contextGraph);
+				Discussion d = new Discussion(contextGraph, graphWriter, trajectory);
 				d.startTopic();
 				break;
-			//case 3:
-				//Advice a = new Advice();
-				//a.startTopic(contextGraph);
-				//break;
-			//case 4:
-			//	Goodbye.startTopic(p.getName());
-				//break;
+			case 3:
+				flushGraph(); // advice needs the ranking with everything the patient said
+				Advice.startTopic(contextGraph, l, similar, sessionId);
+				break;
+			case 4:
+				Goodbye.startTopic(p.getName());
+				break;
 			}
 
 		}
+		TurnGuard.endTurn(); // this thread may run another conversation
+		if (session != null) {
+			session.setTopic(Topic.currentTopic);
+		}
+		flushGraph();
+		if (similar != null || trajectory != null) {
+			GraphSnapshot last = contextGraph.publish();
+			if (similar != null && sessionId != null) {
+				similar.add(sessionId, last);
+			}
+			if (trajectory != null) {
+				trajectory.record(last);
+			}
+		}
 		System.out.println("*********Ending Conversation*******");
 	}
+	
+	// waits for queued graph changes (if any)
+	private void flushGraph() {
+		if (graphWriter == null) {
+			return;
+		}
+		try {
+			graphWriter.flush();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
 }
\ No newline at end of file
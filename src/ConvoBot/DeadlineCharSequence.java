@@ -0,0 +1,44 @@
+package ConvoBot;
+
+public class DeadlineCharSequence implements CharSequence {
+
+	/**
+	 * CharSequence that throws TurnGuard.TurnTimeoutException from charAt() once System.nanoTime() passes deadline
+	 * 	regex matchers read input one character at a time, so a matcher stuck backtracking is stopped here
+	 * 	clock is only read every CHECK_INTERVAL characters (and on the first one) to keep charAt() cheap
+	 */
+
+	private static final int CHECK_INTERVAL = 256;
+
+	private final CharSequence text;
+	private final long deadline;
+	private int reads;
+
+	public DeadlineCharSequence(CharSequence text, long deadline) {
+		this.text = text;
+		this.deadline = deadline;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (reads++ % CHECK_INTERVAL == 0 && System.nanoTime() - deadline > 0) {
+			throw new TurnGuard.TurnTimeoutException();
+		}
+		return text.charAt(index);
+	}
+
+	@Override
+	public int length() {
+		return text.length();
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return new DeadlineCharSequence(text.subSequence(start, end), deadline);
+	}
+
+	@Override
+	public String toString() {
+		return text.toString();
+	}
+}
@@ -1,5 +1,7 @@
 package ConvoBot;
 
+import java.util.BitSet;
+
 public class Edge implements Comparable<Edge> {
 
 	private Node startNode;
@@ -8,25 +10,21 @@ public class Edge implements Comparable<Edge> {
 	private Double weightOut;
 	private double multiplier; 
 	
-	//Enable/Disable nodes
-	private boolean enabled; //Set it to either true (enabled) or false (disabled)
+	// position of edge in the graph, used as the bit index in the graph's edge mask
+	private int id;
+	
+	//Enable/Disable edges
+	// enabled state is stored as a bit in a mask shared by every edge in the graph (bit set = edge disabled)
+	// 	the mask is only applied when the graph scores solutions, toggling an edge does not re-propagate weights
+	private BitSet disabledEdges;
 		
 	//getter and setter for enabled
 	public boolean isEnabled() {
-		return enabled;
+		return !disabledEdges.get(id);
 	}
 
 	public void setEnabled(boolean enabled) {
-		// if setEnabled == true, update edge weights 
-		this.enabled = enabled;
-		
-		this.updateEdgeWeight();
-		
-		/*
-		if (this.enabled == true) {
-			updateEdgeWeight();
-		}
-		*/
+		disabledEdges.set(id, !enabled);
 	}
 	
 	/*
@@ -42,12 +40,22 @@ public class Edge implements Comparable<Edge> {
 	}
 	*/
 	public Edge(Node sN, Node eN, Double w, double m) {
+		this(sN, eN, w, m, 0, new BitSet());
+	}
+	
+	public Edge(Node sN, Node eN, Double w, double m, int id, BitSet disabledEdges) {
 		this.startNode = sN;
 		this.endNode = eN;
 		this.weightIn = w;
 		this.multiplier = m;
 		this.weightOut = w*m;
-		this.enabled = true;
+		this.id = id;
+		this.disabledEdges = disabledEdges;
+		this.setEnabled(true);
+	}
+	
+	public int getId() {
+		return id;
 	}
 
 	// getter/setter methods for weights, set methods are private
@@ -67,24 +75,11 @@ public class Edge implements Comparable<Edge> {
 	}
 	
 	// updates edge weights, weightIn = weight of start node, weightOut = weightIn * multiplier
-	
+	// 	disabled edges/nodes still carry weight here, the graph masks them out when scoring solutions
+	// 	does not update end node, the graph collects weights node by node in topological order
 	public void updateEdgeWeight() {
-		// if node == disabled, weightIn = 0
-		
-		if (this.isEnabled() == false || startNode.isEnabled() == false) {
-			//startNode.setWeight(0.0);
-			setWeightIn(0.0);
-		} else {
-			setWeightIn(startNode.getWeight());
-		}
-		
-		
-		//setWeightIn(startNode.getWeight());
+		setWeightIn(startNode.getWeight());
 		setWeightOut(this.weightIn * this.multiplier);
-		;
-		if (!endNode.getSubjectName().equals("centerNode")) {
-			this.endNode.collectWeights();
-		}
 	}
 	
 	@Override
@@ -96,7 +91,9 @@ public class Edge implements Comparable<Edge> {
 	public double getMultiplier() {
 		return this.multiplier;
 	}
-	public void setMultiplier(double multiplier) {
+	// only sets the multiplier, the graph updates weightOut and re-weights the nodes below
+	// 	(multipliers are changed through ContextGraph.setEdgeMultiplier)
+	void setMultiplier(double multiplier) {
 		this.multiplier = multiplier;
 	}
 
@@ -0,0 +1,157 @@
+package ConvoBot;
+
+import java.util.Arrays;
+
+public class EdgeIndex {
+
+	/**
+	 * Map from (start node id, end node id) to edge id, used by ContextGraph to find an edge without walking edge lists
+	 *
+	 * Both node ids are packed into one long key (start id in the high 32 bits, end id in the low 32 bits)
+	 * Keys/values are stored in primitive arrays with open addressing (linear probing), no boxing or entry objects
+	 * 	table size is always a power of 2, grows when more than half full
+	 * 	removing an entry shifts the following entries back so no tombstones are needed
+	 */
+
+	private static final long EMPTY = -1L; // node ids are never negative, so -1 is never a real key
+
+	private long[] keys;
+	private int[] values;
+	private int size;
+	private int mask;
+
+	public EdgeIndex() {
+		this(16);
+	}
+
+	// creates index able to hold expectedEdges without resizing
+	public EdgeIndex(int expectedEdges) {
+		int capacity = 16;
+		while (capacity < expectedEdges * 2) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	// packs two node ids into one key
+	public static long key(int startId, int endId) {
+		return ((long)startId << 32) | (endId & 0xffffffffL);
+	}
+
+	/**
+	 * Returns id of edge from startId to endId, -1 if there is no such edge
+	 */
+	public int get(int startId, int endId) {
+		long key = key(startId, endId);
+		int i = slot(key);
+
+		while (keys[i] != EMPTY) {
+			if (keys[i] == key) {
+				return values[i];
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	public boolean contains(int startId, int endId) {
+		return get(startId, endId) >= 0;
+	}
+
+	/**
+	 * Adds (or replaces) the edge id stored for startId -> endId
+	 */
+	public void put(int startId, int endId, int edgeId) {
+		if ((size + 1) * 2 > keys.length) {
+			resize(keys.length << 1);
+		}
+
+		long key = key(startId, endId);
+		int i = slot(key);
+
+		while (keys[i] != EMPTY) {
+			if (keys[i] == key) {
+				values[i] = edgeId;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = edgeId;
+		size++;
+	}
+
+	/**
+	 * Removes startId -> endId from the index, returns the edge id that was stored (-1 if none)
+	 */
+	public int remove(int startId, int endId) {
+		long key = key(startId, endId);
+		int i = slot(key);
+
+		while (keys[i] != EMPTY) {
+			if (keys[i] == key) {
+				int edgeId = values[i];
+				shiftBack(i);
+				size--;
+				return edgeId;
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	// fills the gap left at index gap by moving back any later entry that probed past it
+	private void shiftBack(int gap) {
+		int i = (gap + 1) & mask;
+
+		while (keys[i] != EMPTY) {
+			int home = slot(keys[i]);
+			// entry at i can move into gap only if its home slot is not between gap (exclusive) and i (inclusive)
+			if (((i - home) & mask) >= ((i - gap) & mask)) {
+				keys[gap] = keys[i];
+				values[gap] = values[i];
+				gap = i;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[gap] = EMPTY;
+	}
+
+	private int slot(long key) {
+		// 64 bit mix (murmur3 finalizer) so sequential ids don't all land next to each other
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return (int)key & mask;
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new int[capacity];
+		Arrays.fill(keys, EMPTY);
+		mask = capacity - 1;
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(capacity);
+
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				int j = slot(oldKeys[i]);
+				while (keys[j] != EMPTY) {
+					j = (j + 1) & mask;
+				}
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,271 @@
+package ConvoBot;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+public class GraphExporter {
+
+	/**
+	 * Writes a ContextGraph as DOT, JSON Lines or CSV adjacency, one node at a time
+	 * 	nothing is built up in memory, each node (and the edges leaving it) is appended straight to the output
+	 * 	every edge is written once, with its start node (toString() lists edges from both ends)
+	 *
+	 * Filters (both off by default)
+	 * 	minWeight = only nodes with a score >= minWeight
+	 * 	enabledOnly = only enabled nodes/edges
+	 * 	an edge is only written if both of its nodes are
+	 *
+	 * Scores are the masked weights used to rank solutions (disabled nodes/edges removed)
+	 * 	an edge's weight is its start node's score * multiplier, 0 if the edge or its start node is disabled
+	 * Like the graph itself, an exporter is not thread safe, export from the thread that changes the graph
+	 */
+
+	private final ContextGraph graph;
+	private double minWeight = Double.NEGATIVE_INFINITY;
+	private boolean enabledOnly;
+
+	public GraphExporter(ContextGraph graph) {
+		this.graph = graph;
+	}
+
+	public GraphExporter setMinWeight(double minWeight) {
+		this.minWeight = minWeight;
+		return this;
+	}
+
+	public GraphExporter setEnabledOnly(boolean enabledOnly) {
+		this.enabledOnly = enabledOnly;
+		return this;
+	}
+
+
+	//%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+	// DOT
+	//%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+
+	/**
+	 * digraph ContextGraph {
+	 * 	n0 [label="centerNode", type=center, score=3.0];
+	 * 	n0 -> n4 [multiplier=1.0, score=3.0];
+	 * 	...
+	 * }
+	 * 	disabled nodes/edges are drawn dashed ("weight" is a layout setting in DOT, so weights are written as score)
+	 */
+	public void writeDot(Appendable out) throws IOException {
+		double[] scores = graph.getScores();
+
+		out.append("digraph ContextGraph {\n");
+		for (Node n : graph.nodes) {
+			if (!included(n, scores)) {
+				continue;
+			}
+			out.append("\tn").append(String.valueOf(n.getId()));
+			out.append(" [label=");
+			appendQuoted(out, n.getSubjectName());
+			out.append(", type=").append(type(n));
+			out.append(", score=").append(String.valueOf(scores[n.getId()]));
+			if (!n.isEnabled()) {
+				out.append(", style=dashed");
+			}
+			out.append("];\n");
+
+			for (Edge e : n.getEdgesFromNode()) {
+				if (!included(e, scores)) {
+					continue;
+				}
+				out.append("\tn").append(String.valueOf(n.getId()));
+				out.append(" -> n").append(String.valueOf(e.getEndNode().getId()));
+				out.append(" [multiplier=").append(String.valueOf(e.getMultiplier()));
+				out.append(", score=").append(String.valueOf(weight(e, scores)));
+				if (!e.isEnabled()) {
+					out.append(", style=dashed");
+				}
+				out.append("];\n");
+			}
+		}
+		out.append("}\n");
+	}
+
+
+	//%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+	// JSON Lines
+	//%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+
+	/**
+	 * One JSON object per line for every node, with the edges leaving it
+	 * 	{"id":4,"type":"characteristic","name":"stress","weight":2.0,"enabled":true,"edges":[{"to":9,"multiplier":2.0,"weight":4.0,"enabled":true}]}
+	 */
+	public void writeJsonLines(Appendable out) throws IOException {
+		double[] scores = graph.getScores();
+
+		for (Node n : graph.nodes) {
+			if (!included(n, scores)) {
+				continue;
+			}
+			out.append("{\"id\":").append(String.valueOf(n.getId()));
+			out.append(",\"type\":\"").append(type(n)).append('"');
+			out.append(",\"name\":");
+			appendQuoted(out, n.getSubjectName());
+			out.append(",\"weight\":").append(jsonNumber(scores[n.getId()]));
+			out.append(",\"enabled\":").append(String.valueOf(n.isEnabled()));
+			out.append(",\"edges\":[");
+
+			boolean first = true;
+			for (Edge e : n.getEdgesFromNode()) {
+				if (!included(e, scores)) {
+					continue;
+				}
+				out.append(first ? "" : ",");
+				out.append("{\"to\":").append(String.valueOf(e.getEndNode().getId()));
+				out.append(",\"multiplier\":").append(jsonNumber(e.getMultiplier()));
+				out.append(",\"weight\":").append(jsonNumber(weight(e, scores)));
+				out.append(",\"enabled\":").append(String.valueOf(e.isEnabled()));
+				out.append('}');
+				first = false;
+			}
+			out.append("]}\n");
+		}
+	}
+
+
+	//%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+	// CSV adjacency
+	//%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+
+	/**
+	 * Header line, then one row for every node, edges leaving it in the last column as "to:multiplier" separated by spaces
+	 * 	id,type,name,weight,enabled,edges
+	 * 	4,characteristic,stress,2.0,true,9:2.0 11:1.0
+	 * 	names containing commas or quotes are quoted
+	 */
+	public void writeCsv(Appendable out) throws IOException {
+		double[] scores = graph.getScores();
+
+		out.append("id,type,name,weight,enabled,edges\n");
+		for (Node n : graph.nodes) {
+			if (!included(n, scores)) {
+				continue;
+			}
+			out.append(String.valueOf(n.getId())).append(',');
+			out.append(type(n)).append(',');
+			appendCsv(out, n.getSubjectName());
+			out.append(',').append(String.valueOf(scores[n.getId()]));
+			out.append(',').append(String.valueOf(n.isEnabled())).append(',');
+
+			boolean first = true;
+			for (Edge e : n.getEdgesFromNode()) {
+				if (!included(e, scores)) {
+					continue;
+				}
+				out.append(first ? "" : " ");
+				out.append(String.valueOf(e.getEndNode().getId())).append(':').append(String.valueOf(e.getMultiplier()));
+				first = false;
+			}
+			out.append('\n');
+		}
+	}
+
+
+	//%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+	// Channels
+	//%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+	// written through a small buffered UTF-8 writer, channel is flushed but not closed
+
+	public void writeDot(WritableByteChannel channel) throws IOException {
+		Writer out = Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), 8192);
+		writeDot(out);
+		out.flush();
+	}
+
+	public void writeJsonLines(WritableByteChannel channel) throws IOException {
+		Writer out = Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), 8192);
+		writeJsonLines(out);
+		out.flush();
+	}
+
+	public void writeCsv(WritableByteChannel channel) throws IOException {
+		Writer out = Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), 8192);
+		writeCsv(out);
+		out.flush();
+	}
+
+
+	//%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+	// Helper methods
+	//%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+
+	private boolean included(Node n, double[] scores) {
+		if (n == null) {
+			return false;
+		}
+		if (enabledOnly && !n.isEnabled()) {
+			return false;
+		}
+		return scores[n.getId()] >= minWeight;
+	}
+
+	private boolean included(Edge e, double[] scores) {
+		if (enabledOnly && !e.isEnabled()) {
+			return false;
+		}
+		return included(e.getEndNode(), scores);
+	}
+
+	// weight e passes down with the masks applied, disabled edges/start nodes pass nothing (same as ContextGraph.getScores())
+	private static double weight(Edge e, double[] scores) {
+		Node start = e.getStartNode();
+		if (!e.isEnabled() || !start.isEnabled()) {
+			return 0;
+		}
+		return scores[start.getId()] * e.getMultiplier();
+	}
+
+	private String type(Node n) {
+		if (n == graph.centerNode) {
+			return "center";
+		}
+		return n.getSubject() instanceof Solution ? "solution" : "characteristic";
+	}
+
+	// JSON has no NaN/Infinity
+	private static String jsonNumber(double d) {
+		return Double.isNaN(d) || Double.isInfinite(d) ? "null" : String.valueOf(d);
+	}
+
+	// "..." with quotes, backslashes and control characters escaped
+	private static void appendQuoted(Appendable out, String s) throws IOException {
+		out.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				out.append('\\').append(c);
+			} else if (c == '\n') {
+				out.append("\\n");
+			} else if (c < 0x20) {
+				out.append(String.format("\\u%04x", (int)c));
+			} else {
+				out.append(c);
+			}
+		}
+		out.append('"');
+	}
+
+	private static void appendCsv(Appendable out, String s) throws IOException {
+		if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0) {
+			out.append(s);
+			return;
+		}
+		out.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"') {
+				out.append('"');
+			}
+			out.append(c);
+		}
+		out.append('"');
+	}
+}
@@ -0,0 +1,307 @@
+package ConvoBot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+
+public final class GraphSnapshot {
+
+	/**
+	 * Read only copy of a ContextGraph at one point in time, safe to use from any number of threads without locks
+	 *
+	 * The conversation thread (only writer) changes the graph as usual and calls graph.publish() after each batch of updates
+	 * 	publish() copies scores/multipliers/masks into a new snapshot and swaps it in through one volatile reference
+	 * 	readers call graph.getSnapshot() and keep using that snapshot, it never changes after it is created
+	 * 	a snapshot is never updated in place, a reader may see an older snapshot but never a half updated one
+	 *
+	 * Shape of the graph (solutions, characteristics, which edges point to which solution, name lookups) is only copied
+	 * 	when nodes/edges were added or removed since the last snapshot, otherwise the new snapshot shares it with the old one
+	 *
+	 * Everything is stored by solution/characteristic index (position in getSolutions()/getCharacteristics())
+	 */
+
+	// shape of the graph, shared by every snapshot taken while no node/edge is added or removed
+	static final class Shape {
+		final int structureVersion;
+
+		final Solution[] solutions;
+		final int[] solutionIds; // node id of each solution
+		final Characteristic[] characteristics;
+		final int[] characteristicIds; // node id of each characteristic
+		final HashMap<String, Integer> solutionIndex;
+		final HashMap<String, Integer> characteristicIndex;
+
+		// edges to solution i are edgeFrom/edgeId[edgeStart[i] ... edgeStart[i + 1] - 1]
+		// 	edgeFrom = characteristic index, edgeId = graph edge id
+		final int[] edgeStart;
+		final int[] edgeFrom;
+		final int[] edgeId;
+
+		// solution indexes of each characteristic, then every solution (last), built by the first SolutionQuery on this shape
+		private volatile RoaringBitmap[] solutionBitmaps;
+
+		Shape(ContextGraph graph) {
+			structureVersion = graph.structureVersion;
+
+			int[] characteristicByNode = new int[graph.nodes.size()];
+			characteristics = new Characteristic[graph.characteristicNodes.size()];
+			characteristicIds = new int[characteristics.length];
+			characteristicIndex = new HashMap<>(characteristics.length * 2);
+			for (int i = 0; i < characteristics.length; i++) {
+				Node chNode = graph.characteristicNodes.get(i);
+				characteristics[i] = (Characteristic)chNode.getSubject();
+				characteristicIds[i] = chNode.getId();
+				characteristicIndex.put(characteristics[i].getName(), i);
+				characteristicByNode[chNode.getId()] = i;
+			}
+
+			solutions = new Solution[graph.solutionNodes.size()];
+			solutionIds = new int[solutions.length];
+			solutionIndex = new HashMap<>(solutions.length * 2);
+			edgeStart = new int[solutions.length + 1];
+			for (int i = 0; i < solutions.length; i++) {
+				Node sNode = graph.solutionNodes.get(i);
+				solutions[i] = (Solution)sNode.getSubject();
+				solutionIds[i] = sNode.getId();
+				solutionIndex.put(solutions[i].getName(), i);
+				edgeStart[i + 1] = edgeStart[i] + sNode.getEdgesToNode().size();
+			}
+
+			edgeFrom = new int[edgeStart[solutions.length]];
+			edgeId = new int[edgeFrom.length];
+			for (int i = 0; i < solutions.length; i++) {
+				int j = edgeStart[i];
+				for (Edge e : graph.solutionNodes.get(i).getEdgesToNode()) {
+					edgeFrom[j] = characteristicByNode[e.getStartNode().getId()];
+					edgeId[j] = e.getId();
+					j++;
+				}
+			}
+		}
+
+		// two threads may both build them the first time, either result is the same
+		RoaringBitmap[] solutionBitmaps() {
+			RoaringBitmap[] bitmaps = solutionBitmaps;
+			if (bitmaps == null) {
+				bitmaps = new RoaringBitmap[characteristics.length + 1];
+				for (int c = 0; c <= characteristics.length; c++) {
+					bitmaps[c] = new RoaringBitmap();
+				}
+				for (int i = 0; i < solutions.length; i++) { // increasing, every add() appends
+					for (int j = edgeStart[i]; j < edgeStart[i + 1]; j++) {
+						bitmaps[edgeFrom[j]].add(i);
+					}
+					bitmaps[characteristics.length].add(i);
+				}
+				solutionBitmaps = bitmaps;
+			}
+			return bitmaps;
+		}
+	}
+
+	private final Shape shape;
+	private final long version;
+
+	// values copied from the graph when the snapshot was published
+	private final double[] solutionScores; // ranking score of each solution (weight or activation)
+	private final double[] characteristicScores; // weight of each characteristic with masks applied
+	private final double[] edgeMultipliers; // multiplier of each edge in shape, same order as edgeFrom
+	private final BitSet disabledNodes;
+	private final BitSet disabledEdges;
+
+	// solution indexes sorted by score, highest first
+	private final int[] ranking;
+
+	/**
+	 * Copies the current state of graph, shape of previous snapshot is reused if graph nodes/edges have not changed
+	 * 	must be called by the thread changing the graph (see ContextGraph.publish)
+	 */
+	GraphSnapshot(ContextGraph graph, GraphSnapshot previous, long version, double[] rankingScores, double[] scores) {
+		this.shape = previous != null && previous.shape.structureVersion == graph.structureVersion ? previous.shape : new Shape(graph);
+		this.version = version;
+
+		solutionScores = new double[shape.solutions.length];
+		for (int i = 0; i < solutionScores.length; i++) {
+			solutionScores[i] = rankingScores[shape.solutionIds[i]];
+		}
+		characteristicScores = new double[shape.characteristics.length];
+		for (int i = 0; i < characteristicScores.length; i++) {
+			characteristicScores[i] = scores[shape.characteristicIds[i]];
+		}
+		edgeMultipliers = new double[shape.edgeId.length];
+		for (int j = 0; j < edgeMultipliers.length; j++) {
+			edgeMultipliers[j] = graph.edges.get(shape.edgeId[j]).getMultiplier();
+		}
+		disabledNodes = (BitSet)graph.disabledNodes.clone();
+		disabledEdges = (BitSet)graph.disabledEdges.clone();
+
+		ranking = rank(solutionScores);
+	}
+
+	// sorts solution indexes by score, highest first (stable, ties keep graph order)
+	private static int[] rank(final double[] scores) {
+		Integer[] order = new Integer[scores.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer i1, Integer i2) {
+				return Double.compare(scores[i2], scores[i1]);
+			}
+		});
+
+		int[] ranking = new int[order.length];
+		for (int i = 0; i < ranking.length; i++) {
+			ranking[i] = order[i];
+		}
+		return ranking;
+	}
+
+	// by index, for WeightRecorder (no name lookups)
+	Shape shape() {
+		return shape;
+	}
+	double characteristicScore(int i) {
+		return characteristicScores[i];
+	}
+	double solutionScore(int i) {
+		return solutionScores[i];
+	}
+
+	// sum of the multipliers of the edges into solution i from characteristics with from[c] set
+	double multiplierSum(int i, boolean[] from) {
+		double sum = 0.0;
+		for (int j = shape.edgeStart[i]; j < shape.edgeStart[i + 1]; j++) {
+			if (from[shape.edgeFrom[j]]) {
+				sum += edgeMultipliers[j];
+			}
+		}
+		return sum;
+	}
+
+	// number of times the graph was published before this snapshot (higher = newer)
+	public long getVersion() {
+		return version;
+	}
+
+	public Solution[] getSolutions() {
+		return shape.solutions.clone();
+	}
+
+	public Characteristic[] getCharacteristics() {
+		return shape.characteristics.clone();
+	}
+
+	// returns solution with highest score, null if graph has no solutions
+	public Solution getTopSolution() {
+		return ranking.length == 0 ? null : shape.solutions[ranking[0]];
+	}
+
+	// returns array of all solutions, sorted by score
+	public Solution[] getTopSolutionsArray() {
+		Solution[] topSolutions = new Solution[ranking.length];
+		for (int i = 0; i < topSolutions.length; i++) {
+			topSolutions[i] = shape.solutions[ranking[i]];
+		}
+		return topSolutions;
+	}
+
+	// returns the k characteristics with the highest weight (masks applied), highest first
+	public Characteristic[] getTopCharacteristics(int k) {
+		int[] order = rank(characteristicScores);
+		Characteristic[] top = new Characteristic[Math.max(0, Math.min(k, order.length))];
+		for (int i = 0; i < top.length; i++) {
+			top[i] = shape.characteristics[order[i]];
+		}
+		return top;
+	}
+
+	// returns score of solution when snapshot was published, 0 if solution not in graph
+	public double getSolutionScore(Solution s) {
+		Integer i = shape.solutionIndex.get(s.getName());
+		return i == null ? 0.0 : solutionScores[i];
+	}
+
+	// returns weight of characteristic (masks applied) when snapshot was published, 0 if characteristic not in graph
+	public double getCharacteristicWeight(Characteristic ch) {
+		Integer i = shape.characteristicIndex.get(ch.getName());
+		return i == null ? 0.0 : characteristicScores[i];
+	}
+
+	public boolean checkNodeEnabled(Solution s) {
+		Integer i = shape.solutionIndex.get(s.getName());
+		return i != null && !disabledNodes.get(shape.solutionIds[i]);
+	}
+
+	public boolean checkNodeEnabled(Characteristic ch) {
+		Integer i = shape.characteristicIndex.get(ch.getName());
+		return i != null && !disabledNodes.get(shape.characteristicIds[i]);
+	}
+
+	/**
+	 * Starts a query for solutions addressing some characteristics and not others (see SolutionQuery)
+	 */
+	public SolutionQuery query() {
+		return new SolutionQuery(this);
+	}
+
+	/**
+	 * Same as ContextGraph.explain(solution, k), using the weights/multipliers/masks of this snapshot
+	 */
+	public ArrayList<Contribution> explain(Solution s, int k) {
+		ArrayList<Contribution> top = new ArrayList<>();
+		Integer i = shape.solutionIndex.get(s.getName());
+		if (i == null || disabledNodes.get(shape.solutionIds[i]) || k <= 0) {
+			return top;
+		}
+
+		// min heap of the k largest contributions seen so far
+		PriorityQueue<Contribution> heap = new PriorityQueue<>(k + 1);
+		double total = 0.0;
+
+		for (int j = shape.edgeStart[i]; j < shape.edgeStart[i + 1]; j++) {
+			int ch = shape.edgeFrom[j];
+			if (disabledEdges.get(shape.edgeId[j]) || disabledNodes.get(shape.characteristicIds[ch])) {
+				continue;
+			}
+
+			Contribution c = new Contribution(shape.characteristics[ch], characteristicScores[ch], edgeMultipliers[j]);
+			total += c.getContribution();
+
+			if (heap.size() < k) {
+				heap.add(c);
+			} else if (c.compareTo(heap.peek()) > 0) {
+				heap.poll();
+				heap.add(c);
+			}
+		}
+
+		while (!heap.isEmpty()) {
+			Contribution c = heap.poll();
+			c.setShare(total == 0.0 ? 0.0 : c.getContribution() / total);
+			top.add(c);
+		}
+		Collections.reverse(top);
+
+		return top;
+	}
+
+	/**
+	 * Returns every solution and its score, highest first
+	 */
+	@Override
+	public String toString() {
+		StringBuilder s = new StringBuilder();
+		s.append("Snapshot ").append(version).append(":");
+		for (int i : ranking) {
+			s.append("\n\t[").append(shape.solutions[i].getName()).append(", ").append(solutionScores[i]);
+			s.append(disabledNodes.get(shape.solutionIds[i]) ? ", node disabled]" : ", node enabled]");
+		}
+		return s.toString();
+	}
+}
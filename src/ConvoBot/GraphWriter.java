@@ -0,0 +1,195 @@
+package ConvoBot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class GraphWriter {
+
+	/**
+	 * Applies characteristic increments to one session's ContextGraph on another thread, so the reply doesn't wait for propagation
+	 * 	increment() only queues the change and returns its sequence number
+	 * 	one drain task at a time runs on the executor (single writer), it takes every queued change,
+	 * 		adds up changes to the same characteristic (a burst becomes one incrementCharacteristic + propagate per characteristic),
+	 * 		applies them, publishes a snapshot and then marks their sequence numbers as applied
+	 * 	await(sequence)/flush() block until changes are applied (sequence barrier), ie. before Advice ranks solutions
+	 *
+	 * While a writer is used the graph must only be changed through it, and only read after flush() (or through getSnapshot())
+	 * Many writers can share one executor, changes for different graphs are applied in parallel
+	 */
+
+	// shared by every session unless another executor is given, daemon threads so it never keeps the program open
+	public static final ExecutorService SHARED_EXECUTOR = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+			new ThreadFactory() {
+				private final AtomicLong count = new AtomicLong();
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "graph-writer-" + count.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+
+	// one queued increment
+	private static final class Delta {
+		final long sequence;
+		final Characteristic characteristic;
+		final double weight;
+
+		Delta(long sequence, Characteristic characteristic, double weight) {
+			this.sequence = sequence;
+			this.characteristic = characteristic;
+			this.weight = weight;
+		}
+	}
+
+	private final ContextGraph graph;
+	private final Executor executor;
+
+	private final ConcurrentLinkedQueue<Delta> pending = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+	private final AtomicLong submitted = new AtomicLong();
+
+	// every change up to applied is in the graph, guarded by this for await()
+	private long applied;
+
+	private final AtomicLong batches = new AtomicLong();
+	private final AtomicLong increments = new AtomicLong();
+	private volatile RuntimeException failure;
+
+	private final Runnable drain = new Runnable() {
+		@Override
+		public void run() {
+			drain();
+		}
+	};
+
+	public GraphWriter(ContextGraph graph) {
+		this(graph, SHARED_EXECUTOR);
+	}
+
+	public GraphWriter(ContextGraph graph, Executor executor) {
+		this.graph = graph;
+		this.executor = executor;
+	}
+
+	/**
+	 * Queues an increment of ch by weight, returns its sequence number (for await)
+	 */
+	public long increment(Characteristic ch, double weight) {
+		long sequence;
+		// sequence numbers must enter the queue in order, so the drain can mark everything up to the last one it took as applied
+		synchronized (pending) {
+			sequence = submitted.incrementAndGet();
+			pending.add(new Delta(sequence, ch, weight));
+		}
+		schedule();
+		return sequence;
+	}
+
+	/**
+	 * Blocks until every change up to sequence is in the graph
+	 * 	throws the exception a change failed with, if any
+	 */
+	public void await(long sequence) throws InterruptedException {
+		synchronized (this) {
+			while (applied < sequence && failure == null) {
+				wait();
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Blocks until every change queued so far is in the graph, returns the graph (safe to read on this thread until the next increment)
+	 */
+	public ContextGraph flush() throws InterruptedException {
+		await(submitted.get());
+		return graph;
+	}
+
+	// true if there are changes not in the graph yet
+	public synchronized boolean hasPending() {
+		return applied < submitted.get();
+	}
+
+	private void schedule() {
+		if (!pending.isEmpty() && scheduled.compareAndSet(false, true)) {
+			executor.execute(drain);
+		}
+	}
+
+	private void drain() {
+		try {
+			ArrayList<Characteristic> order = new ArrayList<>();
+			HashMap<Characteristic, double[]> totals = new HashMap<>(); // {weight, changes}
+			long last = 0;
+			Delta d;
+			while ((d = pending.poll()) != null) {
+				double[] total = totals.get(d.characteristic);
+				if (total == null) {
+					total = new double[2];
+					totals.put(d.characteristic, total);
+					order.add(d.characteristic);
+				}
+				total[0] += d.weight;
+				total[1]++;
+				last = d.sequence;
+			}
+
+			if (last > 0) {
+				try {
+					for (Characteristic ch : order) {
+						double[] total = totals.get(ch);
+						if (graph.incrementCharacteristic(ch, total[0])) {
+							// the graph counted one mention, the rest were coalesced into it
+							Trending.characteristicIncremented(ch, (long)total[1] - 1);
+						}
+					}
+					graph.publish();
+				} catch (RuntimeException e) {
+					failure = e;
+				}
+				batches.incrementAndGet();
+				increments.addAndGet(order.size());
+
+				synchronized (this) {
+					applied = last;
+					notifyAll();
+				}
+			}
+		} finally {
+			scheduled.set(false);
+			// changes queued after the poll loop finished but before scheduled was cleared
+			schedule();
+		}
+	}
+
+	public ContextGraph getGraph() {
+		return graph;
+	}
+	// last snapshot published by the writer, safe to read from any thread without waiting
+	public GraphSnapshot getSnapshot() {
+		return graph.getSnapshot();
+	}
+	public long getSubmitted() {
+		return submitted.get();
+	}
+	// times the graph was updated, submitted / batches = how many changes were coalesced on average
+	public long getBatches() {
+		return batches.get();
+	}
+	// incrementCharacteristic calls made (one per characteristic per batch)
+	public long getIncrements() {
+		return increments.get();
+	}
+}
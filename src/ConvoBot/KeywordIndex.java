@@ -0,0 +1,69 @@
+package ConvoBot;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+public final class KeywordIndex {
+
+	/**
+	 * Names and synonyms of a list of characteristics, not changed after it is built
+	 * 	one word terms are looked up by token, phrases (terms with a space) are searched for in the whole message
+	 * 	ContextGraph keeps one for its characteristics list (see ContextGraph.getKeywordIndex), used by TurnPipeline.DetectStage
+	 */
+
+	private final HashMap<String, ArrayList<Characteristic>> words = new HashMap<>();
+	private final HashMap<String, ArrayList<Characteristic>> phrases = new HashMap<>();
+
+	public KeywordIndex(Collection<Characteristic> characteristics) {
+		for (Characteristic c : characteristics) {
+			add(c.getName(), c);
+			for (String s : c.getSynonymns()) {
+				add(s, c);
+			}
+		}
+	}
+
+	/**
+	 * Adds every characteristic named in a message to found (each once, in the order they are found)
+	 * 	tokens = words of the message, text = whole message, both lower case
+	 */
+	public void find(String[] tokens, String text, ArrayList<Characteristic> found) {
+		for (String token : tokens) {
+			addAll(found, words.get(token));
+		}
+		for (Map.Entry<String, ArrayList<Characteristic>> phrase : phrases.entrySet()) {
+			if (text.contains(phrase.getKey())) {
+				addAll(found, phrase.getValue());
+			}
+		}
+	}
+
+	private void add(String term, Characteristic c) {
+		term = term.trim().toLowerCase();
+		if (term.isEmpty()) {
+			return;
+		}
+		HashMap<String, ArrayList<Characteristic>> map = term.indexOf(' ') < 0 ? words : phrases;
+		ArrayList<Characteristic> named = map.get(term);
+		if (named == null) {
+			named = new ArrayList<>(1);
+			map.put(term, named);
+		}
+		if (!named.contains(c)) {
+			named.add(c);
+		}
+	}
+
+	private static void addAll(ArrayList<Characteristic> found, ArrayList<Characteristic> named) {
+		if (named == null) {
+			return;
+		}
+		for (Characteristic c : named) {
+			if (!found.contains(c)) {
+				found.add(c);
+			}
+		}
+	}
+}
@@ -0,0 +1,14 @@
+package ConvoBot;
+
+/**
+ * Where messages to/from the user go, used by PrintMessage
+ * 	console by default, replaced for the Android app or for simulated patients (Testing.LoadGenerator)
+ */
+public interface MessageChannel {
+	
+	// returns the next message typed by the user (blocks until there is one)
+	String messageFromUser();
+	
+	// sends a message from the bot to the user
+	void messageFromBot(String output);
+}
@@ -0,0 +1,233 @@
+package ConvoBot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+public class MultiplierLearner {
+
+	/**
+	 * Learns characteristic -> solution multipliers from patients saying whether a recommended solution helped
+	 * 	recordFeedback() splits one answer between the edges that made the solution score (their share, see ContextGraph.explain)
+	 * 		and adds it to striped adders for each edge (DoubleAdder), no locks and nothing shared written on the conversation thread
+	 * 	fold() (on a background thread every period, see start()) takes everything added since the last fold,
+	 * 		adds it to each edge's helped/didn't help totals (older totals fade by DECAY every fold),
+	 * 		turns them into new multipliers and publishes them all at once as one immutable table
+	 * 	applyTo(graph) copies the latest table into a session's own graph (ie. when its conversation starts)
+	 *
+	 * learned multiplier = multiplier from file * 2 * (helped + PRIOR/2) / (helped + didn't help + PRIOR)
+	 * 	so no feedback keeps the file's multiplier, always helping doubles it, never helping takes it down to MIN_FACTOR of it
+	 * Nothing is written back to the files or to the characteristics shared by every graph
+	 */
+
+	// answers an edge needs before it moves far from the file's multiplier
+	public static final double PRIOR = 10.0;
+	// totals are multiplied by this every fold, so old feedback counts less
+	public static final double DECAY = 0.99;
+	public static final double MIN_FACTOR = 0.25;
+	public static final double MAX_FACTOR = 2.0;
+	// smallest change (relative to the file's multiplier) worth publishing
+	public static final double CHANGE = 0.001;
+	// characteristics given credit for one answer (largest shares first)
+	public static final int CREDITED = 5;
+
+	// multipliers of every learned edge, never changed after publishing
+	private static final class Multipliers {
+		final long version;
+		final double[] values;
+
+		Multipliers(long version, double[] values) {
+			this.version = version;
+			this.values = values;
+		}
+	}
+
+	// learned edges by characteristic name then solution name, only read after the constructor
+	private final HashMap<String, HashMap<String, Integer>> edgeIndex = new HashMap<>();
+	private final Characteristic[] from;
+	private final Solution[] to;
+	private final double[] base;
+
+	// added to on the conversation threads
+	private final DoubleAdder[] helped;
+	private final DoubleAdder[] notHelped;
+	private final LongAdder answers = new LongAdder();
+
+	// only touched by fold(), guarded by this
+	private final double[] helpedTotals;
+	private final double[] notHelpedTotals;
+	private long folds;
+
+	private volatile Multipliers published;
+	private ScheduledExecutorService executor;
+
+	/**
+	 * Learns every characteristic -> solution edge in template, starting from its multipliers
+	 */
+	public MultiplierLearner(ContextGraph template) {
+		ArrayList<Characteristic> chs = new ArrayList<>();
+		ArrayList<Solution> ss = new ArrayList<>();
+		ArrayList<Double> ms = new ArrayList<>();
+		for (Node chNode : template.characteristicNodes) {
+			for (Edge e : chNode.getEdgesFromNode()) {
+				if (!(e.getEndNode().getSubject() instanceof Solution)) {
+					continue;
+				}
+				Characteristic ch = (Characteristic)chNode.getSubject();
+				Solution s = (Solution)e.getEndNode().getSubject();
+				HashMap<String, Integer> bySolution = edgeIndex.get(ch.getName());
+				if (bySolution == null) {
+					bySolution = new HashMap<>();
+					edgeIndex.put(ch.getName(), bySolution);
+				}
+				bySolution.put(s.getName(), chs.size());
+				chs.add(ch);
+				ss.add(s);
+				ms.add(e.getMultiplier());
+			}
+		}
+
+		int n = chs.size();
+		from = chs.toArray(new Characteristic[n]);
+		to = ss.toArray(new Solution[n]);
+		base = new double[n];
+		helped = new DoubleAdder[n];
+		notHelped = new DoubleAdder[n];
+		for (int i = 0; i < n; i++) {
+			base[i] = ms.get(i);
+			helped[i] = new DoubleAdder();
+			notHelped[i] = new DoubleAdder();
+		}
+		helpedTotals = new double[n];
+		notHelpedTotals = new double[n];
+		published = new Multipliers(0, base.clone());
+	}
+
+	/**
+	 * Records whether s helped the patient whose session graph is graph
+	 * 	call on the thread that owns graph, only graph is read
+	 */
+	public void recordFeedback(ContextGraph graph, Solution s, boolean didHelp) {
+		answers.increment();
+		for (Contribution c : graph.explain(s, CREDITED)) {
+			int i = indexOf(c.getCharacteristic(), s);
+			if (i >= 0 && c.getShare() > 0) {
+				(didHelp ? helped : notHelped)[i].add(c.getShare());
+			}
+		}
+	}
+
+	private int indexOf(Characteristic ch, Solution s) {
+		HashMap<String, Integer> bySolution = edgeIndex.get(ch.getName());
+		Integer i = bySolution == null ? null : bySolution.get(s.getName());
+		return i == null ? -1 : i;
+	}
+
+	/**
+	 * Folds feedback recorded since the last fold into the multipliers, returns true if new multipliers were published
+	 */
+	public synchronized boolean fold() {
+		Multipliers current = published;
+		double[] values = new double[base.length];
+		boolean changed = false;
+		for (int i = 0; i < base.length; i++) {
+			helpedTotals[i] = helpedTotals[i] * DECAY + helped[i].sumThenReset();
+			notHelpedTotals[i] = notHelpedTotals[i] * DECAY + notHelped[i].sumThenReset();
+			values[i] = base[i] * factor(helpedTotals[i], notHelpedTotals[i]);
+			changed |= Math.abs(values[i] - current.values[i]) > CHANGE * Math.abs(base[i]);
+		}
+		folds++;
+		if (changed) {
+			published = new Multipliers(current.version + 1, values);
+		}
+		return changed;
+	}
+
+	private static double factor(double helped, double notHelped) {
+		double f = 2.0 * (helped + PRIOR / 2.0) / (helped + notHelped + PRIOR);
+		return Math.max(MIN_FACTOR, Math.min(MAX_FACTOR, f));
+	}
+
+	/**
+	 * Changes graph's multipliers to the latest learned ones, returns number of edges changed
+	 * 	call on the thread that owns graph, then publish() the graph if other threads read it
+	 */
+	public int applyTo(ContextGraph graph) {
+		Multipliers m = published;
+		if (m.version == 0) {
+			return 0;
+		}
+		return graph.applyMultipliers(from, to, m.values);
+	}
+
+	// latest learned multiplier of the edge from ch to s, 0 if it isn't learned
+	public double getMultiplier(Characteristic ch, Solution s) {
+		int i = indexOf(ch, s);
+		return i < 0 ? 0.0 : published.values[i];
+	}
+
+	/**
+	 * Folds every periodMillis on a daemon thread until stop()
+	 */
+	public synchronized void start(long periodMillis) {
+		if (executor != null) {
+			return;
+		}
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "multiplier-learner");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		executor.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					fold();
+				} catch (RuntimeException e) {
+					// a failed fold must not cancel the next ones
+					System.out.println("Error learning multipliers: " + e);
+				}
+			}
+		}, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+	}
+
+	public synchronized void stop() {
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+	}
+
+	public long getVersion() {
+		return published.version;
+	}
+	public long getAnswers() {
+		return answers.sum();
+	}
+	public int getEdges() {
+		return base.length;
+	}
+
+	public synchronized String getMetrics() {
+		double[] values = published.values;
+		int raised = 0;
+		int lowered = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] > base[i]) {
+				raised++;
+			} else if (values[i] < base[i]) {
+				lowered++;
+			}
+		}
+		return "answers=" + answers.sum() + ", folds=" + folds + ", version=" + published.version + ", edges raised=" + raised
+				+ ", lowered=" + lowered + "/" + values.length;
+	}
+}
@@ -1,5 +1,6 @@
 package ConvoBot;
 
+import java.util.BitSet;
 import java.util.PriorityQueue;
 
 public class Node implements Comparable<Node> {
@@ -10,35 +11,49 @@ public class Node implements Comparable<Node> {
 	
 	private Double weight;
 	
+	// weight added to this node directly (incrementCharacteristic), weight = baseWeight + weight collected from edges to node
+	private double baseWeight;
+	
+	// position of node in the graph, used as the bit index in the graph's node mask
+	private int id;
+	
 	//Enable or Disable nodes
-	private boolean enabled; //Set it to either true (enabled) or false (disabled)
+	// enabled state is stored as a bit in a mask shared by every node in the graph (bit set = node disabled)
+	// 	the mask is only applied when the graph scores solutions, toggling a node does not re-propagate weights
+	private BitSet disabledNodes;
 	
 	//getter and setter for enabled
 	public boolean isEnabled() {
-		return enabled;
+		return !disabledNodes.get(id);
 	}
 
 	public void setEnabled(boolean enabled) {
-		// if enabled set to true, update edges away from node
-	
 		 if (!this.getSubjectName().equals("centerNode")) { 
-			this.enabled = enabled;
-			for (Edge e : edgesFromNode) {
-				e.updateEdgeWeight();
-			}
+			disabledNodes.set(id, !enabled);
 		}
 	}
 	
-	// creates a new node with no to/from edges
+	// creates a new node with no to/from edges, node has its own mask (not part of a graph)
 	public Node(Subject subject) {
+		this(subject, 0, new BitSet());
+	}
+	
+	// creates a new node with no to/from edges, enabled state stored at bit id of disabledNodes
+	public Node(Subject subject, int id, BitSet disabledNodes) {
 		this.subject = subject;	
 		this.setWeight(0.0);
+		this.id = id;
+		this.disabledNodes = disabledNodes;
 		
 		edgesToNode = new PriorityQueue<>();
 		edgesFromNode = new PriorityQueue<>();
 		this.setEnabled(true);
 	}
 	
+	public int getId() {
+		return id;
+	}
+	
 	//getter and setter methods for weight, subject, edgesToNode, and edgesFromNode
 	public Double getWeight() {
 		return this.weight;
@@ -80,34 +95,26 @@ public class Node implements Comparable<Node> {
 		this.incrementWeight(1.0);
 	}
 	
+	// 	only changes this node, the graph passes the new weight on to the nodes below it (see ContextGraph.propagate)
 	public void incrementWeight(Double weight) {
+		this.baseWeight += weight;
 		this.setWeight(this.weight + weight);
-		
-		if (!this.getSubjectName().equals("centerNode")) {
-			for (Edge e : edgesFromNode) {
-				e.updateEdgeWeight();
-			}
-		}
+	}
+	
+	public double getBaseWeight() {
+		return baseWeight;
 	}
 	
 	// collects total weights (out) of edges leading to node, used to 'fill buckets' 
+	// 	weight = baseWeight + sum of weightOut of edges to node
+	// 	weight collected ignores enabled/disabled nodes and edges, masks are applied by the graph when scoring
+	// 	not recursive, edges away from node are updated by the graph in topological order
 	public void collectWeights() {
-		Double weightSum = 0.0;
-		if (this.isEnabled()) {
-			for (Edge e : edgesToNode) {
-				// if edge == enabled only
-				//if (e.isEnabled() == true) {
-					weightSum += e.getWeightOut();
-				//}
-			}
+		double weightSum = baseWeight;
+		for (Edge e : edgesToNode) {
+			weightSum += e.getWeightOut();
 		}
 		this.setWeight(weightSum);
-		
-		if (!this.getSubjectName().equals("centerNode")) {
-			for (Edge e : edgesFromNode) {
-				e.updateEdgeWeight();
-			}
-		}
 	}
 	
 	
@@ -5,6 +5,7 @@ public class Patient {
 	private int age;
 	private String name;
 	private String gender;
+	private String occupation;
 	
 
 	public int getAge() {
@@ -34,4 +35,12 @@ public class Patient {
 		this.gender = gender;
 	}
 	
+	public String getOccupation() {
+		return occupation;
+	}
+	
+	public void setOccupation(String occupation) {
+		this.occupation = occupation;
+	}
+	
 }
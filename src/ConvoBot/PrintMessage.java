@@ -11,20 +11,48 @@ public class PrintMessage {
 
 	public static Scanner in = new Scanner(System.in);
 	
+	// replaces the console for the current thread when set (ie. simulated patients in Testing.LoadGenerator)
+	private static ThreadLocal<MessageChannel> channel = new ThreadLocal<>();
+	
+	/**
+	 * Sends all messages on the current thread through channel instead of the console, null goes back to the console.
+	 * @param channel to use
+	 */
+	public static void setChannel(MessageChannel channel) {
+		if (channel == null) {
+			PrintMessage.channel.remove();
+		} else {
+			PrintMessage.channel.set(channel);
+		}
+	}
+	
 	/**
 	 * This reads the text the user types into the console when responding to the bot.
+	 * Each message starts a new turn and is cut to TurnGuard.MAX_INPUT_LENGTH characters (see TurnGuard).
 	 * @param input from user
 	 */
 	
 	public static String messageFromUser() {
-		return in.nextLine();
+		Speculator.checkNotSpeculating(); // a reply worked out ahead can't wait for more input
+		TurnScheduler.release(); // waiting for the patient doesn't need a turn slot
+		MessageChannel c = channel.get();
+		if (c != null) {
+			return TurnGuard.startTurn(c.messageFromUser());
+		}
+		return TurnGuard.startTurn(in.nextLine());
 	}
 	/**
 	 * This sends the message from the bot to print out to the console.
 	 * @param output from bot
 	 */
 	public static void messageFromBot(String output) {
-		System.out.println(output);
+		Speculator.checkNotSpeculating();
+		MessageChannel c = channel.get();
+		if (c != null) {
+			c.messageFromBot(output);
+		} else {
+			System.out.println(output);
+		}
 	}
 
 }
@@ -0,0 +1,157 @@
+package ConvoBot;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class ProfileExtractor {
+
+	/**
+	 * Fills the Patient's profile (name, occupation, age, gender) from a message in one scan
+	 * 	used by Topics.Greetings and Topics.SmallTalk for the answers to the bot's profile questions
+	 *
+	 * All cues are alternatives of one pattern (compiled once), the matcher runs over the message once from left to right
+	 * 	"my name is Alex", "call me Alex"		-> name
+	 * 	"I'm a nurse", "I am an engineer"		-> occupation (or gender for "I'm a guy")
+	 * 	"I work at a bank", "I go to university"	-> occupation
+	 * 	"19", "I'm 19", "19 years old"		-> age (bare number only if age was asked for)
+	 * 	"male", "girl", ...				-> gender (only if gender was asked for)
+	 * 	"I'm Sam"						-> name (only if name was asked for)
+	 * If nothing matched a bare answer ("Jordan", "student") is used for the slot that was asked for
+	 *
+	 * Never throws on bad input, slots that aren't found are left as they are
+	 * Matching goes through TurnGuard, so it is stopped with the rest of the turn if it runs over budget
+	 */
+
+	// slots, the one the bot asked for is passed to extract()
+	public static final int NAME = 0;
+	public static final int OCCUPATION = 1;
+	public static final int AGE = 2;
+	public static final int GENDER = 3;
+
+	static final int MIN_AGE = 1;
+	static final int MAX_AGE = 120;
+	static final int MAX_OCCUPATION_LENGTH = 40;
+
+	static final String MALE = "male";
+	static final String FEMALE = "female";
+	static final String[] MALE_WORDS = {"male", "guy", "dude", "man", "boy"};
+	static final String[] FEMALE_WORDS = {"female", "girl", "woman", "chick", "lady"};
+
+	private static final String GENDER_WORDS = "male|female|guy|dude|man|boy|girl|woman|chick|lady";
+	private static final String I_AM = "(?:i'm|i am|im)";
+	// up to three words, stops before words joining another clause
+	private static final String PHRASE = "[a-z][a-z'-]*(?:\\s+(?!and\\b|but\\b|so\\b|who\\b|with\\b)[a-z][a-z'-]*){0,2}";
+
+	private static final Pattern CUES = Pattern.compile(
+			"\\b(?:my name is|my name's|call me)\\s+(?<name>[a-z][a-z'-]*)"
+			+ "|\\b" + I_AM + "\\s+an?\\s+(?<role>" + PHRASE + ")"
+			+ "|\\bi\\s+(?<activity>(?:work|am working)\\s+(?:at|for|in|as)\\s+" + PHRASE + ")"
+			+ "|\\bi\\s+(?<school>(?:go to|study at|study|attend)\\s+" + PHRASE + ")"
+			+ "|(?<agecue>\\b" + I_AM + "\\s+|\\baged?\\s+)?\\b(?<age>[0-9]{1,3})\\b(?<ageunit>\\s*(?:years?|yrs?)(?:\\s+old)?)?"
+			+ "|\\b(?<gender>" + GENDER_WORDS + ")\\b"
+			+ "|\\b" + I_AM + "\\s+(?<intro>[a-z][a-z'-]*)",
+			Pattern.CASE_INSENSITIVE);
+
+	private static final Pattern BARE_NAME = Pattern.compile("[a-z][a-z'-]*", Pattern.CASE_INSENSITIVE);
+
+	/**
+	 * Fills the slots of patient found in input, returns true if the slot asked for (NAME, OCCUPATION, AGE or GENDER) was filled
+	 */
+	public static boolean extract(String input, Patient patient, int asked) {
+		if (input == null || patient == null) {
+			return false;
+		}
+		boolean found = false;
+		Matcher m = CUES.matcher(TurnGuard.guard(input));
+		while (TurnGuard.find(m)) {
+			int slot = -1;
+			if (m.group("name") != null) {
+				patient.setName(capitalize(m.group("name")));
+				slot = NAME;
+			} else if (m.group("role") != null) {
+				String role = m.group("role").toLowerCase();
+				String gender = gender(role);
+				if (gender != null) {
+					patient.setGender(gender);
+					slot = GENDER;
+				} else {
+					patient.setOccupation(role);
+					slot = OCCUPATION;
+				}
+			} else if (m.group("activity") != null) {
+				patient.setOccupation(m.group("activity").toLowerCase());
+				slot = OCCUPATION;
+			} else if (m.group("school") != null) {
+				patient.setOccupation(m.group("school").toLowerCase());
+				slot = OCCUPATION;
+			} else if (m.group("age") != null) {
+				// a number on its own is only an age if that's what was asked
+				if (asked == AGE || m.group("agecue") != null || m.group("ageunit") != null) {
+					int age = Integer.parseInt(m.group("age")); // 1-3 ascii digits, can't throw
+					if (age >= MIN_AGE && age <= MAX_AGE) {
+						patient.setAge(age);
+						slot = AGE;
+					}
+				}
+			} else if (m.group("gender") != null) {
+				if (asked == GENDER) {
+					patient.setGender(gender(m.group("gender")));
+					slot = GENDER;
+				}
+			} else if (m.group("intro") != null) {
+				if (asked == NAME) {
+					patient.setName(capitalize(m.group("intro")));
+					slot = NAME;
+				}
+			}
+			if (slot == asked) {
+				found = true;
+			}
+		}
+
+		if (!found && !TurnGuard.timedOut()) {
+			found = bareAnswer(input.trim(), patient, asked);
+		}
+		return found;
+	}
+
+	// answer that is just the value asked for, ie. "Jordan" or "student"
+	private static boolean bareAnswer(String input, Patient patient, int asked) {
+		if (input.isEmpty()) {
+			return false;
+		}
+		if (asked == NAME) {
+			Matcher m = BARE_NAME.matcher(TurnGuard.guard(input));
+			if (TurnGuard.matches(m)) {
+				patient.setName(capitalize(input));
+				return true;
+			}
+		} else if (asked == OCCUPATION) {
+			if (input.length() <= MAX_OCCUPATION_LENGTH) {
+				patient.setOccupation(input.toLowerCase());
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// MALE, FEMALE or null if word isn't a gender
+	static String gender(String word) {
+		word = word.toLowerCase();
+		for (String w : MALE_WORDS) {
+			if (w.equals(word)) {
+				return MALE;
+			}
+		}
+		for (String w : FEMALE_WORDS) {
+			if (w.equals(word)) {
+				return FEMALE;
+			}
+		}
+		return null;
+	}
+
+	private static String capitalize(String name) {
+		return Character.toUpperCase(name.charAt(0)) + name.substring(1).toLowerCase();
+	}
+}
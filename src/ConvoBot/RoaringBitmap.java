@@ -0,0 +1,428 @@
+package ConvoBot;
+
+import java.util.Arrays;
+
+public class RoaringBitmap {
+
+	/**
+	 * Compressed set of non negative ints (Roaring bitmap, without run containers)
+	 * 	values are split by their high 16 bits into chunks, each chunk keeps its low 16 bits in a container
+	 * 		array container = sorted char[] of low bits, used while the chunk has at most ARRAY_MAX values
+	 * 		bitmap container = long[1024] (one bit per low value), used when the chunk has more
+	 * 	so a sparse set costs 2 bytes a value and a dense one 1 bit a value
+	 * and(), or() and andNot() work a chunk at a time (merging arrays, ANDing words) and return a new bitmap
+	 *
+	 * Not thread safe while add() is being called, a bitmap that's no longer changed can be read by any number of threads
+	 */
+
+	// most values an array container holds, more and a bitmap container (8 KB) is smaller
+	public static final int ARRAY_MAX = 4096;
+
+	private static final int WORDS = 1024; // longs in a bitmap container
+
+	// chunk i holds values (keys[i] << 16) | low bits, keys sorted
+	private char[] keys = new char[4];
+	private Object[] containers = new Object[4]; // char[] (array container, first counts[i] used) or long[] (bitmap container)
+	private int[] counts = new int[4];
+	private int size;
+
+	public RoaringBitmap() {
+	}
+
+	// bitmap of the given values (any order, duplicates ignored)
+	public static RoaringBitmap of(int... values) {
+		int[] sorted = values.clone();
+		Arrays.sort(sorted);
+		RoaringBitmap b = new RoaringBitmap();
+		for (int v : sorted) {
+			b.add(v);
+		}
+		return b;
+	}
+
+	/**
+	 * Adds value, returns false if it was already there
+	 * 	fastest when values are added in increasing order (appended to the last chunk)
+	 */
+	public boolean add(int value) {
+		if (value < 0) {
+			throw new IllegalArgumentException("Negative value " + value);
+		}
+		char key = (char)(value >>> 16);
+		char low = (char)value;
+		int i = size > 0 && keys[size - 1] == key ? size - 1 : chunkOf(key);
+		if (i < 0) {
+			i = -i - 1;
+			insertChunk(i, key, new char[4], 0);
+		}
+
+		Object c = containers[i];
+		if (c instanceof long[]) {
+			long[] words = (long[])c;
+			long bit = 1L << low;
+			if ((words[low >>> 6] & bit) != 0) {
+				return false;
+			}
+			words[low >>> 6] |= bit;
+			counts[i]++;
+			return true;
+		}
+
+		char[] array = (char[])c;
+		int n = counts[i];
+		int at = n > 0 && array[n - 1] < low ? -n - 1 : Arrays.binarySearch(array, 0, n, low);
+		if (at >= 0) {
+			return false;
+		}
+		at = -at - 1;
+		if (n == ARRAY_MAX) {
+			long[] words = toWords(array, n);
+			words[low >>> 6] |= 1L << low;
+			containers[i] = words;
+		} else {
+			if (n == array.length) {
+				array = Arrays.copyOf(array, Math.min(ARRAY_MAX, Math.max(4, n * 2)));
+				containers[i] = array;
+			}
+			System.arraycopy(array, at, array, at + 1, n - at);
+			array[at] = low;
+		}
+		counts[i]++;
+		return true;
+	}
+
+	public boolean contains(int value) {
+		if (value < 0) {
+			return false;
+		}
+		int i = chunkOf((char)(value >>> 16));
+		if (i < 0) {
+			return false;
+		}
+		char low = (char)value;
+		Object c = containers[i];
+		if (c instanceof long[]) {
+			return (((long[])c)[low >>> 6] & (1L << low)) != 0;
+		}
+		return Arrays.binarySearch((char[])c, 0, counts[i], low) >= 0;
+	}
+
+	public int cardinality() {
+		int n = 0;
+		for (int i = 0; i < size; i++) {
+			n += counts[i];
+		}
+		return n;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	// values in increasing order
+	public int[] toArray() {
+		int[] values = new int[cardinality()];
+		int n = 0;
+		for (int i = 0; i < size; i++) {
+			int high = keys[i] << 16;
+			Object c = containers[i];
+			if (c instanceof long[]) {
+				long[] words = (long[])c;
+				for (int w = 0; w < WORDS; w++) {
+					long word = words[w];
+					while (word != 0) {
+						values[n++] = high | (w << 6) + Long.numberOfTrailingZeros(word);
+						word &= word - 1;
+					}
+				}
+			} else {
+				char[] array = (char[])c;
+				for (int j = 0; j < counts[i]; j++) {
+					values[n++] = high | array[j];
+				}
+			}
+		}
+		return values;
+	}
+
+	// bytes used by the containers (not counting the chunk index)
+	public long sizeInBytes() {
+		long bytes = 0;
+		for (int i = 0; i < size; i++) {
+			bytes += containers[i] instanceof long[] ? WORDS * 8 : counts[i] * 2;
+		}
+		return bytes;
+	}
+
+	// a bitmap with the same values that can be changed without changing this one
+	public RoaringBitmap copy() {
+		RoaringBitmap b = new RoaringBitmap();
+		for (int i = 0; i < size; i++) {
+			b.appendChunk(keys[i], copy(containers[i], counts[i]), counts[i]);
+		}
+		return b;
+	}
+
+	// chunk index of key, or -(insertion point) - 1
+	private int chunkOf(char key) {
+		return Arrays.binarySearch(keys, 0, size, key);
+	}
+
+	private void insertChunk(int i, char key, Object container, int count) {
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			containers = Arrays.copyOf(containers, size * 2);
+			counts = Arrays.copyOf(counts, size * 2);
+		}
+		System.arraycopy(keys, i, keys, i + 1, size - i);
+		System.arraycopy(containers, i, containers, i + 1, size - i);
+		System.arraycopy(counts, i, counts, i + 1, size - i);
+		keys[i] = key;
+		containers[i] = container;
+		counts[i] = count;
+		size++;
+	}
+
+	// appends a chunk built by an operation (keys come in increasing order), empty chunks are dropped
+	private void appendChunk(char key, Object container, int count) {
+		if (count > 0) {
+			insertChunk(size, key, container, count);
+		}
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof RoaringBitmap && Arrays.equals(toArray(), ((RoaringBitmap)o).toArray());
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(toArray());
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(toArray());
+	}
+
+
+	//%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+	// Set operations
+	//%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+
+	// values in both
+	public RoaringBitmap and(RoaringBitmap other) {
+		RoaringBitmap result = new RoaringBitmap();
+		int i = 0;
+		int j = 0;
+		while (i < size && j < other.size) {
+			if (keys[i] < other.keys[j]) {
+				i++;
+			} else if (keys[i] > other.keys[j]) {
+				j++;
+			} else {
+				and(result, keys[i], containers[i], counts[i], other.containers[j], other.counts[j]);
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	// values in either
+	public RoaringBitmap or(RoaringBitmap other) {
+		RoaringBitmap result = new RoaringBitmap();
+		int i = 0;
+		int j = 0;
+		while (i < size || j < other.size) {
+			if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+				result.appendChunk(keys[i], copy(containers[i], counts[i]), counts[i]);
+				i++;
+			} else if (i == size || keys[i] > other.keys[j]) {
+				result.appendChunk(other.keys[j], copy(other.containers[j], other.counts[j]), other.counts[j]);
+				j++;
+			} else {
+				or(result, keys[i], containers[i], counts[i], other.containers[j], other.counts[j]);
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	// values in this but not in other
+	public RoaringBitmap andNot(RoaringBitmap other) {
+		RoaringBitmap result = new RoaringBitmap();
+		int j = 0;
+		for (int i = 0; i < size; i++) {
+			while (j < other.size && other.keys[j] < keys[i]) {
+				j++;
+			}
+			if (j < other.size && other.keys[j] == keys[i]) {
+				andNot(result, keys[i], containers[i], counts[i], other.containers[j], other.counts[j]);
+			} else {
+				result.appendChunk(keys[i], copy(containers[i], counts[i]), counts[i]);
+			}
+		}
+		return result;
+	}
+
+	private static void and(RoaringBitmap result, char key, Object a, int na, Object b, int nb) {
+		if (a instanceof long[] && b instanceof long[]) {
+			long[] words = new long[WORDS];
+			long[] wa = (long[])a;
+			long[] wb = (long[])b;
+			for (int w = 0; w < WORDS; w++) {
+				words[w] = wa[w] & wb[w];
+			}
+			result.appendWords(key, words);
+		} else if (a instanceof long[] || b instanceof long[]) {
+			// keep the array values whose bit is set
+			char[] array = (char[])(a instanceof long[] ? b : a);
+			int n = a instanceof long[] ? nb : na;
+			long[] words = (long[])(a instanceof long[] ? a : b);
+			char[] out = new char[n];
+			int k = 0;
+			for (int x = 0; x < n; x++) {
+				char v = array[x];
+				if ((words[v >>> 6] & (1L << v)) != 0) {
+					out[k++] = v;
+				}
+			}
+			result.appendChunk(key, out, k);
+		} else {
+			char[] x = (char[])a;
+			char[] y = (char[])b;
+			char[] out = new char[Math.min(na, nb)];
+			int k = 0;
+			int p = 0;
+			int q = 0;
+			while (p < na && q < nb) {
+				if (x[p] < y[q]) {
+					p++;
+				} else if (x[p] > y[q]) {
+					q++;
+				} else {
+					out[k++] = x[p];
+					p++;
+					q++;
+				}
+			}
+			result.appendChunk(key, out, k);
+		}
+	}
+
+	private static void or(RoaringBitmap result, char key, Object a, int na, Object b, int nb) {
+		if (a instanceof long[] || b instanceof long[] || na + nb > ARRAY_MAX) {
+			long[] words = a instanceof long[] ? ((long[])a).clone() : toWords((char[])a, na);
+			if (b instanceof long[]) {
+				long[] wb = (long[])b;
+				for (int w = 0; w < WORDS; w++) {
+					words[w] |= wb[w];
+				}
+			} else {
+				char[] array = (char[])b;
+				for (int x = 0; x < nb; x++) {
+					words[array[x] >>> 6] |= 1L << array[x];
+				}
+			}
+			result.appendWords(key, words);
+		} else {
+			char[] x = (char[])a;
+			char[] y = (char[])b;
+			char[] out = new char[na + nb];
+			int k = 0;
+			int p = 0;
+			int q = 0;
+			while (p < na || q < nb) {
+				if (q == nb || (p < na && x[p] < y[q])) {
+					out[k++] = x[p++];
+				} else if (p == na || x[p] > y[q]) {
+					out[k++] = y[q++];
+				} else {
+					out[k++] = x[p++];
+					q++;
+				}
+			}
+			result.appendChunk(key, out, k);
+		}
+	}
+
+	private static void andNot(RoaringBitmap result, char key, Object a, int na, Object b, int nb) {
+		if (a instanceof long[]) {
+			long[] words = ((long[])a).clone();
+			if (b instanceof long[]) {
+				long[] wb = (long[])b;
+				for (int w = 0; w < WORDS; w++) {
+					words[w] &= ~wb[w];
+				}
+			} else {
+				char[] array = (char[])b;
+				for (int x = 0; x < nb; x++) {
+					words[array[x] >>> 6] &= ~(1L << array[x]);
+				}
+			}
+			result.appendWords(key, words);
+		} else {
+			char[] array = (char[])a;
+			char[] out = new char[na];
+			int k = 0;
+			if (b instanceof long[]) {
+				long[] words = (long[])b;
+				for (int x = 0; x < na; x++) {
+					char v = array[x];
+					if ((words[v >>> 6] & (1L << v)) == 0) {
+						out[k++] = v;
+					}
+				}
+			} else {
+				char[] y = (char[])b;
+				int q = 0;
+				for (int x = 0; x < na; x++) {
+					while (q < nb && y[q] < array[x]) {
+						q++;
+					}
+					if (q == nb || y[q] != array[x]) {
+						out[k++] = array[x];
+					}
+				}
+			}
+			result.appendChunk(key, out, k);
+		}
+	}
+
+	// appends a bitmap container, turned back into an array container if it has few enough values
+	private void appendWords(char key, long[] words) {
+		int count = 0;
+		for (int w = 0; w < WORDS; w++) {
+			count += Long.bitCount(words[w]);
+		}
+		if (count > ARRAY_MAX) {
+			appendChunk(key, words, count);
+			return;
+		}
+		char[] array = new char[count];
+		int k = 0;
+		for (int w = 0; w < WORDS; w++) {
+			long word = words[w];
+			while (word != 0) {
+				array[k++] = (char)((w << 6) + Long.numberOfTrailingZeros(word));
+				word &= word - 1;
+			}
+		}
+		appendChunk(key, array, count);
+	}
+
+	private static long[] toWords(char[] array, int n) {
+		long[] words = new long[WORDS];
+		for (int x = 0; x < n; x++) {
+			words[array[x] >>> 6] |= 1L << array[x];
+		}
+		return words;
+	}
+
+	// results never share containers with their inputs (add() changes containers in place)
+	private static Object copy(Object container, int count) {
+		return container instanceof long[] ? ((long[])container).clone() : Arrays.copyOf((char[])container, Math.max(1, count));
+	}
+}
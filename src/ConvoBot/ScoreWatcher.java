@@ -0,0 +1,343 @@
+package ConvoBot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class ScoreWatcher {
+
+	/**
+	 * Tells subscribers when a solution's score, or the margin between the two highest scores, crosses a threshold
+	 * 	ContextGraph hands over every solution node it re-weights while passing weights down (see ContextGraph.propagateDirty),
+	 * 		and every solution when the masks change, nothing is polled
+	 * 	solutions are kept in an indexed max heap by score, a changed solution moves up/down the heap (O(log solutions)),
+	 * 		the margin is the root minus its larger child, so the ranking is never sorted
+	 * 	events are sent once a batch of changes is done (ie. one incrementCharacteristic), to the thread changing the graph
+	 *
+	 * Crossing up = score was below threshold and is now >= threshold, crossing down = the other way around
+	 * Scores are the ones solutions are ranked by (see ContextGraph.getSolutionScore), disabled nodes/edges count
+	 * 	the graph refuses watches while it ranks by spreading activation, activation is not kept up to date change by change
+	 *
+	 * Created by ContextGraph.watchScore/watchMargin, the graph drops its watcher when the last subscription is cancelled
+	 * 	subscribe on the thread changing the graph, or while nothing is queued on its GraphWriter
+	 */
+
+	/**
+	 * A threshold was crossed
+	 */
+	public static final class Event {
+		private final Solution solution;
+		private final double threshold;
+		private final double value;
+		private final boolean rising;
+		private final boolean margin;
+
+		Event(Solution solution, double threshold, double value, boolean rising, boolean margin) {
+			this.solution = solution;
+			this.threshold = threshold;
+			this.value = value;
+			this.rising = rising;
+			this.margin = margin;
+		}
+
+		// solution that crossed, or the solution in the lead for a margin event
+		public Solution getSolution() {
+			return solution;
+		}
+		public double getThreshold() {
+			return threshold;
+		}
+		// score (or margin) after the change
+		public double getValue() {
+			return value;
+		}
+		// true = crossed up, false = crossed down
+		public boolean isRising() {
+			return rising;
+		}
+		public boolean isMargin() {
+			return margin;
+		}
+
+		@Override
+		public String toString() {
+			return (margin ? "margin" : solution.getName()) + (rising ? " rose to " : " fell to ") + value + " (threshold " + threshold + ")";
+		}
+	}
+
+	public interface Listener {
+		void crossed(Event e);
+	}
+
+	/**
+	 * One registered threshold
+	 */
+	public final class Subscription {
+		private final Solution solution; // null = any solution (or margin)
+		private final double threshold;
+		private final boolean onMargin;
+		private final Listener listener;
+		private volatile boolean above;
+
+		Subscription(Solution solution, double threshold, boolean onMargin, Listener listener) {
+			this.solution = solution;
+			this.threshold = threshold;
+			this.onMargin = onMargin;
+			this.listener = listener;
+		}
+
+		// true if the watched value is at or above the threshold (for any solution, if the highest score is)
+		public boolean isAbove() {
+			return above;
+		}
+
+		public void cancel() {
+			ScoreWatcher.this.cancel(this);
+		}
+	}
+
+	private final ContextGraph graph;
+
+	// guarded by this
+	private final ArrayList<Subscription> subscriptions = new ArrayList<>();
+
+	// solution nodes by slot, slot of each node id (-1 = not a solution)
+	private Node[] nodes;
+	private int[] slotOf;
+	private double[] scores; // by slot, as of the last batch
+	private int[] heap; // slots, highest score first
+	private int[] position; // heap position of each slot
+	private int structureVersion;
+	private double margin;
+
+	// solutions re-weighted in the current batch, and their score before it (filled in by fire)
+	private int[] changed = new int[8];
+	private double[] before = new double[8];
+	private int changes;
+	private boolean rebuild;
+
+	ScoreWatcher(ContextGraph graph) {
+		this.graph = graph;
+		build();
+	}
+
+	// puts every solution in the heap
+	private void build() {
+		ArrayList<Node> solutionNodes = graph.solutionNodes;
+		nodes = solutionNodes.toArray(new Node[solutionNodes.size()]);
+		slotOf = new int[graph.nodes.size()];
+		Arrays.fill(slotOf, -1);
+		scores = new double[nodes.length];
+		heap = new int[nodes.length];
+		position = new int[nodes.length];
+		for (int s = 0; s < nodes.length; s++) {
+			slotOf[nodes[s].getId()] = s;
+			scores[s] = score(nodes[s]);
+			heap[s] = s;
+			position[s] = s;
+		}
+		for (int p = nodes.length / 2 - 1; p >= 0; p--) {
+			down(p);
+		}
+		structureVersion = graph.structureVersion;
+		margin = margin();
+		rebuild = false;
+	}
+
+	synchronized Subscription subscribe(Solution solution, double threshold, boolean onMargin, Listener listener) {
+		if (rebuild || structureVersion != graph.structureVersion) {
+			build();
+		}
+		Subscription sub = new Subscription(solution, threshold, onMargin, listener);
+		sub.above = current(sub) >= threshold;
+		subscriptions.add(sub);
+		return sub;
+	}
+
+	private void cancel(Subscription sub) {
+		boolean empty;
+		synchronized (this) {
+			empty = subscriptions.remove(sub) && subscriptions.isEmpty();
+		}
+		if (empty) {
+			graph.dropWatcher(this); // not holding this, the graph locks itself first and then the watcher
+		}
+	}
+
+	synchronized boolean isEmpty() {
+		return subscriptions.isEmpty();
+	}
+
+	// value sub watches right now
+	private double current(Subscription sub) {
+		if (sub.onMargin) {
+			return margin;
+		}
+		if (sub.solution == null) {
+			return nodes.length == 0 ? Double.NEGATIVE_INFINITY : scores[heap[0]];
+		}
+		Node n = graph.solutionNodesByName.get(sub.solution.getName());
+		return n == null ? Double.NEGATIVE_INFINITY : score(n);
+	}
+
+	// score ranking uses, the weight itself while nothing is disabled
+	private double score(Node n) {
+		return graph.isMasked() ? graph.getScores()[n.getId()] : n.getWeight();
+	}
+
+	/**
+	 * Called by the graph while passing weights down, n was just re-weighted
+	 */
+	synchronized void changed(Node n) {
+		if (changes == changed.length) {
+			changed = Arrays.copyOf(changed, changes * 2);
+			before = Arrays.copyOf(before, changes * 2);
+		}
+		changed[changes] = n.getId();
+		changes++;
+	}
+
+	/**
+	 * Called by the graph after enabling/disabling nodes or edges, any solution's score may have changed
+	 */
+	synchronized void masksChanged() {
+		for (Node n : graph.solutionNodes) {
+			changed(n);
+		}
+	}
+
+	/**
+	 * Called by the graph after a batch of changes, updates the heap and sends events for every crossed threshold
+	 */
+	void fire() {
+		ArrayList<Event> events = new ArrayList<>();
+		ArrayList<Listener> listeners = new ArrayList<>();
+		synchronized (this) {
+			if (changes == 0) {
+				return;
+			}
+			for (int i = 0; i < changes; i++) {
+				int id = changed[i];
+				int s = id < slotOf.length ? slotOf[id] : -1;
+				before[i] = s < 0 ? 0.0 : scores[s]; // a solution added since the heap was built had no score
+			}
+			if (structureVersion != graph.structureVersion || rebuild) {
+				build();
+			} else {
+				for (int i = 0; i < changes; i++) {
+					int id = changed[i];
+					int s = id < slotOf.length ? slotOf[id] : -1;
+					if (s < 0) {
+						rebuild = true; // a solution added since the heap was built
+						continue;
+					}
+					double score = score(nodes[s]);
+					if (score > scores[s]) {
+						scores[s] = score;
+						up(position[s]);
+					} else if (score < scores[s]) {
+						scores[s] = score;
+						down(position[s]);
+					}
+				}
+				if (rebuild) {
+					build();
+				}
+			}
+			double marginBefore = margin;
+			margin = margin();
+
+			for (Subscription sub : subscriptions) {
+				if (sub.onMargin) {
+					check(sub, marginBefore, margin, nodes.length == 0 ? null : (Solution)nodes[heap[0]].getSubject(), events, listeners);
+					continue;
+				}
+				for (int i = 0; i < changes; i++) {
+					Node n = graph.nodes.get(changed[i]);
+					if (n == null || !(n.getSubject() instanceof Solution)) {
+						continue;
+					}
+					Solution s = (Solution)n.getSubject();
+					if (sub.solution == null || sub.solution.getName().equals(s.getName())) {
+						check(sub, before[i], score(n), s, events, listeners);
+					}
+				}
+				if (sub.solution == null) {
+					sub.above = current(sub) >= sub.threshold;
+				}
+			}
+			changes = 0;
+		}
+
+		// outside the lock, a listener may subscribe or cancel
+		for (int i = 0; i < events.size(); i++) {
+			try {
+				listeners.get(i).crossed(events.get(i));
+			} catch (RuntimeException e) {
+				System.out.println("Error in score listener: " + e);
+			}
+		}
+	}
+
+	private static void check(Subscription sub, double from, double to, Solution s, ArrayList<Event> events, ArrayList<Listener> listeners) {
+		boolean wasAbove = from >= sub.threshold;
+		boolean isAbove = to >= sub.threshold;
+		if (wasAbove != isAbove) {
+			events.add(new Event(s, sub.threshold, to, isAbove, sub.onMargin));
+			listeners.add(sub.listener);
+		}
+		sub.above = isAbove;
+	}
+
+	// highest score minus second highest (highest score if there is only one solution)
+	private double margin() {
+		if (nodes.length == 0) {
+			return 0.0;
+		}
+		double top = scores[heap[0]];
+		if (nodes.length == 1) {
+			return top;
+		}
+		double second = scores[heap[1]];
+		if (nodes.length > 2) {
+			second = Math.max(second, scores[heap[2]]);
+		}
+		return top - second;
+	}
+
+	// moves heap[p] up while it outscores its parent
+	private void up(int p) {
+		int s = heap[p];
+		while (p > 0) {
+			int parent = (p - 1) / 2;
+			if (scores[heap[parent]] >= scores[s]) {
+				break;
+			}
+			place(heap[parent], p);
+			p = parent;
+		}
+		place(s, p);
+	}
+
+	// moves heap[p] down while a child outscores it
+	private void down(int p) {
+		int s = heap[p];
+		int n = heap.length;
+		while (2 * p + 1 < n) {
+			int child = 2 * p + 1;
+			if (child + 1 < n && scores[heap[child + 1]] > scores[heap[child]]) {
+				child++;
+			}
+			if (scores[heap[child]] <= scores[s]) {
+				break;
+			}
+			place(heap[child], p);
+			p = child;
+		}
+		place(s, p);
+	}
+
+	private void place(int s, int p) {
+		heap[p] = s;
+		position[s] = p;
+	}
+}
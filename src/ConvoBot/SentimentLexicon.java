@@ -0,0 +1,288 @@
+package ConvoBot;
+
+public class SentimentLexicon {
+
+	/**
+	 * Weighted sentiment words with negators ("not", "don't") and intensifiers ("very", "slightly")
+	 * 	words are kept in an open addressing hash table of parallel arrays (keys, weights, kinds), no boxing and no entry objects
+	 * 	words can be looked up straight out of a longer text (start/end), so scoring a message doesn't create substrings
+	 *
+	 * score() is one pass left to right over the words
+	 * 	a sentiment word adds its weight to the polarity, times any intensifiers just before it
+	 * 	a negator flips (and weakens) the next sentiment word within NEGATION_SCOPE words, "not happy" scores -0.75
+	 * 	"but" ends both scopes
+	 * 	intensity = sum of the size of every sentiment word's score, how strongly something was said regardless of direction
+	 *
+	 * A lexicon is never changed after it's built, so one can be shared by every thread
+	 */
+
+	public static final byte NONE = 0;
+	public static final byte WORD = 1;
+	public static final byte NEGATOR = 2;
+	public static final byte INTENSIFIER = 3;
+	public static final byte BREAK = 4;
+
+	// a negated word scores NEGATION_FACTOR * its weight
+	public static final double NEGATION_FACTOR = -0.75;
+	// words after a negator it can still apply to
+	public static final int NEGATION_SCOPE = 3;
+	// words after an intensifier it can still apply to
+	public static final int INTENSIFIER_SCOPE = 2;
+
+	private static final String[] DEFAULT_WORDS = {
+			// positive
+			"happy", "1", "good", "1", "well", "0.5", "super", "1", "awesome", "1.5", "great", "1.5", "okay", "0.5", "ok", "0.5",
+			"fine", "0.5", "glad", "1", "amazing", "1.5", "content", "1", "jolly", "1", "better", "1", "calm", "1", "relaxed", "1",
+			"excited", "1.5", "love", "1.5", "adore", "1.5", "like", "0.5", "enjoy", "1",
+			// negative
+			"sad", "-1", "unhappy", "-1", "miserable", "-1.5", "upset", "-1", "down", "-0.5", "dissapointed", "-1", "disappointed", "-1",
+			"depressed", "-1.5", "dejected", "-1", "regretful", "-1", "glum", "-1", "blue", "-0.5", "dismal", "-1", "wretched", "-1.5",
+			"downcast", "-1", "bad", "-1", "awful", "-1.5", "terrible", "-1.5", "lonely", "-1", "anxious", "-1", "worried", "-1",
+			"angry", "-1", "overwhelmed", "-1.5", "exhausted", "-1.5", "stressed", "-1", "tired", "-1",
+			"hate", "-1.5", "loath", "-1.5", "loathe", "-1.5", "despise", "-1.5", "dislike", "-1"};
+	// n't words are negators without being listed (see contraction), the same words typed without the apostrophe are listed
+	private static final String[] DEFAULT_NEGATORS = {"not", "no", "never", "nothing", "without", "hardly", "barely", "cannot",
+			"dont", "doesnt", "didnt", "cant", "couldnt", "wont", "wouldnt", "shouldnt", "isnt", "arent", "wasnt", "werent",
+			"havent", "hasnt", "hadnt", "aint"};
+	private static final String[] DEFAULT_INTENSIFIERS = {"very", "1.5", "really", "1.5", "so", "1.3", "too", "1.3", "pretty", "1.3",
+			"extremely", "2", "incredibly", "2", "totally", "1.5", "slightly", "0.5", "somewhat", "0.6", "kinda", "0.7", "bit", "0.6",
+			"little", "0.6"};
+	private static final String[] DEFAULT_BREAKS = {"but", "although", "though", "however"};
+
+	// built once, shared by Topics.Discussion and TurnPipeline.DetectStage
+	public static final SentimentLexicon DEFAULT = new SentimentLexicon(DEFAULT_WORDS, DEFAULT_NEGATORS, DEFAULT_INTENSIFIERS, DEFAULT_BREAKS);
+
+	/**
+	 * Polarity and intensity of a message
+	 */
+	public static final class Score {
+		private final double polarity;
+		private final double intensity;
+		private final int words;
+
+		Score(double polarity, double intensity, int words) {
+			this.polarity = polarity;
+			this.intensity = intensity;
+			this.words = words;
+		}
+
+		// > 0 positive, < 0 negative
+		public double getPolarity() {
+			return polarity;
+		}
+		public double getIntensity() {
+			return intensity;
+		}
+		// sentiment words found
+		public int getWords() {
+			return words;
+		}
+		public boolean isPositive() {
+			return polarity > 0;
+		}
+		public boolean isNegative() {
+			return polarity < 0;
+		}
+
+		@Override
+		public String toString() {
+			return "polarity=" + polarity + ", intensity=" + intensity + ", words=" + words;
+		}
+	}
+
+	private final String[] keys;
+	private final double[] weights;
+	private final byte[] kinds;
+	private final int mask;
+	private int size;
+
+	/**
+	 * @param words = {word, weight, word, weight, ...}
+	 * @param negators = words flipping the next sentiment word
+	 * @param intensifiers = {word, multiplier, ...}
+	 * @param breaks = words ending negation and intensifier scopes
+	 */
+	public SentimentLexicon(String[] words, String[] negators, String[] intensifiers, String[] breaks) {
+		int entries = words.length / 2 + negators.length + intensifiers.length / 2 + breaks.length;
+		int capacity = Integer.highestOneBit(Math.max(4, entries * 2 - 1)) << 1; // at most half full
+		keys = new String[capacity];
+		weights = new double[capacity];
+		kinds = new byte[capacity];
+		mask = capacity - 1;
+
+		for (int i = 0; i + 1 < words.length; i += 2) {
+			put(words[i], Double.parseDouble(words[i + 1]), WORD);
+		}
+		for (String w : negators) {
+			put(w, NEGATION_FACTOR, NEGATOR);
+		}
+		for (int i = 0; i + 1 < intensifiers.length; i += 2) {
+			put(intensifiers[i], Double.parseDouble(intensifiers[i + 1]), INTENSIFIER);
+		}
+		for (String w : breaks) {
+			put(w, 0.0, BREAK);
+		}
+	}
+
+	private void put(String word, double weight, byte kind) {
+		word = word.trim().toLowerCase();
+		int slot = hash(word, 0, word.length()) & mask;
+		while (keys[slot] != null && !keys[slot].equals(word)) {
+			slot = (slot + 1) & mask;
+		}
+		if (keys[slot] == null) {
+			size++;
+		}
+		keys[slot] = word;
+		weights[slot] = weight;
+		kinds[slot] = kind;
+	}
+
+	// slot of text[start, end) or -1, the text must already be lower case
+	private int find(CharSequence text, int start, int end) {
+		int slot = hash(text, start, end) & mask;
+		String key;
+		while ((key = keys[slot]) != null) {
+			if (key.length() == end - start && regionEquals(key, text, start)) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	// same as String.hashCode() for the region, spread so neighbouring slots don't fill up
+	private static int hash(CharSequence text, int start, int end) {
+		int h = 0;
+		for (int i = start; i < end; i++) {
+			h = 31 * h + text.charAt(i);
+		}
+		return h ^ (h >>> 16);
+	}
+
+	private static boolean regionEquals(String key, CharSequence text, int start) {
+		for (int i = 0; i < key.length(); i++) {
+			if (key.charAt(i) != text.charAt(start + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	// kind of a (lower case) word, words ending in n't are negators (and listed ones without the apostrophe, ie. "dont")
+	public byte kindOf(String word) {
+		return kindOf(word, 0, word.length());
+	}
+
+	// weight of a sentiment word or multiplier of an intensifier, 0 if it's neither
+	public double weightOf(String word) {
+		int slot = find(word, 0, word.length());
+		return slot < 0 || kinds[slot] == NEGATOR ? 0.0 : weights[slot];
+	}
+
+	private byte kindOf(CharSequence text, int start, int end) {
+		int slot = find(text, start, end);
+		if (slot >= 0) {
+			return kinds[slot];
+		}
+		return contraction(text, start, end) ? NEGATOR : NONE;
+	}
+
+	// don't, can't, isn't...
+	private static boolean contraction(CharSequence text, int start, int end) {
+		return end - start > 3 && text.charAt(end - 3) == 'n' && text.charAt(end - 2) == '\'' && text.charAt(end - 1) == 't';
+	}
+
+
+	//%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+	// Scoring
+	//%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+
+	/**
+	 * Scores words that are already lower case (ie. TurnContext tokens)
+	 */
+	public Score score(String[] tokens) {
+		Scorer s = new Scorer();
+		for (String token : tokens) {
+			s.next(token, 0, token.length());
+		}
+		return s.result();
+	}
+
+	/**
+	 * Scores any text, words are runs of letters, digits and apostrophes (same as TurnPipeline.TokenizeStage)
+	 */
+	public Score score(String text) {
+		String lower = text.toLowerCase();
+		Scorer s = new Scorer();
+		int start = -1;
+		for (int i = 0; i <= lower.length(); i++) {
+			boolean word = i < lower.length() && (Character.isLetterOrDigit(lower.charAt(i)) || lower.charAt(i) == '\'');
+			if (word && start < 0) {
+				start = i;
+			} else if (!word && start >= 0) {
+				s.next(lower, start, i);
+				start = -1;
+			}
+		}
+		return s.result();
+	}
+
+	// state of one pass over a message
+	private final class Scorer {
+		double polarity;
+		double intensity;
+		int words;
+
+		// words left in the negation/intensifier scopes, 0 = not in one
+		int negated;
+		int intensified;
+		double multiplier = 1.0;
+
+		void next(CharSequence text, int start, int end) {
+			int slot = find(text, start, end);
+			byte kind = slot >= 0 ? kinds[slot] : contraction(text, start, end) ? NEGATOR : NONE;
+
+			if (kind == WORD) {
+				double w = weights[slot];
+				if (intensified > 0) {
+					w *= multiplier;
+				}
+				if (negated > 0) {
+					w *= NEGATION_FACTOR;
+				}
+				polarity += w;
+				intensity += Math.abs(w);
+				words++;
+				negated = 0;
+				intensified = 0;
+				multiplier = 1.0;
+				return;
+			}
+			if (kind == NEGATOR) {
+				negated = NEGATION_SCOPE + 1; // counted down below, this word doesn't count
+			} else if (kind == INTENSIFIER) {
+				// "very very" stacks
+				multiplier = intensified > 0 ? multiplier * weights[slot] : weights[slot];
+				intensified = INTENSIFIER_SCOPE + 1;
+			} else if (kind == BREAK) {
+				negated = 0;
+				intensified = 0;
+			}
+			if (negated > 0) {
+				negated--;
+			}
+			if (intensified > 0 && --intensified == 0) {
+				multiplier = 1.0;
+			}
+		}
+
+		Score result() {
+			return new Score(polarity, intensity, words);
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package ConvoBot;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public class Session {
+
+	/**
+	 * Everything kept for one patient's conversation: the patient's profile, their own ContextGraph and the topic they are on
+	 * 	kept by SessionStore, which writes idle sessions off heap (write/read) and brings them back when they are asked for again
+	 */
+
+	private final String id;
+	private Patient patient;
+	private ContextGraph contextGraph;
+	private int topic;
+
+	// number of SessionStore.checkout() calls not released yet, guarded by the store
+	int checkouts;
+
+	// new session with an empty patient and a new graph built from template
+	public Session(String id, ContextGraph template) {
+		this.id = id;
+		this.patient = new Patient();
+		this.contextGraph = new ContextGraph(template);
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public Patient getPatient() {
+		return patient;
+	}
+
+	public ContextGraph getContextGraph() {
+		return contextGraph;
+	}
+
+	public int getTopic() {
+		return topic;
+	}
+
+	public void setTopic(int topic) {
+		this.topic = topic;
+	}
+
+	/**
+	 * Writes topic, patient and graph state (see ContextGraph.writeState), id is not written
+	 */
+	void write(DataOutput out) throws IOException {
+		out.writeInt(topic);
+		writeString(out, patient.getName());
+		writeString(out, patient.getOccupation());
+		out.writeInt(patient.getAge());
+		writeString(out, patient.getGender());
+		contextGraph.writeState(out);
+	}
+
+	/**
+	 * Reads a session written by write(), graph is built again from template and the saved state is read into it
+	 */
+	static Session read(String id, DataInput in, ContextGraph template) throws IOException {
+		Session s = new Session(id, template);
+		s.topic = in.readInt();
+		s.patient.setName(readString(in));
+		s.patient.setOccupation(readString(in));
+		s.patient.setAge(in.readInt());
+		s.patient.setGender(readString(in));
+		s.contextGraph.readState(in);
+		return s;
+	}
+
+	// null is written as an empty flag
+	private static void writeString(DataOutput out, String s) throws IOException {
+		out.writeBoolean(s != null);
+		if (s != null) {
+			out.writeUTF(s);
+		}
+	}
+
+	private static String readString(DataInput in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+}
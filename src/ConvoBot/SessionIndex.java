@@ -0,0 +1,272 @@
+package ConvoBot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Random;
+
+public class SessionIndex {
+
+	/**
+	 * Finds finished sessions whose characteristic weights look like a patient's, without comparing against every session
+	 * 	a session is a vector of characteristic weights (one per characteristic of the template), normalized to length 1
+	 * 	locality sensitive hashing for cosine similarity: each of TABLES hash tables has BITS random hyperplanes,
+	 * 		a vector's key in a table = which side of each hyperplane it is on, similar vectors usually share a key
+	 * 	query() only compares the sessions sharing a key with the patient in some table (candidates), not every session
+	 * 	recommend() adds up the solutions that ranked highest for the nearest sessions, weighted by similarity
+	 *
+	 * add() puts a session in straight away (a session added again replaces its old entry), all methods are synchronized
+	 * Hyperplanes come from a seeded Random, so the same sessions always give the same neighbours
+	 */
+
+	public static final int TABLES = 8;
+	public static final int BITS = 8;
+	// solutions kept for every session (highest scores first)
+	public static final int SOLUTIONS_KEPT = 3;
+
+	/**
+	 * A finished session found by query()
+	 */
+	public static final class Neighbour {
+		private final Entry entry;
+		private final double similarity;
+
+		Neighbour(Entry entry, double similarity) {
+			this.entry = entry;
+			this.similarity = similarity;
+		}
+
+		public String getId() {
+			return entry.id;
+		}
+		// cosine similarity of the two sessions' characteristic weights (0 - 1)
+		public double getSimilarity() {
+			return similarity;
+		}
+		// solutions that ranked highest for the session, highest first
+		public Solution[] getSolutions() {
+			return entry.solutions.clone();
+		}
+	}
+
+	// one indexed session
+	private static final class Entry {
+		final String id;
+		final double[] vector;
+		final int[] keys; // key in each table
+		final Solution[] solutions;
+		final double[] solutionWeights; // score / top score
+		long seen; // last query that compared this entry
+
+		Entry(String id, double[] vector, int[] keys, Solution[] solutions, double[] solutionWeights) {
+			this.id = id;
+			this.vector = vector;
+			this.keys = keys;
+			this.solutions = solutions;
+			this.solutionWeights = solutionWeights;
+		}
+	}
+
+	private final Characteristic[] characteristics;
+	private final double[][][] hyperplanes; // [table][bit][characteristic]
+
+	private final ArrayList<HashMap<Integer, ArrayList<Entry>>> tables = new ArrayList<>();
+	private final HashMap<String, Entry> entries = new HashMap<>();
+
+	private long queries;
+	private long candidates;
+	private long queryNanos;
+
+	/**
+	 * Index over the characteristics of template (same characteristics as every session graph)
+	 */
+	public SessionIndex(ContextGraph template, long seed) {
+		characteristics = template.getCharacteristicsList().toArray(new Characteristic[0]);
+		Random random = new Random(seed);
+		hyperplanes = new double[TABLES][BITS][characteristics.length];
+		for (int t = 0; t < TABLES; t++) {
+			for (int b = 0; b < BITS; b++) {
+				for (int c = 0; c < characteristics.length; c++) {
+					hyperplanes[t][b][c] = random.nextGaussian();
+				}
+			}
+			tables.add(new HashMap<Integer, ArrayList<Entry>>());
+		}
+	}
+
+	/**
+	 * Adds a finished session (or replaces it if id was added before)
+	 * 	returns false if the patient didn't mention any characteristic (nothing to compare)
+	 */
+	public synchronized boolean add(String id, GraphSnapshot snapshot) {
+		remove(id);
+		double[] vector = vectorOf(snapshot);
+		if (vector == null) {
+			return false;
+		}
+
+		Solution[] top = snapshot.getTopSolutionsArray();
+		int kept = 0;
+		while (kept < SOLUTIONS_KEPT && kept < top.length && snapshot.getSolutionScore(top[kept]) > 0) {
+			kept++;
+		}
+		Solution[] solutions = Arrays.copyOf(top, kept);
+		double[] weights = new double[kept];
+		for (int i = 0; i < kept; i++) {
+			weights[i] = snapshot.getSolutionScore(solutions[i]) / snapshot.getSolutionScore(solutions[0]);
+		}
+
+		Entry e = new Entry(id, vector, keysOf(vector), solutions, weights);
+		for (int t = 0; t < TABLES; t++) {
+			ArrayList<Entry> bucket = tables.get(t).get(e.keys[t]);
+			if (bucket == null) {
+				bucket = new ArrayList<>(2);
+				tables.get(t).put(e.keys[t], bucket);
+			}
+			bucket.add(e);
+		}
+		entries.put(id, e);
+		return true;
+	}
+
+	public synchronized boolean remove(String id) {
+		Entry e = entries.remove(id);
+		if (e == null) {
+			return false;
+		}
+		for (int t = 0; t < TABLES; t++) {
+			ArrayList<Entry> bucket = tables.get(t).get(e.keys[t]);
+			bucket.remove(e);
+			if (bucket.isEmpty()) {
+				tables.get(t).remove(e.keys[t]);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns up to k indexed sessions most like snapshot (most similar first), leaving out excludeId (ie. the patient's own session)
+	 * 	approximate, a similar session sharing no key with snapshot in any table is missed
+	 */
+	public synchronized ArrayList<Neighbour> query(GraphSnapshot snapshot, int k, String excludeId) {
+		long start = System.nanoTime();
+		ArrayList<Neighbour> nearest = new ArrayList<>();
+		double[] vector = vectorOf(snapshot);
+		if (vector == null || k <= 0) {
+			return nearest;
+		}
+		queries++;
+		int[] keys = keysOf(vector);
+
+		for (int t = 0; t < TABLES; t++) {
+			ArrayList<Entry> bucket = tables.get(t).get(keys[t]);
+			if (bucket == null) {
+				continue;
+			}
+			for (Entry e : bucket) {
+				if (e.seen == queries || e.id.equals(excludeId)) {
+					continue; // already compared through another table
+				}
+				e.seen = queries;
+				candidates++;
+				insert(nearest, new Neighbour(e, dot(vector, e.vector)), k);
+			}
+		}
+		queryNanos += System.nanoTime() - start;
+		return nearest;
+	}
+
+	/**
+	 * Returns up to count solutions that ranked highest for the k sessions most like snapshot, best first
+	 * 	each neighbour adds similarity * (solution score / its top score) to a solution
+	 */
+	public synchronized ArrayList<Solution> recommend(GraphSnapshot snapshot, int k, int count, String excludeId) {
+		final HashMap<Solution, Double> totals = new HashMap<>();
+		ArrayList<Solution> order = new ArrayList<>();
+		for (Neighbour n : query(snapshot, k, excludeId)) {
+			for (int i = 0; i < n.entry.solutions.length; i++) {
+				Solution s = n.entry.solutions[i];
+				Double total = totals.get(s);
+				if (total == null) {
+					total = 0.0;
+					order.add(s);
+				}
+				totals.put(s, total + n.similarity * n.entry.solutionWeights[i]);
+			}
+		}
+		Collections.sort(order, new Comparator<Solution>() {
+			@Override
+			public int compare(Solution s1, Solution s2) {
+				return Double.compare(totals.get(s2), totals.get(s1));
+			}
+		});
+		return new ArrayList<>(order.subList(0, Math.min(count, order.size())));
+	}
+
+	// keeps nearest sorted by similarity (highest first) and at most k long
+	private static void insert(ArrayList<Neighbour> nearest, Neighbour n, int k) {
+		int i = nearest.size();
+		while (i > 0 && nearest.get(i - 1).similarity < n.similarity) {
+			i--;
+		}
+		if (i < k) {
+			nearest.add(i, n);
+			if (nearest.size() > k) {
+				nearest.remove(k);
+			}
+		}
+	}
+
+	// characteristic weights of snapshot normalized to length 1, null if they are all 0
+	private double[] vectorOf(GraphSnapshot snapshot) {
+		double[] v = new double[characteristics.length];
+		double length = 0.0;
+		for (int c = 0; c < v.length; c++) {
+			v[c] = Math.max(0.0, snapshot.getCharacteristicWeight(characteristics[c]));
+			length += v[c] * v[c];
+		}
+		if (length == 0.0) {
+			return null;
+		}
+		length = Math.sqrt(length);
+		for (int c = 0; c < v.length; c++) {
+			v[c] /= length;
+		}
+		return v;
+	}
+
+	// key of vector in every table, bit b set = vector is on the positive side of hyperplane b
+	private int[] keysOf(double[] vector) {
+		int[] keys = new int[TABLES];
+		for (int t = 0; t < TABLES; t++) {
+			int key = 0;
+			for (int b = 0; b < BITS; b++) {
+				if (dot(hyperplanes[t][b], vector) >= 0) {
+					key |= 1 << b;
+				}
+			}
+			keys[t] = key;
+		}
+		return keys;
+	}
+
+	private static double dot(double[] a, double[] b) {
+		double d = 0.0;
+		for (int i = 0; i < a.length; i++) {
+			d += a[i] * b[i];
+		}
+		return d;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized String getMetrics() {
+		return "sessions=" + entries.size() + ", queries=" + queries
+				+ String.format(", compared per query=%.1f, microseconds per query=%.1f", queries == 0 ? 0.0 : (double)candidates / queries,
+						queries == 0 ? 0.0 : queryNanos / 1e3 / queries);
+	}
+}
@@ -0,0 +1,366 @@
+package ConvoBot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+public class SessionStore {
+
+	/**
+	 * Keeps every patient's Session, only the most used ones stay on the heap
+	 *
+	 * Hot tier: at most capacity Session objects on the heap, split like W-TinyLFU
+	 * 	window (about 1% of capacity) = LRU of sessions that were just created or brought back
+	 * 	main (the rest) = LRU of sessions that were used more than once
+	 * 	session leaving the window only gets into a full main if it was used more often (frequency sketch) than main's least recently used session
+	 * 		the loser is hibernated, so one-off sessions can't push out patients that keep coming back
+	 * Warm tier: hibernated sessions written with Session.write() into direct ByteBuffers (off heap)
+	 * 	only the id and the buffer stay on the heap, about 200 bytes per session instead of the whole graph
+	 * 	get() reads a hibernated session back (ContextGraph built from template + saved state) and puts it in the window again
+	 * Checked out sessions (checkout() until release()) are pinned: they are never hibernated, so a conversation's changes can't be
+	 * 	left behind in an object the store no longer holds, the hot tier can go over capacity while every candidate is pinned
+	 * 	sessions from get()/getOrCreate() are not pinned, they should only be used until the next call to the store
+ * Sessions whose graph had nodes/edges added or removed stay on the heap too, saved state only holds weights, multipliers and masks
+ * 	so it can only be read back into a graph shaped like template, they move into main like any other session but are never hibernated
+	 *
+	 * All methods are synchronized, sessions returned should only be used by one thread at a time
+	 */
+
+	private final int capacity;
+	private final int windowCapacity;
+	private final ContextGraph template;
+
+	// access ordered, first entry = least recently used
+	private final LinkedHashMap<String, Session> window;
+	private final LinkedHashMap<String, Session> main;
+	private final HashMap<String, ByteBuffer> hibernated;
+	private final FrequencySketch frequency;
+
+	private long hits;
+	private long rehydrations;
+	private long misses;
+	private long admissions;
+	private long rejections;
+	private long hibernations;
+	private long warmBytes;
+
+	/**
+	 * @param capacity = most sessions kept on the heap (at least 2)
+	 * @param template = graph every session's graph is built from
+	 */
+	public SessionStore(int capacity, ContextGraph template) {
+		if (capacity < 2) {
+			throw new IllegalArgumentException("Capacity must be at least 2: " + capacity);
+		}
+		this.capacity = capacity;
+		this.windowCapacity = Math.max(1, capacity / 100);
+		this.template = template;
+
+		window = new LinkedHashMap<>(16, 0.75f, true);
+		main = new LinkedHashMap<>(16, 0.75f, true);
+		hibernated = new HashMap<>();
+		frequency = new FrequencySketch(capacity);
+	}
+
+	/**
+	 * Returns the session with id, read back from the warm tier if it was hibernated, null if there is no session with id
+	 */
+	public synchronized Session get(String id) {
+		return get(id, false, false);
+	}
+
+	/**
+	 * Returns the session with id, creating a new one if there is none
+	 */
+	public synchronized Session getOrCreate(String id) {
+		return get(id, true, false);
+	}
+
+	/**
+	 * Returns the session with id (created if there is none) and pins it on the heap until release(session)
+	 * 	every checkout needs its own release, ie. one per conversation running on the session
+	 */
+	public synchronized Session checkout(String id) {
+		return get(id, true, true);
+	}
+
+	/**
+	 * Unpins a session from checkout(), once nothing has it checked out it can be hibernated again
+	 * 	throws IllegalStateException if the session isn't checked out
+	 */
+	public synchronized void release(Session s) {
+		if (s.checkouts <= 0) {
+			throw new IllegalStateException("Session " + s.getId() + " is not checked out");
+		}
+		if (--s.checkouts == 0) {
+			evict(); // sessions pinned past capacity
+		}
+	}
+
+	// create = make a new session if there is none, pin = count a checkout before the session can be evicted
+	private Session get(String id, boolean create, boolean pin) {
+		frequency.increment(id);
+
+		Session s = main.get(id);
+		if (s == null) {
+			s = window.get(id);
+		}
+		if (s != null) {
+			hits++;
+			if (pin) {
+				s.checkouts++;
+			}
+			return s;
+		}
+
+		ByteBuffer buffer = hibernated.get(id);
+		if (buffer != null) {
+			s = rehydrate(id, buffer); // buffer is kept if it can't be read, the session isn't lost
+			hibernated.remove(id);
+			warmBytes -= buffer.capacity();
+			rehydrations++;
+		} else {
+			misses++;
+			if (!create) {
+				return null;
+			}
+			s = new Session(id, template);
+		}
+		if (pin) {
+			s.checkouts++;
+		}
+		window.put(s.getId(), s);
+		evict();
+		return s;
+	}
+
+	// removes a session from both tiers, returns true if it existed
+	public synchronized boolean remove(String id) {
+		if (window.remove(id) != null || main.remove(id) != null) {
+			return true;
+		}
+		ByteBuffer buffer = hibernated.remove(id);
+		if (buffer != null) {
+			warmBytes -= buffer.capacity();
+			return true;
+		}
+		return false;
+	}
+
+	public synchronized boolean contains(String id) {
+		return window.containsKey(id) || main.containsKey(id) || hibernated.containsKey(id);
+	}
+
+	// true if the session is on the heap right now
+	public synchronized boolean isHot(String id) {
+		return window.containsKey(id) || main.containsKey(id);
+	}
+
+	// moves sessions out of a full window, pinned sessions are skipped and stay where they are until they are released
+	private void evict() {
+		while (window.size() > windowCapacity) {
+			// least recently used unpinned session in the window competes for a place in main
+			Session candidate = leastRecentlyUsed(window, false);
+			if (candidate == null) {
+				return; // everything in the window is checked out
+			}
+			window.remove(candidate.getId());
+
+			if (main.size() < capacity - windowCapacity) {
+				main.put(candidate.getId(), candidate);
+				admissions++;
+				continue;
+			}
+
+			Session victim = leastRecentlyUsed(main, true);
+			if (victim != null && (!canHibernate(candidate) || frequency.estimate(candidate.getId()) > frequency.estimate(victim.getId()))) {
+				main.remove(victim.getId());
+				main.put(candidate.getId(), candidate);
+				admissions++;
+				hibernate(victim);
+			} else if (canHibernate(candidate)) {
+				rejections++;
+				hibernate(candidate);
+			} else {
+				// edited session and nothing in main can be hibernated, main goes over capacity like with pinned sessions
+				main.put(candidate.getId(), candidate);
+				admissions++;
+			}
+		}
+	}
+
+	// first session in access order that isn't checked out (and can be hibernated if hibernatable), null if there is none in tier
+	private Session leastRecentlyUsed(LinkedHashMap<String, Session> tier, boolean hibernatable) {
+		for (Session s : tier.values()) {
+			if (s.checkouts == 0 && (!hibernatable || canHibernate(s))) {
+				return s;
+			}
+		}
+		return null;
+	}
+
+	// false if nodes/edges were added to or removed from the session's graph (or template), its saved state couldn't be read back
+	private boolean canHibernate(Session s) {
+		return s.checkouts == 0 && s.getContextGraph().structureVersion == template.structureVersion;
+	}
+
+	private void hibernate(Session s) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			s.write(out);
+		} catch (IOException e) {
+			// only thrown by the stream, can't happen writing to memory
+			throw new IllegalStateException("Could not write session " + s.getId(), e);
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.size());
+		buffer.put(bytes.toByteArray());
+		buffer.flip();
+		hibernated.put(s.getId(), buffer);
+		warmBytes += buffer.capacity();
+		hibernations++;
+	}
+
+	private Session rehydrate(String id, ByteBuffer buffer) {
+		try (DataInputStream in = new DataInputStream(new ByteBufferInputStream(buffer.duplicate()))) {
+			return Session.read(id, in, template);
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not read session " + id, e);
+		}
+	}
+
+	// sessions on the heap, more than capacity while pinned sessions keep others from being hibernated
+	public synchronized int getHotCount() {
+		return window.size() + main.size();
+	}
+	public synchronized int getWarmCount() {
+		return hibernated.size();
+	}
+	public synchronized long getWarmBytes() {
+		return warmBytes;
+	}
+	public synchronized long getHits() {
+		return hits;
+	}
+	public synchronized long getRehydrations() {
+		return rehydrations;
+	}
+	public synchronized long getMisses() {
+		return misses;
+	}
+	public synchronized long getAdmissions() {
+		return admissions;
+	}
+	public synchronized long getRejections() {
+		return rejections;
+	}
+	public synchronized long getHibernations() {
+		return hibernations;
+	}
+
+	public synchronized String getMetrics() {
+		return "hot=" + getHotCount() + "/" + capacity + ", warm=" + hibernated.size() + " (" + warmBytes + " bytes off heap)"
+				+ ", hits=" + hits + ", rehydrations=" + rehydrations + ", misses=" + misses
+				+ ", admissions=" + admissions + ", rejections=" + rejections + ", hibernations=" + hibernations;
+	}
+
+
+	//%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+	// Helper classes
+	//%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+
+	/**
+	 * Count-min sketch of how often each session id was asked for, 4 rows of 4 bit counters packed 16 to a long
+	 * 	every counter is halved after 10 * capacity increments, so old popularity fades
+	 */
+	static class FrequencySketch {
+
+		private static final int ROWS = 4;
+		private static final long[] SEEDS = {0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0x27D4EB2F165667C5L};
+
+		private final long[] table;
+		private final int mask;
+		private final int sampleSize;
+		private int increments;
+
+		FrequencySketch(int capacity) {
+			int size = Integer.highestOneBit(Math.max(capacity, 16) - 1) << 1; // longs per row, power of 2
+			table = new long[size * ROWS];
+			mask = size - 1;
+			sampleSize = 10 * capacity;
+		}
+
+		void increment(String key) {
+			int h = key.hashCode();
+			for (int row = 0; row < ROWS; row++) {
+				int slot = slot(h, row);
+				int shift = shift(h, row);
+				if (((table[slot] >>> shift) & 0xF) < 15) {
+					table[slot] += 1L << shift;
+				}
+			}
+			if (++increments >= sampleSize) {
+				reset();
+			}
+		}
+
+		int estimate(String key) {
+			int h = key.hashCode();
+			int min = 15;
+			for (int row = 0; row < ROWS; row++) {
+				min = Math.min(min, (int)((table[slot(h, row)] >>> shift(h, row)) & 0xF));
+			}
+			return min;
+		}
+
+		// halves every counter
+		private void reset() {
+			for (int i = 0; i < table.length; i++) {
+				table[i] = (table[i] >>> 1) & 0x7777777777777777L;
+			}
+			increments /= 2;
+		}
+
+		private long hash(int h, int row) {
+			long x = (h + SEEDS[row]) * SEEDS[row];
+			return x ^ (x >>> 32);
+		}
+
+		private int slot(int h, int row) {
+			return row * (mask + 1) + (int)(hash(h, row) & mask);
+		}
+
+		private int shift(int h, int row) {
+			return (int)((hash(h, row) >>> 40) & 0xF) << 2;
+		}
+	}
+
+	// reads a ByteBuffer without copying it to the heap first
+	private static class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			len = Math.min(len, buffer.remaining());
+			buffer.get(b, off, len);
+			return len;
+		}
+	}
+}
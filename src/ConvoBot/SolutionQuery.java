@@ -0,0 +1,140 @@
+package ConvoBot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+public class SolutionQuery {
+
+	/**
+	 * Which solutions address some characteristics and not others, ie. "solutions for both anxiety and insomnia but not anger"
+	 * 	all(...) = solutions of every one of the characteristics, any(...) = of at least one, none(...) = of none of them
+	 * 	with neither all() nor any(), every solution of the graph is a candidate
+	 * 	ranked() orders the result by the summed multipliers of its edges from the all()/any() characteristics
+	 *
+	 * Each characteristic's solutions are a RoaringBitmap of solution indexes, built the first time a snapshot's shape is queried
+	 * 	and shared by every snapshot until nodes/edges are added or removed, so a query is a few bitmap operations
+	 * Edges count whether or not they're disabled (the graph's structure, not a patient's masks), multipliers are the snapshot's
+	 * 	ie. graph.getSnapshot().query().all(anxiety, insomnia).none(anger).ranked()
+	 *
+	 * A query only reads its snapshot, so it can run on any thread
+	 */
+
+	private final GraphSnapshot snapshot;
+	private final GraphSnapshot.Shape shape;
+
+	private final ArrayList<Characteristic> all = new ArrayList<>();
+	private final ArrayList<Characteristic> any = new ArrayList<>();
+	private final ArrayList<Characteristic> none = new ArrayList<>();
+
+	SolutionQuery(GraphSnapshot snapshot) {
+		this.snapshot = snapshot;
+		this.shape = snapshot.shape();
+	}
+
+	public SolutionQuery all(Characteristic... characteristics) {
+		all.addAll(Arrays.asList(characteristics));
+		return this;
+	}
+
+	public SolutionQuery any(Characteristic... characteristics) {
+		any.addAll(Arrays.asList(characteristics));
+		return this;
+	}
+
+	public SolutionQuery none(Characteristic... characteristics) {
+		none.addAll(Arrays.asList(characteristics));
+		return this;
+	}
+
+	/**
+	 * Solution indexes (positions in the snapshot's getSolutions()) matching the query
+	 */
+	public RoaringBitmap bitmap() {
+		RoaringBitmap[] bitmaps = shape.solutionBitmaps();
+		RoaringBitmap result = null;
+		for (Characteristic ch : all) {
+			RoaringBitmap b = bitmapOf(bitmaps, ch);
+			result = result == null ? b : result.and(b);
+		}
+		if (!any.isEmpty()) {
+			RoaringBitmap union = null;
+			for (Characteristic ch : any) {
+				RoaringBitmap b = bitmapOf(bitmaps, ch);
+				union = union == null ? b : union.or(b);
+			}
+			result = result == null ? union : result.and(union);
+		}
+		if (result == null) {
+			result = bitmaps[shape.characteristics.length];
+		}
+		for (Characteristic ch : none) {
+			result = result.andNot(bitmapOf(bitmaps, ch));
+		}
+		// a single bitmap may still be the shape's own, callers get one they can change
+		return all.size() + any.size() + none.size() > 1 ? result : result.copy();
+	}
+
+	// solutions of ch, empty if ch isn't in the graph
+	private RoaringBitmap bitmapOf(RoaringBitmap[] bitmaps, Characteristic ch) {
+		Integer c = shape.characteristicIndex.get(ch.getName());
+		return c == null ? new RoaringBitmap() : bitmaps[c];
+	}
+
+	public int count() {
+		return bitmap().cardinality();
+	}
+
+	/**
+	 * Matching solutions in graph order
+	 */
+	public ArrayList<Solution> solutions() {
+		int[] indexes = bitmap().toArray();
+		ArrayList<Solution> result = new ArrayList<>(indexes.length);
+		for (int i : indexes) {
+			result.add(shape.solutions[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Matching solutions, highest summed multiplier (edges from the all()/any() characteristics) first, ties in graph order
+	 */
+	public ArrayList<Solution> ranked() {
+		int[] indexes = bitmap().toArray();
+		boolean[] from = new boolean[shape.characteristics.length];
+		for (Characteristic ch : all) {
+			mark(from, ch);
+		}
+		for (Characteristic ch : any) {
+			mark(from, ch);
+		}
+
+		// sorts positions in indexes, stable so ties keep graph order
+		final double[] sums = new double[indexes.length];
+		Integer[] order = new Integer[indexes.length];
+		for (int k = 0; k < indexes.length; k++) {
+			order[k] = k;
+			sums[k] = snapshot.multiplierSum(indexes[k], from);
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer i1, Integer i2) {
+				return Double.compare(sums[i2], sums[i1]);
+			}
+		});
+
+		ArrayList<Solution> result = new ArrayList<>(order.length);
+		for (int k : order) {
+			result.add(shape.solutions[indexes[k]]);
+		}
+		return result;
+	}
+
+	private void mark(boolean[] from, Characteristic ch) {
+		Integer c = shape.characteristicIndex.get(ch.getName());
+		if (c != null) {
+			from[c] = true;
+		}
+	}
+}
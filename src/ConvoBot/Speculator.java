@@ -0,0 +1,180 @@
+package ConvoBot;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Speculator {
+
+	/**
+	 * Works out the bot's reply to the most likely answers (yes/no/maybe) while the patient is still typing
+	 * 	after the bot asks a question, speculate() runs each likely answer through normalize -> tokenize -> detect -> respond
+	 * 		on one low priority thread shared by every conversation, the graph is not changed
+	 * 	take() is called with the real answer, if it is one that was worked out the reply is served straight away
+	 * 		and the characteristics found are applied to the graph then (graph update stage), otherwise nothing is used
+	 * 	anything still being worked out when the answer comes in is thrown away
+	 *
+	 * Only replies that don't depend on anything but the answer (and the responder passed in) can be worked out ahead
+	 * 	while speculating, PrintMessage and Topic's random replies throw Abort (speculation for that answer is dropped)
+	 * 	so replies that pick a random reply are always made on the normal path
+	 * 	a follow up question the reply asks is kept on the turn (TurnContext.getFollowUp), it counts once the result is taken
+	 */
+
+	public static final String[] LIKELY_ANSWERS = {"yes", "no", "maybe"};
+
+	// turns speculation off for every conversation
+	public static volatile boolean enabled = true;
+
+	// thrown from code that can't run ahead of the real answer
+	public static class Abort extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		Abort() {
+			super("Can't speculate", null, false, false);
+		}
+	}
+
+	private static final ThreadLocal<Boolean> speculating = new ThreadLocal<Boolean>() {
+		@Override
+		protected Boolean initialValue() {
+			return Boolean.FALSE;
+		}
+	};
+
+	private static final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "speculator");
+			t.setDaemon(true);
+			t.setPriority(Thread.MIN_PRIORITY);
+			return t;
+		}
+	});
+
+	private static final AtomicLong hits = new AtomicLong();
+	private static final AtomicLong misses = new AtomicLong();
+	private static final AtomicLong computed = new AtomicLong();
+	private static final AtomicLong aborted = new AtomicLong();
+
+	// every stage except graph update, the graph is only changed when a result is used
+	private final TurnPipeline pipeline = new TurnPipeline().addStage(new TurnPipeline.NormalizeStage())
+			.addStage(new TurnPipeline.TokenizeStage()).addStage(new TurnPipeline.DetectStage()).addStage(new TurnPipeline.RespondStage());
+	private final TurnPipeline.GraphUpdateStage graphUpdate = new TurnPipeline.GraphUpdateStage();
+	private final TurnPipeline.NormalizeStage normalize = new TurnPipeline.NormalizeStage();
+
+	// results for the current question by normalized answer, results from older questions are dropped by generation
+	// 	a worker can put a result just after take() clears the map, so each result keeps the generation it was worked out for
+	private final ConcurrentHashMap<String, Result> results = new ConcurrentHashMap<>();
+	private final AtomicInteger generation = new AtomicInteger();
+
+	private static final class Result {
+		final int generation;
+		final TurnContext turn;
+
+		Result(int generation, TurnContext turn) {
+			this.generation = generation;
+			this.turn = turn;
+		}
+	}
+
+	/**
+	 * Starts working out the replies to LIKELY_ANSWERS in the background
+	 * 	graph, writer and responder are the ones the real turn would use
+	 */
+	public void speculate(final ContextGraph graph, final GraphWriter writer, final TurnPipeline.Responder responder) {
+		final int current = generation.incrementAndGet();
+		results.clear();
+		if (!enabled) {
+			return;
+		}
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				for (String answer : LIKELY_ANSWERS) {
+					if (generation.get() != current) {
+						return; // real answer already came in
+					}
+					TurnContext turn = new TurnContext(answer, graph, responder).setGraphWriter(writer);
+					speculating.set(Boolean.TRUE);
+					try {
+						pipeline.process(turn);
+					} catch (RuntimeException e) {
+						aborted.incrementAndGet();
+						continue;
+					} finally {
+						speculating.set(Boolean.FALSE);
+					}
+					computed.incrementAndGet();
+					if (generation.get() == current) {
+						results.put(turn.normalized, new Result(current, turn));
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Returns the worked out turn for input (graph already updated), or null if input wasn't worked out ahead
+	 * 	stops any speculation still running for the last question
+	 */
+	public TurnContext take(String input) {
+		int current = generation.incrementAndGet();
+		if (results.isEmpty()) {
+			misses.incrementAndGet();
+			return null;
+		}
+		TurnContext real = new TurnContext(input, null, null);
+		normalize.process(real);
+		Result r = results.get(real.normalized);
+		results.clear();
+
+		// only the question asked right before this answer (speculate() then take()) counts
+		if (r == null || r.generation != current - 1) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		graphUpdate.process(r.turn);
+		return r.turn;
+	}
+
+	// blocks until everything speculate() has started so far is done (ie. for tests)
+	public static void awaitSpeculation() throws InterruptedException {
+		try {
+			executor.submit(new Runnable() {
+				@Override
+				public void run() {
+				}
+			}).get();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// true on a thread working out a reply ahead of time
+	public static boolean isSpeculating() {
+		return speculating.get();
+	}
+
+	// throws Abort if this thread is speculating, call before anything that can't be done ahead of the real answer
+	public static void checkNotSpeculating() {
+		if (speculating.get()) {
+			throw new Abort();
+		}
+	}
+
+	public static long getHits() {
+		return hits.get();
+	}
+	public static long getMisses() {
+		return misses.get();
+	}
+
+	public static String getMetrics() {
+		return "hits=" + hits.get() + ", misses=" + misses.get() + ", replies worked out=" + computed.get() + ", dropped=" + aborted.get();
+	}
+}
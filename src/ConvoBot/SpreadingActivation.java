@@ -0,0 +1,274 @@
+package ConvoBot;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class SpreadingActivation {
+
+	/**
+	 * Optional way of ranking solutions that works on graphs with cycles (ie. insomnia -> stress -> insomnia)
+	 * 	turned on with ContextGraph.useSpreadingActivation(relationsFilename)
+	 *
+	 * Activation is spread like personalized PageRank
+	 * 	start vector p = weight added to each characteristic (incrementCharacteristic), scaled to sum to 1
+	 * 	each iteration every node passes damping * its activation to the nodes it points to, split by edge multiplier
+	 * 	activation that goes nowhere (solutions, disabled nodes/edges) and the remaining (1 - damping) go back to p
+	 * 	stops when total change is below tolerance or after maxIterations
+	 * 	result of the last turn is the starting point for the next turn, so only a few iterations are needed per turn
+	 *
+	 * Edges are the graph edges (except edges from centerNode) plus relations between characteristics read from file
+	 * 	relations file lines are stored as "characteristic1;characteristic2-m1,characteristic3-m2;"
+	 * 	relations can form cycles, graph edges can't
+	 *
+	 * Graph is stored as primitive arrays (compressed rows), rebuilt only when nodes/edges are added or removed or multipliers change
+	 * ContextGraph keeps the result of rank() until weights, masks or structure change
+	 */
+
+	private ContextGraph graph;
+
+	// relations between characteristics read from file, stored by name until arrays are built
+	private ArrayList<String[]> relations; // [from, to, multiplier]
+
+	private double damping = 0.85;
+	private double tolerance = 1e-6;
+	private int maxIterations = 100;
+
+	// edges out of node id are edgeTarget/edgeShare/edgeId[edgeStart[id] ... edgeStart[id + 1] - 1]
+	// 	edgeShare = multiplier / sum of multipliers out of node, edgeId = graph edge id (-1 for relations)
+	private int[] edgeStart;
+	private int[] edgeTarget;
+	private double[] edgeShare;
+	private int[] edgeId;
+	private int structureVersion = -1;
+	private int multiplierVersion = -1;
+
+	private double[] personalization;
+	private double[] activation;
+	private double[] next;
+	private int lastIterations;
+
+	public SpreadingActivation(ContextGraph graph, String relationsFilename) {
+		this.graph = graph;
+		this.relations = new ArrayList<>();
+
+		if (relationsFilename != null) {
+			readRelations(relationsFilename);
+		}
+	}
+
+	/**
+	 * Reads relations between characteristics from file, relations with unknown characteristics are skipped when arrays are built
+	 * @return true if no errors encountered
+	 */
+	private boolean readRelations(String relationsFilename) {
+		try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(relationsFilename)))) {
+			String line;
+
+			while ((line = br.readLine()) != null) {
+				String[] sections = line.split(";");
+				if (sections.length < 2) {
+					continue;
+				}
+
+				for (String cm : sections[1].split(",")) {
+					int separaterIndex = cm.lastIndexOf('-');
+					if (separaterIndex > 0) {
+						relations.add(new String[] {sections[0], cm.substring(0, separaterIndex), cm.substring(separaterIndex + 1)});
+					}
+				}
+			}
+			return true;
+		} catch (FileNotFoundException e) {
+			e.printStackTrace();
+			return false;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	// getters/setters for damping (0 - 1), tolerance and maxIterations
+	public double getDamping() {
+		return damping;
+	}
+	public void setDamping(double damping) {
+		this.damping = damping;
+		graph.rankingValid = false;
+	}
+	public double getTolerance() {
+		return tolerance;
+	}
+	public void setTolerance(double tolerance) {
+		this.tolerance = tolerance;
+		graph.rankingValid = false;
+	}
+	public int getMaxIterations() {
+		return maxIterations;
+	}
+	public void setMaxIterations(int maxIterations) {
+		this.maxIterations = maxIterations;
+		graph.rankingValid = false;
+	}
+
+	// number of iterations used by the last call to rank()
+	public int getLastIterations() {
+		return lastIterations;
+	}
+
+	/**
+	 * Returns a copy of the activation of every node indexed by node id (solutions are ranked by this)
+	 * 	all 0 if no characteristic has been incremented
+	 * 	runs every iteration again, use ContextGraph.getSolutionScore() etc. to read the cached result
+	 */
+	public double[] rank() {
+		if (structureVersion != graph.structureVersion || multiplierVersion != graph.multiplierVersion) {
+			buildArrays();
+		}
+		int n = edgeStart.length - 1;
+
+		// start vector from weight added to characteristics, disabled characteristics are left out
+		double total = 0.0;
+		for (int i = 0; i < n; i++) {
+			Node node = graph.nodes.get(i);
+			double weight = 0.0;
+			if (node != null && node != graph.centerNode && node.isEnabled() && node.getBaseWeight() > 0) {
+				weight = node.getBaseWeight();
+			}
+			personalization[i] = weight;
+			total += weight;
+		}
+		if (total == 0.0) {
+			Arrays.fill(activation, 0.0);
+			lastIterations = 0;
+			return activation.clone();
+		}
+		for (int i = 0; i < n; i++) {
+			personalization[i] /= total;
+		}
+
+		// warm start from last turn, unless nothing was spread yet
+		double sum = 0.0;
+		for (int i = 0; i < n; i++) {
+			sum += activation[i];
+		}
+		if (sum == 0.0) {
+			System.arraycopy(personalization, 0, activation, 0, n);
+		}
+
+		lastIterations = 0;
+		double change = Double.MAX_VALUE;
+
+		while (change > tolerance && lastIterations < maxIterations) {
+			Arrays.fill(next, 0.0);
+			double spread = 0.0;
+
+			for (int i = 0; i < n; i++) {
+				double a = activation[i];
+				if (a == 0.0 || graph.disabledNodes.get(i)) {
+					continue;
+				}
+				for (int j = edgeStart[i]; j < edgeStart[i + 1]; j++) {
+					int target = edgeTarget[j];
+					if ((edgeId[j] >= 0 && graph.disabledEdges.get(edgeId[j])) || graph.disabledNodes.get(target)) {
+						continue;
+					}
+					double amount = damping * a * edgeShare[j];
+					next[target] += amount;
+					spread += amount;
+				}
+			}
+
+			// everything not spread along an edge goes back to the start vector
+			double leftover = 1.0 - spread;
+			change = 0.0;
+			for (int i = 0; i < n; i++) {
+				next[i] += leftover * personalization[i];
+				change += Math.abs(next[i] - activation[i]);
+			}
+
+			double[] swap = activation;
+			activation = next;
+			next = swap;
+			lastIterations++;
+		}
+
+		return activation.clone(); // activation buffer is swapped on the next call
+	}
+
+	/**
+	 * Builds compressed rows of out edges from the graph and relations (O(nodes + edges))
+	 * 	called when graph nodes/edges have changed, keeps last activation for nodes that still exist
+	 */
+	private void buildArrays() {
+		int n = graph.nodes.size();
+		int[] outCount = new int[n + 1];
+		double[] outTotal = new double[n];
+
+		ArrayList<int[]> relationEdges = new ArrayList<>();
+		ArrayList<Double> relationMultipliers = new ArrayList<>();
+		for (String[] relation : relations) {
+			Node from = graph.characteristicNodesByName.get(relation[0]);
+			Node to = graph.characteristicNodesByName.get(relation[1]);
+			double multiplier = Double.parseDouble(relation[2]);
+			if (from != null && to != null && multiplier > 0) {
+				relationEdges.add(new int[] {from.getId(), to.getId()});
+				relationMultipliers.add(multiplier);
+			}
+		}
+
+		for (Edge e : graph.edges) {
+			if (e != null && e.getStartNode() != graph.centerNode && e.getMultiplier() > 0) {
+				outCount[e.getStartNode().getId()]++;
+				outTotal[e.getStartNode().getId()] += e.getMultiplier();
+			}
+		}
+		for (int r = 0; r < relationEdges.size(); r++) {
+			outCount[relationEdges.get(r)[0]]++;
+			outTotal[relationEdges.get(r)[0]] += relationMultipliers.get(r);
+		}
+
+		// prefix sums give start of each node's row
+		edgeStart = new int[n + 1];
+		for (int i = 0; i < n; i++) {
+			edgeStart[i + 1] = edgeStart[i] + outCount[i];
+		}
+		int edgeCount = edgeStart[n];
+		edgeTarget = new int[edgeCount];
+		edgeShare = new double[edgeCount];
+		edgeId = new int[edgeCount];
+
+		int[] fill = Arrays.copyOf(edgeStart, n);
+		for (Edge e : graph.edges) {
+			if (e != null && e.getStartNode() != graph.centerNode && e.getMultiplier() > 0) {
+				int from = e.getStartNode().getId();
+				int j = fill[from]++;
+				edgeTarget[j] = e.getEndNode().getId();
+				edgeShare[j] = e.getMultiplier() / outTotal[from];
+				edgeId[j] = e.getId();
+			}
+		}
+		for (int r = 0; r < relationEdges.size(); r++) {
+			int from = relationEdges.get(r)[0];
+			int j = fill[from]++;
+			edgeTarget[j] = relationEdges.get(r)[1];
+			edgeShare[j] = relationMultipliers.get(r) / outTotal[from];
+			edgeId[j] = -1;
+		}
+
+		personalization = new double[n];
+		activation = activation == null ? new double[n] : Arrays.copyOf(activation, n);
+		next = new double[n];
+		for (int i = 0; i < n; i++) {
+			if (graph.nodes.get(i) == null) {
+				activation[i] = 0.0;
+			}
+		}
+		structureVersion = graph.structureVersion;
+		multiplierVersion = graph.multiplierVersion;
+	}
+}
@@ -0,0 +1,343 @@
+package ConvoBot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class TrendSketch {
+
+	/**
+	 * Counts how often names (characteristics, solutions) are seen across every conversation, in fixed memory
+	 * 	used by Trending, ie. "top 10 characteristics in the last hour"
+	 *
+	 * Time is split into buckets (ie. 12 buckets of 5 minutes = last hour), each bucket has
+	 * 	a count-min sketch: depth rows of width counters, a name adds to one counter per row, count = smallest of its counters
+	 * 		count is never lower than the real count, only higher if other names share all its counters (rare with enough width)
+	 * 	a table of candidate names (heavy hitters), a name replaces the candidate with the lowest count if its count is higher
+	 * 	when time moves on to a bucket that was used before, the old counts in it are cleared
+	 *
+	 * No locks, counters are atomic and split into stripes (threads add to different stripes, count = sum of stripes)
+	 * 	memory = buckets * (stripes * depth * width counters + candidates names), does not grow with number of conversations
+	 * 	counts are approximate, a few adds may be lost while a bucket is being cleared
+	 */
+
+	private final int bucketCount;
+	private final long bucketMillis;
+	private final int depth;
+	private final int width;
+	private final int stripes;
+	private final int candidates;
+
+	private final Bucket[] buckets;
+
+	// one time bucket, counters[(stripe * depth + row) * width + column]
+	private static final class Bucket {
+		final AtomicLong epoch = new AtomicLong(-1); // time / bucketMillis of the counts in this bucket, -1 = never used
+		final AtomicLongArray counters;
+		final AtomicReferenceArray<String> names;
+
+		Bucket(int counterCount, int candidates) {
+			counters = new AtomicLongArray(counterCount);
+			names = new AtomicReferenceArray<>(candidates);
+		}
+	}
+
+	// name and count returned by top()/rising()
+	public static class Count implements Comparable<Count> {
+		private final String name;
+		private final long count;
+
+		Count(String name, long count) {
+			this.name = name;
+			this.count = count;
+		}
+
+		public String getName() {
+			return name;
+		}
+		public long getCount() {
+			return count;
+		}
+
+		@Override
+		public String toString() {
+			return "[" + name + ": " + count + "]";
+		}
+
+		// compares by count, smallest first
+		@Override
+		public int compareTo(Count c) {
+			return Long.compare(this.count, c.count);
+		}
+	}
+
+	// last hour in 12 buckets of 5 minutes
+	public TrendSketch() {
+		this(12, 5 * 60 * 1000L, 4, 1024, 4, 64);
+	}
+
+	/**
+	 * @param bucketCount = number of time buckets kept, longest window = (bucketCount - 1) * bucketMillis
+	 * @param width, stripes, candidates = rounded up to powers of 2
+	 */
+	public TrendSketch(int bucketCount, long bucketMillis, int depth, int width, int stripes, int candidates) {
+		this.bucketCount = bucketCount;
+		this.bucketMillis = bucketMillis;
+		this.depth = depth;
+		this.width = powerOfTwo(width);
+		this.stripes = powerOfTwo(stripes);
+		this.candidates = powerOfTwo(candidates);
+
+		buckets = new Bucket[bucketCount];
+		for (int i = 0; i < bucketCount; i++) {
+			buckets[i] = new Bucket(this.stripes * depth * this.width, this.candidates);
+		}
+	}
+
+	private static int powerOfTwo(int n) {
+		int p = 1;
+		while (p < n) {
+			p <<= 1;
+		}
+		return p;
+	}
+
+	// longest window that can be asked for (older buckets may already be cleared)
+	public long getMaxWindowMillis() {
+		return (bucketCount - 1) * bucketMillis;
+	}
+
+	public void add(String name) {
+		add(name, 1, System.currentTimeMillis());
+	}
+
+	/**
+	 * Adds count to name at time (milliseconds), safe to call from any thread
+	 * 	times older than the buckets kept are ignored
+	 */
+	public void add(String name, long count, long timeMillis) {
+		Bucket bucket = bucket(timeMillis / bucketMillis);
+		if (bucket == null) {
+			return;
+		}
+
+		int hash = hash(name);
+		int step = hash2(name);
+		int stripe = (int)Thread.currentThread().getId() & (stripes - 1);
+
+		for (int row = 0; row < depth; row++) {
+			bucket.counters.addAndGet((stripe * depth + row) * width + column(hash, step, row), count);
+		}
+
+		offerCandidate(bucket, name, hash);
+	}
+
+	// returns bucket for epoch, clearing it first if it still holds an older epoch (null if epoch is too old to keep)
+	private Bucket bucket(long epoch) {
+		Bucket bucket = buckets[(int)(epoch % bucketCount)];
+
+		long current = bucket.epoch.get();
+		while (current != epoch) {
+			if (current > epoch) {
+				return null;
+			}
+			if (bucket.epoch.compareAndSet(current, epoch)) {
+				for (int i = 0; i < bucket.counters.length(); i++) {
+					bucket.counters.set(i, 0);
+				}
+				for (int i = 0; i < candidates; i++) {
+					bucket.names.set(i, null);
+				}
+				break;
+			}
+			current = bucket.epoch.get();
+		}
+		return bucket;
+	}
+
+	// puts name in the bucket's candidate table if it is not there and counts more than a candidate next to its slot
+	private void offerCandidate(Bucket bucket, String name, int hash) {
+		int lowestSlot = -1;
+		long lowestCount = Long.MAX_VALUE;
+		String lowestName = null;
+
+		// looks at 4 slots starting at the name's own slot
+		for (int probe = 0; probe < 4; probe++) {
+			int slot = (hash + probe) & (candidates - 1);
+			String candidate = bucket.names.get(slot);
+
+			if (candidate == null) {
+				if (bucket.names.compareAndSet(slot, null, name)) {
+					return;
+				}
+				candidate = bucket.names.get(slot);
+			}
+			if (candidate == null || candidate.equals(name)) {
+				return;
+			}
+
+			long count = estimate(bucket, candidate);
+			if (count < lowestCount) {
+				lowestCount = count;
+				lowestSlot = slot;
+				lowestName = candidate;
+			}
+		}
+
+		if (estimate(bucket, name) > lowestCount) {
+			bucket.names.compareAndSet(lowestSlot, lowestName, name);
+		}
+	}
+
+	// count-min estimate of name in one bucket (smallest row, each row summed over stripes)
+	private long estimate(Bucket bucket, String name) {
+		int hash = hash(name);
+		int step = hash2(name);
+		long min = Long.MAX_VALUE;
+
+		for (int row = 0; row < depth; row++) {
+			int column = column(hash, step, row);
+			long sum = 0;
+			for (int stripe = 0; stripe < stripes; stripe++) {
+				sum += bucket.counters.get((stripe * depth + row) * width + column);
+			}
+			min = Math.min(min, sum);
+		}
+		return min;
+	}
+
+	public long getCount(String name, long windowMillis) {
+		return getCount(name, windowMillis, System.currentTimeMillis());
+	}
+
+	/**
+	 * Returns approximate count of name in the window ending at nowMillis (never lower than the real count)
+	 */
+	public long getCount(String name, long windowMillis, long nowMillis) {
+		long last = nowMillis / bucketMillis;
+		return count(name, firstEpoch(last, windowMillis), last);
+	}
+
+	// sums estimates of name over buckets holding epochs first to last
+	private long count(String name, long first, long last) {
+		long total = 0;
+		for (long epoch = Math.max(first, last - bucketCount + 1); epoch <= last; epoch++) {
+			Bucket bucket = buckets[(int)(epoch % bucketCount)];
+			if (epoch >= 0 && bucket.epoch.get() == epoch) {
+				total += estimate(bucket, name);
+			}
+		}
+		return total;
+	}
+
+	// first epoch of a window ending in epoch last (window is rounded up to whole buckets)
+	private long firstEpoch(long last, long windowMillis) {
+		long windowBuckets = Math.max(1, (windowMillis + bucketMillis - 1) / bucketMillis);
+		return last - Math.min(windowBuckets, bucketCount) + 1;
+	}
+
+	public ArrayList<Count> top(int k, long windowMillis) {
+		return top(k, windowMillis, System.currentTimeMillis());
+	}
+
+	/**
+	 * Returns the k names with the highest counts in the window ending at nowMillis, highest first
+	 * 	only looks at the candidates of each bucket in the window (buckets * candidates names), not every name ever added
+	 */
+	public ArrayList<Count> top(int k, long windowMillis, long nowMillis) {
+		long last = nowMillis / bucketMillis;
+		long first = firstEpoch(last, windowMillis);
+
+		PriorityQueue<Count> heap = new PriorityQueue<>(k + 1);
+		for (String name : candidateNames(first, last)) {
+			offer(heap, new Count(name, count(name, first, last)), k);
+		}
+		return sorted(heap);
+	}
+
+	public ArrayList<Count> rising(int k, long windowMillis) {
+		return rising(k, windowMillis, System.currentTimeMillis());
+	}
+
+	/**
+	 * Returns the k names whose count grew the most from the previous window to the window ending at nowMillis, largest growth first
+	 * 	count returned = count in window - count in previous window, names that did not grow are left out
+	 * 	2 * window should not be longer than getMaxWindowMillis()
+	 */
+	public ArrayList<Count> rising(int k, long windowMillis, long nowMillis) {
+		long last = nowMillis / bucketMillis;
+		long first = firstEpoch(last, windowMillis);
+		long previousLast = first - 1;
+		long previousFirst = previousLast - (last - first);
+
+		PriorityQueue<Count> heap = new PriorityQueue<>(k + 1);
+		for (String name : candidateNames(first, last)) {
+			long growth = count(name, first, last) - count(name, previousFirst, previousLast);
+			if (growth > 0) {
+				offer(heap, new Count(name, growth), k);
+			}
+		}
+		return sorted(heap);
+	}
+
+	// all candidate names in buckets holding epochs first to last
+	private HashSet<String> candidateNames(long first, long last) {
+		HashSet<String> names = new HashSet<>();
+		for (long epoch = Math.max(first, last - bucketCount + 1); epoch <= last; epoch++) {
+			Bucket bucket = buckets[(int)(epoch % bucketCount)];
+			if (epoch < 0 || bucket.epoch.get() != epoch) {
+				continue;
+			}
+			for (int i = 0; i < candidates; i++) {
+				String name = bucket.names.get(i);
+				if (name != null) {
+					names.add(name);
+				}
+			}
+		}
+		return names;
+	}
+
+	// keeps the k largest counts in a min heap
+	private static void offer(PriorityQueue<Count> heap, Count c, int k) {
+		if (k <= 0) {
+			return;
+		}
+		if (heap.size() < k) {
+			heap.add(c);
+		} else if (c.compareTo(heap.peek()) > 0) {
+			heap.poll();
+			heap.add(c);
+		}
+	}
+
+	private static ArrayList<Count> sorted(PriorityQueue<Count> heap) {
+		ArrayList<Count> top = new ArrayList<>(heap.size());
+		while (!heap.isEmpty()) {
+			top.add(heap.poll());
+		}
+		Collections.reverse(top);
+		return top;
+	}
+
+	// column of name in row, rows use different columns (double hashing) so two names rarely share every counter
+	private int column(int hash, int step, int row) {
+		return (hash + row * step) & (width - 1);
+	}
+
+	private static int hash(String name) {
+		int h = name.hashCode() * 0x9e3779b9;
+		return h ^ (h >>> 16);
+	}
+
+	// odd step so every row lands on a different column
+	private static int hash2(String name) {
+		int h = name.hashCode() * 0x85ebca6b;
+		h ^= h >>> 13;
+		return (h * 0xc2b2ae35) | 1;
+	}
+}
@@ -0,0 +1,40 @@
+package ConvoBot;
+
+public class Trending {
+
+	/**
+	 * Characteristics and solutions seen across every conversation running in this program (see TrendSketch)
+	 * 	characteristics: +1 every time ContextGraph.incrementCharacteristic succeeds
+	 * 	solutions: +1 every time Advice gives advice for the patient's top solution
+	 *
+	 * ie. Trending.characteristics.top(10, Trending.HOUR) = 10 most mentioned characteristics in the last hour
+	 */
+
+	public static final long HOUR = 60 * 60 * 1000L;
+
+	// 2 hours kept (24 full buckets of 5 minutes plus the current one) so the last hour can be compared with the hour before it (rising)
+	public static final TrendSketch characteristics = new TrendSketch(25, 5 * 60 * 1000L, 4, 1024, 4, 64);
+	public static final TrendSketch solutions = new TrendSketch(25, 5 * 60 * 1000L, 4, 1024, 4, 64);
+
+	// turns recording on/off (ie. off for tests or load generators that should not count as real conversations)
+	public static volatile boolean enabled = true;
+
+	static void characteristicIncremented(Characteristic ch) {
+		if (enabled) {
+			characteristics.add(ch.getName());
+		}
+	}
+	
+	// count mentions at once (ie. increments coalesced by GraphWriter)
+	static void characteristicIncremented(Characteristic ch, long count) {
+		if (enabled && count > 0) {
+			characteristics.add(ch.getName(), count, System.currentTimeMillis());
+		}
+	}
+
+	public static void solutionRecommended(Solution s) {
+		if (enabled) {
+			solutions.add(s.getName());
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package ConvoBot;
+
+import java.util.ArrayList;
+
+public class TurnContext {
+
+	/**
+	 * Everything worked out about one message from the user while it goes through a TurnPipeline
+	 * 	each stage fills in its part (normalized text, tokens, characteristics found, sentiment, intents, reply)
+	 * 	only one stage uses a turn at a time, so nothing here is synchronized
+	 */
+
+	// intents found by TurnPipeline.DetectStage, stored as bits of intents
+	public static final int YES = 1;
+	public static final int NO = 1 << 1;
+	public static final int MAYBE = 1 << 2;
+	public static final int GOODBYE = 1 << 3;
+
+	private final String input;
+	private final ContextGraph contextGraph;
+	private final TurnPipeline.Responder responder;
+	private GraphWriter graphWriter;
+
+	String normalized;
+	String[] tokens;
+	ArrayList<Characteristic> characteristics = new ArrayList<>();
+	int sentiment;
+	double polarity;
+	double intensity;
+	int intents;
+	String reply;
+	// follow up question the reply asks, set by the responder (ie. Topics.Discussion), 0 = none
+	int followUp;
+	// set if a TurnScheduler shed the turn, no reply was worked out
+	boolean degraded;
+
+	// set if a stage threw, later stages skip the turn
+	RuntimeException failure;
+
+	/**
+	 * @param input = message from the user
+	 * @param contextGraph = graph updated with the characteristics found, null to only detect them
+	 * @param responder = builds the reply, null for TurnPipeline.DEFAULT_RESPONDER
+	 */
+	public TurnContext(String input, ContextGraph contextGraph, TurnPipeline.Responder responder) {
+		this.input = input == null ? "" : input;
+		this.contextGraph = contextGraph;
+		this.responder = responder;
+	}
+
+	public String getInput() {
+		return input;
+	}
+	public ContextGraph getContextGraph() {
+		return contextGraph;
+	}
+	public TurnPipeline.Responder getResponder() {
+		return responder;
+	}
+	// graph changes are queued on graphWriter instead of made during the turn (null = change the graph directly)
+	public GraphWriter getGraphWriter() {
+		return graphWriter;
+	}
+	public TurnContext setGraphWriter(GraphWriter graphWriter) {
+		this.graphWriter = graphWriter;
+		return this;
+	}
+	public String getNormalized() {
+		return normalized;
+	}
+	public String[] getTokens() {
+		return tokens;
+	}
+	public ArrayList<Characteristic> getCharacteristics() {
+		return characteristics;
+	}
+	// polarity rounded away from 0, so any positive/negative message is at least +1/-1
+	public int getSentiment() {
+		return sentiment;
+	}
+	// weighted sentiment of the message (SentimentLexicon), negations and intensifiers applied
+	public double getPolarity() {
+		return polarity;
+	}
+	// how strongly the message says how the user feels, positive or negative
+	public double getIntensity() {
+		return intensity;
+	}
+	public boolean hasIntent(int intent) {
+		return (intents & intent) != 0;
+	}
+	public String getReply() {
+		return reply;
+	}
+	public void setReply(String reply) {
+		this.reply = reply;
+	}
+	// the next message from the user is the answer to this question, the responder decides what the number means
+	public int getFollowUp() {
+		return followUp;
+	}
+	public void setFollowUp(int followUp) {
+		this.followUp = followUp;
+	}
+	// true if the turn was shed under load (see TurnScheduler), graph is updated but the caller answers with a generic reply
+	public boolean isDegraded() {
+		return degraded;
+	}
+	public RuntimeException getFailure() {
+		return failure;
+	}
+}
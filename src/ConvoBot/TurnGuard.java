@@ -0,0 +1,141 @@
+package ConvoBot;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+
+public class TurnGuard {
+
+	/**
+	 * Limits how long the regex matching in Topics can take for one message from the user (one turn)
+	 * 	patterns like "(.*)(i'm)(.*)" backtrack, a very long message can keep a thread busy for a long time
+	 *
+	 * 	every message read by PrintMessage.messageFromUser() is cut to MAX_INPUT_LENGTH characters and starts a new turn
+	 * 	a turn has budgetNanos to do all of its matching, matchers are created on guard(input) instead of input
+	 * 		guard(input) checks the clock while the matcher reads characters and stops the matcher once the turn is over budget
+	 * 	find(m)/matches(m) return false for a stopped matcher, so the topic carries on as if nothing matched
+	 * 	topics check timedOut() after matching and answer with fallbackReply() instead
+	 * 	endTurn() once the reply is given, outside a turn guard(input) returns input as is
+	 *
+	 * Counts turns, cut messages and turns over budget for every thread (see getMetrics)
+	 */
+
+	public static final int MAX_INPUT_LENGTH = 500;
+
+	// time budget for matching in one turn (default 50 ms)
+	public static volatile long budgetNanos = 50 * 1000 * 1000L;
+
+	static String[] fallbackMessages = { "Sorry, I lost my train of thought there. Could you say that again in fewer words?",
+			"I see. Could you tell me a little more?", "Please go on." };
+
+	private static final AtomicLong turns = new AtomicLong();
+	private static final AtomicLong truncatedInputs = new AtomicLong();
+	private static final AtomicLong timedOutTurns = new AtomicLong();
+
+	// deadline of the current turn on each thread
+	private static final class Turn {
+		boolean started; // false until the thread reads a message and after endTurn(), matching is not limited outside a turn
+		long deadline;
+		boolean timedOut;
+	}
+
+	private static final ThreadLocal<Turn> turn = new ThreadLocal<Turn>() {
+		@Override
+		protected Turn initialValue() {
+			return new Turn();
+		}
+	};
+
+	// thrown from DeadlineCharSequence when the turn is over budget, caught by find()/matches()
+	public static class TurnTimeoutException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		TurnTimeoutException() {
+			super("Turn over time budget", null, false, false);
+		}
+	}
+
+	/**
+	 * Starts a new turn on this thread, returns input cut to MAX_INPUT_LENGTH ("" if input is null)
+	 */
+	public static String startTurn(String input) {
+		Turn t = turn.get();
+		t.started = true;
+		t.deadline = System.nanoTime() + budgetNanos;
+		t.timedOut = false;
+		turns.incrementAndGet();
+
+		if (input == null) {
+			return "";
+		}
+		if (input.length() > MAX_INPUT_LENGTH) {
+			truncatedInputs.incrementAndGet();
+			return input.substring(0, MAX_INPUT_LENGTH);
+		}
+		return input;
+	}
+
+	/**
+	 * Ends the turn on this thread (reply given, conversation over), matching after this is not limited until the next startTurn
+	 */
+	public static void endTurn() {
+		turn.remove();
+	}
+
+	// returns input wrapped so a matcher reading it stops at the deadline of the current turn, input as is outside a turn
+	public static CharSequence guard(CharSequence input) {
+		Turn t = turn.get();
+		return t.started ? new DeadlineCharSequence(input, t.deadline) : input;
+	}
+
+	// Matcher.find() that returns false (instead of running on) once the turn is over budget
+	public static boolean find(Matcher m) {
+		try {
+			return !timedOut() && m.find();
+		} catch (TurnTimeoutException e) {
+			markTimedOut();
+			return false;
+		}
+	}
+
+	// Matcher.matches() that returns false (instead of running on) once the turn is over budget
+	public static boolean matches(Matcher m) {
+		try {
+			return !timedOut() && m.matches();
+		} catch (TurnTimeoutException e) {
+			markTimedOut();
+			return false;
+		}
+	}
+
+	// true if a matcher was stopped during the current turn
+	public static boolean timedOut() {
+		return turn.get().timedOut;
+	}
+
+	private static void markTimedOut() {
+		Turn t = turn.get();
+		if (!t.timedOut) {
+			t.timedOut = true;
+			timedOutTurns.incrementAndGet();
+		}
+	}
+
+	// cheap generic reply for a turn that went over budget
+	public static String fallbackReply() {
+		return fallbackMessages[(int)(timedOutTurns.get() % fallbackMessages.length)];
+	}
+
+	public static long getTurns() {
+		return turns.get();
+	}
+	public static long getTruncatedInputs() {
+		return truncatedInputs.get();
+	}
+	public static long getTimedOutTurns() {
+		return timedOutTurns.get();
+	}
+
+	public static String getMetrics() {
+		return "turns=" + turns.get() + ", truncated inputs=" + truncatedInputs.get() + ", turns over budget=" + timedOutTurns.get();
+	}
+}
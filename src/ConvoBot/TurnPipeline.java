@@ -0,0 +1,415 @@
+package ConvoBot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class TurnPipeline {
+
+	/**
+	 * Runs one message from the user (TurnContext) through a list of stages, timing each stage
+	 * 	standard(): normalize -> tokenize -> detect (characteristics/sentiment/intents) -> graph update -> respond
+	 * 	stages can be added or replaced by name, a stage only reads what earlier stages filled in
+	 *
+	 * process() runs a turn through every stage on the calling thread (used by Topics.Discussion)
+	 * processAll() is bulk mode, each stage gets its own thread and passes turns on through bounded queues
+	 * 	shows which stage limits throughput, stages must then not share anything with the rest of the program
+	 * 	graph update stage is the only one touching graphs, so turns for the same graph still update it from one thread
+	 *
+	 * Stage times (total nanoseconds and turns) are kept for every stage, see getTimings()
+	 */
+
+	/**
+	 * One step of processing a turn
+	 */
+	public interface Stage {
+		String getName();
+		void process(TurnContext turn);
+	}
+
+	/**
+	 * Builds the bot's reply once everything about the turn is known
+	 */
+	public interface Responder {
+		String respond(TurnContext turn);
+	}
+
+	static final String[] YES_WORDS = {"yes", "yeah", "yep", "sure", "definitely"};
+	static final String[] NO_WORDS = {"no", "nope", "nah", "never"};
+	static final String[] MAYBE_WORDS = {"maybe", "perhaps", "sometimes", "possibly"};
+	static final String[] GOODBYE_WORDS = {"goodbye", "bye"};
+
+	static final String[] DEFAULT_REPLIES = {"I'm glad to hear that!", "I'm sorry to hear that, what's wrong?", "Please go on."};
+
+	// reply based only on sentiment, used when a turn has no responder (ie. bulk mode)
+	public static final Responder DEFAULT_RESPONDER = new Responder() {
+		@Override
+		public String respond(TurnContext turn) {
+			if (turn.sentiment > 0) {
+				return DEFAULT_REPLIES[0];
+			}
+			return turn.sentiment < 0 ? DEFAULT_REPLIES[1] : DEFAULT_REPLIES[2];
+		}
+	};
+
+	private final ArrayList<Stage> stages = new ArrayList<>();
+	private AtomicLongArray stageNanos = new AtomicLongArray(0);
+	private AtomicLongArray stageTurns = new AtomicLongArray(0);
+
+	// marks the end of the turns in bulk mode
+	private static final TurnContext END = new TurnContext("", null, null);
+
+	/**
+	 * Pipeline with the standard stages: normalize, tokenize, detect, graph update, respond
+	 */
+	public static TurnPipeline standard() {
+		return new TurnPipeline().addStage(new NormalizeStage()).addStage(new TokenizeStage()).addStage(new DetectStage())
+				.addStage(new GraphUpdateStage()).addStage(new RespondStage());
+	}
+
+	// adds stage at the end, resets timings
+	public synchronized TurnPipeline addStage(Stage stage) {
+		stages.add(stage);
+		resetTimings();
+		return this;
+	}
+
+	// replaces the stage with the same name, returns false if there is none
+	public synchronized boolean replaceStage(Stage stage) {
+		for (int i = 0; i < stages.size(); i++) {
+			if (stages.get(i).getName().equals(stage.getName())) {
+				stages.set(i, stage);
+				resetTimings();
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public synchronized void resetTimings() {
+		stageNanos = new AtomicLongArray(stages.size());
+		stageTurns = new AtomicLongArray(stages.size());
+	}
+
+	/**
+	 * Runs turn through every stage on this thread, returns the reply
+	 */
+	public String process(TurnContext turn) {
+		return process(turn, true);
+	}
+
+	/**
+	 * Runs turn through every stage except respond, so the graph is updated but no reply is worked out
+	 * 	(ie. a turn shed under load, see TurnScheduler)
+	 */
+	public void processWithoutReply(TurnContext turn) {
+		process(turn, false);
+	}
+
+	private String process(TurnContext turn, boolean reply) {
+		Stage[] current;
+		AtomicLongArray nanos;
+		AtomicLongArray counts;
+		synchronized (this) {
+			current = stages.toArray(new Stage[stages.size()]);
+			nanos = stageNanos;
+			counts = stageTurns;
+		}
+		for (int i = 0; i < current.length; i++) {
+			if (reply || !"respond".equals(current[i].getName())) {
+				runStage(current[i], turn, nanos, counts, i);
+			}
+		}
+		if (turn.failure != null) {
+			throw turn.failure;
+		}
+		return turn.reply;
+	}
+
+	/**
+	 * Bulk mode, runs every turn through the stages with one thread per stage
+	 * 	stages are connected by queues holding at most queueCapacity turns, turns come out in the order they went in
+	 * 	a turn that fails in one stage is passed on and skipped by the rest (see TurnContext.getFailure)
+	 */
+	public void processAll(List<TurnContext> turns, int queueCapacity) throws InterruptedException {
+		final Stage[] current;
+		final AtomicLongArray nanos;
+		final AtomicLongArray counts;
+		synchronized (this) {
+			current = stages.toArray(new Stage[stages.size()]);
+			nanos = stageNanos;
+			counts = stageTurns;
+		}
+
+		final List<BlockingQueue<TurnContext>> queues = new ArrayList<>(current.length);
+		for (int i = 0; i < current.length; i++) {
+			queues.add(new ArrayBlockingQueue<TurnContext>(queueCapacity));
+		}
+
+		Thread[] threads = new Thread[current.length];
+		for (int i = 0; i < current.length; i++) {
+			final int index = i;
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						while (true) {
+							TurnContext turn = queues.get(index).take();
+							if (turn != END) {
+								runStage(current[index], turn, nanos, counts, index);
+							}
+							if (index + 1 < queues.size()) {
+								queues.get(index + 1).put(turn);
+							}
+							if (turn == END) {
+								return;
+							}
+						}
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}, "turn-" + current[i].getName());
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+
+		try {
+			if (!queues.isEmpty()) {
+				for (TurnContext turn : turns) {
+					queues.get(0).put(turn);
+				}
+				queues.get(0).put(END);
+			}
+			for (Thread t : threads) {
+				t.join();
+			}
+		} finally {
+			for (Thread t : threads) {
+				t.interrupt();
+			}
+		}
+	}
+
+	private static void runStage(Stage stage, TurnContext turn, AtomicLongArray nanos, AtomicLongArray counts, int index) {
+		if (turn.failure != null) {
+			return;
+		}
+		long start = System.nanoTime();
+		try {
+			stage.process(turn);
+		} catch (RuntimeException e) {
+			turn.failure = e;
+		}
+		nanos.addAndGet(index, System.nanoTime() - start);
+		counts.incrementAndGet(index);
+	}
+
+	public synchronized String[] getStageNames() {
+		String[] names = new String[stages.size()];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = stages.get(i).getName();
+		}
+		return names;
+	}
+	public synchronized long getStageNanos(int stage) {
+		return stageNanos.get(stage);
+	}
+	public synchronized long getStageTurns(int stage) {
+		return stageTurns.get(stage);
+	}
+
+	// average microseconds per turn for every stage, ie. "normalize=0.4 tokenize=0.9 ..."
+	public synchronized String getTimings() {
+		StringBuilder s = new StringBuilder();
+		for (int i = 0; i < stages.size(); i++) {
+			long count = stageTurns.get(i);
+			s.append(i == 0 ? "" : " ").append(stages.get(i).getName()).append('=');
+			s.append(String.format("%.1f", count == 0 ? 0.0 : stageNanos.get(i) / 1000.0 / count));
+		}
+		return s.toString();
+	}
+
+
+	//%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+	// Standard stages
+	//%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+
+	// lower case, whitespace collapsed to single spaces and trimmed
+	public static class NormalizeStage implements Stage {
+		@Override
+		public String getName() {
+			return "normalize";
+		}
+
+		@Override
+		public void process(TurnContext turn) {
+			String input = turn.getInput();
+			StringBuilder s = new StringBuilder(input.length());
+			boolean space = false;
+			for (int i = 0; i < input.length(); i++) {
+				char c = input.charAt(i);
+				if (Character.isWhitespace(c)) {
+					space = s.length() > 0;
+				} else {
+					if (space) {
+						s.append(' ');
+						space = false;
+					}
+					s.append(Character.toLowerCase(c));
+				}
+			}
+			turn.normalized = s.toString();
+		}
+	}
+
+	// words of the normalized text (letters, digits and apostrophes), punctuation dropped
+	public static class TokenizeStage implements Stage {
+		@Override
+		public String getName() {
+			return "tokenize";
+		}
+
+		@Override
+		public void process(TurnContext turn) {
+			String text = turn.normalized;
+			ArrayList<String> tokens = new ArrayList<>();
+			int start = -1;
+			for (int i = 0; i <= text.length(); i++) {
+				boolean word = i < text.length() && (Character.isLetterOrDigit(text.charAt(i)) || text.charAt(i) == '\'');
+				if (word && start < 0) {
+					start = i;
+				} else if (!word && start >= 0) {
+					tokens.add(text.substring(start, i));
+					start = -1;
+				}
+			}
+			turn.tokens = tokens.toArray(new String[tokens.size()]);
+		}
+	}
+
+	/**
+	 * Finds characteristics (by name or synonym), sentiment and intents in the tokens
+	 * 	one word names/synonyms are looked up by token, longer ones are searched for in the normalized text
+	 * 	lookup table is the graph's KeywordIndex (ContextGraph.getKeywordIndex()), built the first time it's asked for (graphs copied from a template share the template's)
+	 * 	sentiment is scored by a SentimentLexicon (SentimentLexicon.DEFAULT unless another is given)
+	 */
+	public static class DetectStage implements Stage {
+
+		private static final HashMap<String, Integer> INTENTS = new HashMap<>();
+		static {
+			for (String w : YES_WORDS) {
+				INTENTS.put(w, TurnContext.YES);
+			}
+			for (String w : NO_WORDS) {
+				INTENTS.put(w, TurnContext.NO);
+			}
+			for (String w : MAYBE_WORDS) {
+				INTENTS.put(w, TurnContext.MAYBE);
+			}
+			for (String w : GOODBYE_WORDS) {
+				INTENTS.put(w, TurnContext.GOODBYE);
+			}
+		}
+
+		private final SentimentLexicon lexicon;
+
+		public DetectStage() {
+			this(SentimentLexicon.DEFAULT);
+		}
+
+		public DetectStage(SentimentLexicon lexicon) {
+			this.lexicon = lexicon;
+		}
+
+		@Override
+		public String getName() {
+			return "detect";
+		}
+
+		@Override
+		public void process(TurnContext turn) {
+			SentimentLexicon.Score score = lexicon.score(turn.tokens);
+			turn.polarity = score.getPolarity();
+			turn.intensity = score.getIntensity();
+			turn.sentiment = round(score.getPolarity());
+			for (String token : turn.tokens) {
+				Integer intent = INTENTS.get(token);
+				if (intent != null) {
+					turn.intents |= intent;
+				}
+			}
+
+			if (turn.getContextGraph() == null) {
+				return;
+			}
+			turn.getContextGraph().getKeywordIndex().find(turn.tokens, turn.normalized, turn.characteristics);
+		}
+
+		private static int round(double polarity) {
+			if (polarity == 0) {
+				return 0;
+			}
+			int rounded = (int)Math.max(1, Math.round(Math.abs(polarity)));
+			return polarity > 0 ? rounded : -rounded;
+		}
+	}
+
+	/**
+	 * Increments every characteristic found in the turn once, queued on the turn's GraphWriter if it has one
+	 * 	by 1 for a plain mention, up to 1 + MAX_EXTRA_WEIGHT when it's said strongly ("i'm really really stressed")
+	 * 	without a GraphWriter the graph is changed straight away and a new snapshot is published once the turn's increments are done
+	 * 		(the writer publishes its own after each batch)
+	 */
+	public static class GraphUpdateStage implements Stage {
+
+		public static final double MAX_EXTRA_WEIGHT = 1.0;
+
+		// increment for a characteristic mentioned in turn, intensity 2 (ie. "very stressed" + "so tired") gets the whole extra
+		public static double weightFor(TurnContext turn) {
+			return 1.0 + Math.min(MAX_EXTRA_WEIGHT, turn.intensity / 2.0 * MAX_EXTRA_WEIGHT);
+		}
+
+		@Override
+		public String getName() {
+			return "graph update";
+		}
+
+		@Override
+		public void process(TurnContext turn) {
+			ContextGraph graph = turn.getContextGraph();
+			if (graph == null) {
+				return;
+			}
+			GraphWriter writer = turn.getGraphWriter();
+			double weight = weightFor(turn);
+			for (Characteristic c : turn.characteristics) {
+				if (writer != null) {
+					writer.increment(c, weight);
+				} else {
+					graph.incrementCharacteristic(c, weight);
+				}
+			}
+			if (writer == null && !turn.characteristics.isEmpty()) {
+				graph.publish();
+			}
+		}
+	}
+
+	// asks the turn's responder (or DEFAULT_RESPONDER) for the reply
+	public static class RespondStage implements Stage {
+		@Override
+		public String getName() {
+			return "respond";
+		}
+
+		@Override
+		public void process(TurnContext turn) {
+			Responder responder = turn.getResponder() != null ? turn.getResponder() : DEFAULT_RESPONDER;
+			turn.reply = responder.respond(turn);
+		}
+	}
+}
@@ -0,0 +1,334 @@
+package ConvoBot;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.locks.LockSupport;
+
+public class TurnScheduler {
+
+	/**
+	 * Decides which session's turn runs next when many sessions share one JVM, so a burst of expensive turns can't starve the rest
+	 * 	at most maxInFlight turns run at once, every other turn waits in its session's inbox
+	 * 	sessions with waiting turns take turns (deficit round robin), each visit adds quantum to the session's deficit
+	 * 		and its next turn runs once the deficit covers the turn's cost, so long inputs wait more rounds than short ones
+	 * 	cost known only after the turn (characteristics incremented in the graph) is taken off the session's deficit afterwards,
+	 * 		a session making big graph updates waits longer for its next turn
+	 *
+	 * Overload
+	 * 	a turn that can't run straight away while maxQueued turns are already waiting is shed
+	 * 	a turn that waited maxWaitNanos is shed
+	 * 	shed turns get no reply worked out (TurnContext.isDegraded()), the topic answers with a cheap generic reply instead,
+	 * 		so waiting never takes longer than maxWaitNanos however busy the JVM gets
+	 * 		what the patient said still reaches the graph, every stage but respond runs without a slot
+	 * 		the shed turn's cost and graph updates are still taken off its session's deficit (see charge()),
+	 * 		so a session flooding the JVM with turns that get shed waits longer once its turns run again
+ * 		debt is capped at MAX_DEBT_QUANTA quanta, a session shed over and over waits a few more rounds but is never starved
+	 *
+	 * Turns run on the thread that asked for them (topics read and write through thread local PrintMessage channels and TurnGuard),
+	 * the scheduler only holds threads back. A turn gives up its slot before it waits for the patient (see release()),
+	 * so a follow up question doesn't hold a slot while the patient types.
+	 * Session keys are held weakly, a session's deficit goes away with the session object
+	 */
+
+	// cost of a turn before its input is counted
+	public static final int BASE_COST = 20;
+	// cost added after a turn for every characteristic it incremented
+	public static final int GRAPH_UPDATE_COST = 50;
+	// most a session's deficit can go below 0, in quanta
+	public static final int MAX_DEBT_QUANTA = 4;
+
+	private final int maxInFlight;
+	private int maxQueued;
+	private long maxWaitNanos = 250 * 1000 * 1000L;
+	private int quantum = 100;
+
+	// one thread waiting for its turn, woken on its own when let in (no notifyAll to every waiting thread)
+	private static final class Waiter {
+		final int cost;
+		final Thread thread = Thread.currentThread();
+		volatile boolean granted;
+
+		Waiter(int cost) {
+			this.cost = cost;
+		}
+	}
+
+	// waiting turns and deficit of one session
+	private static final class Inbox {
+		final ArrayDeque<Waiter> waiting = new ArrayDeque<>(1);
+		long deficit;
+	}
+
+	// slot held by the turn running on a thread, until it ends or release() is called
+	private static final class Held {
+		final TurnScheduler scheduler;
+		final Object session;
+		final TurnContext turn;
+
+		Held(TurnScheduler scheduler, Object session, TurnContext turn) {
+			this.scheduler = scheduler;
+			this.session = session;
+			this.turn = turn;
+		}
+	}
+
+	private static final ThreadLocal<Held> held = new ThreadLocal<>();
+
+	private final Map<Object, Inbox> inboxes = new WeakHashMap<>();
+	// sessions with waiting turns, in the order they get visited
+	private final ArrayDeque<Inbox> ring = new ArrayDeque<>();
+	private int inFlight;
+	private int queued;
+
+	// guarded by this
+	private long admitted;
+	private long rejected;
+	private long expired;
+	private long waitNanos;
+	private long charged;
+	private int maxQueueDepth;
+
+	public TurnScheduler() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public TurnScheduler(int maxInFlight) {
+		if (maxInFlight < 1) {
+			throw new IllegalArgumentException("maxInFlight must be at least 1");
+		}
+		this.maxInFlight = maxInFlight;
+		this.maxQueued = 64 * maxInFlight;
+	}
+
+	public synchronized TurnScheduler setMaxQueued(int maxQueued) {
+		this.maxQueued = maxQueued;
+		return this;
+	}
+
+	public synchronized TurnScheduler setMaxWaitNanos(long maxWaitNanos) {
+		this.maxWaitNanos = maxWaitNanos;
+		return this;
+	}
+
+	public synchronized TurnScheduler setQuantum(int quantum) {
+		if (quantum < 1) {
+			throw new IllegalArgumentException("quantum must be at least 1");
+		}
+		this.quantum = quantum;
+		return this;
+	}
+
+	// cost of a turn before it runs
+	public static int costOf(String input) {
+		return BASE_COST + (input == null ? 0 : input.length());
+	}
+
+	/**
+	 * Runs turn through pipeline once the scheduler lets it, returns the reply
+	 * 	if the turn was shed (turn.isDegraded() is then true) the graph is still updated but no reply is worked out, returns null
+	 */
+	public String process(Object session, TurnContext turn, TurnPipeline pipeline) throws InterruptedException {
+		int cost = costOf(turn.getInput());
+		if (!enter(session, cost)) {
+			turn.degraded = true;
+			try {
+				pipeline.processWithoutReply(turn);
+			} finally {
+				charge(session, cost + GRAPH_UPDATE_COST * turn.characteristics.size());
+			}
+			return null;
+		}
+		Held h = new Held(this, session, turn);
+		held.set(h);
+		try {
+			return pipeline.process(turn);
+		} finally {
+			if (held.get() == h) {
+				held.remove();
+				exit(session, GRAPH_UPDATE_COST * turn.characteristics.size());
+			}
+		}
+	}
+
+	/**
+	 * Gives up the slot of the turn running on this thread (if it has one), the rest of the turn runs without a slot
+	 * 	called before blocking on the patient (PrintMessage.messageFromUser), so think time doesn't keep other sessions waiting
+	 */
+	public static void release() {
+		Held h = held.get();
+		if (h != null) {
+			held.remove();
+			h.scheduler.exit(h.session, GRAPH_UPDATE_COST * h.turn.characteristics.size());
+		}
+	}
+
+	/**
+	 * Blocks until a turn costing cost may run for session, every true must be followed by exit(session, ...)
+	 * 	returns false if the turn was shed (too many waiting, or it waited maxWaitNanos)
+	 */
+	public boolean enter(Object session, int cost) throws InterruptedException {
+		long start = System.nanoTime();
+		Waiter w = new Waiter(cost);
+		Inbox inbox;
+		long deadline;
+		synchronized (this) {
+			if (queued >= maxQueued && inFlight >= maxInFlight) {
+				rejected++;
+				return false;
+			}
+			inbox = inboxes.get(session);
+			if (inbox == null) {
+				inbox = new Inbox();
+				inboxes.put(session, inbox);
+			}
+			if (inbox.waiting.isEmpty()) {
+				ring.addLast(inbox);
+			}
+			inbox.waiting.addLast(w);
+			queued++;
+			maxQueueDepth = Math.max(maxQueueDepth, queued);
+			grant();
+			deadline = start + maxWaitNanos;
+		}
+
+		while (!w.granted) {
+			long remaining = deadline - System.nanoTime();
+			boolean interrupted = Thread.interrupted();
+			if (remaining <= 0 || interrupted) {
+				synchronized (this) {
+					if (!w.granted) {
+						remove(inbox, w);
+						if (interrupted) {
+							throw new InterruptedException();
+						}
+						expired++;
+						return false;
+					}
+				}
+				if (interrupted) {
+					Thread.currentThread().interrupt(); // let in just in time, the caller still sees the interrupt
+				}
+				break;
+			}
+			LockSupport.parkNanos(this, remaining);
+		}
+		synchronized (this) {
+			admitted++;
+			waitNanos += System.nanoTime() - start;
+		}
+		return true;
+	}
+
+	/**
+	 * Ends a turn let in by enter(), extraCost (ie. graph updates made) is taken off the session's deficit
+	 */
+	public synchronized void exit(Object session, int extraCost) {
+		inFlight--;
+		Inbox inbox = inboxes.get(session);
+		if (inbox != null) {
+			debit(inbox, extraCost);
+		}
+		grant();
+	}
+
+	/**
+	 * Takes cost off session's deficit without letting a turn in, for work a session did without a slot (ie. a shed turn)
+	 */
+	public synchronized void charge(Object session, int cost) {
+		Inbox inbox = inboxes.get(session);
+		if (inbox == null) {
+			inbox = new Inbox();
+			inboxes.put(session, inbox);
+		}
+		debit(inbox, cost);
+		charged += cost;
+	}
+
+	// takes cost off inbox's deficit, debt stops at MAX_DEBT_QUANTA quanta
+	private void debit(Inbox inbox, long cost) {
+		inbox.deficit = Math.max(inbox.deficit - cost, -(long)MAX_DEBT_QUANTA * quantum);
+	}
+
+	// lets waiting turns run while there's room, deficit round robin over the sessions in ring
+	// 	rounds of quanta are worked out for the whole ring at once (O(sessions) per turn let in), not added one visit at a time
+	private void grant() {
+		while (inFlight < maxInFlight && !ring.isEmpty()) {
+			// first visit, counting round by round through the ring, at which a session's deficit covers its next turn
+			int sessions = ring.size();
+			long firstVisit = Long.MAX_VALUE;
+			int position = 0;
+			int next = 0;
+			for (Inbox inbox : ring) {
+				long visit = roundsNeeded(inbox) * sessions + position;
+				if (visit < firstVisit) {
+					firstVisit = visit;
+					next = position;
+				}
+				position++;
+			}
+
+			// sessions before it in the ring were visited once more than the rest in the last round
+			long rounds = firstVisit / sessions;
+			position = 0;
+			for (Inbox inbox : ring) {
+				inbox.deficit += (position < next ? rounds + 1 : rounds) * quantum;
+				position++;
+			}
+			for (int i = 0; i < next; i++) {
+				ring.addLast(ring.pollFirst());
+			}
+
+			Inbox inbox = ring.pollFirst();
+			Waiter w = inbox.waiting.pollFirst();
+			inbox.deficit -= w.cost;
+			queued--;
+			inFlight++;
+			w.granted = true;
+			LockSupport.unpark(w.thread);
+			if (!inbox.waiting.isEmpty()) {
+				ring.addLast(inbox);
+			} else if (inbox.deficit > 0) {
+				inbox.deficit = 0; // no credit saved while a session has nothing waiting, debt is kept
+			}
+		}
+	}
+
+	// quanta inbox needs before its next turn is covered
+	private long roundsNeeded(Inbox inbox) {
+		long missing = inbox.waiting.peekFirst().cost - inbox.deficit;
+		return missing <= 0 ? 0 : (missing + quantum - 1) / quantum;
+	}
+
+	private void remove(Inbox inbox, Waiter w) {
+		inbox.waiting.remove(w);
+		queued--;
+		if (inbox.waiting.isEmpty()) {
+			ring.remove(inbox);
+			if (inbox.deficit > 0) {
+				inbox.deficit = 0;
+			}
+		}
+	}
+
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+	public synchronized int getQueued() {
+		return queued;
+	}
+	// turns that ran
+	public synchronized long getAdmitted() {
+		return admitted;
+	}
+	// turns shed on arrival + turns shed after waiting
+	public synchronized long getShed() {
+		return rejected + expired;
+	}
+
+	public synchronized String getMetrics() {
+		return "admitted=" + admitted + ", shed on arrival=" + rejected + ", shed after waiting=" + expired
+				+ String.format(", mean wait=%.1f us", admitted == 0 ? 0.0 : waitNanos / 1e3 / admitted) + ", max waiting=" + maxQueueDepth
+				+ ", cost charged without a slot=" + charged;
+	}
+}
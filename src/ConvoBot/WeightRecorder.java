@@ -0,0 +1,619 @@
+package ConvoBot;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+
+public class WeightRecorder {
+
+	/**
+	 * Records every characteristic weight and solution score after each turn, to see how conversations change the graph over time
+	 * 	columnar: one column per characteristic and solution, plus SESSION and TURN columns saying which turn a row belongs to
+	 * 	every column is its own bit stream, reading one characteristic never decodes the others (see Reader)
+	 * 	weights are XOR encoded against the column's previous value (Gorilla), an unchanged weight takes 1 bit
+	 * 		and a changed one only the bits that differ
+	 * 	session and turn are delta of delta encoded, the next turn of the same session takes 1 bit
+	 *
+	 * Segments
+	 * 	rows go into memory mapped segment files (weights-000000.seg, weights-000001.seg, ...) of up to rowsPerSegment rows
+	 * 	each column gets its own region of the file, big enough for the worst case (MAX_BITS_PER_VALUE) so it never runs out,
+	 * 		the unused end of a region is never written (sparse on most file systems)
+	 * 	header = MAGIC, rows, columns, region size, bits written in each column, then the column names
+	 * 	flush() writes the header and forces the segment to disk, only flushed rows can be read back
+	 * 	a full segment is flushed before the next one starts
+	 *
+	 * record() is synchronized, any number of sessions can share a recorder (see Trajectory)
+	 */
+
+	public static final int MAGIC = 0x57545331; // "WTS1"
+	public static final int ROWS_PER_SEGMENT = 4096;
+	// worst case for one value, XOR encoding = 2 control + 5 leading + 6 length + 64 bits, delta of delta = 4 + 64 bits
+	public static final int MAX_BITS_PER_VALUE = 80;
+
+	public static final String SESSION = "session";
+	public static final String TURN = "turn";
+
+	private static final int HEADER_BYTES = 16; // where the bits written in each column start
+
+	// name of the column of a characteristic/solution
+	public static String column(Characteristic ch) {
+		return CHARACTERISTIC_PREFIX + ch.getName();
+	}
+	public static String column(Solution s) {
+		return SOLUTION_PREFIX + s.getName();
+	}
+	private static final String CHARACTERISTIC_PREFIX = "characteristic:";
+	private static final String SOLUTION_PREFIX = "solution:";
+
+	/**
+	 * One session's turns, numbered from 0 in the order they're recorded
+	 */
+	public final class Trajectory {
+		private final long session;
+		private long turns;
+
+		private Trajectory(long session) {
+			this.session = session;
+		}
+
+		// records the weights of snapshot as the session's next turn, call on the thread running the session
+		public boolean record(GraphSnapshot snapshot) {
+			return WeightRecorder.this.record(session, turns++, snapshot);
+		}
+
+		public long getSession() {
+			return session;
+		}
+		public long getTurns() {
+			return turns;
+		}
+	}
+
+	private final File directory;
+	private final int rowsPerSegment;
+	private final int regionBytes;
+
+	// columns = SESSION, TURN, characteristics, solutions (in template order)
+	private final String[] names;
+	private final int characteristics;
+	private final int solutions;
+
+	// guarded by this
+	private long sessions;
+	private Segment segment;
+	private int segmentCount;
+	private long rows;
+	private long sealedBits; // bits written in segments already full
+	private boolean closed;
+	private boolean failed;
+
+	// snapshot index of each characteristic/solution column, rebuilt when a snapshot has a different shape
+	private GraphSnapshot.Shape lastShape;
+	private int[] characteristicAt;
+	private int[] solutionAt;
+
+	public WeightRecorder(File directory, ContextGraph template) throws IOException {
+		this(directory, template, ROWS_PER_SEGMENT);
+	}
+
+	/**
+	 * Records the characteristics and solutions of template (same as every session graph) into directory
+	 */
+	public WeightRecorder(File directory, ContextGraph template, int rowsPerSegment) throws IOException {
+		if (rowsPerSegment < 1) {
+			throw new IllegalArgumentException("rowsPerSegment must be at least 1");
+		}
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create " + directory);
+		}
+		this.directory = directory;
+		this.rowsPerSegment = rowsPerSegment;
+		regionBytes = (int)(((long)rowsPerSegment * MAX_BITS_PER_VALUE + 7) / 8 + 8);
+
+		characteristics = template.getCharacteristicsList().size();
+		solutions = template.getSolutionsList().size();
+		names = new String[2 + characteristics + solutions];
+		names[0] = SESSION;
+		names[1] = TURN;
+		int c = 2;
+		for (Characteristic ch : template.getCharacteristicsList()) {
+			names[c++] = column(ch);
+		}
+		for (Solution s : template.getSolutionsList()) {
+			names[c++] = column(s);
+		}
+	}
+
+	// a new session, its turns are recorded through the returned trajectory
+	public synchronized Trajectory startTrajectory() {
+		return new Trajectory(sessions++);
+	}
+
+	/**
+	 * Appends one row, returns false if nothing was recorded (closed, or writing a segment failed before)
+	 * 	a characteristic or solution missing from snapshot is recorded as 0
+	 */
+	public synchronized boolean record(long session, long turn, GraphSnapshot snapshot) {
+		if (closed || failed) {
+			return false;
+		}
+		try {
+			if (segment == null || segment.rows == rowsPerSegment) {
+				roll();
+			}
+		} catch (IOException e) {
+			failed = true; // conversations carry on without recording
+			System.out.println("Error recording weights: " + e);
+			return false;
+		}
+		if (snapshot.shape() != lastShape) {
+			lookUp(snapshot.shape());
+		}
+
+		ColumnWriter[] columns = segment.columns;
+		columns[0].writeLong(session);
+		columns[1].writeLong(turn);
+		for (int c = 0; c < characteristics; c++) {
+			int i = characteristicAt[c];
+			columns[2 + c].writeDouble(i < 0 ? 0.0 : snapshot.characteristicScore(i));
+		}
+		for (int s = 0; s < solutions; s++) {
+			int i = solutionAt[s];
+			columns[2 + characteristics + s].writeDouble(i < 0 ? 0.0 : snapshot.solutionScore(i));
+		}
+		segment.rows++;
+		rows++;
+		return true;
+	}
+
+	// finds every column's characteristic/solution in shape by name
+	private void lookUp(GraphSnapshot.Shape shape) {
+		characteristicAt = new int[characteristics];
+		for (int c = 0; c < characteristics; c++) {
+			Integer i = shape.characteristicIndex.get(names[2 + c].substring(CHARACTERISTIC_PREFIX.length()));
+			characteristicAt[c] = i == null ? -1 : i;
+		}
+		solutionAt = new int[solutions];
+		for (int s = 0; s < solutions; s++) {
+			Integer i = shape.solutionIndex.get(names[2 + characteristics + s].substring(SOLUTION_PREFIX.length()));
+			solutionAt[s] = i == null ? -1 : i;
+		}
+		lastShape = shape;
+	}
+
+	// flushes the full segment (if any) and maps the next one
+	private void roll() throws IOException {
+		if (segment != null) {
+			segment.flush();
+			sealedBits += segment.bits();
+		}
+		segment = new Segment(new File(directory, segmentName(segmentCount)));
+		segmentCount++;
+	}
+
+	static String segmentName(int n) {
+		return String.format("weights-%06d.seg", n);
+	}
+
+	/**
+	 * Writes the current segment's header and forces it to disk, rows recorded so far can then be read
+	 */
+	public synchronized void flush() throws IOException {
+		if (segment != null) {
+			segment.flush();
+		}
+	}
+
+	// flushes, then nothing more is recorded
+	public synchronized void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		flush();
+		closed = true;
+		if (segment != null) {
+			sealedBits += segment.bits();
+			segment = null;
+		}
+	}
+
+	public synchronized long getRows() {
+		return rows;
+	}
+	public synchronized int getSegments() {
+		return segmentCount;
+	}
+	public String[] getColumns() {
+		return names.clone();
+	}
+	public File getDirectory() {
+		return directory;
+	}
+
+	// bytes taken by the encoded columns (not counting headers and unused region space)
+	public synchronized long getEncodedBytes() {
+		return (sealedBits + (segment == null ? 0 : segment.bits()) + 7) / 8;
+	}
+
+	public synchronized String getMetrics() {
+		long values = rows * names.length;
+		long bytes = getEncodedBytes();
+		return "rows=" + rows + ", columns=" + names.length + ", segments=" + segmentCount + ", encoded bytes=" + bytes
+				+ String.format(", bits per value=%.2f (64 as plain doubles)", values == 0 ? 0.0 : bytes * 8.0 / values);
+	}
+
+
+	//%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+	// Segment files
+	//%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+
+	// start of the column regions, after the header and names (8 byte aligned)
+	private static int dataStart(byte[][] nameBytes) {
+		int size = HEADER_BYTES + 8 * nameBytes.length;
+		for (byte[] b : nameBytes) {
+			size += 2 + b.length;
+		}
+		return (size + 7) & ~7;
+	}
+
+	// one segment being written, every column writes straight into its region of the mapped file
+	private final class Segment {
+		final MappedByteBuffer buffer;
+		final ColumnWriter[] columns;
+		int rows;
+
+		Segment(File file) throws IOException {
+			byte[][] nameBytes = new byte[names.length][];
+			for (int c = 0; c < names.length; c++) {
+				nameBytes[c] = names[c].getBytes(StandardCharsets.UTF_8);
+			}
+			int start = dataStart(nameBytes);
+			long size = start + (long)regionBytes * names.length;
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Segment of " + rowsPerSegment + " rows is too big, use fewer rows per segment");
+			}
+
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.setLength(0); // an old segment with the same name is replaced
+				buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size); // mapping stays valid after closing
+			} finally {
+				raf.close();
+			}
+
+			buffer.putInt(0, MAGIC);
+			buffer.putInt(8, names.length);
+			buffer.putInt(12, regionBytes);
+			int p = HEADER_BYTES + 8 * names.length;
+			for (byte[] b : nameBytes) {
+				buffer.putShort(p, (short)b.length);
+				p += 2;
+				for (int i = 0; i < b.length; i++) {
+					buffer.put(p++, b[i]);
+				}
+			}
+
+			columns = new ColumnWriter[names.length];
+			for (int c = 0; c < columns.length; c++) {
+				columns[c] = new ColumnWriter(buffer, start + c * regionBytes);
+			}
+		}
+
+		void flush() {
+			for (int c = 0; c < columns.length; c++) {
+				columns[c].flush();
+				buffer.putLong(HEADER_BYTES + 8 * c, columns[c].bits());
+			}
+			buffer.putInt(4, rows); // last, a reader never sees rows before their bits
+			buffer.force();
+		}
+
+		long bits() {
+			long bits = 0;
+			for (ColumnWriter w : columns) {
+				bits += w.bits();
+			}
+			return bits;
+		}
+	}
+
+	// appends bits to a column's region, whole bytes go straight into the mapped buffer
+	private static final class ColumnWriter {
+		final ByteBuffer buffer;
+		final int start;
+		int position; // next byte of the region
+		long pending; // bits not written yet, in the lowest pendingBits bits
+		int pendingBits;
+
+		// encoding state, same as ColumnReader's
+		boolean started;
+		long previous; // previous value (raw bits of a double)
+		long previousDelta;
+		int leading = -1; // leading/trailing zeros of the last stored XOR block, -1 = none yet
+		int trailing;
+
+		ColumnWriter(ByteBuffer buffer, int start) {
+			this.buffer = buffer;
+			this.start = start;
+		}
+
+		void write(long value, int bits) {
+			if (bits > 32) {
+				write(value >>> 32, bits - 32);
+				bits = 32;
+			}
+			pending = (pending << bits) | (value & ((1L << bits) - 1));
+			pendingBits += bits;
+			while (pendingBits >= 8) {
+				pendingBits -= 8;
+				buffer.put(start + position++, (byte)(pending >>> pendingBits));
+			}
+		}
+
+		// puts the bits of the unfinished byte in the buffer too (padded with 0s), later bits still go after them
+		void flush() {
+			if (pendingBits > 0) {
+				buffer.put(start + position, (byte)(pending << (8 - pendingBits)));
+			}
+		}
+
+		long bits() {
+			return position * 8L + pendingBits;
+		}
+
+		/**
+		 * delta of delta, dod = (value - previous) - previous delta
+		 * 	0 -> '0', 7 bits -> '10', 9 bits -> '110', 12 bits -> '1110', anything else '1111' + 64 bits
+		 */
+		void writeLong(long value) {
+			if (!started) {
+				write(value, 64);
+				started = true;
+			} else {
+				long delta = value - previous;
+				long dod = delta - previousDelta;
+				if (dod == 0) {
+					write(0, 1);
+				} else if (fits(dod, 7)) {
+					write(0x2, 2);
+					write(dod, 7);
+				} else if (fits(dod, 9)) {
+					write(0x6, 3);
+					write(dod, 9);
+				} else if (fits(dod, 12)) {
+					write(0xE, 4);
+					write(dod, 12);
+				} else {
+					write(0xF, 4);
+					write(dod, 64);
+				}
+				previousDelta = delta;
+			}
+			previous = value;
+		}
+
+		/**
+		 * XOR with the previous value
+		 * 	same value -> '0'
+		 * 	meaningful bits fit inside the last block -> '10' + bits inside the block
+		 * 	otherwise -> '11' + 5 bits leading zeros + 6 bits length - 1 + meaningful bits (new block)
+		 */
+		void writeDouble(double d) {
+			long value = Double.doubleToRawLongBits(d);
+			if (!started) {
+				write(value, 64);
+				started = true;
+				previous = value;
+				return;
+			}
+			long xor = value ^ previous;
+			if (xor == 0) {
+				write(0, 1);
+			} else {
+				int lead = Math.min(31, Long.numberOfLeadingZeros(xor));
+				int trail = Long.numberOfTrailingZeros(xor);
+				if (leading >= 0 && lead >= leading && trail >= trailing) {
+					write(0x2, 2);
+					write(xor >>> trailing, 64 - leading - trailing);
+				} else {
+					int length = 64 - lead - trail;
+					write(0x3, 2);
+					write(lead, 5);
+					write(length - 1, 6);
+					write(xor >>> trail, length);
+					leading = lead;
+					trailing = trail;
+				}
+			}
+			previous = value;
+		}
+
+		// true if v fits in a signed number of bits
+		private static boolean fits(long v, int bits) {
+			return v >= -(1L << (bits - 1)) && v < (1L << (bits - 1));
+		}
+	}
+
+	// reads a column's region written by ColumnWriter
+	private static final class ColumnReader {
+		final ByteBuffer buffer;
+		final int start;
+		long position; // next bit of the region
+
+		boolean started;
+		long previous;
+		long previousDelta;
+		int leading;
+		int trailing;
+
+		ColumnReader(ByteBuffer buffer, int start) {
+			this.buffer = buffer;
+			this.start = start;
+		}
+
+		long read(int bits) {
+			long value = 0;
+			while (bits > 0) {
+				int b = buffer.get(start + (int)(position >>> 3)) & 0xff;
+				int offset = (int)(position & 7);
+				int take = Math.min(bits, 8 - offset);
+				value = (value << take) | ((b >>> (8 - offset - take)) & ((1 << take) - 1));
+				position += take;
+				bits -= take;
+			}
+			return value;
+		}
+
+		// read(bits) as a signed number
+		long readSigned(int bits) {
+			return read(bits) << (64 - bits) >> (64 - bits);
+		}
+
+		long readLong() {
+			if (!started) {
+				started = true;
+				previous = read(64);
+				return previous;
+			}
+			long dod;
+			if (read(1) == 0) {
+				dod = 0;
+			} else if (read(1) == 0) {
+				dod = readSigned(7);
+			} else if (read(1) == 0) {
+				dod = readSigned(9);
+			} else if (read(1) == 0) {
+				dod = readSigned(12);
+			} else {
+				dod = read(64);
+			}
+			previousDelta += dod;
+			previous += previousDelta;
+			return previous;
+		}
+
+		double readDouble() {
+			if (!started) {
+				started = true;
+				previous = read(64);
+			} else if (read(1) == 1) {
+				if (read(1) == 1) {
+					leading = (int)read(5);
+					int length = (int)read(6) + 1;
+					trailing = 64 - leading - length;
+				}
+				previous ^= read(64 - leading - trailing) << trailing;
+			}
+			return Double.longBitsToDouble(previous);
+		}
+	}
+
+
+	//%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+	// Reading
+	//%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+
+	/**
+	 * Called for every row of a scanned column, in the order the rows were recorded
+	 */
+	public interface Visitor {
+		void visit(long session, long turn, double value);
+	}
+
+	/**
+	 * Reads the segments of a recorder's directory (flushed rows only), can be used while the recorder is still recording
+	 * 	scan() decodes the SESSION and TURN columns and the one column asked for, every other column is skipped
+	 */
+	public static final class Reader {
+		private final File[] segments;
+		private final String[] names;
+		private final HashMap<String, Integer> index = new HashMap<>();
+
+		public Reader(File directory) throws IOException {
+			segments = directory.listFiles(new FilenameFilter() {
+				@Override
+				public boolean accept(File dir, String name) {
+					return name.startsWith("weights-") && name.endsWith(".seg");
+				}
+			});
+			if (segments == null || segments.length == 0) {
+				throw new IOException("No weight segments in " + directory);
+			}
+			Arrays.sort(segments); // names are numbered with leading zeros
+
+			ByteBuffer first = map(segments[0]);
+			names = new String[first.getInt(8)];
+			int p = HEADER_BYTES + 8 * names.length;
+			for (int c = 0; c < names.length; c++) {
+				byte[] b = new byte[first.getShort(p)];
+				p += 2;
+				for (int i = 0; i < b.length; i++) {
+					b[i] = first.get(p++);
+				}
+				names[c] = new String(b, StandardCharsets.UTF_8);
+				index.put(names[c], c);
+			}
+		}
+
+		private static ByteBuffer map(File file) throws IOException {
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try {
+				ByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+				if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+					throw new IOException(file + " is not a weight segment");
+				}
+				return buffer;
+			} finally {
+				raf.close();
+			}
+		}
+
+		public String[] getColumns() {
+			return names.clone();
+		}
+		public int getSegments() {
+			return segments.length;
+		}
+
+		/**
+		 * Calls visitor with every flushed row of column, returns the number of rows
+		 */
+		public long scan(String column, Visitor visitor) throws IOException {
+			Integer c = index.get(column);
+			if (c == null) {
+				throw new IllegalArgumentException("No column " + column);
+			}
+			long count = 0;
+			for (File file : segments) {
+				ByteBuffer buffer = map(file);
+				int rows = buffer.getInt(4);
+				int regionBytes = buffer.getInt(12);
+				byte[][] nameBytes = new byte[names.length][];
+				int p = HEADER_BYTES + 8 * names.length;
+				for (int i = 0; i < names.length; i++) {
+					nameBytes[i] = new byte[buffer.getShort(p)];
+					p += 2 + nameBytes[i].length;
+				}
+				int start = dataStart(nameBytes);
+
+				ColumnReader sessions = new ColumnReader(buffer, start);
+				ColumnReader turns = new ColumnReader(buffer, start + regionBytes);
+				ColumnReader values = new ColumnReader(buffer, start + c * regionBytes);
+				for (int r = 0; r < rows; r++) {
+					long session = sessions.readLong();
+					long turn = turns.readLong();
+					visitor.visit(session, turn, c < 2 ? (c == 0 ? session : turn) : values.readDouble());
+				}
+				count += rows;
+			}
+			return count;
+		}
+	}
+}
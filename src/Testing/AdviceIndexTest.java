@@ -0,0 +1,108 @@
+package Testing;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.jupiter.api.*;
+
+import ConvoBot.AdviceIndex;
+
+public class AdviceIndexTest {
+
+	private static AdviceIndex index(String... lines) {
+		ArrayList<String[]> tags = new ArrayList<>();
+		ArrayList<String> texts = new ArrayList<>();
+		for (String line : lines) {
+			String[] sections = line.split(";");
+			tags.add(sections[0].split(","));
+			texts.add(sections[1]);
+		}
+		return new AdviceIndex(tags, texts);
+	}
+
+	@Test
+	void testPostingsSorted() {
+		AdviceIndex index = index("anxiety,stress;a", "insomnia;b", "Anxiety,anxiety;c", "default;d");
+
+		assertArrayEquals(new int[] {0, 2}, index.getPostings("anxiety"));
+		assertArrayEquals(new int[] {1}, index.getPostings("INSOMNIA"));
+		assertEquals(0, index.getPostings("anger").length);
+	}
+
+	@Test
+	void testSelectRanksByWeight() {
+		AdviceIndex index = index("anxiety,stress;a", "insomnia;b", "stress,exercise;c", "default;d");
+
+		ArrayList<AdviceIndex.Match> top = index.select(new String[] {"stress", "exercise", "anxiety"}, new double[] {1.0, 0.8, 0.5}, 2, null);
+		assertEquals(2, top.size());
+		assertEquals("c", top.get(0).getAdvice());
+		assertEquals(1.8, top.get(0).getScore(), 0.0001);
+		assertEquals("stress", top.get(0).getTag());
+		assertEquals("a", top.get(1).getAdvice());
+	}
+
+	@Test
+	void testDefaultAndExclude() {
+		AdviceIndex index = index("anxiety;a", "default;d");
+
+		assertEquals("d", index.select(new String[] {"anger"}, new double[] {1.0}, 1, null).get(0).getAdvice());
+
+		BitSet given = new BitSet();
+		given.set(0);
+		assertEquals("d", index.select(new String[] {"anxiety"}, new double[] {1.0}, 1, given).get(0).getAdvice());
+	}
+
+	// merging postings must give the same scores as reading every advice, large corpus
+	@Test
+	void testMatchesFullScan() {
+		Random random = new Random(42);
+		String[] vocabulary = new String[200];
+		for (int i = 0; i < vocabulary.length; i++) {
+			vocabulary[i] = "tag" + i;
+		}
+
+		ArrayList<String[]> tags = new ArrayList<>();
+		ArrayList<String> texts = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			String[] adviceTags = new String[1 + random.nextInt(4)];
+			for (int j = 0; j < adviceTags.length; j++) {
+				adviceTags[j] = vocabulary[random.nextInt(vocabulary.length)];
+			}
+			tags.add(adviceTags);
+			texts.add("advice" + i);
+		}
+		AdviceIndex index = new AdviceIndex(tags, texts);
+
+		String[] asked = {"tag3", "tag17", "tag42", "tag99", "tag150", "tag151"};
+		double[] weights = {1.0, 0.9, 0.7, 0.5, 0.3, 0.2};
+		ArrayList<AdviceIndex.Match> top = index.select(asked, weights, 10, null);
+
+		// full scan
+		double[] scores = new double[texts.size()];
+		for (int id = 0; id < texts.size(); id++) {
+			for (int i = 0; i < asked.length; i++) {
+				for (String t : tags.get(id)) {
+					if (t.equals(asked[i])) {
+						scores[id] += weights[i];
+						break;
+					}
+				}
+			}
+		}
+		for (AdviceIndex.Match m : top) {
+			assertEquals(scores[m.getId()], m.getScore(), 0.0001);
+		}
+		double lowest = top.get(top.size() - 1).getScore();
+		int better = 0;
+		for (double s : scores) {
+			if (s > lowest) {
+				better++;
+			}
+		}
+		assertTrue(better < 10);
+		assertEquals(10, top.size());
+	}
+}
@@ -0,0 +1,102 @@
+package Testing;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.jupiter.api.*;
+
+import ConvoBot.Characteristic;
+import ConvoBot.ContextGraph;
+import ConvoBot.ContextGraphBuilder;
+import ConvoBot.Solution;
+
+public class ContextGraphBuilderTest {
+
+	/**
+	 * Tests building graphs from lists with ContextGraphBuilder (duplicates, unknown solutions, large graphs)
+	 */
+
+	private static ArrayList<String> synonyms(String name) {
+		ArrayList<String> synonyms = new ArrayList<>();
+		synonyms.add(name);
+		return synonyms;
+	}
+
+	@Test
+	void testDuplicatesAddedOnce() {
+		Solution s1 = new Solution("treatment1");
+		Solution s2 = new Solution("treatment2");
+		Characteristic ch = new Characteristic("sad", synonyms("down"));
+		ch.addSolution(s1, 2.0);
+		ch.addSolution(s2, 1.0);
+
+		ContextGraph graph = new ContextGraphBuilder()
+				.addSolution(s1).addSolution(s2).addSolution(new Solution("treatment1"))
+				.addCharacteristic(ch).addCharacteristic(ch)
+				.build();
+
+		assertEquals(2, graph.getSolutionsList().size());
+		assertEquals(1, graph.getCharacteristicsList().size());
+
+		graph.incrementCharacteristic(ch, 1.0);
+		assertEquals(2.0, graph.getSolutionScore(s1), 0.0001);
+		assertEquals(1.0, graph.getSolutionScore(s2), 0.0001);
+	}
+
+	@Test
+	void testSolutionNotInListSkipped() {
+		Solution s1 = new Solution("treatment1");
+		Characteristic ch = new Characteristic("sad", synonyms("down"));
+		ch.addSolution(s1, 2.0);
+		ch.addSolution(new Solution("unknown"), 3.0);
+
+		ContextGraph graph = new ContextGraphBuilder().addSolution(s1).addCharacteristic(ch).build();
+
+		assertTrue(graph.edgeExists(ch, s1));
+		assertFalse(graph.edgeExists(ch, new Solution("unknown")));
+	}
+
+	// every solution's score in a large graph is the sum of the multipliers of its incremented characteristics
+	@Test
+	void testLargeGraph() {
+		Random random = new Random(42);
+		ArrayList<Solution> solutions = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			solutions.add(new Solution("treatment" + i));
+		}
+		ArrayList<Characteristic> characteristics = new ArrayList<>();
+		HashMap<Characteristic, ArrayList<Solution>> listed = new HashMap<>();
+		for (int i = 0; i < 3000; i++) {
+			Characteristic ch = new Characteristic("characteristic" + i, synonyms("synonym" + i));
+			listed.put(ch, new ArrayList<Solution>());
+			for (int j = 0; j < 5; j++) {
+				Solution s = solutions.get(random.nextInt(solutions.size()));
+				ch.addSolution(s, 1 + random.nextInt(3)); // a solution picked twice keeps its first multiplier
+				if (!listed.get(ch).contains(s)) {
+					listed.get(ch).add(s);
+				}
+			}
+			characteristics.add(ch);
+		}
+
+		ContextGraph graph = new ContextGraphBuilder().addSolutions(solutions).addCharacteristics(characteristics).build();
+
+		HashMap<Solution, Double> expected = new HashMap<>();
+		for (int i = 0; i < 50; i++) {
+			Characteristic ch = characteristics.get(random.nextInt(characteristics.size()));
+			graph.incrementCharacteristic(ch, 1.0);
+			for (Solution s : listed.get(ch)) {
+				Double sum = expected.get(s);
+				expected.put(s, (sum == null ? 0.0 : sum) + ch.getMultiplier(s));
+			}
+		}
+
+		for (Solution s : solutions) {
+			Double sum = expected.get(s);
+			assertEquals(sum == null ? 0.0 : sum, graph.getSolutionScore(s), 1e-9);
+		}
+	}
+}
@@ -0,0 +1,183 @@
+package Testing;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+
+import org.junit.jupiter.api.*;
+
+import ConvoBot.Characteristic;
+import ConvoBot.ContextGraph;
+import ConvoBot.Session;
+import ConvoBot.SessionStore;
+import ConvoBot.Solution;
+
+public class ContextGraphEditTest {
+
+	/**
+	 * Tests changing a graph after it is built (edges, multipliers, removed characteristics/solutions)
+	 * 	and that the change stays in that graph
+	 */
+
+	private ArrayList<Solution> solutions;
+	private ArrayList<Characteristic> characteristics;
+	private ContextGraph template;
+	private ContextGraph graph;
+
+	// characteristic0 -> treatment0 (x2), treatment1 (x1)
+	// characteristic1 -> treatment1 (x3)
+	// characteristic2 -> treatment2 (x1)
+	@BeforeEach
+	void createGraph() {
+		TestGraph test = new TestGraph().numberedSolutions(3).numberedCharacteristics(3)
+				.edge(0, 0, 2).edge(0, 1, 1)
+				.edge(1, 1, 3)
+				.edge(2, 2, 1);
+		solutions = test.getSolutions();
+		characteristics = test.getCharacteristics();
+		template = test.build();
+		graph = new ContextGraph(template);
+	}
+
+	@Test
+	void testSetMultiplier() {
+		graph.incrementCharacteristic(characteristics.get(0), 3);
+		assertEquals(6.0, graph.getSolutionScore(solutions.get(0)), 0.0001);
+
+		assertTrue(graph.setEdgeMultiplier(characteristics.get(0), solutions.get(0), 5.0));
+		assertEquals(15.0, graph.getSolutionScore(solutions.get(0)), 0.0001);
+		assertEquals(3.0, graph.getSolutionScore(solutions.get(1)), 0.0001);
+		assertFalse(graph.setEdgeMultiplier(characteristics.get(2), solutions.get(0), 5.0)); // no edge
+	}
+
+	@Test
+	void testAddEdge() {
+		graph.incrementCharacteristic(characteristics.get(2), 2);
+		assertTrue(graph.addEdge(characteristics.get(2), solutions.get(0), 1.5));
+		assertEquals(3.0, graph.getSolutionScore(solutions.get(0)), 0.0001);
+
+		// adding an edge that exists changes its multiplier
+		assertTrue(graph.addEdge(characteristics.get(2), solutions.get(0), 4.0));
+		assertEquals(8.0, graph.getSolutionScore(solutions.get(0)), 0.0001);
+
+		// characteristic below another one gets its weight passed down
+		assertTrue(graph.addEdge(characteristics.get(2), characteristics.get(1), 0.5));
+		assertEquals(3.0, graph.getSolutionScore(solutions.get(1)), 0.0001); // 2 * 0.5 * 3
+		assertFalse(graph.addEdge(characteristics.get(1), characteristics.get(2), 1.0)); // cycle
+	}
+
+	@Test
+	void testRemoveEdge() {
+		graph.incrementCharacteristic(characteristics.get(0), 2);
+		graph.incrementCharacteristic(characteristics.get(1), 1);
+		assertEquals(5.0, graph.getSolutionScore(solutions.get(1)), 0.0001);
+
+		int id = graph.getEdge(characteristics.get(0), solutions.get(1)).getId();
+		assertTrue(graph.removeEdge(characteristics.get(0), solutions.get(1)));
+		assertEquals(3.0, graph.getSolutionScore(solutions.get(1)), 0.0001);
+		assertFalse(graph.edgeExists(characteristics.get(0), solutions.get(1)));
+		assertFalse(graph.removeEdge(characteristics.get(0), solutions.get(1)));
+
+		// removed id stays disabled, whatever mask is applied
+		assertFalse(graph.getEnabledEdgeMask().get(id));
+		BitSet all = new BitSet();
+		all.set(0, id + 10);
+		graph.setEdgesEnabled(all, true);
+		assertFalse(graph.getEnabledEdgeMask().get(id));
+		graph.setEnabledEdgeMask(all);
+		assertFalse(graph.getEnabledEdgeMask().get(id));
+		assertEquals(3.0, graph.getSolutionScore(solutions.get(1)), 0.0001);
+	}
+
+	@Test
+	void testRemoveCharacteristic() {
+		graph.incrementCharacteristic(characteristics.get(0), 2);
+		graph.incrementCharacteristic(characteristics.get(1), 1);
+		int id = graph.getNodeId(characteristics.get(0));
+
+		assertTrue(graph.removeCharacteristic(characteristics.get(0)));
+		assertEquals(0.0, graph.getSolutionScore(solutions.get(0)), 0.0001);
+		assertEquals(3.0, graph.getSolutionScore(solutions.get(1)), 0.0001);
+		assertEquals(-1, graph.getNodeId(characteristics.get(0)));
+		assertFalse(graph.getEnabledNodeMask().get(id));
+		assertFalse(graph.removeCharacteristic(characteristics.get(0)));
+	}
+
+	@Test
+	void testRemoveSolution() {
+		graph.incrementCharacteristic(characteristics.get(0), 2);
+		assertTrue(graph.removeSolution(solutions.get(0)));
+		assertEquals(2, graph.getSolutionsList().size());
+		assertEquals(solutions.get(1), graph.getTopSolutionsArray()[0]);
+		assertEquals(2, graph.getTopSolutionsArray().length);
+		assertFalse(graph.edgeExists(characteristics.get(0), solutions.get(0)));
+	}
+
+	@Test
+	void testRemovalKeepsScoringUnmasked() {
+		graph.incrementCharacteristic(characteristics.get(0), 2);
+		graph.incrementCharacteristic(characteristics.get(1), 1);
+		assertTrue(graph.removeEdge(characteristics.get(0), solutions.get(1)));
+		assertTrue(graph.removeSolution(solutions.get(2)));
+		assertTrue(graph.removeCharacteristic(characteristics.get(2)));
+
+		// removed nodes/edges don't count as disabled, scores are still read without re-weighting
+		assertFalse(graph.isMasked());
+		assertEquals(4.0, graph.getSolutionScore(solutions.get(0)), 0.0001);
+		assertEquals(3.0, graph.getSolutionScore(solutions.get(1)), 0.0001);
+
+		graph.setNodeEnabled(solutions.get(0), false);
+		assertTrue(graph.isMasked());
+		graph.setNodeEnabled(solutions.get(0), true);
+		assertFalse(graph.isMasked());
+		assertEquals(4.0, graph.getSolutionScore(solutions.get(0)), 0.0001);
+	}
+
+	@Test
+	void testTemplateUntouched() {
+		graph.setEdgeMultiplier(characteristics.get(0), solutions.get(0), 9.0);
+		graph.addEdge(characteristics.get(2), solutions.get(1), 1.0);
+		graph.addEdge(characteristics.get(2), characteristics.get(1), 1.0);
+		graph.removeEdge(characteristics.get(1), solutions.get(1));
+		graph.removeSolution(solutions.get(2));
+		graph.removeCharacteristic(characteristics.get(0));
+
+		// characteristics are shared with the template, they keep the solutions read from file
+		assertEquals(2.0, characteristics.get(0).getMultiplier(solutions.get(0)), 0.0);
+		assertEquals(2, characteristics.get(0).getSolutions().size());
+		assertEquals(1, characteristics.get(1).getSolutions().size());
+		assertEquals(1, characteristics.get(2).getSolutions().size());
+		assertTrue(characteristics.get(2).getSubCharacteristics().isEmpty());
+		assertEquals(3, template.getSolutionsList().size());
+
+		// graphs built afterwards are the same as before
+		for (ContextGraph g : new ContextGraph[] {template, new ContextGraph(template)}) {
+			g.incrementCharacteristic(characteristics.get(0), 1);
+			g.incrementCharacteristic(characteristics.get(1), 1);
+			g.incrementCharacteristic(characteristics.get(2), 1);
+			assertEquals(2.0, g.getSolutionScore(solutions.get(0)), 0.0001);
+			assertEquals(4.0, g.getSolutionScore(solutions.get(1)), 0.0001);
+			assertEquals(1.0, g.getSolutionScore(solutions.get(2)), 0.0001);
+		}
+	}
+
+	@Test
+	void testHibernatedSessionAfterAnotherSessionChanges() {
+		SessionStore store = new SessionStore(2, template);
+		Session changed = store.getOrCreate("changed");
+		changed.getContextGraph().removeSolution(solutions.get(0));
+		changed.getContextGraph().addEdge(characteristics.get(2), solutions.get(1), 2.0);
+
+		Session other = store.getOrCreate("other");
+		other.getContextGraph().incrementCharacteristic(characteristics.get(0), 2);
+		for (int i = 0; store.isHot("other"); i++) {
+			store.getOrCreate("patient" + i);
+		}
+
+		// other was built after changed's edits and comes back from its saved state
+		Session back = store.get("other");
+		assertEquals(4.0, back.getContextGraph().getSolutionScore(solutions.get(0)), 0.0001);
+		assertEquals(2.0, back.getContextGraph().getSolutionScore(solutions.get(1)), 0.0001);
+	}
+}
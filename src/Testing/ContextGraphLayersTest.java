@@ -0,0 +1,87 @@
+package Testing;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.*;
+
+import ConvoBot.Characteristic;
+import ConvoBot.ContextGraph;
+import ConvoBot.Solution;
+
+public class ContextGraphLayersTest {
+	
+	/**
+	 * Tests graphs with characteristics below other characteristics (sleep problems -> insomnia, fatigue -> solutions)
+	 */
+	
+	private static final String SOLUTIONS = "treatment1;\ntreatment2;\ntreatment5;\n";
+	private static final String LAYERS = "sleep problems;sleepy;treatment5-1.0;insomnia-1.0,fatigue-0.5;\n"
+			+ "insomnia;sleepless;treatment1-2.0,treatment2-1.0;\n"
+			+ "fatigue;tired;treatment2-3.0;\n";
+	
+	private ContextGraph graph;
+	private ArrayList<Characteristic> characteristics;
+	private ArrayList<Solution> solutions;
+	
+	@BeforeEach
+	void createGraph() throws IOException {
+		graph = new ContextGraph(writeFile(LAYERS), writeFile(SOLUTIONS));
+		characteristics = graph.getCharacteristicsList();
+		solutions = graph.getSolutionsList();
+	}
+	
+	@Test
+	void testWeightPassedThroughLayers() {
+		graph.incrementCharacteristic(characteristics.get(0), 2.0); // sleep problems
+		
+		assertEquals(4.0, graph.getSolutionScore(solutions.get(0)), 0.0001); // 2 * 1.0 * 2.0
+		assertEquals(5.0, graph.getSolutionScore(solutions.get(1)), 0.0001); // 2 * 1.0 * 1.0 + 2 * 0.5 * 3.0
+		assertEquals(2.0, graph.getSolutionScore(solutions.get(2)), 0.0001);
+		
+		graph.incrementCharacteristic(characteristics.get(2), 1.0); // fatigue
+		assertEquals(8.0, graph.getSolutionScore(solutions.get(1)), 0.0001);
+	}
+	
+	@Test
+	void testDisabledMiddleLayer() {
+		graph.incrementCharacteristic(characteristics.get(0), 2.0);
+		graph.setNodeEnabled(characteristics.get(1), false); // insomnia
+		
+		assertEquals(0.0, graph.getSolutionScore(solutions.get(0)), 0.0001);
+		assertEquals(3.0, graph.getSolutionScore(solutions.get(1)), 0.0001);
+	}
+	
+	@Test
+	void testEdgeCreatingCycleRejected() {
+		assertFalse(graph.addEdge(characteristics.get(2), characteristics.get(0), 1.0));
+		assertTrue(graph.addEdge(characteristics.get(2), characteristics.get(1), 1.0));
+	}
+	
+	@Test
+	void testCycleRejectedAtLoad() throws IOException {
+		String cycle = "a;x;treatment1-1.0;b-1.0;\nb;y;;c-1.0;\nc;z;treatment2-1.0;a-1.0;\n";
+		String characteristicsFile = writeFile(cycle);
+		String solutionsFile = writeFile(SOLUTIONS);
+		
+		try {
+			new ContextGraph(characteristicsFile, solutionsFile);
+			fail("graph with cycle should not be created");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("cycle"));
+		}
+	}
+	
+	private static String writeFile(String contents) throws IOException {
+		File file = File.createTempFile("contextGraph", ".txt");
+		file.deleteOnExit();
+		try (FileWriter writer = new FileWriter(file)) {
+			writer.write(contents);
+		}
+		return file.getPath();
+	}
+}
@@ -0,0 +1,149 @@
+package Testing;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.junit.jupiter.api.*;
+
+import ConvoBot.Characteristic;
+import ConvoBot.ContextGraph;
+import ConvoBot.Solution;
+import ConvoBot.Subject;
+
+public class ContextGraphMaskTest {
+
+	/**
+	 * Tests enabling/disabling nodes and edges, one at a time, in bulk and as whole masks, and how masked solutions are scored
+	 */
+
+	private ArrayList<Solution> solutions;
+	private ArrayList<Characteristic> characteristics;
+	private ContextGraph graph;
+
+	// characteristic0 -> treatment0 (x2), treatment1 (x1)
+	// characteristic1 -> treatment1 (x3), treatment2 (x1)
+	// characteristic2 -> treatment2 (x4)
+	@BeforeEach
+	void createGraph() {
+		TestGraph test = new TestGraph().numberedSolutions(3).numberedCharacteristics(3)
+				.edge(0, 0, 2).edge(0, 1, 1)
+				.edge(1, 1, 3).edge(1, 2, 1)
+				.edge(2, 2, 4);
+		solutions = test.getSolutions();
+		characteristics = test.getCharacteristics();
+		graph = test.build();
+		for (Characteristic ch : characteristics) {
+			graph.incrementCharacteristic(ch, 1); // treatment0 = 2, treatment1 = 4, treatment2 = 5
+		}
+	}
+
+	private double[] scores(ContextGraph g) {
+		double[] s = new double[solutions.size()];
+		for (int i = 0; i < s.length; i++) {
+			s[i] = g.getSolutionScore(solutions.get(i));
+		}
+		return s;
+	}
+
+	@Test
+	void testDisabledSolution() {
+		assertEquals(solutions.get(2), graph.getTopSolutionsArray()[0]);
+		graph.setNodeEnabled(solutions.get(2), false);
+		assertEquals(0.0, graph.getSolutionScore(solutions.get(2)), 0.0);
+		assertEquals(solutions.get(1), graph.getTopSolutionsArray()[0]);
+		assertEquals(solutions.get(2), graph.getTopSolutionsArray()[2]);
+
+		graph.setNodeEnabled(solutions.get(2), true);
+		assertEquals(5.0, graph.getSolutionScore(solutions.get(2)), 1e-9);
+		assertEquals(solutions.get(2), graph.getTopSolutionsArray()[0]);
+	}
+
+	@Test
+	void testDisabledCharacteristic() {
+		graph.setNodeEnabled(characteristics.get(1), false);
+		assertEquals(1.0, graph.getSolutionScore(solutions.get(1)), 1e-9);
+		assertEquals(4.0, graph.getSolutionScore(solutions.get(2)), 1e-9);
+		assertFalse(graph.checkNodeEnabled(characteristics.get(1)));
+
+		graph.setNodeEnabled(characteristics.get(1), true);
+		assertEquals(4.0, graph.getSolutionScore(solutions.get(1)), 1e-9);
+		assertEquals(5.0, graph.getSolutionScore(solutions.get(2)), 1e-9);
+	}
+
+	@Test
+	void testDisabledEdge() {
+		graph.setEdgeEnabled(characteristics.get(2), solutions.get(2), false);
+		assertEquals(1.0, graph.getSolutionScore(solutions.get(2)), 1e-9);
+		assertEquals(solutions.get(1), graph.getTopSolutionsArray()[0]);
+		assertFalse(graph.checkEdgesEnabled(characteristics.get(2), solutions.get(2)));
+
+		graph.setEdgeEnabled(characteristics.get(2), solutions.get(2), true);
+		assertEquals(5.0, graph.getSolutionScore(solutions.get(2)), 1e-9);
+	}
+
+	@Test
+	void testBulkSameAsOneAtATime() {
+		ContextGraph single = new ContextGraph(graph);
+		for (Characteristic ch : characteristics) {
+			single.incrementCharacteristic(ch, 1);
+		}
+		single.setNodeEnabled(characteristics.get(0), false);
+		single.setNodeEnabled(solutions.get(2), false);
+		single.setEdgeEnabled(characteristics.get(1), solutions.get(1), false);
+
+		graph.setNodesEnabled(Arrays.<Subject>asList(characteristics.get(0), solutions.get(2)), false);
+		BitSet edges = new BitSet();
+		edges.set(graph.getEdge(characteristics.get(1), solutions.get(1)).getId());
+		graph.setEdgesEnabled(edges, false);
+
+		assertEquals(single.getEnabledNodeMask(), graph.getEnabledNodeMask());
+		assertEquals(single.getEnabledEdgeMask(), graph.getEnabledEdgeMask());
+		assertTrue(Arrays.equals(scores(single), scores(graph)));
+		assertTrue(Arrays.equals(single.getTopSolutionsArray(), graph.getTopSolutionsArray()));
+
+		// enabling in bulk undoes it
+		graph.setNodesEnabled(Arrays.<Subject>asList(characteristics.get(0), solutions.get(2)), true);
+		graph.setEdgesEnabled(edges, true);
+		assertEquals(2.0, graph.getSolutionScore(solutions.get(0)), 1e-9);
+		assertEquals(4.0, graph.getSolutionScore(solutions.get(1)), 1e-9);
+		assertEquals(5.0, graph.getSolutionScore(solutions.get(2)), 1e-9);
+	}
+
+	@Test
+	void testWholeMaskSameAsOneAtATime() {
+		ContextGraph single = new ContextGraph(graph);
+		for (Characteristic ch : characteristics) {
+			single.incrementCharacteristic(ch, 1);
+		}
+		single.setNodeEnabled(characteristics.get(2), false);
+		single.setNodeEnabled(solutions.get(0), false);
+		single.setEdgeEnabled(characteristics.get(0), solutions.get(1), false);
+
+		// masks read from one graph and applied to another with the same shape
+		graph.setEnabledNodeMask(single.getEnabledNodeMask());
+		graph.setEnabledEdgeMask(single.getEnabledEdgeMask());
+		assertFalse(graph.getEnabledNodeMask().get(graph.getNodeId(characteristics.get(2))));
+		assertFalse(graph.getEnabledNodeMask().get(graph.getNodeId(solutions.get(0))));
+		assertTrue(graph.getEnabledNodeMask().get(graph.getNodeId(solutions.get(1))));
+		assertTrue(Arrays.equals(scores(single), scores(graph)));
+		assertEquals(0.0, graph.getSolutionScore(solutions.get(0)), 0.0);
+		assertEquals(3.0, graph.getSolutionScore(solutions.get(1)), 1e-9);
+		assertEquals(1.0, graph.getSolutionScore(solutions.get(2)), 1e-9);
+
+		// an empty mask disables everything but the center node, a full one restores every score
+		graph.setEnabledNodeMask(new BitSet());
+		for (double s : scores(graph)) {
+			assertEquals(0.0, s, 0.0);
+		}
+		BitSet all = new BitSet();
+		all.set(0, 100);
+		graph.setEnabledNodeMask(all);
+		graph.setEnabledEdgeMask(all);
+		assertEquals(2.0, graph.getSolutionScore(solutions.get(0)), 1e-9);
+		assertEquals(4.0, graph.getSolutionScore(solutions.get(1)), 1e-9);
+		assertEquals(5.0, graph.getSolutionScore(solutions.get(2)), 1e-9);
+	}
+}
@@ -97,6 +97,26 @@ public class ContextGraphTest{
 			System.out.println("\t" + s.toString());
 		}
 		
+		
+		
+		
+		System.out.println("\n\nTest changing graph after it is built");
+		System.out.println("edge ch3->s3 multiplier set to 10, edge ch3->s5 added (multiplier 2), edge ch4->s6 removed, characteristic 1 removed");
+		
+		g.setEdgeMultiplier(characteristicsList.get(2), solutionsList.get(2), 10.0);
+		g.addEdge(characteristicsList.get(2), solutionsList.get(4), 2.0);
+		g.removeEdge(characteristicsList.get(3), solutionsList.get(5));
+		g.removeCharacteristic(characteristicsList.get(0));
+		
+		System.out.print("\n\n" + g.toString());
+		
+		topSolutions = g.getTopSolutionsArray();
+		
+		System.out.println("Top solutions");
+		for (Solution s : topSolutions) {
+			System.out.println("\t" + s.toString() + " " + g.getSolutionScore(s));
+		}
+		
 	}
 	
 	
@@ -0,0 +1,102 @@
+package Testing;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.*;
+
+import ConvoBot.ContextGraph;
+import ConvoBot.MessageChannel;
+import ConvoBot.PrintMessage;
+import ConvoBot.Solution;
+import ConvoBot.Speculator;
+import Topics.Discussion;
+import Topics.Topic;
+
+public class DiscussionTest {
+
+	/**
+	 * Tests that follow up questions in Discussion are ordinary turns, every answer goes through the whole pipeline
+	 */
+
+	private ContextGraph graph;
+	private Solution sleepSchedule;
+	private ArrayList<String> replies;
+
+	// answers in order, then goodbye
+	private MessageChannel patient(final String... answers) {
+		return new MessageChannel() {
+			private int next;
+
+			@Override
+			public String messageFromUser() {
+				return next < answers.length ? answers[next++] : "goodbye";
+			}
+
+			@Override
+			public void messageFromBot(String output) {
+				replies.add(output);
+			}
+		};
+	}
+
+	@BeforeEach
+	void createGraph() {
+		Speculator.enabled = false;
+		replies = new ArrayList<>();
+		TestGraph test = new TestGraph().edge("insomnia", "sleep schedule", 2).synonym("insomnia", "can't sleep");
+		sleepSchedule = test.getSolution("sleep schedule");
+		graph = test.build();
+		Topic.currentTopic = 2;
+		Discussion.pipeline.resetTimings();
+	}
+
+	@AfterEach
+	void resetChannel() {
+		PrintMessage.setChannel(null);
+		Speculator.enabled = true;
+	}
+
+	@Test
+	void testFollowUpAnswersAreTurns() {
+		PrintMessage.setChannel(patient("work is stressful", "work, and i can't sleep", "yes"));
+		new Discussion(graph).startTopic();
+
+		assertTrue(replies.get(1).endsWith("Whats been stressing you out?"));
+		assertEquals("Sorry to hear that your work has been so stressful. Do you enjoy what you do?", replies.get(2));
+		assertTrue(replies.get(3).startsWith("Thats good, its important to enjoy what you do."));
+
+		// 3 answers and goodbye, each through every stage, the answer to a follow up updates the graph too
+		for (int i = 0; i < Discussion.pipeline.getStageNames().length; i++) {
+			assertEquals(4, Discussion.pipeline.getStageTurns(i));
+		}
+		assertTrue(graph.getSolutionScore(sleepSchedule) >= 2.0);
+		assertEquals(4, Topic.currentTopic); // said goodbye
+	}
+
+	@Test
+	void testChainedFollowUps() {
+		PrintMessage.setChannel(patient("so tired lately", "no", "no", "maybe", "no thanks"));
+		new Discussion(graph).startTopic();
+
+		assertEquals("Do you excercise? It can help with sleeping better.", replies.get(1));
+		assertTrue(replies.get(2).endsWith("Do you have a reagular sleep schedule?"));
+		assertTrue(replies.get(3).endsWith("have you been feeling stressed or anxious lately?"));
+		assertTrue(replies.get(4).endsWith("Have you looked into your schools student resources?"));
+		// no question waiting anymore, "no" gets the usual reply
+		assertEquals("I'd reccomend looking into it. Are you having any other problems?", replies.get(5));
+	}
+
+	@Test
+	void testGoodbyeEndsDiscussion() {
+		// "do" in "don't" isn't a yes, saying bye while answering still ends the discussion
+		PrintMessage.setChannel(patient("so tired lately", "no i don't, bye", "stress"));
+		new Discussion(graph).startTopic();
+
+		assertEquals("Do you excercise? It can help with sleeping better.", replies.get(1));
+		assertTrue(replies.get(2).startsWith("You should try it."));
+		assertEquals(3, replies.size());
+		assertEquals(4, Topic.currentTopic);
+	}
+}
@@ -0,0 +1,76 @@
+package Testing;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.jupiter.api.*;
+
+import ConvoBot.EdgeIndex;
+
+public class EdgeIndexTest {
+
+	@Test
+	void testPutGet() {
+		EdgeIndex index = new EdgeIndex();
+		index.put(1, 2, 0);
+		index.put(2, 1, 1);
+
+		assertEquals(0, index.get(1, 2));
+		assertEquals(1, index.get(2, 1));
+		assertEquals(-1, index.get(1, 3));
+		assertTrue(index.contains(1, 2));
+		assertFalse(index.contains(3, 1));
+	}
+
+	@Test
+	void testReplace() {
+		EdgeIndex index = new EdgeIndex();
+		index.put(4, 5, 7);
+		index.put(4, 5, 9);
+
+		assertEquals(9, index.get(4, 5));
+		assertEquals(1, index.size());
+	}
+
+	@Test
+	void testRemove() {
+		EdgeIndex index = new EdgeIndex();
+		index.put(1, 2, 0);
+
+		assertEquals(0, index.remove(1, 2));
+		assertEquals(-1, index.remove(1, 2));
+		assertFalse(index.contains(1, 2));
+		assertEquals(0, index.size());
+	}
+
+	// compares index against a HashMap for random puts/removes (checks growing and entries shifted back on remove)
+	@Test
+	void testMatchesHashMap() {
+		EdgeIndex index = new EdgeIndex(4);
+		HashMap<Long, Integer> expected = new HashMap<>();
+		Random random = new Random(42);
+
+		for (int i = 0; i < 20000; i++) {
+			int start = random.nextInt(60);
+			int end = random.nextInt(60);
+
+			if (random.nextInt(3) == 0) {
+				Integer removed = expected.remove(EdgeIndex.key(start, end));
+				assertEquals(removed == null ? -1 : removed.intValue(), index.remove(start, end));
+			} else {
+				expected.put(EdgeIndex.key(start, end), i);
+				index.put(start, end, i);
+			}
+		}
+
+		assertEquals(expected.size(), index.size());
+		for (int start = 0; start < 60; start++) {
+			for (int end = 0; end < 60; end++) {
+				Integer value = expected.get(EdgeIndex.key(start, end));
+				assertEquals(value == null ? -1 : value.intValue(), index.get(start, end));
+			}
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package Testing;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.*;
+
+import ConvoBot.Characteristic;
+import ConvoBot.ContextGraph;
+import ConvoBot.Contribution;
+import ConvoBot.Solution;
+
+public class ExplainTest {
+
+	/**
+	 * Tests which characteristics a solution's weight comes from (ContextGraph.explain)
+	 */
+
+	private ArrayList<Solution> solutions;
+	private ArrayList<Characteristic> characteristics;
+	private ContextGraph graph;
+
+	// characteristic0..3 -> treatment0 (x1, x2, x3, x4), characteristic0 -> treatment1 (x1)
+	// sleep problems -> characteristic2 (x0.5) -> treatment0
+	@BeforeEach
+	void createGraph() {
+		TestGraph test = new TestGraph().numberedSolutions(2).numberedCharacteristics(4);
+		for (int i = 0; i < 4; i++) {
+			test.edge(i, 0, i + 1);
+		}
+		test.edge(0, 1, 1).sub("sleep problems", "characteristic2", 0.5);
+		solutions = test.getSolutions();
+		characteristics = test.getCharacteristics();
+		graph = test.build();
+
+		for (int i = 0; i < 4; i++) {
+			graph.incrementCharacteristic(characteristics.get(i), 1); // contributions 1, 2, 3, 4
+		}
+	}
+
+	@Test
+	void testSharesSumToOne() {
+		ArrayList<Contribution> all = graph.explain(solutions.get(0), 10);
+		assertEquals(4, all.size());
+		double sum = 0.0;
+		double contributions = 0.0;
+		for (Contribution c : all) {
+			sum += c.getShare();
+			contributions += c.getContribution();
+		}
+		assertEquals(1.0, sum, 1e-9);
+		assertEquals(graph.getSolutionScore(solutions.get(0)), contributions, 1e-9);
+		assertEquals(0.4, all.get(0).getShare(), 1e-9); // 4 / 10
+		assertEquals(1.0, graph.explain(solutions.get(1), 10).get(0).getShare(), 1e-9);
+	}
+
+	@Test
+	void testTopK() {
+		ArrayList<Contribution> top = graph.explain(solutions.get(0), 2);
+		assertEquals(2, top.size());
+		assertEquals(characteristics.get(3), top.get(0).getCharacteristic());
+		assertEquals(characteristics.get(2), top.get(1).getCharacteristic());
+		// shares are still of the whole solution, not of the k returned
+		assertEquals(0.4, top.get(0).getShare(), 1e-9);
+		assertEquals(0.3, top.get(1).getShare(), 1e-9);
+
+		assertTrue(graph.explain(solutions.get(0), 0).isEmpty());
+		assertTrue(graph.explain(new Solution("not in graph"), 3).isEmpty());
+	}
+
+	@Test
+	void testDisabledEdgesAndNodes() {
+		graph.setEdgeEnabled(characteristics.get(3), solutions.get(0), false);
+		ArrayList<Contribution> top = graph.explain(solutions.get(0), 10);
+		assertEquals(3, top.size());
+		assertEquals(characteristics.get(2), top.get(0).getCharacteristic());
+		assertEquals(0.5, top.get(0).getShare(), 1e-9); // 3 / 6
+
+		graph.setNodeEnabled(characteristics.get(2), false);
+		top = graph.explain(solutions.get(0), 10);
+		assertEquals(2, top.size());
+		assertEquals(characteristics.get(1), top.get(0).getCharacteristic());
+		assertEquals(2.0 / 3, top.get(0).getShare(), 1e-9);
+
+		graph.setNodeEnabled(solutions.get(0), false);
+		assertTrue(graph.explain(solutions.get(0), 10).isEmpty());
+	}
+
+	@Test
+	void testWeightFromCharacteristicAbove() {
+		// sleep problems passes 4 * 0.5 down to characteristic2, whose contribution is then (1 + 2) * 3
+		graph.incrementCharacteristic(characteristics.get(4), 4);
+		ArrayList<Contribution> top = graph.explain(solutions.get(0), 1);
+		assertEquals(characteristics.get(2), top.get(0).getCharacteristic());
+		assertEquals(3.0, top.get(0).getWeight(), 1e-9);
+		assertEquals(9.0, top.get(0).getContribution(), 1e-9);
+		assertEquals(9.0 / 16, top.get(0).getShare(), 1e-9);
+
+		// only characteristics with an edge to the solution are listed, not the ones above them
+		for (Contribution c : graph.explain(solutions.get(0), 10)) {
+			assertFalse(c.getCharacteristic() == characteristics.get(4));
+		}
+
+		// with the middle characteristic's edge disabled its weight from above doesn't reach the solution
+		graph.setEdgeEnabled(characteristics.get(2), solutions.get(0), false);
+		assertEquals(3, graph.explain(solutions.get(0), 10).size());
+		assertEquals(7.0, graph.getSolutionScore(solutions.get(0)), 1e-9);
+	}
+}
@@ -0,0 +1,127 @@
+package Testing;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.*;
+
+import ConvoBot.Characteristic;
+import ConvoBot.ContextGraph;
+import ConvoBot.GraphExporter;
+import ConvoBot.Solution;
+
+public class GraphExporterTest {
+
+	/**
+	 * Tests DOT/JSON Lines/CSV export of ContextGraph (GraphExporter)
+	 */
+
+	private ContextGraph graph;
+	private ArrayList<Characteristic> characteristics;
+	private ArrayList<Solution> solutions;
+
+	// stress -> exercise (x2), stress -> sleep, "sad, tired" -> sleep (x3)
+	@BeforeEach
+	void createGraph() {
+		TestGraph test = new TestGraph().solutions("exercise", "sleep")
+				.edge("stress", "exercise", 2).edge("stress", "sleep", 1)
+				.edge("sad, \"tired\"", "sleep", 3);
+		solutions = test.getSolutions();
+		characteristics = test.getCharacteristics();
+		graph = test.build();
+		graph.incrementCharacteristic(test.getCharacteristic("stress"), 2);
+	}
+
+	private static int count(String s, String part) {
+		int count = 0;
+		for (int i = s.indexOf(part); i >= 0; i = s.indexOf(part, i + 1)) {
+			count++;
+		}
+		return count;
+	}
+
+	@Test
+	void testDot() throws Exception {
+		StringBuilder out = new StringBuilder();
+		new GraphExporter(graph).writeDot(out);
+		String dot = out.toString();
+
+		assertTrue(dot.startsWith("digraph ContextGraph {\n"));
+		assertTrue(dot.endsWith("}\n"));
+		// center + 2 characteristics + 2 solutions, 2 center edges + 3 solution edges (each once)
+		assertEquals(5, count(dot, "[label="));
+		assertEquals(5, count(dot, " -> "));
+		assertTrue(dot.contains("[label=\"sad, \\\"tired\\\"\""));
+	}
+
+	@Test
+	void testJsonLines() throws Exception {
+		StringBuilder out = new StringBuilder();
+		new GraphExporter(graph).writeJsonLines(out);
+		String[] lines = out.toString().split("\n");
+
+		assertEquals(5, lines.length);
+		for (String line : lines) {
+			assertTrue(line.startsWith("{\"id\":"));
+			assertTrue(line.endsWith("]}"));
+		}
+		assertEquals(5, count(out.toString(), "{\"to\":"));
+		assertTrue(out.toString().contains("\"name\":\"stress\",\"weight\":2.0,\"enabled\":true"));
+		assertTrue(out.toString().contains("\"name\":\"exercise\",\"weight\":4.0"));
+	}
+
+	@Test
+	void testMaskedEdgeWeights() throws Exception {
+		StringBuilder out = new StringBuilder();
+		new GraphExporter(graph).writeJsonLines(out);
+		assertTrue(out.toString().contains("\"multiplier\":2.0,\"weight\":4.0,\"enabled\":true"));
+
+		// disabled edge, and edges leaving a disabled node, pass nothing down
+		graph.setEdgeEnabled(characteristics.get(0), solutions.get(0), false);
+		out = new StringBuilder();
+		new GraphExporter(graph).writeJsonLines(out);
+		assertTrue(out.toString().contains("\"multiplier\":2.0,\"weight\":0.0,\"enabled\":false"));
+		assertTrue(out.toString().contains("\"multiplier\":1.0,\"weight\":2.0,\"enabled\":true"));
+
+		graph.setNodeEnabled(characteristics.get(0), false);
+		out = new StringBuilder();
+		new GraphExporter(graph).writeDot(out);
+		assertTrue(out.toString().contains("[multiplier=1.0, score=0.0]")); // stress -> sleep
+		assertEquals(2, count(out.toString(), "[multiplier=1.0, score=2.0]")); // only the center edges
+	}
+
+	@Test
+	void testCsvFilters() throws Exception {
+		graph.setNodeEnabled(solutions.get(1), false);
+
+		StringBuilder out = new StringBuilder();
+		new GraphExporter(graph).setEnabledOnly(true).writeCsv(out);
+		String[] rows = out.toString().split("\n");
+		assertEquals("id,type,name,weight,enabled,edges", rows[0]);
+		assertEquals(5, rows.length); // sleep left out
+		assertFalse(out.toString().contains("sleep"));
+		assertTrue(out.toString().contains("\"sad, \"\"tired\"\"\""));
+
+		// only nodes with weight, edges to nodes left out aren't written
+		out = new StringBuilder();
+		new GraphExporter(graph).setMinWeight(1.0).writeCsv(out);
+		rows = out.toString().split("\n");
+		assertEquals(4, rows.length); // center, stress, exercise
+		assertFalse(out.toString().contains("sad"));
+	}
+
+	@Test
+	void testChannelMatchesAppendable() throws Exception {
+		GraphExporter exporter = new GraphExporter(graph);
+		StringBuilder expected = new StringBuilder();
+		exporter.writeJsonLines(expected);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		exporter.writeJsonLines(Channels.newChannel(bytes));
+		assertEquals(expected.toString(), new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,126 @@
+package Testing;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.*;
+
+import ConvoBot.Characteristic;
+import ConvoBot.ContextGraph;
+import ConvoBot.Contribution;
+import ConvoBot.GraphSnapshot;
+import ConvoBot.Solution;
+
+public class GraphSnapshotTest {
+
+	/**
+	 * Tests read only snapshots published by ContextGraph.publish()
+	 */
+
+	private ContextGraph graph;
+	private ArrayList<Characteristic> characteristics;
+	private ArrayList<Solution> solutions;
+
+	@BeforeEach
+	void createGraph() {
+		TestGraph test = new TestGraph().numberedSolutions(20).numberedCharacteristics(50).randomEdges(new Random(42), 4, 5);
+		solutions = test.getSolutions();
+		characteristics = test.getCharacteristics();
+		graph = test.build();
+	}
+
+	@Test
+	void testSnapshotDoesNotChange() {
+		GraphSnapshot first = graph.getSnapshot();
+		assertNotNull(first);
+
+		graph.incrementCharacteristic(characteristics.get(0), 3.0);
+		Solution s = graph.getTopSolution();
+
+		assertEquals(0.0, first.getSolutionScore(s), 0.0);
+		assertSame(first, graph.getSnapshot());
+
+		GraphSnapshot second = graph.publish();
+		assertTrue(second.getVersion() > first.getVersion());
+		assertEquals(graph.getSolutionScore(s), second.getSolutionScore(s), 0.0);
+		assertEquals(0.0, first.getSolutionScore(s), 0.0);
+	}
+
+	@Test
+	void testMatchesGraph() {
+		graph.incrementCharacteristic(characteristics.get(1), 2.0);
+		graph.incrementCharacteristic(characteristics.get(2), 1.0);
+		graph.setNodeEnabled(characteristics.get(2), false);
+		GraphSnapshot snapshot = graph.publish();
+
+		assertArrayEquals(graph.getTopSolutionsArray(), snapshot.getTopSolutionsArray());
+		for (Solution s : solutions) {
+			assertEquals(graph.getSolutionScore(s), snapshot.getSolutionScore(s), 0.0);
+			assertEquals(graph.explain(s, 3).toString(), snapshot.explain(s, 3).toString());
+		}
+		assertFalse(snapshot.checkNodeEnabled(characteristics.get(2)));
+	}
+
+	@Test
+	void testNewSolutionAfterPublish() {
+		Solution s = new Solution("new treatment");
+		graph.addNewSolution(s);
+		graph.addEdge(characteristics.get(0), s, 10.0);
+		graph.incrementCharacteristic(characteristics.get(0), 1.0);
+
+		assertEquals(0.0, graph.getSnapshot().getSolutionScore(s), 0.0);
+		assertEquals(s, graph.publish().getTopSolution());
+	}
+
+	// readers on other threads only ever see whole snapshots (score of every solution = sum of what explain returns)
+	@Test
+	void testConcurrentReaders() throws InterruptedException {
+		final AtomicBoolean failed = new AtomicBoolean();
+		final AtomicBoolean done = new AtomicBoolean();
+		Thread[] readers = new Thread[3];
+
+		for (int r = 0; r < readers.length; r++) {
+			readers[r] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					long lastVersion = 0;
+					while (!done.get()) {
+						GraphSnapshot snapshot = graph.getSnapshot();
+						if (snapshot.getVersion() < lastVersion) {
+							failed.set(true);
+						}
+						lastVersion = snapshot.getVersion();
+
+						for (Solution s : solutions) {
+							double total = 0.0;
+							for (Contribution c : snapshot.explain(s, characteristics.size())) {
+								total += c.getContribution();
+							}
+							if (Math.abs(total - snapshot.getSolutionScore(s)) > 1e-9) {
+								failed.set(true);
+							}
+						}
+					}
+				}
+			});
+			readers[r].start();
+		}
+
+		Random random = new Random(7);
+		for (int i = 0; i < 2000; i++) {
+			graph.incrementCharacteristic(characteristics.get(random.nextInt(characteristics.size())), 1.0);
+			if (i % 10 == 0) {
+				graph.publish();
+			}
+		}
+		done.set(true);
+
+		for (Thread reader : readers) {
+			reader.join();
+		}
+		assertFalse(failed.get());
+	}
+}
@@ -0,0 +1,105 @@
+package Testing;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+import org.junit.jupiter.api.*;
+
+import ConvoBot.Characteristic;
+import ConvoBot.ContextGraph;
+import ConvoBot.GraphWriter;
+import ConvoBot.Solution;
+
+public class GraphWriterTest {
+
+	/**
+	 * Tests queued graph updates (GraphWriter)
+	 */
+
+	private ContextGraph graph;
+	private ArrayList<Characteristic> characteristics;
+	private ArrayList<Solution> solutions;
+
+	// runs tasks only when told to, so the test decides when the writer drains
+	private ArrayList<Runnable> tasks;
+	private Executor manual;
+
+	@BeforeEach
+	void createGraph() {
+		TestGraph test = new TestGraph().numberedSolutions(3).numberedCharacteristics(3);
+		for (int i = 0; i < 3; i++) {
+			test.edge(i, i, 1);
+		}
+		solutions = test.getSolutions();
+		characteristics = test.getCharacteristics();
+		graph = test.build();
+
+		tasks = new ArrayList<>();
+		manual = new Executor() {
+			@Override
+			public void execute(Runnable r) {
+				tasks.add(r);
+			}
+		};
+	}
+
+	private void runTasks() {
+		while (!tasks.isEmpty()) {
+			tasks.remove(0).run();
+		}
+	}
+
+	@Test
+	void testBurstIsCoalesced() throws Exception {
+		GraphWriter writer = new GraphWriter(graph, manual);
+		for (int i = 0; i < 10; i++) {
+			writer.increment(characteristics.get(1), 1.0);
+		}
+		writer.increment(characteristics.get(2), 3.0);
+		assertEquals(1, tasks.size()); // only one drain scheduled for the whole burst
+		assertTrue(writer.hasPending());
+		assertEquals(0.0, graph.getSnapshot().getSolutionScore(solutions.get(1)), 0.0);
+
+		runTasks();
+		assertFalse(writer.hasPending());
+		assertEquals(1, writer.getBatches());
+		assertEquals(2, writer.getIncrements());
+		assertEquals(11, writer.getSubmitted());
+
+		ContextGraph flushed = writer.flush();
+		assertEquals("treatment1", flushed.getTopSolution().getName());
+		assertEquals(10.0, writer.getSnapshot().getSolutionScore(solutions.get(1)), 0.0);
+		assertEquals(3.0, writer.getSnapshot().getSolutionScore(solutions.get(2)), 0.0);
+	}
+
+	@Test
+	void testAwaitWaitsForWriter() throws Exception {
+		GraphWriter writer = new GraphWriter(graph);
+		long last = 0;
+		for (int i = 0; i < 1000; i++) {
+			last = writer.increment(characteristics.get(i % 3), 1.0);
+		}
+		writer.await(last);
+		assertFalse(writer.hasPending());
+		assertTrue(writer.getBatches() >= 1 && writer.getBatches() <= 1000);
+		assertEquals(334.0, graph.getSolutionScore(solutions.get(0)), 0.0);
+		assertEquals(333.0, graph.getSolutionScore(solutions.get(1)), 0.0);
+		assertEquals(333.0, graph.getSolutionScore(solutions.get(2)), 0.0);
+	}
+
+	@Test
+	void testFailureReachesWaiter() throws Exception {
+		GraphWriter writer = new GraphWriter(graph, manual);
+		writer.increment(characteristics.get(0), 1.0);
+		writer.increment(null, 1.0);
+		runTasks();
+		try {
+			writer.flush();
+			fail("Expected the writer's exception");
+		} catch (NullPointerException e) {
+			// the null characteristic
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package Testing;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.*;
+
+import ConvoBot.MessageChannel;
+import ConvoBot.Patient;
+import ConvoBot.PrintMessage;
+import ConvoBot.TurnGuard;
+import Topics.Greetings;
+import Topics.Topic;
+
+public class GreetingsTest {
+
+	/**
+	 * Tests asking for the patient's name in Greetings
+	 */
+
+	private ArrayList<String> replies;
+
+	// answers in order
+	private MessageChannel patient(final String... answers) {
+		return new MessageChannel() {
+			private int next;
+
+			@Override
+			public String messageFromUser() {
+				return answers[next++];
+			}
+
+			@Override
+			public void messageFromBot(String output) {
+				replies.add(output);
+			}
+		};
+	}
+
+	@BeforeEach
+	void createReplies() {
+		replies = new ArrayList<>();
+		Topic.currentTopic = 0;
+	}
+
+	@AfterEach
+	void resetChannel() {
+		PrintMessage.setChannel(null);
+		TurnGuard.endTurn(); // Greetings leaves the last answer's turn open, Conversation ends it
+	}
+
+	@Test
+	void testName() {
+		PrintMessage.setChannel(patient("my name is alex", "sure"));
+		Patient patient = new Patient();
+		assertEquals("Alex", Greetings.startTopic(patient));
+		assertEquals("Welcome Alex, can I ask you a few questions before we start?", replies.get(1));
+		assertEquals(1, Topic.currentTopic);
+	}
+
+	@Test
+	void testNoNameAfterAskingAgain() {
+		PrintMessage.setChannel(patient("what do you mean?", "why do you want to know?", "sure"));
+		Patient patient = new Patient();
+		assertNull(Greetings.startTopic(patient));
+		assertNull(patient.getName());
+		assertEquals("Welcome, can I ask you a few questions before we start?", replies.get(2));
+		assertEquals(1, Topic.currentTopic); // on to small talk
+	}
+}
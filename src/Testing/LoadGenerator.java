@@ -0,0 +1,412 @@
+package Testing;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import ConvoBot.Characteristic;
+import ConvoBot.ContextGraph;
+import ConvoBot.Conversation;
+import ConvoBot.MessageChannel;
+import ConvoBot.MultiplierLearner;
+import ConvoBot.Patient;
+import ConvoBot.PrintMessage;
+import ConvoBot.Session;
+import ConvoBot.SessionIndex;
+import ConvoBot.SessionStore;
+import ConvoBot.Speculator;
+import ConvoBot.Trending;
+import ConvoBot.TurnGuard;
+import Topics.Discussion;
+import Topics.Topic;
+
+public class LoadGenerator {
+
+	/**
+	 * Runs simulated patients through whole conversations (Greetings -> SmallTalk -> Discussion -> Advice -> Goodbye) without a console
+	 *
+	 * Each patient is a persona that answers the bot's questions (name, job, age, gender, yes/no questions) and otherwise
+	 * 	says one of its discussion lines, first 3 personas are scripted, the rest are put together at random
+	 * All randomness (personas and the bot's generic replies) comes from one seed, so runs can be repeated
+	 *
+	 * Reports
+	 * 	turns per second (turn = time from patient answering to the bot asking for the next message)
+	 * 	turn latency percentiles for each topic
+	 * 	bytes allocated per conversation (if the JVM can measure it)
+	 * 	session store counters, every patient gets a session in a SessionStore with HOT_SESSIONS on the heap
+	 * 		after each conversation a random earlier patient comes back to check their top solution (rehydrated if hibernated)
+	 * 	time spent in each stage of Discussion's turn pipeline
+	 * The pipeline, scheduler and weight recorder are measured on their own by PipelineBenchmark, SchedulerBenchmark
+	 * 	and WeightRecorderBenchmark
+	 *
+	 * Usage: LoadGenerator [conversations=1000] [seed=42] [warmup=100] [async] [speculate] [learn] [similar] [confident]
+	 * 	async = graph updates queued on a GraphWriter, speculate = replies to yes/no/maybe worked out ahead (see Speculator)
+	 * 	learn = Advice asks if the top solution helped and multipliers are learned from the answers (see MultiplierLearner),
+	 * 		patients then also mention a characteristic and say half of the solutions help
+	 * 	similar = finished sessions are indexed and advice also uses solutions of similar sessions (see SessionIndex),
+	 * 		patients then also mention a characteristic
+	 * 	confident = discussions move on to advice once the top solution leads by CONFIDENT_MARGIN (see Discussion.confidentMargin),
+	 * 		patients then also mention a characteristic
+	 * 	patients answer instantly, so speculation only competes with them for CPU here, it is off unless asked for
+	 * 	run from the project folder (graph files are read for every conversation)
+	 */
+
+	static final String[] TOPIC_NAMES = {"Greetings", "SmallTalk", "Discussion", "Advice", "Goodbye"};
+
+	// stops a patient that got stuck in a loop
+	static final int MAX_MESSAGES = 200;
+	
+	static final int HOT_SESSIONS = 64;
+	// how often the learner folds answers into multipliers ("learn")
+	static final long LEARN_PERIOD_MILLIS = 20;
+	// lead of the top solution over the second that ends a discussion early ("confident")
+	static final double CONFIDENT_MARGIN = 3.0;
+
+	static final String[] NAMES = {"Alex", "Sam", "Jordan", "Taylor", "Riley", "Casey", "Morgan", "Jamie"};
+	static final String[] OCCUPATIONS = {"I'm a student", "I work at a bank", "I am a nurse", "I go to university", "student"};
+	static final String[] GENDERS = {"male", "female", "guy", "girl", "man", "woman"};
+	static final String[] ANSWERS = {"yes", "no", "maybe", "yeah", "i do", "not really"};
+	static final String[] STRESS_CAUSES = {"school", "work", "my family", "money"};
+	static final String[] LINES = {
+			"i am feeling sad", "i'm feeling happy", "i feel tired", "i'm stressed about exams", "i hate mondays",
+			"i love music", "i procrastinate a lot", "i am depressed", "i'm worried about my grades", "i'm okay",
+			"my roommate is loud", "everybody is busy", "nothing much", "i have been tired lately", "work is stressful",
+			"i like running", "i feel great", "i'm upset", "i can't sleep", "i am good"};
+
+	// scripted personas: {name, occupation, age, gender, discussion lines...}
+	static final String[][] SCRIPTED = {
+			{"My name is Alex", "I'm a student", "19", "male", "i'm stressed about exams", "school", "i procrastinate a lot", "i feel tired"},
+			{"I'm Sam", "I work at a bank", "34", "female", "i have been tired lately", "work is stressful", "i am feeling sad"},
+			{"Jordan", "I am a nurse", "27", "woman", "i'm worried about my grades", "i hate mondays", "i'm feeling happy", "goodbye"}};
+
+	public static void main(String[] args) {
+		int conversations = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 42;
+		int warmup = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+		Conversation.asyncGraphUpdates = false;
+		Speculator.enabled = false;
+		Trending.enabled = false; // simulated patients aren't real conversations
+		boolean learn = false;
+		boolean similar = false;
+		Discussion.confidentMargin = 0;
+		for (int i = 3; i < args.length; i++) {
+			if (args[i].equals("async")) {
+				Conversation.asyncGraphUpdates = true;
+			} else if (args[i].equals("speculate")) {
+				Speculator.enabled = true;
+			} else if (args[i].equals("learn")) {
+				learn = true;
+			} else if (args[i].equals("similar")) {
+				similar = true;
+			} else if (args[i].equals("confident")) {
+				Discussion.confidentMargin = CONFIDENT_MARGIN;
+			}
+		}
+
+		LoadGenerator generator = new LoadGenerator(seed);
+		generator.confident = Discussion.confidentMargin > 0;
+		if (learn) {
+			generator.learner = new MultiplierLearner(generator.template);
+			generator.learner.start(LEARN_PERIOD_MILLIS);
+			Conversation.learner = generator.learner;
+		}
+		if (similar) {
+			generator.similarSessions = new SessionIndex(generator.template, seed);
+			Conversation.similarSessions = generator.similarSessions;
+		}
+		PrintStream console = System.out;
+
+		// bot and graph print debug lines straight to System.out, those are thrown away while patients run
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+			@Override
+			public void write(byte[] b, int off, int len) {
+			}
+		}));
+		try {
+			generator.run(warmup);
+			generator.reset();
+			generator.run(conversations);
+		} finally {
+			System.setOut(console);
+			PrintMessage.setChannel(null);
+			if (generator.learner != null) {
+				generator.learner.stop();
+				Conversation.learner = null;
+			}
+			Conversation.similarSessions = null;
+			Discussion.confidentMargin = 0;
+			Trending.enabled = true;
+		}
+
+		console.print(generator.report());
+	}
+
+	private Random random;
+
+	// turn latencies (nanoseconds) by topic
+	private long[][] latencies;
+	private int[] latencyCounts;
+
+	private int conversationCount;
+	private long turns;
+	private long elapsedNanos;
+	private long allocatedBytes;
+	private boolean allocationMeasured;
+	// conversations that ended with name, occupation, age and gender filled in
+	private int completeProfiles;
+
+	private ContextGraph template;
+	private SessionStore sessions;
+	private int patientCount;
+	// separate from random so revisits don't change the personas
+	private Random revisits;
+	// learns multipliers when started with "learn", null otherwise
+	private MultiplierLearner learner;
+	// finished sessions by characteristic weights when started with "similar", null otherwise
+	private SessionIndex similarSessions;
+	// discussions end early when started with "confident"
+	private boolean confident;
+	private long earlyTransitionsBefore;
+
+	public LoadGenerator(long seed) {
+		random = new Random(seed);
+		revisits = new Random(seed);
+		Topic.random = new Random(seed);
+		template = new ContextGraph("characteristicsList.txt", "solutionsList.txt");
+		sessions = new SessionStore(HOT_SESSIONS, template);
+		reset();
+	}
+
+	// clears all measurements (ie. after warm up)
+	public void reset() {
+		latencies = new long[TOPIC_NAMES.length][1024];
+		latencyCounts = new int[TOPIC_NAMES.length];
+		conversationCount = 0;
+		turns = 0;
+		elapsedNanos = 0;
+		allocatedBytes = 0;
+		completeProfiles = 0;
+		earlyTransitionsBefore = Discussion.getEarlyTransitions();
+		Discussion.pipeline.resetTimings();
+	}
+
+	/**
+	 * Runs count conversations one after another on the current thread
+	 */
+	public void run(int count) {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		com.sun.management.ThreadMXBean allocation = null;
+		if (threads instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean)threads).isThreadAllocatedMemorySupported()) {
+			allocation = (com.sun.management.ThreadMXBean)threads;
+			allocation.setThreadAllocatedMemoryEnabled(true);
+		}
+		allocationMeasured = allocation != null;
+		long threadId = Thread.currentThread().getId();
+
+		for (int i = 0; i < count; i++) {
+			String[] persona = conversationCount < SCRIPTED.length ? SCRIPTED[conversationCount] : randomPersona();
+			PatientChannel patient = new PatientChannel(persona);
+			PrintMessage.setChannel(patient);
+
+			long bytesBefore = allocation != null ? allocation.getThreadAllocatedBytes(threadId) : 0;
+			long start = System.nanoTime();
+
+			Session session = sessions.checkout("patient-" + patientCount++);
+			Conversation conversation = new Conversation(session);
+			patient.endTurn();
+			
+			// an earlier patient comes back
+			Session returning = sessions.get("patient-" + revisits.nextInt(patientCount));
+			returning.getContextGraph().getSnapshot().getTopSolution();
+			Patient p = conversation.patient;
+			if (p.getName() != null && p.getOccupation() != null && p.getAge() > 0 && p.getGender() != null) {
+				completeProfiles++;
+			}
+			sessions.release(session);
+
+			elapsedNanos += System.nanoTime() - start;
+			if (allocation != null) {
+				allocatedBytes += allocation.getThreadAllocatedBytes(threadId) - bytesBefore;
+			}
+			conversationCount++;
+		}
+	}
+
+	/**
+	 * Returns throughput, latency percentiles for each topic and allocation per conversation
+	 */
+	public String report() {
+		StringBuilder s = new StringBuilder();
+		double seconds = elapsedNanos / 1e9;
+
+		s.append("Conversations: ").append(conversationCount).append(Conversation.asyncGraphUpdates ? " (async graph updates)" : "")
+				.append(Speculator.enabled ? " (speculated replies)" : "").append("\n");
+		s.append("Turns: ").append(turns).append("\n");
+		s.append(String.format("Time: %.3f s, %.1f turns/s, %.1f conversations/s%n", seconds, turns / seconds, conversationCount / seconds));
+
+		s.append("Turn latency (microseconds)\n");
+		s.append(String.format("\t%-12s%10s%10s%10s%10s%10s%n", "topic", "turns", "p50", "p90", "p99", "max"));
+		for (int t = 0; t < TOPIC_NAMES.length; t++) {
+			long[] sorted = Arrays.copyOf(latencies[t], latencyCounts[t]);
+			Arrays.sort(sorted);
+			s.append(String.format("\t%-12s%10d%10.1f%10.1f%10.1f%10.1f%n", TOPIC_NAMES[t], sorted.length,
+					percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99), percentile(sorted, 1.0)));
+		}
+
+		if (allocationMeasured && conversationCount > 0) {
+			s.append(String.format("Allocated per conversation: %.1f KB%n", allocatedBytes / 1024.0 / conversationCount));
+		} else {
+			s.append("Allocated per conversation: not supported by this JVM\n");
+		}
+		s.append("Complete patient profiles: " + completeProfiles + "/" + conversationCount + "\n");
+		s.append("Sessions: " + sessions.getMetrics() + "\n");
+		s.append("Discussion pipeline (microseconds per turn): " + Discussion.pipeline.getTimings() + "\n");
+		s.append("Speculated replies: " + Speculator.getMetrics() + "\n");
+		s.append("Turn guard: " + TurnGuard.getMetrics() + "\n");
+		if (learner != null) {
+			s.append("Learned multipliers: " + learner.getMetrics() + "\n");
+		}
+		if (similarSessions != null) {
+			s.append("Similar sessions: " + similarSessions.getMetrics() + "\n");
+		}
+		if (confident) {
+			s.append("Discussions ended early (clear top solution): " + (Discussion.getEarlyTransitions() - earlyTransitionsBefore) + "\n");
+		}
+
+		return s.toString();
+	}
+
+	// returns percentile p (0 - 1) of sorted latencies in microseconds
+	static double percentile(long[] sorted, double p) {
+		if (sorted.length == 0) {
+			return 0.0;
+		}
+		int i = (int)Math.ceil(p * sorted.length) - 1;
+		return sorted[Math.max(0, i)] / 1000.0;
+	}
+
+	private void recordLatency(int topic, long nanos) {
+		if (topic < 0 || topic >= TOPIC_NAMES.length) {
+			return;
+		}
+		if (latencyCounts[topic] == latencies[topic].length) {
+			latencies[topic] = Arrays.copyOf(latencies[topic], latencies[topic].length * 2);
+		}
+		latencies[topic][latencyCounts[topic]++] = nanos;
+		turns++;
+	}
+
+	// puts together a persona from the answer pools
+	private String[] randomPersona() {
+		int lines = 3 + random.nextInt(6);
+		boolean mention = learner != null || similarSessions != null || Discussion.confidentMargin > 0;
+		String[] persona = new String[4 + lines + (mention ? 1 : 0)];
+
+		persona[0] = random.nextBoolean() ? "My name is " + pick(NAMES) : pick(NAMES);
+		persona[1] = pick(OCCUPATIONS);
+		persona[2] = Integer.toString(17 + random.nextInt(50));
+		persona[3] = pick(GENDERS);
+		for (int i = 0; i < lines; i++) {
+			persona[4 + i] = pick(LINES);
+		}
+		if (mention) {
+			// something the graph knows about, so there is a top solution to ask about (and to compare sessions by) in Advice
+			ArrayList<Characteristic> characteristics = template.getCharacteristicsList();
+			persona[4 + lines] = "i have " + characteristics.get(random.nextInt(characteristics.size())).getName();
+		}
+
+		return persona;
+	}
+
+	// whether a solution named in question really helps patients, half of the solutions do (same answer every time)
+	private static boolean helps(String question) {
+		return (question.hashCode() & 1) == 0;
+	}
+
+	private String pick(String[] options) {
+		return options[random.nextInt(options.length)];
+	}
+
+
+
+	/**
+	 * Answers the bot for one persona and times each turn
+	 */
+	class PatientChannel implements MessageChannel {
+
+		private String[] persona;
+		private String lastBotMessage = "";
+		private int messages;
+
+		// when the patient last answered and which topic the answer went to
+		private long answeredAt;
+		private int answeredTopic;
+
+		PatientChannel(String[] persona) {
+			this.persona = persona;
+		}
+
+		@Override
+		public String messageFromUser() {
+			endTurn();
+
+			String answer = answer(lastBotMessage.toLowerCase());
+			messages++;
+
+			answeredTopic = Topic.currentTopic;
+			answeredAt = System.nanoTime();
+			return answer;
+		}
+
+		@Override
+		public void messageFromBot(String output) {
+			lastBotMessage = output;
+		}
+
+		// records time since the last answer as one turn
+		void endTurn() {
+			if (answeredAt != 0) {
+				recordLatency(answeredTopic, System.nanoTime() - answeredAt);
+				answeredAt = 0;
+			}
+		}
+
+		private String answer(String question) {
+			if (messages >= MAX_MESSAGES) {
+				return "goodbye";
+			}
+			if (question.contains("what's your name") || question.contains("just your name")) {
+				return persona[0];
+			}
+			if (question.contains("ask you a few questions")) {
+				return random.nextInt(10) == 0 ? "no" : "sure";
+			}
+			if (question.contains("work or school")) {
+				return persona[1];
+			}
+			if (question.contains("how old") || question.contains("your age")) {
+				return persona[2];
+			}
+			if (question.contains("male or female") || question.contains("gender")) {
+				return persona[3];
+			}
+			if (question.contains("did it help")) {
+				return helps(question) ? "yes it did" : "no, not really";
+			}
+			if (question.contains("stressing you out")) {
+				return pick(STRESS_CAUSES);
+			}
+			if (question.endsWith("?") && (question.contains("do you") || question.contains("have you") || question.contains("is your") || question.contains("are you"))) {
+				return pick(ANSWERS);
+			}
+			return persona[4 + random.nextInt(persona.length - 4)];
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package Testing;
+
+import static org.junit.Assert.*;
+
+import org.junit.jupiter.api.*;
+
+import ConvoBot.Characteristic;
+import ConvoBot.ContextGraph;
+import ConvoBot.MultiplierLearner;
+import ConvoBot.Solution;
+
+public class MultiplierLearnerTest {
+
+	/**
+	 * Tests learning multipliers from feedback (MultiplierLearner)
+	 */
+
+	private ContextGraph template;
+	private Characteristic stress;
+	private Characteristic insomnia;
+	private Solution breaks;
+	private Solution journal;
+	private MultiplierLearner learner;
+
+	// stress -> breaks (2), stress -> journal (1), insomnia -> breaks (1)
+	@BeforeEach
+	void createGraph() {
+		TestGraph test = new TestGraph().solutions("take breaks", "journal")
+				.edge("stress", "take breaks", 2).edge("stress", "journal", 1)
+				.edge("insomnia", "take breaks", 1);
+		breaks = test.getSolution("take breaks");
+		journal = test.getSolution("journal");
+		stress = test.getCharacteristic("stress");
+		insomnia = test.getCharacteristic("insomnia");
+		template = test.build();
+		learner = new MultiplierLearner(template);
+	}
+
+	// a session's graph where the patient talked about stress
+	private ContextGraph stressedSession() {
+		ContextGraph session = new ContextGraph(template);
+		session.incrementCharacteristic(stress);
+		return session;
+	}
+
+	@Test
+	void testNothingLearnedWithoutFeedback() {
+		assertEquals(3, learner.getEdges());
+		assertFalse(learner.fold());
+		assertEquals(0, learner.getVersion());
+		assertEquals(2.0, learner.getMultiplier(stress, breaks), 0.0);
+		assertEquals(0, learner.applyTo(new ContextGraph(template)));
+	}
+
+	@Test
+	void testHelpedRaisesMultiplier() {
+		ContextGraph session = stressedSession();
+		for (int i = 0; i < 20; i++) {
+			learner.recordFeedback(session, breaks, true);
+		}
+		assertEquals(2.0, learner.getMultiplier(stress, breaks), 0.0); // nothing changes until folded
+		assertTrue(learner.fold());
+		assertEquals(1, learner.getVersion());
+
+		// only stress added to the score of breaks, so only its edge learns
+		double learned = learner.getMultiplier(stress, breaks);
+		assertEquals(2.0 * 2.0 * (20 + MultiplierLearner.PRIOR / 2) / (20 + MultiplierLearner.PRIOR), learned, 1e-9);
+		assertEquals(1.0, learner.getMultiplier(insomnia, breaks), 0.0);
+		assertEquals(1.0, learner.getMultiplier(stress, journal), 0.0);
+
+		ContextGraph next = new ContextGraph(template);
+		assertEquals(1, learner.applyTo(next));
+		assertEquals(learned, next.getEdgeMultiplier(stress, breaks), 0.0);
+		assertEquals(0, learner.applyTo(next));
+		assertEquals(2.0, stress.getMultiplier(breaks), 0.0); // shared characteristics keep the file's multiplier
+
+		// weights below the edge are passed down again
+		next.incrementCharacteristic(stress);
+		assertEquals(learned, next.getSolutionScore(breaks), 1e-9);
+	}
+
+	@Test
+	void testNotHelpedLowersMultiplier() {
+		ContextGraph session = stressedSession();
+		for (int i = 0; i < 1000; i++) {
+			learner.recordFeedback(session, breaks, false);
+		}
+		learner.fold();
+		assertEquals(2.0 * MultiplierLearner.MIN_FACTOR, learner.getMultiplier(stress, breaks), 1e-9);
+	}
+
+	@Test
+	void testFeedbackFromManyThreads() throws Exception {
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					ContextGraph session = stressedSession();
+					for (int i = 0; i < 1000; i++) {
+						learner.recordFeedback(session, breaks, i % 4 != 0);
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+		assertEquals(4000, learner.getAnswers());
+		learner.fold();
+		assertEquals(2.0 * 2.0 * (3000 + MultiplierLearner.PRIOR / 2) / (4000 + MultiplierLearner.PRIOR), learner.getMultiplier(stress, breaks), 1e-9);
+	}
+
+	@Test
+	void testFoldsInBackground() throws Exception {
+		learner.start(5);
+		try {
+			learner.recordFeedback(stressedSession(), breaks, true);
+			for (int i = 0; i < 400 && learner.getVersion() == 0; i++) {
+				Thread.sleep(5);
+			}
+			assertTrue(learner.getVersion() > 0);
+			assertTrue(learner.getMultiplier(stress, breaks) > 2.0);
+		} finally {
+			learner.stop();
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package Testing;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import ConvoBot.ContextGraph;
+import ConvoBot.Trending;
+import ConvoBot.TurnContext;
+import ConvoBot.TurnPipeline;
+
+public class PipelineBenchmark {
+
+	/**
+	 * Runs discussion lines through a standard TurnPipeline (one graph, default replies), first on one thread
+	 * 	then in bulk mode (thread per stage), and prints turns per second and stage timings of both
+	 *
+	 * Usage: PipelineBenchmark [turns=20000] [seed=42]
+	 * 	run from the project folder (graph files are read once)
+	 */
+
+	public static void main(String[] args) throws InterruptedException {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 42;
+		Trending.enabled = false; // benchmark turns aren't real conversations
+		Random random = new Random(seed);
+		ContextGraph graph = new ContextGraph("characteristicsList.txt", "solutionsList.txt");
+
+		for (int bulk = 0; bulk < 2; bulk++) {
+			ArrayList<TurnContext> turns = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				turns.add(new TurnContext(LoadGenerator.LINES[random.nextInt(LoadGenerator.LINES.length)], graph, null));
+			}
+			TurnPipeline pipeline = TurnPipeline.standard();
+
+			long start = System.nanoTime();
+			if (bulk == 0) {
+				for (TurnContext turn : turns) {
+					pipeline.process(turn);
+				}
+			} else {
+				pipeline.processAll(turns, 1024);
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+
+			System.out.println((bulk == 0 ? "Pipeline, one thread: " : "Pipeline, bulk (thread per stage): ")
+					+ String.format("%.1f turns/s, microseconds per turn: ", count / seconds) + pipeline.getTimings());
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package Testing;
+
+import static org.junit.Assert.*;
+
+import org.junit.jupiter.api.*;
+
+import ConvoBot.Patient;
+import ConvoBot.ProfileExtractor;
+
+public class ProfileExtractorTest {
+
+	private Patient patient;
+
+	@BeforeEach
+	void createPatient() {
+		patient = new Patient();
+	}
+
+	@Test
+	void testName() {
+		assertTrue(ProfileExtractor.extract("My name is alex", patient, ProfileExtractor.NAME));
+		assertEquals("Alex", patient.getName());
+		assertTrue(ProfileExtractor.extract("I'm Sam", patient, ProfileExtractor.NAME));
+		assertEquals("Sam", patient.getName());
+		assertTrue(ProfileExtractor.extract("  Jordan ", patient, ProfileExtractor.NAME));
+		assertEquals("Jordan", patient.getName());
+		assertFalse(ProfileExtractor.extract("what do you mean?", patient, ProfileExtractor.NAME));
+		assertEquals("Jordan", patient.getName());
+	}
+
+	@Test
+	void testOccupation() {
+		assertTrue(ProfileExtractor.extract("I'm a student", patient, ProfileExtractor.OCCUPATION));
+		assertEquals("student", patient.getOccupation());
+		assertTrue(ProfileExtractor.extract("well I work at a bank", patient, ProfileExtractor.OCCUPATION));
+		assertEquals("work at a bank", patient.getOccupation());
+		assertTrue(ProfileExtractor.extract("I go to university", patient, ProfileExtractor.OCCUPATION));
+		assertEquals("go to university", patient.getOccupation());
+		assertTrue(ProfileExtractor.extract("nurse", patient, ProfileExtractor.OCCUPATION));
+		assertEquals("nurse", patient.getOccupation());
+	}
+
+	@Test
+	void testAgeNeverThrows() {
+		assertTrue(ProfileExtractor.extract("19", patient, ProfileExtractor.AGE));
+		assertEquals(19, patient.getAge());
+		assertTrue(ProfileExtractor.extract("I'm 34 years old", patient, ProfileExtractor.AGE));
+		assertEquals(34, patient.getAge());
+
+		assertFalse(ProfileExtractor.extract("nineteen", patient, ProfileExtractor.AGE));
+		assertFalse(ProfileExtractor.extract("", patient, ProfileExtractor.AGE));
+		assertFalse(ProfileExtractor.extract("999", patient, ProfileExtractor.AGE));
+		assertFalse(ProfileExtractor.extract("12345678901234567890", patient, ProfileExtractor.AGE));
+		assertFalse(ProfileExtractor.extract(null, patient, ProfileExtractor.AGE));
+		assertEquals(34, patient.getAge());
+	}
+
+	@Test
+	void testGender() {
+		assertTrue(ProfileExtractor.extract("woman", patient, ProfileExtractor.GENDER));
+		assertEquals("female", patient.getGender());
+		assertTrue(ProfileExtractor.extract("I'm a guy", patient, ProfileExtractor.GENDER));
+		assertEquals("male", patient.getGender());
+		assertFalse(ProfileExtractor.extract("rather not say", patient, ProfileExtractor.GENDER));
+		assertEquals("male", patient.getGender());
+	}
+
+	@Test
+	void testSeveralSlotsInOneMessage() {
+		// only the asked slot decides the result, the others are filled too
+		assertTrue(ProfileExtractor.extract("my name is Riley, I'm a student and I'm 21", patient, ProfileExtractor.NAME));
+		assertEquals("Riley", patient.getName());
+		assertEquals("student", patient.getOccupation());
+		assertEquals(21, patient.getAge());
+
+		// numbers aren't ages unless age was asked or they say so
+		assertTrue(ProfileExtractor.extract("I'm a nurse with 3 kids", patient, ProfileExtractor.OCCUPATION));
+		assertEquals(21, patient.getAge());
+		// gender words aren't taken unless gender was asked
+		assertTrue(ProfileExtractor.extract("I work for a man who yells", patient, ProfileExtractor.OCCUPATION));
+		assertNull(patient.getGender());
+	}
+}
@@ -0,0 +1,104 @@
+package Testing;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import ConvoBot.Characteristic;
+import ConvoBot.ContextGraph;
+import ConvoBot.Trending;
+import ConvoBot.TurnContext;
+import ConvoBot.TurnGuard;
+import ConvoBot.TurnPipeline;
+import ConvoBot.TurnScheduler;
+
+public class SchedulerBenchmark {
+
+	/**
+	 * Runs SESSIONS sessions on their own threads at once, each sending turns back to back to its own graph
+	 * 	the first HEAVY_SESSIONS send long messages naming every characteristic (big graph updates), the rest send discussion lines
+	 * 	once with every turn running straight away, once through a TurnScheduler letting one turn per CPU run at a time
+	 * 		and shedding turns that waited MAX_WAIT_NANOS
+	 * Prints latency percentiles (including time waiting for the scheduler) for light and heavy sessions, and turns shed
+	 *
+	 * Usage: SchedulerBenchmark [turnsPerSession=1000] [seed=42]
+	 * 	run from the project folder (graph files are read once)
+	 */
+
+	static final int SESSIONS = 16;
+	static final int HEAVY_SESSIONS = 2;
+	// turns waiting longer than this are shed (answered with a generic reply)
+	static final long MAX_WAIT_NANOS = 2 * 1000 * 1000L;
+
+	public static void main(String[] args) throws InterruptedException {
+		int turnsPerSession = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 42;
+		Trending.enabled = false; // benchmark turns aren't real conversations
+		Random random = new Random(seed);
+
+		final ContextGraph template = new ContextGraph("characteristicsList.txt", "solutionsList.txt");
+		StringBuilder heavy = new StringBuilder();
+		while (heavy.length() < TurnGuard.MAX_INPUT_LENGTH - 50) {
+			for (Characteristic c : template.getCharacteristicsList()) {
+				heavy.append("i have ").append(c.getName()).append(", ");
+			}
+		}
+		final String[][] inputs = new String[SESSIONS][turnsPerSession];
+		for (int i = 0; i < SESSIONS; i++) {
+			for (int j = 0; j < turnsPerSession; j++) {
+				inputs[i][j] = i < HEAVY_SESSIONS ? heavy.toString() : LoadGenerator.LINES[random.nextInt(LoadGenerator.LINES.length)];
+			}
+		}
+
+		for (int scheduled = 0; scheduled < 2; scheduled++) {
+			final TurnScheduler scheduler = scheduled == 0 ? null : new TurnScheduler().setMaxWaitNanos(MAX_WAIT_NANOS);
+			final TurnPipeline pipeline = TurnPipeline.standard();
+			final long[][] times = new long[SESSIONS][turnsPerSession];
+			Thread[] threads = new Thread[SESSIONS];
+			for (int i = 0; i < SESSIONS; i++) {
+				final int session = i;
+				threads[i] = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						ContextGraph graph = new ContextGraph(template);
+						for (int j = 0; j < inputs[session].length; j++) {
+							TurnContext turn = new TurnContext(inputs[session][j], graph, null);
+							long start = System.nanoTime();
+							try {
+								if (scheduler == null) {
+									pipeline.process(turn);
+								} else {
+									scheduler.process(graph, turn, pipeline);
+								}
+							} catch (InterruptedException e) {
+								return;
+							}
+							times[session][j] = System.nanoTime() - start;
+						}
+					}
+				}, "session-" + i);
+			}
+			for (Thread t : threads) {
+				t.start();
+			}
+			for (Thread t : threads) {
+				t.join();
+			}
+
+			long[] light = new long[(SESSIONS - HEAVY_SESSIONS) * turnsPerSession];
+			long[] heavyTimes = new long[HEAVY_SESSIONS * turnsPerSession];
+			for (int i = 0; i < SESSIONS; i++) {
+				if (i < HEAVY_SESSIONS) {
+					System.arraycopy(times[i], 0, heavyTimes, i * turnsPerSession, turnsPerSession);
+				} else {
+					System.arraycopy(times[i], 0, light, (i - HEAVY_SESSIONS) * turnsPerSession, turnsPerSession);
+				}
+			}
+			Arrays.sort(light);
+			Arrays.sort(heavyTimes);
+			System.out.println((scheduler == null ? "Sessions at once, no scheduler: " : "Sessions at once, scheduled: ")
+					+ String.format("light p50=%.1f p99=%.1f, heavy p50=%.1f p99=%.1f (microseconds)", LoadGenerator.percentile(light, 0.5),
+							LoadGenerator.percentile(light, 0.99), LoadGenerator.percentile(heavyTimes, 0.5), LoadGenerator.percentile(heavyTimes, 0.99))
+					+ (scheduler == null ? "" : ", " + scheduler.getMetrics()));
+		}
+	}
+}
@@ -0,0 +1,211 @@
+package Testing;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.*;
+
+import ConvoBot.Characteristic;
+import ConvoBot.ContextGraph;
+import ConvoBot.ScoreWatcher;
+import ConvoBot.Solution;
+
+public class ScoreWatcherTest {
+
+	/**
+	 * Tests threshold events on solution weights and on the margin between the two best solutions (ScoreWatcher)
+	 */
+
+	private ArrayList<Solution> solutions;
+	private ArrayList<Characteristic> characteristics;
+	private ContextGraph graph;
+
+	// characteristic i -> treatment i (x2) and treatment i + 1 (x1)
+	@BeforeEach
+	void createGraph() {
+		TestGraph test = new TestGraph().numberedSolutions(9).numberedCharacteristics(8);
+		for (int i = 0; i < 8; i++) {
+			test.edge(i, i, 2).edge(i, i + 1, 1);
+		}
+		solutions = test.getSolutions();
+		characteristics = test.getCharacteristics();
+		graph = test.build();
+	}
+
+	// every event sent to it
+	private static final class Recorder implements ScoreWatcher.Listener {
+		final ArrayList<ScoreWatcher.Event> events = new ArrayList<>();
+
+		@Override
+		public void crossed(ScoreWatcher.Event e) {
+			events.add(e);
+		}
+	}
+
+	@Test
+	void testScoreThreshold() {
+		Recorder r = new Recorder();
+		ScoreWatcher.Subscription sub = graph.watchScore(solutions.get(1), 3.0, r);
+		assertFalse(sub.isAbove());
+
+		graph.incrementCharacteristic(characteristics.get(0)); // treatment1 = 1
+		assertTrue(r.events.isEmpty());
+		graph.incrementCharacteristic(characteristics.get(1)); // treatment1 = 1 + 2
+		assertEquals(1, r.events.size());
+		ScoreWatcher.Event e = r.events.get(0);
+		assertTrue(e.isRising());
+		assertFalse(e.isMargin());
+		assertEquals(solutions.get(1), e.getSolution());
+		assertEquals(3.0, e.getValue(), 1e-9);
+		assertTrue(sub.isAbove());
+
+		graph.incrementCharacteristic(characteristics.get(1)); // still above, no event
+		assertEquals(1, r.events.size());
+		graph.incrementCharacteristic(characteristics.get(1), -2.0);
+		assertEquals(2, r.events.size());
+		assertFalse(r.events.get(1).isRising());
+		assertFalse(sub.isAbove());
+
+		// other solutions don't reach this subscription
+		graph.incrementCharacteristic(characteristics.get(5), 10);
+		assertEquals(2, r.events.size());
+	}
+
+	@Test
+	void testAnySolution() {
+		Recorder r = new Recorder();
+		ScoreWatcher.Subscription sub = graph.watchScore(null, 4.0, r);
+		graph.incrementCharacteristic(characteristics.get(3), 2); // treatment3 = 4, treatment4 = 2
+		assertEquals(1, r.events.size());
+		assertEquals(solutions.get(3), r.events.get(0).getSolution());
+		graph.incrementCharacteristic(characteristics.get(4), 1); // treatment4 = 4, treatment5 = 1
+		assertEquals(2, r.events.size());
+		assertEquals(solutions.get(4), r.events.get(1).getSolution());
+		assertTrue(sub.isAbove());
+	}
+
+	@Test
+	void testMargin() {
+		Recorder r = new Recorder();
+		ScoreWatcher.Subscription sub = graph.watchMargin(3.0, r);
+		graph.incrementCharacteristic(characteristics.get(2)); // treatment2 = 2, treatment3 = 1, margin 1
+		assertTrue(r.events.isEmpty());
+		graph.incrementCharacteristic(characteristics.get(2)); // 4 and 2, margin 2
+		assertTrue(r.events.isEmpty());
+		graph.incrementCharacteristic(characteristics.get(2)); // 6 and 3, margin 3
+		assertEquals(1, r.events.size());
+		ScoreWatcher.Event e = r.events.get(0);
+		assertTrue(e.isMargin());
+		assertTrue(e.isRising());
+		assertEquals(solutions.get(2), e.getSolution()); // the solution in the lead
+		assertEquals(3.0, e.getValue(), 1e-9);
+
+		// a second solution catching up ends the lead
+		graph.incrementCharacteristic(characteristics.get(6), 3); // treatment6 = 6
+		assertEquals(2, r.events.size());
+		assertFalse(r.events.get(1).isRising());
+		assertEquals(0.0, r.events.get(1).getValue(), 1e-9);
+		assertFalse(sub.isAbove());
+	}
+
+	@Test
+	void testMarginMatchesSorting() {
+		// random increments (some negative), learned style multiplier changes and disabled solutions, margin always = sorted top two
+		final boolean[] above = new boolean[1];
+		ScoreWatcher.Subscription sub = graph.watchMargin(1.5, new ScoreWatcher.Listener() {
+			@Override
+			public void crossed(ScoreWatcher.Event e) {
+				above[0] = e.isRising();
+			}
+		});
+		Random random = new Random(11);
+		for (int t = 0; t < 2000; t++) {
+			Characteristic ch = characteristics.get(random.nextInt(characteristics.size()));
+			if (random.nextInt(10) == 0) {
+				graph.setEdgeMultiplier(ch, solutions.get(random.nextInt(solutions.size())), random.nextDouble() * 3);
+			} else if (random.nextInt(10) == 0) {
+				graph.setNodeEnabled(solutions.get(random.nextInt(solutions.size())), random.nextBoolean());
+			} else {
+				graph.incrementCharacteristic(ch, random.nextGaussian());
+			}
+			double[] weights = new double[solutions.size()];
+			for (int s = 0; s < weights.length; s++) {
+				weights[s] = graph.getSolutionScore(solutions.get(s));
+			}
+			Arrays.sort(weights);
+			double expected = weights[weights.length - 1] - weights[weights.length - 2];
+			assertEquals(expected >= 1.5, sub.isAbove());
+			assertEquals(expected >= 1.5, above[0]);
+		}
+	}
+
+	@Test
+	void testMaskedScores() {
+		Recorder r = new Recorder();
+		ScoreWatcher.Subscription sub = graph.watchScore(solutions.get(1), 3.0, r);
+		graph.incrementCharacteristic(characteristics.get(0)); // treatment1 = 1
+		graph.incrementCharacteristic(characteristics.get(1)); // treatment1 = 1 + 2
+		assertEquals(1, r.events.size());
+
+		// disabling the edge drops the score ranking uses, with no weight passed down
+		graph.setEdgeEnabled(characteristics.get(1), solutions.get(1), false);
+		assertEquals(2, r.events.size());
+		assertFalse(r.events.get(1).isRising());
+		assertEquals(1.0, r.events.get(1).getValue(), 1e-9);
+		assertFalse(sub.isAbove());
+		graph.incrementCharacteristic(characteristics.get(1), 5); // through the disabled edge, no event
+		assertEquals(2, r.events.size());
+
+		graph.setEdgeEnabled(characteristics.get(1), solutions.get(1), true);
+		assertEquals(3, r.events.size());
+		assertTrue(r.events.get(2).isRising());
+		assertEquals(graph.getSolutionScore(solutions.get(1)), r.events.get(2).getValue(), 1e-9);
+
+		// a disabled solution scores 0
+		graph.setNodeEnabled(solutions.get(1), false);
+		assertEquals(4, r.events.size());
+		assertEquals(0.0, r.events.get(3).getValue(), 1e-9);
+		graph.incrementCharacteristic(characteristics.get(0), 5);
+		assertEquals(4, r.events.size());
+		assertFalse(sub.isAbove());
+	}
+
+	@Test
+	void testSpreadingActivationRefused() {
+		ScoreWatcher.Subscription sub = graph.watchMargin(1.0, new Recorder());
+		try {
+			graph.useSpreadingActivation(null);
+			fail("spreading activation turned on while scores are watched");
+		} catch (IllegalStateException e) {
+			assertFalse(graph.usesSpreadingActivation());
+		}
+
+		sub.cancel();
+		graph.useSpreadingActivation(null);
+		try {
+			graph.watchScore(solutions.get(0), 1.0, new Recorder());
+			fail("watched scores while ranking by spreading activation");
+		} catch (IllegalStateException e) {
+			assertTrue(graph.usesSpreadingActivation());
+		}
+	}
+
+	@Test
+	void testCancel() {
+		Recorder r = new Recorder();
+		ScoreWatcher.Subscription sub = graph.watchScore(solutions.get(0), 1.0, r);
+		sub.cancel();
+		graph.incrementCharacteristic(characteristics.get(0), 5);
+		assertTrue(r.events.isEmpty());
+
+		// a new subscription starts from the current weights
+		sub = graph.watchScore(solutions.get(0), 1.0, r);
+		assertTrue(sub.isAbove());
+		graph.incrementCharacteristic(characteristics.get(0), -5);
+		assertEquals(1, r.events.size());
+		assertFalse(r.events.get(0).isRising());
+	}
+}
@@ -0,0 +1,109 @@
+package Testing;
+
+import static org.junit.Assert.*;
+
+import org.junit.jupiter.api.*;
+
+import ConvoBot.Characteristic;
+import ConvoBot.ContextGraph;
+import ConvoBot.SentimentLexicon;
+import ConvoBot.Solution;
+import ConvoBot.TurnContext;
+import ConvoBot.TurnPipeline;
+
+public class SentimentLexiconTest {
+
+	/**
+	 * Tests weighted sentiment scoring (SentimentLexicon) and how it's used by the turn pipeline
+	 */
+
+	private final SentimentLexicon lexicon = SentimentLexicon.DEFAULT;
+
+	@Test
+	void testWeights() {
+		assertEquals(1.0, lexicon.score("happy").getPolarity(), 0.0);
+		assertEquals(-1.5, lexicon.score("I am so depressed").getPolarity() / 1.3, 1e-9);
+		assertEquals(0.0, lexicon.score("i went to school today").getPolarity(), 0.0);
+		assertEquals(0, lexicon.score("").getWords());
+		assertEquals(SentimentLexicon.WORD, lexicon.kindOf("tired"));
+		assertEquals(SentimentLexicon.NEGATOR, lexicon.kindOf("don't"));
+		assertEquals(SentimentLexicon.INTENSIFIER, lexicon.kindOf("very"));
+		assertEquals(SentimentLexicon.NONE, lexicon.kindOf("school"));
+	}
+
+	@Test
+	void testNegation() {
+		SentimentLexicon.Score s = lexicon.score("I'm not happy");
+		assertTrue(s.isNegative());
+		assertEquals(SentimentLexicon.NEGATION_FACTOR, s.getPolarity(), 1e-9);
+
+		assertTrue(lexicon.score("I don't like school").isNegative());
+		assertTrue(lexicon.score("i'm not sad").isPositive());
+
+		// typed without the apostrophe
+		assertEquals(lexicon.score("I don't like school").getPolarity(), lexicon.score("I dont like school").getPolarity(), 0.0);
+		assertTrue(lexicon.score("i cant sleep well").isNegative());
+		assertTrue(lexicon.score("i didnt feel good").isNegative());
+		assertTrue(lexicon.score("it isnt bad").isPositive());
+		assertTrue(lexicon.score("im not happy and i wasnt happy").isNegative());
+
+		// a negator only reaches the next sentiment word, within NEGATION_SCOPE words
+		assertEquals(SentimentLexicon.NEGATION_FACTOR + 1.0, lexicon.score("not happy but good").getPolarity(), 1e-9);
+		assertEquals(1.0, lexicon.score("not at all in the mood, happy").getPolarity(), 1e-9);
+	}
+
+	@Test
+	void testIntensifiers() {
+		double sad = lexicon.score("sad").getPolarity();
+		assertEquals(1.5 * sad, lexicon.score("very sad").getPolarity(), 1e-9);
+		assertEquals(1.5 * 1.5 * sad, lexicon.score("very very sad").getPolarity(), 1e-9);
+		assertEquals(0.5 * sad, lexicon.score("slightly sad").getPolarity(), 1e-9);
+		assertEquals(1.5 * SentimentLexicon.NEGATION_FACTOR, lexicon.score("not very happy").getPolarity(), 1e-9);
+
+		// intensity ignores direction
+		SentimentLexicon.Score mixed = lexicon.score("really happy but very tired");
+		assertEquals(0.0, mixed.getPolarity(), 1e-9);
+		assertEquals(3.0, mixed.getIntensity(), 1e-9);
+		assertEquals(2, mixed.getWords());
+	}
+
+	@Test
+	void testTokensScoreLikeText() {
+		String[] tokens = {"i'm", "not", "very", "stressed", "but", "i", "can't", "sleep", "well"};
+		assertEquals(lexicon.score("I'm not very STRESSED, but I can't sleep well!").getPolarity(), lexicon.score(tokens).getPolarity(), 0.0);
+	}
+
+	@Test
+	void testCustomLexicon() {
+		SentimentLexicon custom = new SentimentLexicon(new String[] {"Yay", "2"}, new String[] {"nah"}, new String[] {"mega", "3"},
+				new String[0]);
+		assertEquals(3, custom.size());
+		assertEquals(6.0, custom.score("mega yay").getPolarity(), 0.0);
+		assertEquals(-1.5, custom.score("nah yay").getPolarity(), 0.0);
+		assertEquals(0.0, custom.score("happy").getPolarity(), 0.0);
+	}
+
+	@Test
+	void testPipeline() {
+		TestGraph test = new TestGraph().edge("stress", "take breaks", 1);
+		Solution breaks = test.getSolution("take breaks");
+		Characteristic stress = test.getCharacteristic("stress");
+		ContextGraph graph = test.build();
+		TurnPipeline pipeline = TurnPipeline.standard();
+
+		TurnContext turn = new TurnContext("I'm not happy, stress", graph, null);
+		pipeline.process(turn);
+		assertEquals(-1, turn.getSentiment());
+		assertEquals(SentimentLexicon.NEGATION_FACTOR, turn.getPolarity(), 1e-9);
+		assertEquals("I'm sorry to hear that, what's wrong?", turn.getReply());
+
+		// a plain mention adds 1, a strong one up to 1 + MAX_EXTRA_WEIGHT
+		double before = graph.getSolutionScore(breaks);
+		pipeline.process(new TurnContext("stress", graph, null));
+		assertEquals(before + 1.0, graph.getSolutionScore(breaks), 1e-9);
+
+		before = graph.getSolutionScore(breaks);
+		pipeline.process(new TurnContext("stress, i'm extremely tired and very depressed", graph, null));
+		assertEquals(before + 1.0 + TurnPipeline.GraphUpdateStage.MAX_EXTRA_WEIGHT, graph.getSolutionScore(breaks), 1e-9);
+	}
+}
@@ -0,0 +1,123 @@
+package Testing;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.jupiter.api.*;
+
+import ConvoBot.Characteristic;
+import ConvoBot.ContextGraph;
+import ConvoBot.SessionIndex;
+import ConvoBot.Solution;
+
+public class SessionIndexTest {
+
+	/**
+	 * Tests finding similar finished sessions (SessionIndex)
+	 */
+
+	private ContextGraph template;
+	private ArrayList<Characteristic> characteristics;
+	private ArrayList<Solution> solutions;
+	private SessionIndex index;
+
+	// characteristic i -> treatment i (and treatment i + 1)
+	@BeforeEach
+	void createGraph() {
+		TestGraph test = new TestGraph().numberedSolutions(13).numberedCharacteristics(12);
+		for (int i = 0; i < 12; i++) {
+			test.edge(i, i, 2).edge(i, i + 1, 1);
+		}
+		solutions = test.getSolutions();
+		characteristics = test.getCharacteristics();
+		template = test.build();
+		index = new SessionIndex(template, 42);
+	}
+
+	// graph of a session with weights[i] added to characteristic i
+	private ContextGraph session(double... weights) {
+		ContextGraph graph = new ContextGraph(template);
+		for (int i = 0; i < weights.length; i++) {
+			if (weights[i] != 0) {
+				graph.incrementCharacteristic(characteristics.get(i), weights[i]);
+			}
+		}
+		return graph;
+	}
+
+	@Test
+	void testNearestFirst() {
+		assertTrue(index.add("anxious", session(5, 1).publish()));
+		assertTrue(index.add("tired", session(0, 0, 0, 4, 3).publish()));
+		assertTrue(index.add("mixed", session(2, 0, 0, 2).publish()));
+		assertFalse(index.add("quiet", session().publish())); // nothing to compare by
+		assertEquals(3, index.size());
+
+		ArrayList<SessionIndex.Neighbour> nearest = index.query(session(10, 2).publish(), 2, null);
+		assertFalse(nearest.isEmpty());
+		assertEquals("anxious", nearest.get(0).getId());
+		assertEquals(1.0, nearest.get(0).getSimilarity(), 1e-9); // same direction, length doesn't matter
+		for (int i = 1; i < nearest.size(); i++) {
+			assertTrue(nearest.get(i - 1).getSimilarity() >= nearest.get(i).getSimilarity());
+		}
+
+		// the patient's own session is left out
+		for (SessionIndex.Neighbour n : index.query(session(5, 1).publish(), 3, "anxious")) {
+			assertFalse(n.getId().equals("anxious"));
+		}
+		assertTrue(index.query(session().publish(), 3, null).isEmpty());
+	}
+
+	@Test
+	void testAddAgainReplaces() {
+		index.add("patient", session(5).publish());
+		index.add("patient", session(0, 0, 0, 0, 0, 0, 0, 0, 7).publish());
+		assertEquals(1, index.size());
+		ArrayList<SessionIndex.Neighbour> nearest = index.query(session(0, 0, 0, 0, 0, 0, 0, 0, 1).publish(), 1, null);
+		assertEquals(1, nearest.size());
+		assertEquals(1.0, nearest.get(0).getSimilarity(), 1e-9);
+		assertTrue(index.remove("patient"));
+		assertEquals(0, index.size());
+		assertTrue(index.query(session(5).publish(), 1, null).isEmpty());
+	}
+
+	@Test
+	void testRecommendsSolutionsOfNeighbours() {
+		index.add("a", session(0, 0, 6).publish());
+		index.add("b", session(0, 0, 5, 1).publish());
+		ArrayList<Solution> recommended = index.recommend(session(0, 0, 3).publish(), 2, 2, null);
+		assertEquals(2, recommended.size());
+		assertSame(solutions.get(2), recommended.get(0)); // characteristic2 -> treatment2 (2), treatment3 (1)
+		assertSame(solutions.get(3), recommended.get(1));
+	}
+
+	@Test
+	void testFindsNearDuplicates() {
+		Random random = new Random(7);
+		double[][] stored = new double[500][12];
+		for (int s = 0; s < stored.length; s++) {
+			for (int c = 0; c < 12; c++) {
+				stored[s][c] = random.nextInt(3) == 0 ? random.nextDouble() * 5 : 0;
+			}
+			stored[s][random.nextInt(12)] += 1; // at least one characteristic
+			index.add("s" + s, session(stored[s]).publish());
+		}
+
+		int found = 0;
+		for (int q = 0; q < 50; q++) {
+			double[] v = stored[q * 10].clone();
+			for (int c = 0; c < 12; c++) {
+				if (v[c] > 0) {
+					v[c] *= 1 + (random.nextDouble() - 0.5) * 0.1; // +-5%
+				}
+			}
+			ArrayList<SessionIndex.Neighbour> nearest = index.query(session(v).publish(), 1, null);
+			if (!nearest.isEmpty() && nearest.get(0).getId().equals("s" + q * 10)) {
+				found++;
+			}
+		}
+		assertTrue("found " + found + "/50", found >= 45);
+	}
+}
@@ -0,0 +1,201 @@
+package Testing;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.jupiter.api.*;
+
+import ConvoBot.Characteristic;
+import ConvoBot.ContextGraph;
+import ConvoBot.Session;
+import ConvoBot.SessionStore;
+import ConvoBot.Solution;
+
+public class SessionStoreTest {
+
+	/**
+	 * Tests hibernating idle sessions off heap and bringing them back (SessionStore)
+	 */
+
+	private ContextGraph template;
+	private ArrayList<Characteristic> characteristics;
+	private ArrayList<Solution> solutions;
+
+	@BeforeEach
+	void createTemplate() {
+		TestGraph test = new TestGraph().numberedSolutions(10).numberedCharacteristics(20).randomEdges(new Random(7), 3, 5);
+		solutions = test.getSolutions();
+		characteristics = test.getCharacteristics();
+		template = test.build();
+	}
+
+	@Test
+	void testHibernatedSessionComesBackTheSame() {
+		SessionStore store = new SessionStore(2, template);
+		Session s = store.getOrCreate("alex");
+		s.getPatient().setName("Alex");
+		s.getPatient().setAge(19);
+		s.getPatient().setOccupation("student");
+		s.setTopic(2);
+		ContextGraph graph = s.getContextGraph();
+		graph.incrementCharacteristic(characteristics.get(3), 2);
+		graph.incrementCharacteristic(characteristics.get(11), 1);
+		graph.setNodeEnabled(solutions.get(4), false);
+		for (Solution sol : solutions) {
+			if (graph.edgeExists(characteristics.get(3), sol)) {
+				graph.setEdgeMultiplier(characteristics.get(3), sol, 0.5);
+				break;
+			}
+		}
+		String before = graph.toString();
+		String topBefore = graph.getTopSolution().getName();
+
+		// fill the hot tier until alex is hibernated
+		for (int i = 0; store.isHot("alex"); i++) {
+			store.getOrCreate("patient" + i);
+		}
+		assertTrue(store.contains("alex"));
+		assertTrue(store.getWarmBytes() > 0);
+
+		Session back = store.get("alex");
+		assertFalse(s == back);
+		assertEquals("Alex", back.getPatient().getName());
+		assertEquals(19, back.getPatient().getAge());
+		assertEquals("student", back.getPatient().getOccupation());
+		assertNull(back.getPatient().getGender());
+		assertEquals(2, back.getTopic());
+		assertEquals(before, back.getContextGraph().toString());
+		assertEquals(topBefore, back.getContextGraph().getTopSolution().getName());
+		assertEquals(topBefore, back.getContextGraph().getSnapshot().getTopSolution().getName());
+		assertFalse(back.getContextGraph().checkNodeEnabled(solutions.get(4)));
+		assertEquals(1, store.getRehydrations());
+	}
+
+	// nodes/edges added or removed can't be written with the session, it stays on the heap instead of coming back without them
+	@Test
+	void testEditedSessionStaysHot() {
+		SessionStore store = new SessionStore(2, template);
+		Session s = store.checkout("a");
+		ContextGraph graph = s.getContextGraph();
+		assertTrue(graph.addNewSolution(new Solution("new treatment")));
+		assertTrue(graph.removeSolution(solutions.get(0)));
+		graph.incrementCharacteristic(characteristics.get(3), 2);
+		String before = graph.toString();
+		store.release(s);
+
+		for (int i = 0; i < 20; i++) {
+			store.getOrCreate("patient" + i);
+		}
+		assertTrue(store.isHot("a"));
+		Session back = store.get("a");
+		assertTrue(s == back);
+		assertEquals(before, back.getContextGraph().toString());
+		assertEquals(0, store.getRehydrations());
+		assertEquals(19, store.getWarmCount()); // a keeps its place in main, every other patient but the newest is hibernated
+	}
+
+	// saved state that can't be read back stays in the warm tier
+	@Test
+	void testUnreadableSessionIsKept() {
+		SessionStore store = new SessionStore(2, template);
+		store.getOrCreate("a").getContextGraph().incrementCharacteristic(characteristics.get(3), 2);
+		for (int i = 0; store.isHot("a"); i++) {
+			store.getOrCreate("patient" + i);
+		}
+		template.addNewSolution(new Solution("new treatment")); // a's state no longer fits the template
+
+		try {
+			store.get("a");
+			fail("read a graph of the wrong shape");
+		} catch (IllegalStateException e) {
+		}
+		assertTrue(store.contains("a"));
+		assertTrue(store.getWarmBytes() > 0);
+	}
+
+	// two conversations running at once while the main tier is full of frequent sessions, neither is hibernated under it
+	@Test
+	void testCheckedOutSessionsStayHot() {
+		SessionStore store = new SessionStore(4, template);
+		for (int round = 0; round < 5; round++) {
+			for (int i = 0; i < 3; i++) {
+				store.getOrCreate("regular" + i);
+			}
+		}
+
+		Session a = store.checkout("a");
+		Session b = store.checkout("b");
+		for (int turn = 0; turn < 5; turn++) {
+			a.getContextGraph().incrementCharacteristic(characteristics.get(3), 1);
+			store.getOrCreate("once a" + turn);
+			b.getContextGraph().incrementCharacteristic(characteristics.get(11), 1);
+			store.getOrCreate("once b" + turn);
+			assertSame(a, store.get("a"));
+			assertSame(b, store.get("b"));
+		}
+		a.setTopic(3);
+		assertTrue(store.getHotCount() > 4); // over capacity while both are pinned
+
+		// once released they compete like any other session, and come back with every change
+		store.release(a);
+		store.release(b);
+		assertTrue(store.getHotCount() <= 4);
+		for (int i = 0; store.isHot("a") || store.isHot("b"); i++) {
+			store.getOrCreate("patient" + i);
+		}
+		Session backA = store.get("a");
+		assertEquals(5.0, backA.getContextGraph().getSnapshot().getCharacteristicWeight(characteristics.get(3)), 0.0);
+		assertEquals(3, backA.getTopic());
+		Session backB = store.get("b");
+		assertEquals(5.0, backB.getContextGraph().getSnapshot().getCharacteristicWeight(characteristics.get(11)), 0.0);
+
+		try {
+			store.release(backB);
+			fail("released a session that wasn't checked out");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage().contains("not checked out"));
+		}
+	}
+
+	@Test
+	void testHotTierIsBounded() {
+		SessionStore store = new SessionStore(10, template);
+		for (int i = 0; i < 100; i++) {
+			store.getOrCreate("patient" + i);
+			assertTrue(store.getHotCount() <= 10);
+		}
+		assertEquals(10, store.getHotCount());
+		assertEquals(90, store.getWarmCount());
+		assertEquals(90, store.getHibernations());
+		for (int i = 0; i < 100; i++) {
+			assertTrue(store.contains("patient" + i));
+		}
+		assertNull(store.get("nobody"));
+		assertTrue(store.remove("patient0"));
+		assertFalse(store.contains("patient0"));
+	}
+
+	@Test
+	void testFrequentSessionsStayHot() {
+		SessionStore store = new SessionStore(100, template);
+		for (int i = 0; i < 5; i++) {
+			store.getOrCreate("regular" + i);
+		}
+		for (int round = 0; round < 10; round++) {
+			for (int i = 0; i < 5; i++) {
+				store.get("regular" + i);
+			}
+		}
+
+		// lots of patients that only show up once
+		for (int i = 0; i < 300; i++) {
+			store.getOrCreate("once" + i);
+		}
+		for (int i = 0; i < 5; i++) {
+			assertTrue(store.isHot("regular" + i));
+		}
+		assertTrue(store.getRejections() > 0);
+	}
+}
@@ -0,0 +1,171 @@
+package Testing;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.jupiter.api.*;
+
+import ConvoBot.Characteristic;
+import ConvoBot.ContextGraph;
+import ConvoBot.GraphSnapshot;
+import ConvoBot.RoaringBitmap;
+import ConvoBot.Solution;
+
+public class SolutionQueryTest {
+
+	/**
+	 * Tests compressed bitmaps (RoaringBitmap) and solution queries over characteristics (SolutionQuery)
+	 */
+
+	private Solution breathing;
+	private Solution journal;
+	private Solution sleepSchedule;
+	private Solution exercise;
+	private Solution counselling;
+	private Characteristic anxiety;
+	private Characteristic insomnia;
+	private Characteristic anger;
+	private ContextGraph graph;
+
+	@BeforeEach
+	void createGraph() {
+		TestGraph test = new TestGraph()
+				.solutions("breathing exercises", "keep a journal", "regular sleep schedule", "exercise", "counselling")
+				.edge("anxiety", "breathing exercises", 3).edge("anxiety", "keep a journal", 1)
+				.edge("anxiety", "exercise", 1).edge("anxiety", "counselling", 2)
+				.edge("insomnia", "breathing exercises", 1).edge("insomnia", "regular sleep schedule", 3)
+				.edge("insomnia", "exercise", 2).edge("insomnia", "counselling", 1)
+				.edge("anger", "exercise", 2).edge("anger", "keep a journal", 1);
+		breathing = test.getSolution("breathing exercises");
+		journal = test.getSolution("keep a journal");
+		sleepSchedule = test.getSolution("regular sleep schedule");
+		exercise = test.getSolution("exercise");
+		counselling = test.getSolution("counselling");
+		anxiety = test.getCharacteristic("anxiety");
+		insomnia = test.getCharacteristic("insomnia");
+		anger = test.getCharacteristic("anger");
+		graph = test.build();
+	}
+
+	private static BitSet randomSet(Random random, int range, double density) {
+		BitSet set = new BitSet();
+		for (int v = 0; v < range; v++) {
+			if (random.nextDouble() < density) {
+				set.set(v);
+			}
+		}
+		return set;
+	}
+
+	private static RoaringBitmap toBitmap(BitSet set) {
+		RoaringBitmap b = new RoaringBitmap();
+		for (int v = set.nextSetBit(0); v >= 0; v = set.nextSetBit(v + 1)) {
+			b.add(v);
+		}
+		return b;
+	}
+
+	private static void assertSame(BitSet expected, RoaringBitmap actual) {
+		assertEquals(expected.cardinality(), actual.cardinality());
+		assertArrayEquals(expected.stream().toArray(), actual.toArray());
+	}
+
+	@Test
+	void testBitmapMatchesBitSet() {
+		// 300000 values = 5 chunks, sparse sets use array containers and dense ones bitmap containers
+		Random random = new Random(3);
+		double[] densities = {0.001, 0.05, 0.5};
+		for (double d1 : densities) {
+			for (double d2 : densities) {
+				BitSet a = randomSet(random, 300000, d1);
+				BitSet b = randomSet(random, 300000, d2);
+				RoaringBitmap ra = toBitmap(a);
+				RoaringBitmap rb = toBitmap(b);
+				assertSame(a, ra);
+
+				BitSet and = (BitSet)a.clone();
+				and.and(b);
+				assertSame(and, ra.and(rb));
+				BitSet or = (BitSet)a.clone();
+				or.or(b);
+				assertSame(or, ra.or(rb));
+				BitSet andNot = (BitSet)a.clone();
+				andNot.andNot(b);
+				assertSame(andNot, ra.andNot(rb));
+				assertSame(a, ra); // operations don't change their inputs
+			}
+		}
+		// sparse bitmaps stay small
+		assertTrue(toBitmap(randomSet(random, 300000, 0.001)).sizeInBytes() < 1000);
+	}
+
+	@Test
+	void testBitmapAdd() {
+		RoaringBitmap b = RoaringBitmap.of(70000, 5, 5, 65536, 3);
+		assertArrayEquals(new int[] {3, 5, 65536, 70000}, b.toArray());
+		assertFalse(b.add(5));
+		assertTrue(b.contains(65536));
+		assertFalse(b.contains(4));
+		assertFalse(b.contains(-1));
+
+		// past ARRAY_MAX values in one chunk it switches to a bitmap container, added out of order
+		for (int v = 10000; v > 0; v -= 2) {
+			b.add(v);
+		}
+		assertEquals(4 + 5000, b.cardinality());
+		assertTrue(b.contains(9998));
+		assertFalse(b.contains(9999));
+		assertTrue(b.copy().equals(b));
+	}
+
+	@Test
+	void testQuery() {
+		GraphSnapshot snapshot = graph.publish();
+
+		// solutions for both anxiety and insomnia but not anger
+		ArrayList<Solution> found = snapshot.query().all(anxiety, insomnia).none(anger).solutions();
+		assertEquals(2, found.size());
+		assertTrue(found.contains(breathing));
+		assertTrue(found.contains(counselling));
+
+		assertEquals(5, snapshot.query().any(anxiety, insomnia).count());
+		assertEquals(2, snapshot.query().any(anger).count());
+		assertEquals(1, snapshot.query().none(anxiety, anger).count()); // only the sleep schedule
+		assertEquals(5, snapshot.query().count());
+		assertEquals(2, snapshot.query().all(anxiety).any(insomnia, anger).none(anger).count());
+
+		// a characteristic that isn't in the graph addresses nothing
+		Characteristic unknown = new Characteristic("unknown", new ArrayList<String>());
+		assertEquals(0, snapshot.query().all(anxiety, unknown).count());
+		assertEquals(4, snapshot.query().any(anxiety, unknown).count());
+	}
+
+	@Test
+	void testRanked() {
+		GraphSnapshot snapshot = graph.publish();
+		ArrayList<Solution> ranked = snapshot.query().all(anxiety, insomnia).ranked();
+		// breathing 3 + 1, exercise 1 + 2, counselling 2 + 1
+		assertEquals(breathing, ranked.get(0));
+		assertEquals(exercise, ranked.get(1)); // ties keep graph order
+		assertEquals(counselling, ranked.get(2));
+
+		// none() characteristics don't count towards the ranking
+		ranked = snapshot.query().any(insomnia).none(anger).ranked();
+		assertEquals(3, ranked.size());
+		assertEquals(sleepSchedule, ranked.get(0));
+		assertEquals(breathing, ranked.get(1));
+		assertEquals(counselling, ranked.get(2));
+	}
+
+	@Test
+	void testResultCanBeChanged() {
+		GraphSnapshot snapshot = graph.publish();
+		RoaringBitmap b = snapshot.query().all(anger).bitmap();
+		b.add(100);
+		assertEquals(2, snapshot.query().all(anger).count());
+		assertEquals(2, graph.publish().query().all(anger).count()); // new snapshot, same shape
+	}
+}
@@ -0,0 +1,94 @@
+package Testing;
+
+import static org.junit.Assert.*;
+
+import org.junit.jupiter.api.*;
+
+import ConvoBot.ContextGraph;
+import ConvoBot.PrintMessage;
+import ConvoBot.Solution;
+import ConvoBot.Speculator;
+import ConvoBot.TurnContext;
+import ConvoBot.TurnPipeline;
+
+public class SpeculatorTest {
+
+	/**
+	 * Tests replies worked out ahead of the patient's answer (Speculator)
+	 */
+
+	private ContextGraph graph;
+	private Solution solution;
+	private Speculator speculator;
+
+	// replies with the normalized answer
+	private final TurnPipeline.Responder echo = new TurnPipeline.Responder() {
+		@Override
+		public String respond(TurnContext turn) {
+			return "you said " + turn.getNormalized();
+		}
+	};
+
+	// "maybe" is a characteristic so its graph update can be seen
+	@BeforeEach
+	void createGraph() {
+		Speculator.enabled = true;
+		TestGraph test = new TestGraph().edge("maybe", "journal", 2);
+		solution = test.getSolution("journal");
+		graph = test.build();
+		speculator = new Speculator();
+	}
+
+	@Test
+	void testLikelyAnswerIsServed() throws Exception {
+		speculator.speculate(graph, null, echo);
+		Speculator.awaitSpeculation();
+		assertEquals(0.0, graph.getSolutionScore(solution), 0.0); // nothing changed while speculating
+
+		long hits = Speculator.getHits();
+		TurnContext turn = speculator.take("  MAYBE ");
+		assertNotNull(turn);
+		assertEquals("you said maybe", turn.getReply());
+		assertEquals(hits + 1, Speculator.getHits());
+		assertEquals(2.0, graph.getSolutionScore(solution), 0.0);
+
+		// results are only good for one answer
+		assertNull(speculator.take("maybe"));
+	}
+
+	@Test
+	void testOtherAnswerIsNotServed() throws Exception {
+		speculator.speculate(graph, null, echo);
+		Speculator.awaitSpeculation();
+		long misses = Speculator.getMisses();
+		assertNull(speculator.take("i'm not sure, maybe"));
+		assertEquals(misses + 1, Speculator.getMisses());
+		assertEquals(0.0, graph.getSolutionScore(solution), 0.0);
+	}
+
+	@Test
+	void testRepliesThatNeedInputAreDropped() throws Exception {
+		speculator.speculate(graph, null, new TurnPipeline.Responder() {
+			@Override
+			public String respond(TurnContext turn) {
+				PrintMessage.messageFromBot("Why?");
+				return "never";
+			}
+		});
+		Speculator.awaitSpeculation();
+		assertNull(speculator.take("yes"));
+		assertFalse(Speculator.isSpeculating());
+	}
+
+	@Test
+	void testDisabled() throws Exception {
+		Speculator.enabled = false;
+		try {
+			speculator.speculate(graph, null, echo);
+			Speculator.awaitSpeculation();
+			assertNull(speculator.take("yes"));
+		} finally {
+			Speculator.enabled = true;
+		}
+	}
+}
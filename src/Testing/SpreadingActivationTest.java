@@ -0,0 +1,147 @@
+package Testing;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.*;
+
+import ConvoBot.Characteristic;
+import ConvoBot.ContextGraph;
+import ConvoBot.Solution;
+import ConvoBot.SpreadingActivation;
+
+public class SpreadingActivationTest {
+
+	/**
+	 * Tests ranking solutions by spreading activation (SpreadingActivation), including relations that form cycles
+	 */
+
+	private ArrayList<Solution> solutions;
+	private ArrayList<Characteristic> characteristics;
+	private ContextGraph graph;
+
+	// characteristic i -> treatment i (x1), i = 0..2
+	@BeforeEach
+	void createGraph() {
+		TestGraph test = new TestGraph().numberedSolutions(3).numberedCharacteristics(3);
+		for (int i = 0; i < 3; i++) {
+			test.edge(i, i, 1);
+		}
+		solutions = test.getSolutions();
+		characteristics = test.getCharacteristics();
+		graph = test.build();
+	}
+
+	@Test
+	void testConvergesToFixedPoint() {
+		SpreadingActivation sa = graph.useSpreadingActivation(null);
+		graph.incrementCharacteristic(characteristics.get(0), 2);
+
+		// characteristic0 keeps 1 - 0.85 * a of its activation a, treatment0 gets 0.85 * a
+		assertEquals(0.85 / 1.85, graph.getSolutionScore(solutions.get(0)), 1e-5);
+		assertEquals(0.0, graph.getSolutionScore(solutions.get(1)), 0.0);
+		assertTrue(sa.getLastIterations() > 0);
+		assertTrue(sa.getLastIterations() < sa.getMaxIterations());
+
+		double sum = 0.0;
+		for (double a : sa.rank()) {
+			sum += a;
+		}
+		assertEquals(1.0, sum, 1e-5);
+	}
+
+	@Test
+	void testCycle() throws IOException {
+		// characteristic0 -> characteristic1 -> characteristic0, not allowed as graph edges
+		SpreadingActivation sa = graph.useSpreadingActivation(writeFile("characteristic0;characteristic1-1.0;\ncharacteristic1;characteristic0-1.0;\n"));
+		graph.incrementCharacteristic(characteristics.get(0), 1);
+
+		double s0 = graph.getSolutionScore(solutions.get(0));
+		double s1 = graph.getSolutionScore(solutions.get(1));
+		assertTrue(sa.getLastIterations() < sa.getMaxIterations());
+		assertTrue(s1 > 0.0); // reached through the relation
+		assertTrue(s0 > s1);
+		assertEquals(0.0, graph.getSolutionScore(solutions.get(2)), 0.0);
+		assertEquals(solutions.get(0), graph.getTopSolutionsArray()[0]);
+		assertEquals(solutions.get(1), graph.getTopSolutionsArray()[1]);
+
+		double sum = 0.0;
+		for (double a : sa.rank()) {
+			assertFalse(Double.isNaN(a));
+			sum += a;
+		}
+		assertEquals(1.0, sum, 1e-5);
+	}
+
+	@Test
+	void testPersonalization() {
+		graph.useSpreadingActivation(null);
+		assertEquals(0.0, graph.getSolutionScore(solutions.get(0)), 0.0); // nothing incremented yet
+
+		graph.incrementCharacteristic(characteristics.get(0), 1);
+		graph.incrementCharacteristic(characteristics.get(2), 3);
+		assertEquals(solutions.get(2), graph.getTopSolutionsArray()[0]);
+		assertEquals(3.0, graph.getSolutionScore(solutions.get(2)) / graph.getSolutionScore(solutions.get(0)), 1e-4);
+
+		// start vector follows the weights, a disabled characteristic is left out
+		graph.incrementCharacteristic(characteristics.get(0), 5);
+		assertEquals(solutions.get(0), graph.getTopSolutionsArray()[0]);
+		graph.setNodeEnabled(characteristics.get(0), false);
+		assertEquals(solutions.get(2), graph.getTopSolutionsArray()[0]);
+		assertEquals(0.0, graph.getSolutionScore(solutions.get(0)), 0.0);
+	}
+
+	@Test
+	void testRankingCached() {
+		SpreadingActivation sa = graph.useSpreadingActivation(null);
+		sa.setMaxIterations(1000);
+		graph.incrementCharacteristic(characteristics.get(1), 1);
+		graph.getSolutionScore(solutions.get(1));
+		assertTrue(sa.getLastIterations() > 1);
+
+		// every lookup after that reads the same result until the graph changes
+		sa.setTolerance(1e-6); // changing a setting spreads again
+		graph.getSolutionScore(solutions.get(0));
+		int iterations = sa.getLastIterations();
+		for (Solution s : solutions) {
+			graph.getSolutionScore(s);
+		}
+		graph.getTopSolutionsArray();
+		assertEquals(iterations, sa.getLastIterations());
+
+		// a multiplier change is picked up
+		double before = graph.getSolutionScore(solutions.get(1));
+		graph.addEdge(characteristics.get(1), solutions.get(2), 3.0);
+		assertTrue(graph.getSolutionScore(solutions.get(1)) < before);
+		assertTrue(graph.getSolutionScore(solutions.get(2)) > graph.getSolutionScore(solutions.get(1)));
+		graph.setEdgeMultiplier(characteristics.get(1), solutions.get(2), 0.5);
+		assertTrue(graph.getSolutionScore(solutions.get(2)) < graph.getSolutionScore(solutions.get(1)));
+	}
+
+	@Test
+	void testRankReturnsCopy() {
+		SpreadingActivation sa = graph.useSpreadingActivation(null);
+		graph.incrementCharacteristic(characteristics.get(0), 1);
+		double[] first = sa.rank();
+		double[] kept = first.clone();
+		graph.incrementCharacteristic(characteristics.get(1), 10);
+		sa.rank();
+		sa.rank();
+		for (int i = 0; i < kept.length; i++) {
+			assertEquals(kept[i], first[i], 0.0);
+		}
+	}
+
+	private static String writeFile(String contents) throws IOException {
+		File file = File.createTempFile("relations", ".txt");
+		file.deleteOnExit();
+		try (FileWriter writer = new FileWriter(file)) {
+			writer.write(contents);
+		}
+		return file.getPath();
+	}
+}
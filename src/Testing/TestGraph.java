@@ -0,0 +1,138 @@
+package Testing;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Random;
+
+import ConvoBot.Characteristic;
+import ConvoBot.ContextGraph;
+import ConvoBot.ContextGraphBuilder;
+import ConvoBot.Solution;
+
+public class TestGraph {
+
+	/**
+	 * Graph for tests, each test states only the topology it needs and this builds the lists and the ContextGraph
+	 * 	characteristics/solutions are kept in the order they were first named, edges/sub characteristics create missing nodes
+	 *
+	 * ie. TestGraph test = new TestGraph().edge("stress", "take breaks", 2).synonym("stress", "stressed");
+	 * 	ContextGraph graph = test.build();
+	 */
+
+	private final LinkedHashMap<String, Solution> solutions = new LinkedHashMap<>();
+	private final LinkedHashMap<String, Characteristic> characteristics = new LinkedHashMap<>();
+
+	// solutions with these names, in this order
+	public TestGraph solutions(String... names) {
+		for (String name : names) {
+			solution(name);
+		}
+		return this;
+	}
+
+	// solutions treatment0..treatment(count - 1)
+	public TestGraph numberedSolutions(int count) {
+		for (int i = 0; i < count; i++) {
+			solution("treatment" + i);
+		}
+		return this;
+	}
+
+	// characteristics with these names, in this order
+	public TestGraph characteristics(String... names) {
+		for (String name : names) {
+			characteristic(name);
+		}
+		return this;
+	}
+
+	// characteristics characteristic0..characteristic(count - 1)
+	public TestGraph numberedCharacteristics(int count) {
+		for (int i = 0; i < count; i++) {
+			characteristic("characteristic" + i);
+		}
+		return this;
+	}
+
+	// characteristic -> solution (x multiplier)
+	public TestGraph edge(String characteristic, String solution, double multiplier) {
+		characteristic(characteristic).addSolution(solution(solution), multiplier);
+		return this;
+	}
+
+	// same as above, by position in getCharacteristics()/getSolutions()
+	public TestGraph edge(int characteristic, int solution, double multiplier) {
+		getCharacteristic(characteristic).addSolution(getSolution(solution), multiplier);
+		return this;
+	}
+
+	// perCharacteristic edges from every characteristic to random solutions, multipliers 1..maxMultiplier
+	public TestGraph randomEdges(Random random, int perCharacteristic, int maxMultiplier) {
+		ArrayList<Solution> ss = getSolutions();
+		for (Characteristic ch : characteristics.values()) {
+			for (int j = 0; j < perCharacteristic; j++) {
+				ch.addSolution(ss.get(random.nextInt(ss.size())), 1 + random.nextInt(maxMultiplier));
+			}
+		}
+		return this;
+	}
+
+	// parent -> sub (x multiplier), ie. sleep problems -> insomnia
+	public TestGraph sub(String parent, String sub, double multiplier) {
+		characteristic(parent).addSubCharacteristic(characteristic(sub), multiplier);
+		return this;
+	}
+
+	public TestGraph synonym(String characteristic, String synonym) {
+		characteristic(characteristic).getSynonymns().add(synonym);
+		return this;
+	}
+
+	// new graph every call, all graphs share the same Characteristic/Solution objects
+	public ContextGraph build() {
+		return new ContextGraphBuilder().addSolutions(solutions.values()).addCharacteristics(characteristics.values()).build();
+	}
+
+	public ArrayList<Solution> getSolutions() {
+		return new ArrayList<>(solutions.values());
+	}
+
+	public ArrayList<Characteristic> getCharacteristics() {
+		return new ArrayList<>(characteristics.values());
+	}
+
+	public Solution getSolution(int i) {
+		return getSolutions().get(i);
+	}
+
+	public Solution getSolution(String name) {
+		return solutions.get(name);
+	}
+
+	public Characteristic getCharacteristic(int i) {
+		return getCharacteristics().get(i);
+	}
+
+	public Characteristic getCharacteristic(String name) {
+		return characteristics.get(name);
+	}
+
+	private Solution solution(String name) {
+		Solution s = solutions.get(name);
+		if (s == null) {
+			s = new Solution(name);
+			solutions.put(name, s);
+		}
+		return s;
+	}
+
+	private Characteristic characteristic(String name) {
+		Characteristic ch = characteristics.get(name);
+		if (ch == null) {
+			ch = new Characteristic(name, new ArrayList<String>());
+			characteristics.put(name, ch);
+		}
+		return ch;
+	}
+
+}
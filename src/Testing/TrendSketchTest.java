@@ -0,0 +1,101 @@
+package Testing;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.*;
+
+import ConvoBot.TrendSketch;
+
+public class TrendSketchTest {
+
+	private static final long MINUTE = 60 * 1000L;
+
+	// 1 hour in 1 minute buckets
+	private TrendSketch sketch;
+
+	@BeforeEach
+	void createSketch() {
+		sketch = new TrendSketch(61, MINUTE, 4, 256, 2, 32);
+	}
+
+	@Test
+	void testTopOrder() {
+		long now = 1000 * MINUTE;
+		for (int i = 0; i < 30; i++) {
+			sketch.add("stress", 1, now);
+		}
+		for (int i = 0; i < 20; i++) {
+			sketch.add("insomnia", 1, now - 5 * MINUTE);
+		}
+		for (int i = 0; i < 10; i++) {
+			sketch.add("anxiety", 1, now - 10 * MINUTE);
+		}
+		sketch.add("sadness", 1, now);
+
+		ArrayList<TrendSketch.Count> top = sketch.top(3, 60 * MINUTE, now);
+		assertEquals(3, top.size());
+		assertEquals("stress", top.get(0).getName());
+		assertEquals("insomnia", top.get(1).getName());
+		assertEquals("anxiety", top.get(2).getName());
+		assertEquals(30, top.get(0).getCount());
+	}
+
+	@Test
+	void testOldCountsLeaveWindow() {
+		long now = 1000 * MINUTE;
+		sketch.add("stress", 5, now - 30 * MINUTE);
+		sketch.add("insomnia", 2, now);
+
+		assertEquals(5, sketch.getCount("stress", 60 * MINUTE, now));
+		assertEquals(0, sketch.getCount("stress", 10 * MINUTE, now));
+		assertEquals("insomnia", sketch.top(1, 10 * MINUTE, now).get(0).getName());
+
+		// bucket reused 61 minutes later, old counts cleared
+		sketch.add("fatigue", 1, now - 30 * MINUTE + 61 * MINUTE);
+		assertEquals(0, sketch.getCount("stress", 60 * MINUTE, now + 61 * MINUTE));
+	}
+
+	@Test
+	void testRising() {
+		long now = 1000 * MINUTE;
+		sketch.add("stress", 10, now - 20 * MINUTE); // previous window
+		sketch.add("stress", 12, now);
+		sketch.add("insomnia", 8, now);
+
+		ArrayList<TrendSketch.Count> rising = sketch.rising(2, 15 * MINUTE, now);
+		assertEquals("insomnia", rising.get(0).getName());
+		assertEquals(8, rising.get(0).getCount());
+		assertEquals(2, rising.get(1).getCount());
+	}
+
+	// counts are never lower than the real count, heavy names stay in the candidates with many small names added
+	@Test
+	void testManyNamesFromThreads() throws InterruptedException {
+		final long now = 1000 * MINUTE;
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			final int id = t;
+			threads[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 5000; i++) {
+						sketch.add("name" + id + "-" + i, 1, now);
+						if (i % 10 == 0) {
+							sketch.add("heavy", 1, now);
+						}
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertTrue(sketch.getCount("heavy", MINUTE, now) >= 2000);
+		assertTrue(sketch.getCount("name1-7", MINUTE, now) >= 1);
+		assertEquals("heavy", sketch.top(1, MINUTE, now).get(0).getName());
+	}
+}
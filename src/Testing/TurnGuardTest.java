@@ -0,0 +1,94 @@
+package Testing;
+
+import static org.junit.Assert.*;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.*;
+
+import ConvoBot.TurnGuard;
+
+public class TurnGuardTest {
+
+	private long budget;
+
+	@BeforeEach
+	void saveBudget() {
+		budget = TurnGuard.budgetNanos;
+	}
+
+	@AfterEach
+	void restoreBudget() {
+		TurnGuard.budgetNanos = budget;
+		TurnGuard.endTurn();
+	}
+
+	@Test
+	void testTruncation() {
+		StringBuilder s = new StringBuilder();
+		for (int i = 0; i < TurnGuard.MAX_INPUT_LENGTH * 2; i++) {
+			s.append('a');
+		}
+		long truncated = TurnGuard.getTruncatedInputs();
+		assertEquals(TurnGuard.MAX_INPUT_LENGTH, TurnGuard.startTurn(s.toString()).length());
+		assertEquals(truncated + 1, TurnGuard.getTruncatedInputs());
+
+		assertEquals("hello", TurnGuard.startTurn("hello"));
+		assertEquals("", TurnGuard.startTurn(null));
+		assertEquals(truncated + 1, TurnGuard.getTruncatedInputs());
+	}
+
+	@Test
+	void testMatchingWithinBudget() {
+		String input = TurnGuard.startTurn("well i'm a student at ubc");
+		Matcher m = Pattern.compile("(.*)(i'm a)(.*)").matcher(TurnGuard.guard(input));
+		assertTrue(TurnGuard.find(m));
+		assertEquals(" student at ubc", m.group(3));
+		assertFalse(TurnGuard.timedOut());
+	}
+
+	@Test
+	void testPathologicalInputTimesOut() {
+		TurnGuard.budgetNanos = 1000 * 1000L; // 1 ms
+
+		// catastrophic backtracking, would run for a very long time without the guard
+		StringBuilder s = new StringBuilder();
+		for (int i = 0; i < 60; i++) {
+			s.append('a');
+		}
+		s.append('!');
+		String input = TurnGuard.startTurn(s.toString());
+		long timedOut = TurnGuard.getTimedOutTurns();
+
+		Matcher m = Pattern.compile("(.*a){20}").matcher(TurnGuard.guard(input));
+		long start = System.nanoTime();
+		assertFalse(TurnGuard.find(m));
+		assertTrue(System.nanoTime() - start < 1000 * 1000 * 1000L);
+		assertTrue(TurnGuard.timedOut());
+		assertEquals(timedOut + 1, TurnGuard.getTimedOutTurns());
+		assertNotNull(TurnGuard.fallbackReply());
+
+		// the rest of the turn doesn't match anything
+		assertFalse(TurnGuard.matches(Pattern.compile("a*!").matcher(TurnGuard.guard(input))));
+		assertEquals(timedOut + 1, TurnGuard.getTimedOutTurns());
+
+		// next turn starts over
+		input = TurnGuard.startTurn("aaa!");
+		assertFalse(TurnGuard.timedOut());
+		assertTrue(TurnGuard.matches(Pattern.compile("a*!").matcher(TurnGuard.guard(input))));
+	}
+
+	@Test
+	void testNoLimitOutsideTurn() {
+		TurnGuard.budgetNanos = 0; // every turn is over budget straight away
+		String input = TurnGuard.startTurn("aaa!");
+		assertFalse(TurnGuard.matches(Pattern.compile("a*!").matcher(TurnGuard.guard(input))));
+		assertTrue(TurnGuard.timedOut());
+
+		TurnGuard.endTurn();
+		assertFalse(TurnGuard.timedOut());
+		assertSame(input, TurnGuard.guard(input));
+		assertTrue(TurnGuard.matches(Pattern.compile("a*!").matcher(TurnGuard.guard(input))));
+	}
+}
@@ -0,0 +1,167 @@
+package Testing;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.*;
+
+import ConvoBot.Characteristic;
+import ConvoBot.ContextGraph;
+import ConvoBot.GraphSnapshot;
+import ConvoBot.TurnContext;
+import ConvoBot.TurnPipeline;
+
+public class TurnPipelineTest {
+
+	/**
+	 * Tests the stages of TurnPipeline and bulk mode
+	 */
+
+	private ContextGraph graph;
+	private Characteristic insomnia;
+	private Characteristic stress;
+
+	@BeforeEach
+	void createGraph() {
+		TestGraph test = new TestGraph().solutions("sleep schedule", "exercise")
+				.edge("insomnia", "sleep schedule", 2).synonym("insomnia", "can't sleep")
+				.edge("stress", "exercise", 1).synonym("stress", "stressed");
+		insomnia = test.getCharacteristic("insomnia");
+		stress = test.getCharacteristic("stress");
+		graph = test.build();
+	}
+
+	@Test
+	void testStandardStages() {
+		TurnPipeline pipeline = TurnPipeline.standard();
+		TurnContext turn = new TurnContext("  Yes, I'm   STRESSED and I can't sleep! ", graph, null);
+		String reply = pipeline.process(turn);
+
+		assertEquals("yes, i'm stressed and i can't sleep!", turn.getNormalized());
+		assertArrayEquals(new String[] {"yes", "i'm", "stressed", "and", "i", "can't", "sleep"}, turn.getTokens());
+		assertEquals(2, turn.getCharacteristics().size());
+		assertTrue(turn.getCharacteristics().contains(stress));
+		assertTrue(turn.getCharacteristics().contains(insomnia));
+		assertEquals(-1, turn.getSentiment());
+		assertTrue(turn.hasIntent(TurnContext.YES));
+		assertFalse(turn.hasIntent(TurnContext.GOODBYE));
+
+		// graph update stage incremented both, sleep schedule scores 2
+		assertEquals("sleep schedule", graph.getTopSolution().getName());
+		assertEquals(reply, turn.getReply());
+		assertEquals(TurnPipeline.DEFAULT_RESPONDER.respond(turn), reply);
+
+		String[] names = pipeline.getStageNames();
+		assertArrayEquals(new String[] {"normalize", "tokenize", "detect", "graph update", "respond"}, names);
+		for (int i = 0; i < names.length; i++) {
+			assertEquals(1, pipeline.getStageTurns(i));
+		}
+	}
+
+	// without a GraphWriter the graph update stage publishes a snapshot once it has changed the graph
+	@Test
+	void testPublishedAfterGraphUpdate() {
+		TurnPipeline pipeline = TurnPipeline.standard();
+		GraphSnapshot before = graph.getSnapshot();
+		pipeline.process(new TurnContext("i feel great", graph, null));
+		assertSame(before, graph.getSnapshot()); // nothing found, nothing to publish
+
+		pipeline.process(new TurnContext("i can't sleep", graph, null));
+		GraphSnapshot after = graph.getSnapshot();
+		assertTrue(after.getVersion() > before.getVersion());
+		assertEquals("sleep schedule", after.getTopSolution().getName());
+		assertEquals(2.0, after.getSolutionScore(after.getTopSolution()), 0.0);
+	}
+
+	@Test
+	void testKeywordsOfEachSessionGraph() {
+		TurnPipeline pipeline = TurnPipeline.standard();
+		ContextGraph first = new ContextGraph(graph);
+		ContextGraph second = new ContextGraph(graph);
+		TurnContext turn = new TurnContext("i'm stressed", first, null);
+		pipeline.process(turn);
+		assertTrue(turn.getCharacteristics().contains(stress));
+
+		// a characteristic added to one session's graph is only found in that session
+		Characteristic anger = new Characteristic("anger", new ArrayList<String>());
+		assertTrue(second.addNewCharacteristic(anger));
+		turn = new TurnContext("so much anger and stressed", second, null);
+		pipeline.process(turn);
+		assertTrue(turn.getCharacteristics().contains(anger));
+		assertTrue(turn.getCharacteristics().contains(stress));
+		for (ContextGraph g : new ContextGraph[] {graph, first, new ContextGraph(graph)}) {
+			turn = new TurnContext("so much anger and stressed", g, null);
+			pipeline.process(turn);
+			assertFalse(turn.getCharacteristics().contains(anger));
+			assertTrue(turn.getCharacteristics().contains(stress));
+		}
+	}
+
+	@Test
+	void testReplaceStage() {
+		TurnPipeline pipeline = TurnPipeline.standard();
+		assertTrue(pipeline.replaceStage(new TurnPipeline.Stage() {
+			@Override
+			public String getName() {
+				return "respond";
+			}
+			@Override
+			public void process(TurnContext turn) {
+				turn.setReply(turn.getTokens().length + " words");
+			}
+		}));
+		assertEquals("3 words", pipeline.process(new TurnContext("hello there bot", null, null)));
+		assertFalse(pipeline.replaceStage(new TurnPipeline.RespondStage() {
+			@Override
+			public String getName() {
+				return "nothing";
+			}
+		}));
+	}
+
+	@Test
+	void testBulkMatchesOneThread() throws Exception {
+		String[] lines = {"i feel great", "i'm stressed", "goodbye", "no i can't sleep", "maybe"};
+		ArrayList<TurnContext> turns = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			turns.add(new TurnContext(lines[i % lines.length], graph, null));
+		}
+		TurnPipeline pipeline = TurnPipeline.standard();
+		pipeline.processAll(turns, 8);
+
+		TurnPipeline single = TurnPipeline.standard();
+		for (int i = 0; i < turns.size(); i++) {
+			TurnContext expected = new TurnContext(lines[i % lines.length], null, null);
+			single.process(expected);
+			assertEquals(expected.getReply(), turns.get(i).getReply());
+			assertEquals(expected.getSentiment(), turns.get(i).getSentiment());
+		}
+		assertEquals(1000, pipeline.getStageTurns(4));
+		assertTrue(turns.get(2).hasIntent(TurnContext.GOODBYE));
+	}
+
+	@Test
+	void testFailedTurnSkipsLaterStages() {
+		TurnPipeline pipeline = new TurnPipeline().addStage(new TurnPipeline.NormalizeStage()).addStage(new TurnPipeline.Stage() {
+			@Override
+			public String getName() {
+				return "broken";
+			}
+			@Override
+			public void process(TurnContext turn) {
+				throw new IllegalStateException("broken stage");
+			}
+		}).addStage(new TurnPipeline.RespondStage());
+
+		TurnContext turn = new TurnContext("hi", null, null);
+		try {
+			pipeline.process(turn);
+			fail("Expected the stage's exception");
+		} catch (IllegalStateException e) {
+			assertEquals("broken stage", e.getMessage());
+		}
+		assertNull(turn.getReply());
+		assertEquals(0, pipeline.getStageTurns(2));
+	}
+}
@@ -0,0 +1,250 @@
+package Testing;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.*;
+
+import ConvoBot.Characteristic;
+import ConvoBot.ContextGraph;
+import ConvoBot.MessageChannel;
+import ConvoBot.PrintMessage;
+import ConvoBot.Solution;
+import ConvoBot.TurnContext;
+import ConvoBot.TurnPipeline;
+import ConvoBot.TurnScheduler;
+
+public class TurnSchedulerTest {
+
+	/**
+	 * Tests fair scheduling and shedding of turns (TurnScheduler)
+	 */
+
+	private TurnScheduler scheduler;
+	private List<String> order;
+	private Solution breaks;
+	private Characteristic stress;
+
+	@BeforeEach
+	void createScheduler() {
+		scheduler = new TurnScheduler(1).setMaxWaitNanos(5L * 1000 * 1000 * 1000);
+		order = Collections.synchronizedList(new ArrayList<String>());
+	}
+
+	// thread running one turn of cost for session, records when it got in
+	private Thread turn(final String session, final int cost) {
+		Thread t = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					if (scheduler.enter(session, cost)) {
+						order.add(session);
+						scheduler.exit(session, 0);
+					} else {
+						order.add("shed " + session);
+					}
+				} catch (InterruptedException e) {
+					order.add("interrupted " + session);
+				}
+			}
+		});
+		t.start();
+		return t;
+	}
+
+	private void awaitQueued(int queued) throws InterruptedException {
+		for (int i = 0; i < 500 && scheduler.getQueued() != queued; i++) {
+			Thread.sleep(2);
+		}
+		assertEquals(queued, scheduler.getQueued());
+	}
+
+	@Test
+	void testRunsStraightAwayWhenFree() throws Exception {
+		assertTrue(scheduler.enter("a", 10));
+		assertEquals(1, scheduler.getInFlight());
+		assertEquals(0, scheduler.getQueued());
+		scheduler.exit("a", 0);
+		assertEquals(0, scheduler.getInFlight());
+		assertEquals(1, scheduler.getAdmitted());
+	}
+
+	@Test
+	void testCheapTurnsGoFirst() throws Exception {
+		assertTrue(scheduler.enter("holder", 10));
+		Thread heavy = turn("heavy", TurnScheduler.costOf(new String(new char[400])));
+		awaitQueued(1);
+		Thread light = turn("light", TurnScheduler.costOf("i'm okay"));
+		awaitQueued(2);
+
+		scheduler.exit("holder", 0);
+		heavy.join(5000);
+		light.join(5000);
+		assertEquals(2, order.size());
+		assertEquals("light", order.get(0)); // heavy waits more rounds for its deficit
+		assertEquals("heavy", order.get(1));
+	}
+
+	@Test
+	void testShedWhenQueueFull() throws Exception {
+		scheduler.setMaxQueued(1);
+		assertTrue(scheduler.enter("holder", 10));
+		Thread first = turn("first", 10);
+		awaitQueued(1);
+		Thread second = turn("second", 10);
+		second.join(5000);
+		assertEquals("shed second", order.get(0));
+
+		scheduler.exit("holder", 0);
+		first.join(5000);
+		assertEquals("first", order.get(1));
+		assertEquals(1, scheduler.getShed());
+	}
+
+	@Test
+	void testShedAfterWaiting() throws Exception {
+		scheduler.setMaxWaitNanos(20L * 1000 * 1000);
+		assertTrue(scheduler.enter("holder", 10));
+		long start = System.nanoTime();
+		assertFalse(scheduler.enter("late", 10));
+		assertTrue(System.nanoTime() - start >= 20L * 1000 * 1000);
+		assertEquals(0, scheduler.getQueued());
+		assertEquals(1, scheduler.getShed());
+		scheduler.exit("holder", 0);
+	}
+
+	// graph with stress -> take breaks
+	private ContextGraph graph() {
+		TestGraph test = new TestGraph().edge("stress", "take breaks", 1);
+		breaks = test.getSolution("take breaks");
+		stress = test.getCharacteristic("stress");
+		return test.build();
+	}
+
+	@Test
+	void testShedTurnStillUpdatesGraph() throws Exception {
+		ContextGraph graph = graph();
+		TurnPipeline pipeline = TurnPipeline.standard();
+
+		TurnContext turn = new TurnContext("stress", graph, null);
+		assertNotNull(scheduler.process(graph, turn, pipeline));
+		assertFalse(turn.isDegraded());
+		double score = graph.getSolutionScore(breaks);
+
+		scheduler.setMaxWaitNanos(1000 * 1000);
+		assertTrue(scheduler.enter("holder", 10));
+		turn = new TurnContext("stress", graph, null);
+		assertNull(scheduler.process(graph, turn, pipeline));
+		assertTrue(turn.isDegraded());
+		assertNull(turn.getReply()); // no reply worked out
+		assertTrue(turn.getCharacteristics().contains(stress));
+		assertEquals(2 * score, graph.getSolutionScore(breaks), 1e-9);
+		scheduler.exit("holder", 0);
+		assertEquals(0, scheduler.getInFlight());
+	}
+
+	@Test
+	void testShedTurnChargesSession() throws Exception {
+		ContextGraph graph = graph();
+		scheduler.setMaxQueued(0);
+		assertTrue(scheduler.enter("holder", 10));
+		assertNull(scheduler.process("shed", new TurnContext("stress", graph, null), TurnPipeline.standard()));
+
+		// "shed" owes its shed turn (cost 26 + 50 for the graph update), "fresh" gets in first though it asked later
+		scheduler.setMaxQueued(10);
+		Thread shed = turn("shed", 50);
+		awaitQueued(1);
+		Thread fresh = turn("fresh", 50);
+		awaitQueued(2);
+
+		scheduler.exit("holder", 0);
+		shed.join(5000);
+		fresh.join(5000);
+		assertEquals("fresh", order.get(0));
+		assertEquals("shed", order.get(1));
+	}
+
+	// debt of turns shed over and over is capped, once load drops the session gets a turn between a busy session's turns
+	@Test
+	void testRepeatedlyShedSessionGetsTurn() throws Exception {
+		assertTrue(scheduler.enter("holder", 10));
+		for (int i = 0; i < 500; i++) {
+			scheduler.charge("shed", TurnScheduler.costOf("i feel stressed") + TurnScheduler.GRAPH_UPDATE_COST);
+		}
+
+		List<Thread> threads = new ArrayList<>();
+		threads.add(turn("shed", 50));
+		awaitQueued(1);
+		for (int i = 0; i < 20; i++) {
+			threads.add(turn("busy", 50));
+			awaitQueued(i + 2);
+		}
+
+		scheduler.exit("holder", 0);
+		for (Thread t : threads) {
+			t.join(5000);
+		}
+		assertEquals(21, order.size());
+		assertTrue(order.indexOf("shed") > 0); // still waits for what it owes
+		assertTrue(order.indexOf("shed") < 5);
+	}
+
+	@Test
+	void testSlotReleasedWhileWaitingForPatient() throws Exception {
+		final ContextGraph graph = graph();
+		final CountDownLatch asked = new CountDownLatch(1);
+		final CountDownLatch answered = new CountDownLatch(1);
+		// follow up question in the reply, blocks until the patient answers
+		final TurnPipeline pipeline = TurnPipeline.standard();
+		pipeline.replaceStage(new TurnPipeline.RespondStage() {
+			@Override
+			public void process(TurnContext turn) {
+				turn.setReply("you said " + PrintMessage.messageFromUser());
+			}
+		});
+		final String[] reply = new String[1];
+		Thread patient = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				PrintMessage.setChannel(new MessageChannel() {
+					@Override
+					public String messageFromUser() {
+						asked.countDown();
+						try {
+							answered.await();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+						return "a lot";
+					}
+					@Override
+					public void messageFromBot(String output) {
+					}
+				});
+				try {
+					reply[0] = scheduler.process(graph, new TurnContext("stress", graph, null), pipeline);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		patient.start();
+		assertTrue(asked.await(5, TimeUnit.SECONDS));
+
+		// the only slot is free while the patient types
+		assertEquals(0, scheduler.getInFlight());
+		assertTrue(scheduler.enter("other", 10));
+		scheduler.exit("other", 0);
+
+		answered.countDown();
+		patient.join(5000);
+		assertEquals("you said a lot", reply[0]);
+		assertEquals(0, scheduler.getInFlight()); // slot given back once, not again when the turn ended
+		assertEquals(2, scheduler.getAdmitted());
+	}
+}
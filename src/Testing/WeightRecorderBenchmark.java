@@ -0,0 +1,80 @@
+package Testing;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import ConvoBot.ContextGraph;
+import ConvoBot.Trending;
+import ConvoBot.TurnContext;
+import ConvoBot.TurnPipeline;
+import ConvoBot.WeightRecorder;
+
+public class WeightRecorderBenchmark {
+
+	/**
+	 * Runs sessions of discussion lines through a standard TurnPipeline, recording each session's weights after every turn
+	 * 	into segment files in a temporary folder, then reads back one characteristic and then every column
+	 * Prints recorder counters and scan times, the folder is deleted afterwards
+	 *
+	 * Usage: WeightRecorderBenchmark [sessions=1000] [seed=42]
+	 * 	run from the project folder (graph files are read once)
+	 */
+
+	public static void main(String[] args) throws IOException {
+		int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 42;
+		Trending.enabled = false; // benchmark turns aren't real conversations
+		Random random = new Random(seed);
+		ContextGraph template = new ContextGraph("characteristicsList.txt", "solutionsList.txt");
+		TurnPipeline pipeline = TurnPipeline.standard();
+
+		File directory = Files.createTempDirectory("weights").toFile();
+		try {
+			WeightRecorder recorder = new WeightRecorder(directory, template);
+			long start = System.nanoTime();
+			for (int i = 0; i < sessions; i++) {
+				ContextGraph graph = new ContextGraph(template);
+				WeightRecorder.Trajectory trajectory = recorder.startTrajectory();
+				int lines = 3 + random.nextInt(6);
+				for (int j = 0; j < lines; j++) {
+					pipeline.process(new TurnContext(LoadGenerator.LINES[random.nextInt(LoadGenerator.LINES.length)], graph, null));
+					trajectory.record(graph.publish());
+				}
+			}
+			recorder.close();
+			System.out.println(String.format("Recorded weights: %s in %.2f ms", recorder.getMetrics(), (System.nanoTime() - start) / 1e6));
+
+			WeightRecorder.Reader reader = new WeightRecorder.Reader(directory);
+			final double[] sum = new double[1];
+			WeightRecorder.Visitor visitor = new WeightRecorder.Visitor() {
+				@Override
+				public void visit(long session, long turn, double value) {
+					sum[0] += value;
+				}
+			};
+			String column = WeightRecorder.column(template.getCharacteristicsList().get(0));
+			start = System.nanoTime();
+			long rows = reader.scan(column, visitor);
+			long oneNanos = System.nanoTime() - start;
+
+			String[] columns = reader.getColumns();
+			start = System.nanoTime();
+			for (String c : columns) {
+				reader.scan(c, visitor);
+			}
+			long allNanos = System.nanoTime() - start;
+			System.out.println(String.format("\tscan %s: %d rows in %.2f ms, all %d columns: %.2f ms", column, rows, oneNanos / 1e6, columns.length,
+					allNanos / 1e6));
+		} finally {
+			File[] files = directory.listFiles();
+			if (files != null) {
+				for (File file : files) {
+					file.delete();
+				}
+			}
+			directory.delete();
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package Testing;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.jupiter.api.*;
+
+import ConvoBot.Characteristic;
+import ConvoBot.ContextGraph;
+import ConvoBot.GraphSnapshot;
+import ConvoBot.Solution;
+import ConvoBot.WeightRecorder;
+
+public class WeightRecorderTest {
+
+	/**
+	 * Tests recording weight trajectories into compressed segment files (WeightRecorder) and reading them back
+	 */
+
+	private File directory;
+	private TestGraph test;
+	private ArrayList<Characteristic> characteristics;
+	private ArrayList<Solution> solutions;
+
+	@BeforeEach
+	void createDirectory() throws IOException {
+		directory = Files.createTempDirectory("weights").toFile();
+		test = new TestGraph().numberedSolutions(3).numberedCharacteristics(4);
+		for (int i = 0; i < 4; i++) {
+			test.edge(i, i % 3, 1 + i);
+		}
+		solutions = test.getSolutions();
+		characteristics = test.getCharacteristics();
+	}
+
+	@AfterEach
+	void deleteDirectory() {
+		for (File f : directory.listFiles()) {
+			f.delete();
+		}
+		directory.delete();
+	}
+
+	private ContextGraph graph() {
+		return test.build();
+	}
+
+	// values of one column read back, in row order
+	private static final class Column implements WeightRecorder.Visitor {
+		final ArrayList<Long> sessions = new ArrayList<>();
+		final ArrayList<Long> turns = new ArrayList<>();
+		final ArrayList<Double> values = new ArrayList<>();
+
+		@Override
+		public void visit(long session, long turn, double value) {
+			sessions.add(session);
+			turns.add(turn);
+			values.add(value);
+		}
+	}
+
+	@Test
+	void testRoundTrip() throws IOException {
+		WeightRecorder recorder = new WeightRecorder(directory, graph(), 100);
+		ContextGraph[] graphs = {graph(), graph(), graph()};
+		WeightRecorder.Trajectory[] trajectories = new WeightRecorder.Trajectory[graphs.length];
+		for (int g = 0; g < graphs.length; g++) {
+			trajectories[g] = recorder.startTrajectory();
+		}
+
+		// sessions take turns at random, most turns change one weight by a random amount
+		Random random = new Random(7);
+		ArrayList<Long> sessions = new ArrayList<>();
+		ArrayList<Double> weights = new ArrayList<>();
+		ArrayList<Double> scores = new ArrayList<>();
+		for (int t = 0; t < 1000; t++) {
+			int g = random.nextInt(graphs.length);
+			if (random.nextInt(4) != 0) {
+				graphs[g].incrementCharacteristic(characteristics.get(random.nextInt(4)), random.nextGaussian());
+			}
+			GraphSnapshot snapshot = graphs[g].publish();
+			assertTrue(trajectories[g].record(snapshot));
+			sessions.add(trajectories[g].getSession());
+			weights.add(snapshot.getCharacteristicWeight(characteristics.get(2)));
+			scores.add(snapshot.getSolutionScore(solutions.get(1)));
+		}
+		recorder.close();
+		assertEquals(1000, recorder.getRows());
+		assertEquals(10, recorder.getSegments());
+
+		WeightRecorder.Reader reader = new WeightRecorder.Reader(directory);
+		assertEquals(10, reader.getSegments());
+		Column c = new Column();
+		assertEquals(1000, reader.scan(WeightRecorder.column(characteristics.get(2)), c));
+		Column s = new Column();
+		reader.scan(WeightRecorder.column(solutions.get(1)), s);
+
+		int[] turns = new int[graphs.length];
+		for (int r = 0; r < 1000; r++) {
+			assertEquals(sessions.get(r), c.sessions.get(r));
+			assertEquals(turns[(int)(long)sessions.get(r)]++, (long)c.turns.get(r));
+			assertEquals(weights.get(r), c.values.get(r), 0.0); // exact, doubles aren't rounded
+			assertEquals(scores.get(r), s.values.get(r), 0.0);
+		}
+	}
+
+	@Test
+	void testUnchangedWeightsAreSmall() throws IOException {
+		WeightRecorder recorder = new WeightRecorder(directory, graph());
+		ContextGraph graph = graph();
+		graph.incrementCharacteristic(characteristics.get(0), 3);
+		WeightRecorder.Trajectory trajectory = recorder.startTrajectory();
+		for (int t = 0; t < 10000; t++) {
+			trajectory.record(graph.publish());
+		}
+		recorder.close();
+		// 2 + 4 + 3 columns, after the first row every column takes 1 bit a turn
+		long values = 10000L * 9;
+		assertTrue(recorder.getEncodedBytes() * 8 < values * 1.1);
+		assertEquals(3, recorder.getSegments());
+	}
+
+	@Test
+	void testColumns() throws IOException {
+		WeightRecorder recorder = new WeightRecorder(directory, graph());
+		recorder.startTrajectory().record(graph().publish());
+		recorder.close();
+
+		String[] columns = new WeightRecorder.Reader(directory).getColumns();
+		assertEquals(2 + 4 + 3, columns.length);
+		assertEquals(WeightRecorder.SESSION, columns[0]);
+		assertEquals(WeightRecorder.TURN, columns[1]);
+		assertEquals(WeightRecorder.column(characteristics.get(0)), columns[2]);
+		assertEquals(WeightRecorder.column(solutions.get(2)), columns[8]);
+		try {
+			new WeightRecorder.Reader(directory).scan("characteristic:nothing", new Column());
+			fail("unknown column");
+		} catch (IllegalArgumentException e) {
+		}
+		assertFalse(recorder.startTrajectory().record(graph().publish())); // closed
+	}
+
+	@Test
+	void testOnlyFlushedRowsAreRead() throws IOException {
+		WeightRecorder recorder = new WeightRecorder(directory, graph(), 10);
+		ContextGraph graph = graph();
+		WeightRecorder.Trajectory trajectory = recorder.startTrajectory();
+		for (int t = 0; t < 15; t++) {
+			graph.incrementCharacteristic(characteristics.get(1), 1);
+			trajectory.record(graph.publish());
+		}
+		// the first segment was flushed when it filled up
+		Column c = new Column();
+		assertEquals(10, new WeightRecorder.Reader(directory).scan(WeightRecorder.column(characteristics.get(1)), c));
+
+		recorder.flush();
+		c = new Column();
+		assertEquals(15, new WeightRecorder.Reader(directory).scan(WeightRecorder.column(characteristics.get(1)), c));
+		assertEquals(15.0, c.values.get(14), 0.0);
+		assertEquals(14L, (long)c.turns.get(14));
+
+		// rows after a flush go after the flushed ones
+		trajectory.record(graph.publish());
+		recorder.close();
+		assertEquals(16, new WeightRecorder.Reader(directory).scan(WeightRecorder.column(characteristics.get(1)), new Column()));
+	}
+}
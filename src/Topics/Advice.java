@@ -1,66 +1,142 @@
 package Topics;
 
+import java.util.ArrayList;
+
+import ConvoBot.AdviceIndex;
+import ConvoBot.Characteristic;
+import ConvoBot.ContextGraph;
+import ConvoBot.GraphSnapshot;
+import ConvoBot.MultiplierLearner;
+import ConvoBot.PrintMessage;
+import ConvoBot.SentimentLexicon;
+import ConvoBot.SessionIndex;
+import ConvoBot.Solution;
+import ConvoBot.Trending;
+import ConvoBot.TurnContext;
+import ConvoBot.TurnGuard;
+import ConvoBot.TurnPipeline;
+
 public class Advice extends Topic{
 
 	String[] messages = {"Regular sleeping habits and exercise have both been proven to help improve anxiety symptoms and improve mental health!",
 			"It will be hard to stick with at first. But after you get in the habit you won't even need to think about it."};
 
 	/* ADVICE
-
-	ANXIETY, STRESS
-
-	Writing about how you feel is helpful for a lot of people. If your thoughts or worries are down on paper, you don't need to hold them in your head. You can always come back to them when you're ready.
-
+	 * advice is stored in adviceList.txt as "tag1,tag2;advice;", tags are characteristic/solution names
+	 * 	read once into an index by tag (see ConvoBot.AdviceIndex), advice picked by the patient's top characteristics/solutions in the graph
+	 */
 	
-
-	DEPRESSION, ANXIETY
-
-	Sometimes we have negative thoughts that we can't help. Ask yourself "Is this thought helpful for me right now?" If it's not helpful, it's okay to let it go.
-
+	// number of top characteristics and top solutions used to pick advice, and number of advice given
+	static final int TOP_K = 3;
+	static final int ADVICE_COUNT = 2;
 	
-
-	Sometimes a negative thought comes out of nowhere. It's okay to let the thought sit with you for awhile, without judgement. Consider what it might be showing you. Then, when you're ready, let the thought go.
-
+	// similar finished sessions looked at, and weight of the best solution found through them (less than the patient's own)
+	static final int NEIGHBOURS = 5;
+	static final double NEIGHBOUR_WEIGHT = 0.5;
 	
-
-	ANXIETY, ANGER
-
-	Sometimes we get carried away, or stuck in our own heads. Take a break, breathe, and focus on how your body feels. Feel your breath moving in and out, the ground beneath you, the environment you're in. This will help bring your attention back to yourself and the moment.
-
-	
-
-	ANXIETY, ANGER, STRESS, INSOMNIA
-
-	Exercise is an important aspect of self-care. When you're feeling {characteristic}, try going for a walk or doing some simple stretches, or a more vigorous workout if you're up for it. Your body will release positive endorphins, and it's a great chance to reset.
-
+	// read once, shared by every conversation
+	private static AdviceIndex index;
 	
-
-	DEPRESSION, STRESS
-
-	It's easy to get so overwhelmed that you can't do anything at all. Pick one simple task to do right away, like getting yourself a glass of water or placing clothes in a laundry basket. It's easier to start with something easy, then even if you can't do anything else, you've still made progess.
-
+	static synchronized AdviceIndex getIndex() {
+		if (index == null) {
+			index = new AdviceIndex("adviceList.txt");
+		}
+		return index;
+	}
 	
-
-	INSOMNIA
-
-	It's important to dedicate time before bed ot wind down. Avoid screens, or turn on blue light filters, and get to bed at the same time every night.
-
+	// reads yes/no out of the patient's answer when asked if a solution helped
+	private static final TurnPipeline feedbackPipeline = new TurnPipeline().addStage(new TurnPipeline.NormalizeStage())
+			.addStage(new TurnPipeline.TokenizeStage()).addStage(new TurnPipeline.DetectStage());
 	
-
-	IF ANY CHARACTERISTIC HAS LARGE EDGE WEIGHTS
-
-	I can't give advice for every issue, but I recommend seeking out a professional counsellor. 
-
-
-
-*/
-
-
+	public static void startTopic(ContextGraph contextGraph) {
+		startTopic(contextGraph, null, null, null);
+	}
 	
-	public static void startTopic() {
+	/**
+	 * Gives advice, first asking whether the top solution helped if learner is set (answer recorded for learning multipliers)
+	 * 	if similarSessions is set, solutions that ranked highest for the most similar finished sessions count towards the advice too
+	 * 	(sessionId = the patient's own session, left out of the similar ones)
+	 */
+	public static void startTopic(ContextGraph contextGraph, MultiplierLearner learner, SessionIndex similarSessions, String sessionId) {
 		System.out.println("*******starting Advice********");
+		
+		GraphSnapshot snapshot = contextGraph.publish();
+		if (learner != null) {
+			askFeedback(contextGraph, snapshot, learner);
+		}
+		
+		// tags asked for = top characteristics and top solutions, weight = score / highest score so both count the same
+		ArrayList<String> tags = new ArrayList<>();
+		ArrayList<Double> weights = new ArrayList<>();
+		
+		Characteristic[] characteristics = snapshot.getTopCharacteristics(TOP_K);
+		for (Characteristic ch : characteristics) {
+			double weight = snapshot.getCharacteristicWeight(ch);
+			if (weight > 0) {
+				tags.add(ch.getName());
+				weights.add(weight / snapshot.getCharacteristicWeight(characteristics[0]));
+			}
+		}
+		
+		Solution[] solutions = snapshot.getTopSolutionsArray();
+		for (int i = 0; i < TOP_K && i < solutions.length; i++) {
+			double score = snapshot.getSolutionScore(solutions[i]);
+			if (score > 0) {
+				tags.add(solutions[i].getName());
+				weights.add(score / snapshot.getSolutionScore(solutions[0]));
+			}
+		}
+		if (solutions.length > 0 && snapshot.getSolutionScore(solutions[0]) > 0) {
+			Trending.solutionRecommended(solutions[0]);
+		}
+		
+		if (similarSessions != null) {
+			ArrayList<Solution> similar = similarSessions.recommend(snapshot, NEIGHBOURS, TOP_K, sessionId);
+			for (int i = 0; i < similar.size(); i++) {
+				if (!tags.contains(similar.get(i).getName())) {
+					tags.add(similar.get(i).getName());
+					weights.add(NEIGHBOUR_WEIGHT / (i + 1));
+				}
+			}
+		}
+		
+		double[] w = new double[weights.size()];
+		for (int i = 0; i < w.length; i++) {
+			w[i] = weights.get(i);
+		}
+		
+		String topCharacteristic = characteristics.length > 0 && snapshot.getCharacteristicWeight(characteristics[0]) > 0 ? characteristics[0].getName() : "down";
+		
+		for (AdviceIndex.Match m : getIndex().select(tags.toArray(new String[tags.size()]), w, ADVICE_COUNT, null)) {
+			PrintMessage.messageFromBot(m.getAdvice().replace("{characteristic}", topCharacteristic));
+		}
+		
 		currentTopic++;
 	}
 	
+	// asks if the top solution helped, yes = helped, no/not/didn't = didn't help, anything else isn't recorded
+	private static void askFeedback(ContextGraph contextGraph, GraphSnapshot snapshot, MultiplierLearner learner) {
+		Solution[] solutions = snapshot.getTopSolutionsArray();
+		if (solutions.length == 0 || snapshot.getSolutionScore(solutions[0]) <= 0) {
+			return;
+		}
+		PrintMessage.messageFromBot("Have you tried " + solutions[0].getName() + " before? Did it help?");
+		TurnContext answer = new TurnContext(PrintMessage.messageFromUser(), null, null);
+		feedbackPipeline.process(answer);
+		
+		boolean negated = answer.hasIntent(TurnContext.NO);
+		for (String token : answer.getTokens()) {
+			negated |= SentimentLexicon.DEFAULT.kindOf(token) == SentimentLexicon.NEGATOR;
+		}
+		if (negated) {
+			learner.recordFeedback(contextGraph, solutions[0], false);
+			PrintMessage.messageFromBot("Thanks for letting me know, I'll keep that in mind.");
+		} else if (answer.hasIntent(TurnContext.YES)) {
+			learner.recordFeedback(contextGraph, solutions[0], true);
+			PrintMessage.messageFromBot("That's great to hear!");
+		}
+		TurnGuard.endTurn();
+	}
+	
 
 }
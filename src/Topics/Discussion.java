@@ -4,15 +4,23 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.Scanner;
 import org.apache.*;
 import org.apache.commons.lang3.ArrayUtils;
 
 import java.lang.reflect.Array;
+import java.util.concurrent.atomic.LongAdder;
 
-import ConvoBot.Characteristic;
 import ConvoBot.ContextGraph;
+import ConvoBot.GraphWriter;
 import ConvoBot.PrintMessage;
+import ConvoBot.ScoreWatcher;
+import ConvoBot.SentimentLexicon;
+import ConvoBot.Speculator;
+import ConvoBot.TurnContext;
+import ConvoBot.TurnPipeline;
+import ConvoBot.TurnGuard;
+import ConvoBot.TurnScheduler;
+import ConvoBot.WeightRecorder;
 import ConvoBot.Synonyms;
 
 public class Discussion extends Topic {
@@ -34,164 +42,289 @@ public class Discussion extends Topic {
 	public static String[] noMessages = { "Please go on.", "That's very interesting", "I see.",
 			"How does that make you feel?", "Could you please elaborate?", "Please continue.", "I understand." };
 	ContextGraph contextGraph;
+	
+	// graph changes are queued here and made on another thread when set (see GraphWriter), null = graph changed before replying
+	GraphWriter graphWriter;
+	
+	// set when the user says goodbye, ends the discussion early
+	boolean finished;
+	
+	// every message goes through normalize -> tokenize -> detect -> graph update -> respond (discussionRules), shared by all discussions
+	public static final TurnPipeline pipeline = TurnPipeline.standard();
+	
+	// decides when each discussion's turns run when many sessions share the JVM, null = turns run straight away
+	public static volatile TurnScheduler scheduler;
+
+	// moves on to advice once the top solution leads the second by this much (see ContextGraph.watchMargin), 0 = always 20 rounds
+	// 	graphs ranking by spreading activation always take 20 rounds, their scores can't be watched
+	public static volatile double confidentMargin = 0;
+	// rounds discussed before a clear top solution can end the discussion
+	public static final int MIN_ROUNDS = 3;
+	private static final LongAdder earlyTransitions = new LongAdder();
+	
+	// set by the margin subscription (on the thread changing the graph) while the top solution is clearly ahead
+	private volatile boolean confident;
+
+	// weights are recorded here after every turn when set (see WeightRecorder), null = not recorded
+	WeightRecorder.Trajectory trajectory;
+
+	// works out replies to yes/no/maybe while the patient answers a question
+	Speculator speculator = new Speculator();
+
+	// set while the scheduler is shedding this discussion's turns, no replies are worked out ahead then
+	private boolean overloaded;
+	
+	// follow up questions, a reply asking one sets it on the turn and the next message is handled as its answer (see answerFollowUp)
+	static final int NO_QUESTION = 0;
+	static final int EXERCISE = 1; // "Do you excercise?" after "I'm <something good>"
+	static final int STRESS_CAUSE = 2; // "Whats been stressing you out?"
+	static final int ENJOY_WORK = 3; // "Do you enjoy what you do?"
+	static final int TIRED_EXERCISE = 4; // "Do you excercise? It can help with sleeping better."
+	static final int SLEEP_SCHEDULE = 5; // exercises, "do you have a regular sleep schedule?"
+	static final int SLEEP_SCHEDULE_NO_EXERCISE = 6; // doesn't exercise, "Do you have a reagular sleep schedule?"
+	static final int STRESSED_SLEEPS_WELL = 7; // exercises and has a sleep schedule, "Have you been feeling stressed or anxious lately?"
+	static final int STRESSED_NO_EXERCISE = 8; // has a sleep schedule but doesn't exercise
+	static final int STRESSED_NEITHER = 9; // neither
+	static final int JOURNAL = 10; // "Have you tried keeping a journal or setting personal deadlines?"
+	static final int ANXIOUS_OR_DEPRESSED = 11; // "Do you feel anxious or depressed?" after trying to procrastinate less
+	private static final int QUESTIONS = 12;
+
+	// question the last reply asked, NO_QUESTION if it didn't ask one
+	private int followUp = NO_QUESTION;
+
+	// respond stage of the pipeline, rules[question] replies with discussionRules() to an answer to question
+	// 	the question is fixed per responder, so replies worked out ahead (see Speculator) don't read this discussion's state
+	private final TurnPipeline.Responder[] rules = new TurnPipeline.Responder[QUESTIONS];
 
 	public Discussion(ContextGraph contextGraph) {
+		this(contextGraph, null);
+	}
+	
+	public Discussion(ContextGraph contextGraph, GraphWriter graphWriter) {
+		this(contextGraph, graphWriter, null);
+	}
+	
+	public Discussion(ContextGraph contextGraph, GraphWriter graphWriter, WeightRecorder.Trajectory trajectory) {
 		this.contextGraph = contextGraph;
+		this.graphWriter = graphWriter;
+		this.trajectory = trajectory;
 		conversationRounds = 0;
 		messages = new ArrayList<String>();
+		for (int q = 0; q < QUESTIONS; q++) {
+			final int question = q;
+			rules[q] = new TurnPipeline.Responder() {
+				@Override
+				public String respond(TurnContext turn) {
+					return discussionRules(turn, question);
+				}
+			};
+		}
 	}
 
 	public void startTopic() {
 		// TODO Auto-generated method stub
 		PrintMessage.messageFromBot("******Starting Discussion*****");
 		String input;
-		for (int i = 0; i < 20; i++) {
+		ScoreWatcher.Subscription confidence = watchConfidence();
+		int i;
+		// 20 rounds (fewer once confident), a follow up question still waiting for its answer gets one more
+		for (i = 0; !finished && (followUp != NO_QUESTION || (i < 20 && !(confident && i >= MIN_ROUNDS))); i++) {
 			input = PrintMessage.messageFromUser();
-			PrintMessage.messageFromBot(discussionRules(input));
+			String output;
+			TurnContext turn = speculator.take(input);
+			if (turn != null) {
+				output = turn.getReply();
+			} else {
+				turn = new TurnContext(input, contextGraph, rules[followUp]).setGraphWriter(graphWriter);
+				output = processTurn(turn);
+			}
+			followUp = turn.isDegraded() ? NO_QUESTION : turn.getFollowUp();
+			if (turn.hasIntent(TurnContext.GOODBYE)) { // stops asking, the conversation moves straight to Goodbye
+				finished = true;
+				followUp = NO_QUESTION;
+			}
+			if (TurnGuard.timedOut()) { // matching took too long, answer without it
+				output = TurnGuard.fallbackReply();
+				followUp = NO_QUESTION;
+			}
+			if (trajectory != null) {
+				// queued changes may not be in the writer's snapshot yet, they show up in a later turn
+				trajectory.record(graphWriter != null ? graphWriter.getSnapshot() : contextGraph.getSnapshot());
+			}
+			if (output != null) {
+				PrintMessage.messageFromBot(output);
+				if (output.endsWith("?") && !finished && !overloaded) {
+					speculator.speculate(contextGraph, graphWriter, rules[followUp]);
+				}
+			}
+			TurnGuard.endTurn();
+		}
+		if (confidence != null) {
+			confidence.cancel();
+			if (i < 20 && !finished) {
+				earlyTransitions.increment();
+				debug("Confident after " + i + " rounds");
+			}
+		}
+		if (finished) {
+			currentTopic = 4; // skip advice, go to goodbye
+		} else {
+			currentTopic++;
 		}
-		currentTopic++;
+	}
+	
+	// subscribes to the margin between the two best solutions when confidentMargin is set, null otherwise
+	private ScoreWatcher.Subscription watchConfidence() {
+		double margin = confidentMargin;
+		if (margin <= 0 || contextGraph.usesSpreadingActivation()) {
+			return null;
+		}
+		if (graphWriter != null) {
+			try {
+				graphWriter.flush(); // nothing may change the graph while subscribing
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return null;
+			}
+		}
+		ScoreWatcher.Subscription s = contextGraph.watchMargin(margin, new ScoreWatcher.Listener() {
+			@Override
+			public void crossed(ScoreWatcher.Event e) {
+				confident = e.isRising();
+			}
+		});
+		confident = s.isAbove(); // a returning patient may already have a clear top solution
+		return s;
+	}
+	
+	// discussions that moved on to advice before 20 rounds because the top solution was clear
+	public static long getEarlyTransitions() {
+		return earlyTransitions.sum();
+	}
+
+	// runs turn through the pipeline, through the scheduler if there is one (generic reply if it shed the turn)
+	private String processTurn(TurnContext turn) {
+		TurnScheduler s = scheduler;
+		if (s == null) {
+			return pipeline.process(turn);
+		}
+		String output;
+		try {
+			output = s.process(this, turn, pipeline);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return noMessages[nextRandom(noMessages.length)];
+		}
+		overloaded = turn.isDegraded();
+		return overloaded ? noMessages[nextRandom(noMessages.length)] : output;
 	}
 
 	/**
-	 * @param input The message from the user
+	 * @param turn The message from the user, a reply asking a follow up question sets it on turn
+	 * @param question The follow up question the message answers, NO_QUESTION if the last reply didn't ask one
 	 * @return The bot response
 	 */
-	public String discussionRules(String input) {
-		extractKeywords(input);
-		Scanner scanner1 = new Scanner(System.in);
-		input = input.toLowerCase();
+	public String discussionRules(TurnContext turn, int question) {
+		String input = turn.getNormalized().toLowerCase();
+		if (question != NO_QUESTION) {
+			debug("Answer to follow up " + question);
+			return answerFollowUp(question, input, turn);
+		}
 		String output = null;
 
-		ArrayList<String> happyList = new ArrayList<String>();
-		happyList.add("happy");
-		happyList.add("good");
-		happyList.add("well");
-		happyList.add("super");
-		happyList.add("awesome");
-		happyList.add("great");
-		happyList.add("okay");
-
-		ArrayList<String> sadList = new ArrayList<String>();
-		sadList.add("sad");
-		sadList.add("miserable");
-		sadList.add("upset");
-		sadList.add("down");
-		sadList.add("dissapointed");
-		sadList.add("depressed");
-
-		ArrayList<String> positiveList = new ArrayList<String>();
-		positiveList.add("love");
-		positiveList.add("adore");
-		positiveList.add("like");
-		positiveList.add("enjoy");
-
-		ArrayList<String> negativeList = new ArrayList<String>();
-		negativeList.add("hate");
-		negativeList.add("loath");
-		negativeList.add("despise");
-		negativeList.add("dislike");
-		negativeList.add("stressed");
-		negativeList.add("tired");
-
 		// Case 1: User responds with I
 		Pattern p1 = Pattern.compile("(i\\s)(.*)");
-		Matcher m1 = p1.matcher(input);
+		Matcher m1 = p1.matcher(TurnGuard.guard(input));
 
 		// Case 2: User responds with I'm
 		Pattern p2 = Pattern.compile("(.*)(i'm)(.*)");
-		Matcher m2 = p2.matcher(input);
+		Matcher m2 = p2.matcher(TurnGuard.guard(input));
 
 		// Case 3: user response contains "stress"
 		Pattern p3 = Pattern.compile("(.*)(stress)(.*)");
-		Matcher m3 = p3.matcher(input);
+		Matcher m3 = p3.matcher(TurnGuard.guard(input));
 
 		// Case 4: User response contains "depressed"
 		Pattern p4 = Pattern.compile("(.*)(depressed)(.*)");
-		Matcher m4 = p4.matcher(input);
+		Matcher m4 = p4.matcher(TurnGuard.guard(input));
 
 		// Case 5: User responds with yes
 		Pattern p5 = Pattern.compile("(.*)(yes)(.*)");
-		Matcher m5 = p5.matcher(input);
+		Matcher m5 = p5.matcher(TurnGuard.guard(input));
 
 		// Case 6: User responds with no
 		Pattern p6 = Pattern.compile("(.*)(no\\s)(.*)");
-		Matcher m6 = p6.matcher(input);
+		Matcher m6 = p6.matcher(TurnGuard.guard(input));
 		
 		// Case 7: user response contains "Tired"
 		Pattern p7 = Pattern.compile("(.*)(tired)(.*)");
-		Matcher m7 = p7.matcher(input);
+		Matcher m7 = p7.matcher(TurnGuard.guard(input));
 		
 		// Case 8: User response contains "procrastinate/ing"
 		Pattern p8 = Pattern.compile("(.*)(procrastinat)(.*)");
-		Matcher m8 = p8.matcher(input);
-		
-		// Case 9: Goodbye
-		Pattern p9 = Pattern.compile("(.*)(goodbye)(.*)");
-		Matcher m9 = p9.matcher(input);
+		Matcher m8 = p8.matcher(TurnGuard.guard(input));
 		
-		if (m1.matches() && !m2.matches()) {
-			System.out.println("Case 1");
+		if (TurnGuard.matches(m1) && !TurnGuard.matches(m2)) {
+			debug("Case 1");
 			// Case 1.1: I am
 			Pattern p1_1 = Pattern.compile("(.*)(am)(.*)");
-			Matcher m1_1 = p1_1.matcher(input);
+			Matcher m1_1 = p1_1.matcher(TurnGuard.guard(input));
 
 			// Case 1.2: I feel
 			Pattern p1_2 = Pattern.compile("(.*)(feel)(.*)");
-			Matcher m1_2 = p1_2.matcher(input);
+			Matcher m1_2 = p1_2.matcher(TurnGuard.guard(input));
 			
 			// Case 1.3: I ___ Busy ___
 
-			if (m1_1.find()) {
-				System.out.println("Case 1.1");
+			if (TurnGuard.find(m1_1)) {
+				debug("Case 1.1");
 				// Case 1.1.1: I am feeling BLANK
 				Pattern p1_1_1 = Pattern.compile("(.*)(feeling)(.*)");
-				Matcher m1_1_1 = p1_1_1.matcher(input);
+				Matcher m1_1_1 = p1_1_1.matcher(TurnGuard.guard(input));
 
-				if (m1_1_1.find()) {
-					System.out.println("case 1.1.1");
-					String keyword = m1_1_1.group(3);
-					keyword = keyword.replaceAll("\\s+", "");
+				if (TurnGuard.find(m1_1_1)) {
+					debug("case 1.1.1");
+					SentimentLexicon.Score feeling = sentimentOf(m1_1_1.group(3));
 
-					if (happyList.contains(keyword.toLowerCase())) {
+					if (feeling.isPositive()) {
 						output = "I'm glad to hear that you're feeling good!";
 						// Change graph weight
-					} else if (sadList.contains(keyword.toLowerCase())) {
+					} else if (feeling.isNegative()) {
 						// Change graph weights
 						output = "I'm sorry to hear that, what's wrong?";
 					}
 
 				} else {
-					System.out.println("case 1.1.2");
-					String keyword = m1_1.group(3);
-					keyword = keyword.replaceAll("\\s+", "");
-					System.out.println("Keyword:" + keyword);
-					if (happyList.contains(keyword.toLowerCase())) {
+					debug("case 1.1.2");
+					String keyword = phrase(m1_1.group(3));
+					SentimentLexicon.Score feeling = sentimentOf(keyword);
+					debug("Keyword:" + keyword + " (" + feeling + ")");
+					if (feeling.isPositive()) {
 						output = "I'm glad to hear that you feel good! Keep it up by getting into healthy habits. Do you excercise?";
 						// Change graph weight
-					} else if (sadList.contains(keyword.toLowerCase())) {
+					} else if (feeling.isNegative()) {
 						// Change graph weights
 						output = "I'm sorry to hear that. Why do you feel so " + keyword + "?";
 					} else {
-						output = noMessages[(int) (Math.random() * noMessages.length)];
+						output = noMessages[nextRandom(noMessages.length)];
 					}
 				}
-			}else if(m1_2.find()) { // I feel
-				System.out.println("Case 1.2");
-				String keyword = m1_2.group(3);
-				keyword = keyword.replaceAll("\\s+", "");
+			}else if(TurnGuard.find(m1_2)) { // I feel
+				debug("Case 1.2");
+				SentimentLexicon.Score feeling = sentimentOf(m1_2.group(3));
 
-				if (happyList.contains(keyword.toLowerCase())) {
+				if (feeling.isPositive()) {
 					output = "I'm glad to hear that you're feeling good! Keep it up by getting into healthy habits. Do you excercise?";
 					// Change graph weight
-				} else if (sadList.contains(keyword.toLowerCase()) ||negativeList.contains(keyword.toLowerCase())) {
+				} else if (feeling.isNegative()) {
 					// Change graph weights
 					output = "I'm sorry to hear that, what's wrong?";
 				}else {
-					output = noMessages[(int) (Math.random() * noMessages.length)];
+					output = noMessages[nextRandom(noMessages.length)];
 				}
 				
 			} else { // Case 1.3: I BLANK. EX I hate BLANK, I love BLANK, I procrastinate, ECT
-				System.out.println("Case 1.3");
+				debug("Case 1.3");
 				String[] words = m1.group(2).split(" "); // Splits the String into individual words
 				String keyword = words[0];
 				String sentence = null;
@@ -202,238 +335,217 @@ public class Discussion extends Topic {
 					sentence = null;
 				}
 
-				if (positiveList.contains(keyword.toLowerCase())) {
+				// whole clause is scored, "i don't like ..." is negative
+				SentimentLexicon.Score feeling = sentimentOf(m1.group(2));
+				if (feeling.isPositive()) {
 					output = "Its good to hear that you like " + sentence + ". " + "How does " + sentence
 							+ " make you feel?";
-				} else if (negativeList.contains(keyword.toLowerCase())) {
+				} else if (feeling.isNegative()) {
 					output = "I'm sorry to hear that " + sentence
 							+ " makes you feel like that. Why do you think it makes you feel that way?";
 				} else if (keyword.equals("proctastinate")) {
 					output = sampleMessages[2];
 				} else {
-					output = noMessages[(int) (Math.random() * noMessages.length)];
+					output = noMessages[nextRandom(noMessages.length)];
 				}
 
 			}
 
-		} else if (m2.matches()) { // Case 2: User responds with I'm
-			System.out.println("Case 2");
+		} else if (TurnGuard.matches(m2)) { // Case 2: User responds with I'm
+			debug("Case 2");
 			String keyword = null;
 			// Case 2.1 I'm feeling BLANK
 			Pattern p2_1 = Pattern.compile("(.*)(feeling)(.*)");
-			Matcher m2_1 = p2_1.matcher(input);
+			Matcher m2_1 = p2_1.matcher(TurnGuard.guard(input));
 			// Case 2.2 I'm worried about BLANK
 			Pattern p2_2 = Pattern.compile("(.*)(worried about)(.*)");
-			Matcher m2_2 = p2_2.matcher(input);
+			Matcher m2_2 = p2_2.matcher(TurnGuard.guard(input));
 			// Case 2.3 I'm BLANK
 
-			if (m2_1.matches()) {
-				System.out.println("Case 2.1");
-				keyword = m2_1.group(3);
-				keyword = keyword.replaceAll("\\s+", "");
-				if (happyList.contains(keyword.toLowerCase())) {
+			if (TurnGuard.matches(m2_1)) {
+				debug("Case 2.1");
+				SentimentLexicon.Score feeling = sentimentOf(m2_1.group(3));
+				if (feeling.isPositive()) {
 					output = "I'm glad to hear that you're feeling good! What would you like to talk about today?";
 					// Change graph weight
-				} else if (sadList.contains(keyword.toLowerCase())) {
+				} else if (feeling.isNegative()) {
 					// Change graph weights
 					output = "I'm sorry to hear that. " + sampleMessages[6];
 				} else {
-					output = noMessages[(int) (Math.random() * noMessages.length)];
+					output = noMessages[nextRandom(noMessages.length)];
 				}
-			} else if (m2_2.matches()) {
-				System.out.println("Case 2.2");
+			} else if (TurnGuard.matches(m2_2)) {
+				debug("Case 2.2");
 				keyword = m2_2.group(3); // worried implies this will be negative so I dont need to check the synonyms
 				keyword = keyword.replaceAll("\\s+", "");
 				output = "Why are you worried about " + keyword + "?";
 				// Change graph weights
 			} else {
-				System.out.println("Case 2.3");
-				keyword = m2.group(3);
-				keyword = keyword.replaceAll("\\s+", "");
+				debug("Case 2.3");
+				keyword = phrase(m2.group(3));
+				SentimentLexicon.Score feeling = sentimentOf(keyword);
 
-				if (happyList.contains(keyword.toLowerCase())) {
-					System.out.println("I'm glad to hear that you're " + keyword
-							+ "! Keep it up by getting into healthy habits. Do you excercise?");
-					String temp = scanner1.next();
-					temp = temp.toLowerCase();
-					Pattern p2_3_1 = Pattern.compile("(.*)(yes)(.*)");
-					Matcher m2_3_1 = p2_3_1.matcher(temp);
-					Pattern p2_3_2 = Pattern.compile("(.*)(do)(.*)");
-					Matcher m2_3_2 = p2_3_2.matcher(temp);
-
-					if (m2_3_1.find() || m2_3_2.find()) {
-						output = "Good for you! Excercise has been proven to improve concentration, helps you sleep better,"
-								+ " and reduce anxiety and depression. What else you would like to talk about?";
-					} else {
-						output = "You should try it. Excercise has been proven to improve concentration, helps you sleep better,"
-								+ " and reduces anxiety and depression.";
-					}
+				if (feeling.isPositive()) {
+					output = "I'm glad to hear that you're " + keyword + "! Keep it up by getting into healthy habits. Do you excercise?";
+					turn.setFollowUp(EXERCISE);
 					// Change graph weight
-				} else if (sadList.contains(keyword.toLowerCase())) {
+				} else if (feeling.isNegative()) {
 					// Change graph weights
 					output = "I'm sorry to hear that. " + sampleMessages[7];
 				} else {
-					output = noMessages[(int) (Math.random() * noMessages.length)];
+					output = noMessages[nextRandom(noMessages.length)];
 				}
 
 			}
-		} else if (m3.find()) { // Case 3, user response contains stressed
-			System.out.println("Case 3");
-			System.out.println("I'm sorry to hear that, make sure to block out time for yourself to unwind. \nRemeber, things you can't change aren't worth worrying about! Whats been stressing you out?");
-			String temp = scanner1.next().toLowerCase();
-			Pattern p3_1 = Pattern.compile("(.*)(school)(.*)");
-			Matcher m3_1 = p3_1.matcher(temp);
-			Pattern p3_2 = Pattern.compile("(.*)(work)(.*)");
-			Matcher m3_2 = p3_2.matcher(temp);
-			
-			if(m3_1.find()) {
-				output = "I'm sorry schools been so stressful lately. Hopefully it will be worth all of the hard work in the end!"
-						+ "\nYou can try to free up some extra time by improving your time management skills. Procrastination can lead to more stress down the line."
-						+ "\nDid you have anything else you wanted to talk about?";
-			}else if(m3_2.find()){
-				System.out.println("Sorry to hear that your work has been so stressful. Do you enjoy what you do?");
-				scanner1.hasNextLine();
-				temp = scanner1.next().toLowerCase();
-				Pattern p3_3 = Pattern.compile("(.*)(yes)(.*)");
-				Matcher m3_3 = p3_3.matcher(temp);
-				Pattern p3_4 = Pattern.compile("(.*)(yeah)(.*)");
-				Matcher m3_4 = p3_4.matcher(temp);
-				if(m3_3.find() || m3_4.find()) {
-					output = "Thats good, its important to enjoy what you do. Hopefully it will become less stressful soon.";
-				}else {
-					output = "Thats no good. Its important to enjoy what you do. Have you thought of doing something else?";
-				}
-			}else{
-					output = "I'm sorry about that. I hope it gets easier for you soon. It really does help to find someone to talk to. I'd reccomend talking to friends or family.";				
-			}
-		} else if (m4.find()) { // Case 4, user response contains depressed
-			System.out.println("Case 4");
+		} else if (TurnGuard.find(m3)) { // Case 3, user response contains stressed
+			debug("Case 3");
+			output = "I'm sorry to hear that, make sure to block out time for yourself to unwind. \nRemeber, things you can't change aren't worth worrying about! Whats been stressing you out?";
+			turn.setFollowUp(STRESS_CAUSE);
+		} else if (TurnGuard.find(m4)) { // Case 4, user response contains depressed
+			debug("Case 4");
 			output = sampleMessages[6];
-		} else if (m5.find()) { // case 5, user response contains yes
-			System.out.println("Case 5");
+		} else if (TurnGuard.find(m5)) { // case 5, user response contains yes
+			debug("Case 5");
 			output = "That's good! I'm glad you're being proactive about you're problems. What else would you like to talk about?";
-		} else if (m6.find()) { // Case 6, user response contains no
-			System.out.println("Case 6");
+		} else if (TurnGuard.find(m6)) { // Case 6, user response contains no
+			debug("Case 6");
 			output = "I'd reccomend looking into it. Are you having any other problems?";
-		} else if (m7.find()){ // Case 7, "tired"
-			System.out.println("Case 7");
-			System.out.println("Do you excercise? It can help with sleeping better.");
-			String temp = scanner1.next().toLowerCase();
-			Pattern p7_1 = Pattern.compile("(.*)(yes)(.*)");
-			Matcher m7_1 = p7_1.matcher(temp);
-			Pattern p7_2 = Pattern.compile("(.*)(do)(.*)");
-			Matcher m7_2 = p7_2.matcher(temp);
-
-			if (m7_1.find() || m7_2.find()) {
-				System.out.println("Good for you! Excercise has been proven to improve concentration, helps you sleep better,"
-						+ " and reduce anxiety and depression. Since you're still tired do you have a regular sleep schedule?");
-				scanner1.nextLine();
-				temp = scanner1.next().toLowerCase();
-				m7_1 = p7_1.matcher(temp);
-
-				if(m7_1.find()) {
-					System.out.println("Thats good, keeping a regular sleep schedule has been proven to improve sleep quality. Make sure you keep it up! Are you going to bed early enough?"
-							+ "\nThe national sleep foundation reccomends 7 - 9 hours for adults between 18 and 64. "
-							+ "\nApart from that you seem to have excellent sleep habits, if you have trouble falling asleep that can be caused from stress or anxiety."
-							+ "\nHave you been feeling stressed or anxious lately?");
-					scanner1.nextLine();
-					temp = scanner1.next().toLowerCase();
-					Pattern p7_3 = Pattern.compile("(.*)(maybe)(.*)");
-					Matcher m7_3 = p7_3.matcher(temp);
-					m7_1 = p7_1.matcher(temp);
-					if(m7_1.find() || m7_3.find()) {
-						output = sampleMessages[6];
-					}else {
-						output = "Thats good. Just make sure you're getting enough sleep then.";
-					}
-				}else {
-					output = "You should try sleeping at around the same time every night. It's been proven to improve the quality of sleep. Is there anything else you would like to talk about?";
-				}
-			} else {
-				System.out.println("You should try it. Excercise has been proven to improve concentration, helps you sleep better,"
-						+ " and reduces anxiety and depression. Do you have a reagular sleep schedule?");
-				scanner1.nextLine();
-				temp = scanner1.next().toLowerCase();
-				m7_1 = p7_1.matcher(temp);
-				if(m7_1.find()) {
-					output = "Thats good, keeping a regular sleep schedule has been proven to improve sleep quality. Make sure you keep it up!"
-							+ "\n Try excercising regularly to see if you feel less tired. If that doesn't help trouble sleeping can also be caused by stress or anxiety."
-							+ "\n have you been feeling stressed on axious lately?";
-					scanner1.nextLine();
-					temp = scanner1.next().toLowerCase();
-					Pattern p7_3 = Pattern.compile("(.*)(maybe)(.*)");
-					Matcher m7_3 = p7_3.matcher(temp);
-					m7_1 = p7_1.matcher(temp);
-					if(m7_1.find() || m7_3.find()) {
-						output = sampleMessages[6];
-					}else {
-						output = "That's good. Just try excercise for now. Is there anything else that's been bothering you?";
-					}
-				}else {
-					output = "I would recommend trying excercise and a regular sleep schedule. If that doesn't help trouble sleeping can be caused by stress or anxiety."
-							+ "\n have you been feeling stressed or anxious lately?";
-					scanner1.nextLine();
-					temp = scanner1.next().toLowerCase();
-					Pattern p7_3 = Pattern.compile("(.*)(maybe)(.*)");
-					Matcher m7_3 = p7_3.matcher(temp);
-					m7_1 = p7_1.matcher(temp);
-					if(m7_1.find() || m7_3.find()) {
-						output = sampleMessages[6];
-					}else {
-						output = "That's good. Try my reccomedations and see if they help. Is there anything else you wanted to talk about?";
-					}
-				}
-			}
-		} else if(m8.find()){ // Case 8
-			System.out.println("Case 8");
-			System.out.println(sampleMessages[2]);
-			String temp = scanner1.next().toLowerCase();
-			Pattern p8_1 = Pattern.compile("(.*)(yes)(.*)");
-			Matcher m8_1 = p8_1.matcher(temp);
-			Pattern p8_2 = Pattern.compile("(.*)(have\\s)(.*)");
-			Matcher m8_2 = p8_2.matcher(temp);
-			
-			if(m8_1.find() || m8_2.find()) {
-				System.out.println("It's good that you're trying to improve yourself! Procrastination can also be a symptom of anxiety or depression. Do you feel anxious or depressed?");
-				scanner1.nextLine();
-				temp = scanner1.next().toLowerCase();
-				Pattern p8_3 = Pattern.compile("(.*)(maybe)(.*)");
-				Matcher m8_3 = p8_3.matcher(temp);
-				m8_1 = p8_1.matcher(temp);
-				if(m8_1.find() || m8_3.find()) {
-					output = sampleMessages[6];
-				}else {
-					output = "Thats good. I'd reccomend trying out a journal. It can be hard to start something, but it only takes an average of 66 days to form a new habit!. Is there anything else you wante to talk about?";
-				}
-			}else {
-				output = "I'd reccomend trying it. It can be hard to start something, but it only takes an average of 66 days to form a new habit! Is there anything else you wante to talk about?";
-			}
-			
-		}else if(m9.find()){
-			System.out.println("Goodbye");
-			System.exit(0);
-			
+		} else if (TurnGuard.find(m7)){ // Case 7, "tired"
+			debug("Case 7");
+			output = "Do you excercise? It can help with sleeping better.";
+			turn.setFollowUp(TIRED_EXERCISE);
+		} else if(TurnGuard.find(m8)){ // Case 8
+			debug("Case 8");
+			output = sampleMessages[2];
+			turn.setFollowUp(JOURNAL);
+		}else if(turn.hasIntent(TurnContext.GOODBYE)){ // no reply, startTopic ends the discussion
+			debug("Goodbye");
 		} else {
-			System.out.println("No case match");
-			output = noMessages[(int) (Math.random() * noMessages.length)];
+			debug("No case match");
+			output = noMessages[nextRandom(noMessages.length)];
 		}
 		
 		return output;
 
 	}
 
-	public void extractKeywords(String input) {
-		for (Characteristic c : contextGraph.getCharacteristicsList()) {
-			if (input.contains(c.getName())) {
-				// What method do we use when we find a keyword or synonym in the patient
-				// message?
+	/**
+	 * Reply to the answer to a follow up question the last reply asked, may ask the next one (set on turn)
+	 */
+	private String answerFollowUp(int question, String input, TurnContext turn) {
+		switch (question) {
+		case EXERCISE:
+			if (turn.hasIntent(TurnContext.YES) || (!turn.hasIntent(TurnContext.NO) && mentions(input, DO))) {
+				return "Good for you! Excercise has been proven to improve concentration, helps you sleep better,"
+						+ " and reduce anxiety and depression. What else you would like to talk about?";
 			}
-			for (String s : c.getSynonymns()) {
-				if (input.contains(s)) {
-					// Same as before
-				}
+			return "You should try it. Excercise has been proven to improve concentration, helps you sleep better,"
+					+ " and reduces anxiety and depression.";
+
+		case STRESS_CAUSE:
+			if (mentions(input, SCHOOL)) {
+				return "I'm sorry schools been so stressful lately. Hopefully it will be worth all of the hard work in the end!"
+						+ "\nYou can try to free up some extra time by improving your time management skills. Procrastination can lead to more stress down the line."
+						+ "\nDid you have anything else you wanted to talk about?";
+			}
+			if (mentions(input, WORK)) {
+				turn.setFollowUp(ENJOY_WORK);
+				return "Sorry to hear that your work has been so stressful. Do you enjoy what you do?";
+			}
+			return "I'm sorry about that. I hope it gets easier for you soon. It really does help to find someone to talk to. I'd reccomend talking to friends or family.";
+
+		case ENJOY_WORK:
+			if (turn.hasIntent(TurnContext.YES)) {
+				return "Thats good, its important to enjoy what you do. Hopefully it will become less stressful soon.";
+			}
+			return "Thats no good. Its important to enjoy what you do. Have you thought of doing something else?";
+
+		case TIRED_EXERCISE:
+			if (turn.hasIntent(TurnContext.YES) || (!turn.hasIntent(TurnContext.NO) && mentions(input, DO))) {
+				turn.setFollowUp(SLEEP_SCHEDULE);
+				return "Good for you! Excercise has been proven to improve concentration, helps you sleep better,"
+						+ " and reduce anxiety and depression. Since you're still tired do you have a regular sleep schedule?";
+			}
+			turn.setFollowUp(SLEEP_SCHEDULE_NO_EXERCISE);
+			return "You should try it. Excercise has been proven to improve concentration, helps you sleep better,"
+					+ " and reduces anxiety and depression. Do you have a reagular sleep schedule?";
+
+		case SLEEP_SCHEDULE:
+			if (turn.hasIntent(TurnContext.YES)) {
+				turn.setFollowUp(STRESSED_SLEEPS_WELL);
+				return "Thats good, keeping a regular sleep schedule has been proven to improve sleep quality. Make sure you keep it up! Are you going to bed early enough?"
+						+ "\nThe national sleep foundation reccomends 7 - 9 hours for adults between 18 and 64. "
+						+ "\nApart from that you seem to have excellent sleep habits, if you have trouble falling asleep that can be caused from stress or anxiety."
+						+ "\nHave you been feeling stressed or anxious lately?";
+			}
+			return "You should try sleeping at around the same time every night. It's been proven to improve the quality of sleep. Is there anything else you would like to talk about?";
+
+		case SLEEP_SCHEDULE_NO_EXERCISE:
+			if (turn.hasIntent(TurnContext.YES)) {
+				turn.setFollowUp(STRESSED_NO_EXERCISE);
+				return "Thats good, keeping a regular sleep schedule has been proven to improve sleep quality. Make sure you keep it up!"
+						+ "\n Try excercising regularly to see if you feel less tired. If that doesn't help trouble sleeping can also be caused by stress or anxiety."
+						+ "\n have you been feeling stressed on axious lately?";
+			}
+			turn.setFollowUp(STRESSED_NEITHER);
+			return "I would recommend trying excercise and a regular sleep schedule. If that doesn't help trouble sleeping can be caused by stress or anxiety."
+					+ "\n have you been feeling stressed or anxious lately?";
+
+		case STRESSED_SLEEPS_WELL:
+			if (turn.hasIntent(TurnContext.YES | TurnContext.MAYBE)) {
+				return sampleMessages[6];
+			}
+			return "Thats good. Just make sure you're getting enough sleep then.";
+
+		case STRESSED_NO_EXERCISE:
+			if (turn.hasIntent(TurnContext.YES | TurnContext.MAYBE)) {
+				return sampleMessages[6];
+			}
+			return "That's good. Just try excercise for now. Is there anything else that's been bothering you?";
+
+		case STRESSED_NEITHER:
+			if (turn.hasIntent(TurnContext.YES | TurnContext.MAYBE)) {
+				return sampleMessages[6];
+			}
+			return "That's good. Try my reccomedations and see if they help. Is there anything else you wanted to talk about?";
+
+		case JOURNAL:
+			if (turn.hasIntent(TurnContext.YES) || (!turn.hasIntent(TurnContext.NO) && mentions(input, HAVE))) {
+				turn.setFollowUp(ANXIOUS_OR_DEPRESSED);
+				return "It's good that you're trying to improve yourself! Procrastination can also be a symptom of anxiety or depression. Do you feel anxious or depressed?";
 			}
+			return "I'd reccomend trying it. It can be hard to start something, but it only takes an average of 66 days to form a new habit! Is there anything else you wante to talk about?";
+
+		case ANXIOUS_OR_DEPRESSED:
+			if (turn.hasIntent(TurnContext.YES | TurnContext.MAYBE)) {
+				return sampleMessages[6];
+			}
+			return "Thats good. I'd reccomend trying out a journal. It can be hard to start something, but it only takes an average of 66 days to form a new habit!. Is there anything else you wante to talk about?";
+
+		default:
+			return noMessages[nextRandom(noMessages.length)];
 		}
 	}
 
+	// words looked for in answers to follow up questions, yes/no/maybe come from the intents DetectStage set on the turn
+	private static final Pattern DO = Pattern.compile("\\bdo\\b"); // "i do", not "don't"
+	private static final Pattern HAVE = Pattern.compile("\\bhave\\b"); // "i have", not "haven't"
+	private static final Pattern SCHOOL = Pattern.compile("school");
+	private static final Pattern WORK = Pattern.compile("work");
+
+	// true if pattern is found anywhere in input (matching is bounded by the turn's time budget, see TurnGuard)
+	private static boolean mentions(String input, Pattern pattern) {
+		return TurnGuard.find(pattern.matcher(TurnGuard.guard(input)));
+	}
+
+	// sentiment of the words after a cue ("feeling", "am", "i"), "not happy" is negative and "very sad" more negative than "sad"
+	private static SentimentLexicon.Score sentimentOf(String words) {
+		return SentimentLexicon.DEFAULT.score(words);
+	}
+
+	// words after a cue to repeat back to the user, trimmed and without closing punctuation ("so tired." -> "so tired")
+	private static String phrase(String words) {
+		return words.trim().replaceAll("[.!?,]+$", "");
+	}
+
 }
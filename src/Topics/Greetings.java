@@ -1,8 +1,8 @@
 package Topics;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import ConvoBot.Patient;
 import ConvoBot.PrintMessage;
+import ConvoBot.ProfileExtractor;
 
 public class Greetings extends Topic {
 
@@ -10,45 +10,23 @@ public class Greetings extends Topic {
 			"Welcome 0, can I ask you a few questions before we start?",
 			"Is there something you would like to talk about?"};
 
-	public static String startTopic() {
+	public static String startTopic(Patient patient) {
 		
 		System.out.println("*************Starting Greetings topic************");
 		
 		PrintMessage.messageFromBot(messages[0]); // First message to user
 		String input = PrintMessage.messageFromUser(); // First message from user
 		
-		// First it needs to analyze the response.
-
-		Pattern[] pattern = { Pattern.compile("(My name is )(.*)"), Pattern.compile("(I'm )(.*)"),
-				Pattern.compile("(\\w*\b?(\\w*)?)") };
-
-		Matcher[] matcher = new Matcher[pattern.length];
-		for (int i = 0; i < matcher.length; i++) {
-			matcher[i] = pattern[i].matcher(input);
-		}
-		// 2. The sentences need to be checked for expected responses, such as "My name
-		// is, I'm, ect. Also needs to check for answers with just a name.
-		String name = null;
-		while (name == null) {
-			if (matcher[0].find())
-				name = matcher[0].group(2);
-			else if (matcher[1].find())
-				name = matcher[1].group(2);
-			else if (matcher[2].find())
-				name = input.trim();
-
-			/*
-			 * if - No valid response System.out.println("Sorry I didn't understand your
-			 * question. Could you please answer with just your name?) Scanner scanner = new
-			 * Scanner(System.in); String name = scanner.nextLine(); patient.name("name);
-			 */
-
-			if (name == null) {
-				PrintMessage.messageFromBot(
-						"Sorry I didn't understand your question. Could you please answer with just your name?");
-				input = PrintMessage.messageFromUser();
-			}
+		// The answer is checked for "My name is", "I'm", ect. or just a name (see ProfileExtractor),
+		// anything else the patient mentions (age, job) is kept in patient too.
+		// Asked again once, after that we go on without a name.
+		if (!ProfileExtractor.extract(input, patient, ProfileExtractor.NAME)) {
+			PrintMessage.messageFromBot(
+					"Sorry I didn't understand your question. Could you please answer with just your name?");
+			input = PrintMessage.messageFromUser();
+			ProfileExtractor.extract(input, patient, ProfileExtractor.NAME);
 		}
+		String name = patient.getName(); // null if they didn't give one
 
 		/*
 		 * Now we have the name we can output the next part of the message string.
@@ -58,7 +36,7 @@ public class Greetings extends Topic {
 		 * 
 		 */
 		if (messages[1].contains("0"))
-			PrintMessage.messageFromBot(messages[1].replace("0", name));
+			PrintMessage.messageFromBot(name != null ? messages[1].replace("0", name) : messages[1].replace(" 0", ""));
 		
 		// If user responds with no, ask them what they would like to talk about
 		if (PrintMessage.messageFromUser().toLowerCase().contains("no")) {
@@ -1,8 +1,11 @@
 package Topics;
 
 import java.util.ArrayList;
+import java.util.Random;
 import java.util.Scanner;
 
+import ConvoBot.Speculator;
+
 
 public class Topic {
 	
@@ -16,6 +19,22 @@ public class Topic {
 	 */
 	public static int currentTopic; 
 	
+	// used to pick generic replies, can be replaced with a seeded Random so conversations repeat (ie. Testing.LoadGenerator)
+	public static Random random = new Random();
+	
+	// picks a random reply index, can't be done ahead of time (see ConvoBot.Speculator)
+	static int nextRandom(int bound) {
+		Speculator.checkNotSpeculating();
+		return random.nextInt(bound);
+	}
+	
+	// debug line for the console, skipped while replies are worked out ahead of time
+	static void debug(String s) {
+		if (!Speculator.isSpeculating()) {
+			System.out.println(s);
+		}
+	}
+	
 	public ArrayList<String> extractKeywords() {
 		ArrayList<String> keywords = new ArrayList<String>();
 		